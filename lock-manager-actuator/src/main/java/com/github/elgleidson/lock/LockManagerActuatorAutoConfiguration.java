@@ -0,0 +1,72 @@
+package com.github.elgleidson.lock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.autoconfigure.health.ConditionalOnEnabledHealthIndicator;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+
+@AutoConfiguration(afterName = {
+  "com.github.elgleidson.lock.LockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerJdbcAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerR2dbcAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerFileAutoConfiguration"
+})
+@EnableConfigurationProperties(LockManagerActuatorProperties.class)
+public class LockManagerActuatorAutoConfiguration {
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(LockManager.class)
+  @ConditionalOnBean(LockManager.class)
+  static class LockManagerActuatorConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnAvailableEndpoint
+    public LockManagerEndpoint lockManagerEndpoint(LockManager lockManager, ObjectProvider<LockStatistics> lockStatistics,
+                                                   LockManagerActuatorProperties properties) {
+      return new LockManagerEndpoint(lockManager, lockStatistics.getIfAvailable(LockStatistics::new), properties.getTopContended());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "lockManagerHealthIndicator")
+    @ConditionalOnEnabledHealthIndicator("lockManager")
+    public LockManagerHealthIndicator lockManagerHealthIndicator(LockManager lockManager, LockManagerActuatorProperties properties) {
+      return new LockManagerHealthIndicator(lockManager, properties.getLatencyThreshold(), properties.getProbeExpiresIn());
+    }
+
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass({ReactiveLockManager.class, Mono.class})
+  @ConditionalOnBean(ReactiveLockManager.class)
+  static class ReactiveLockManagerActuatorConfiguration {
+
+    @Bean
+    // both endpoints have the same id, the non-reactive one takes precedence when both lock managers are present
+    @ConditionalOnMissingBean({ReactiveLockManagerEndpoint.class, LockManagerEndpoint.class})
+    @ConditionalOnAvailableEndpoint
+    public ReactiveLockManagerEndpoint reactiveLockManagerEndpoint(ReactiveLockManager lockManager, ObjectProvider<LockStatistics> lockStatistics,
+                                                                   LockManagerActuatorProperties properties) {
+      return new ReactiveLockManagerEndpoint(lockManager, lockStatistics.getIfAvailable(LockStatistics::new), properties.getTopContended());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "reactiveLockManagerHealthIndicator")
+    @ConditionalOnEnabledHealthIndicator("reactiveLockManager")
+    public ReactiveLockManagerHealthIndicator reactiveLockManagerHealthIndicator(ReactiveLockManager lockManager, LockManagerActuatorProperties properties) {
+      return new ReactiveLockManagerHealthIndicator(lockManager, properties.getLatencyThreshold(), properties.getProbeExpiresIn());
+    }
+
+  }
+
+}
@@ -0,0 +1,26 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.actuator")
+public class LockManagerActuatorProperties {
+
+  /**
+   * How many of the most contended unique identifiers the endpoint shows.
+   */
+  private int topContended = 10;
+
+  /**
+   * Above this lock/unlock round trip, the health indicator reports the lock backend as out of service.
+   */
+  private Duration latencyThreshold = Duration.ofMillis(500);
+
+  /**
+   * Expiration of the lock acquired by the health indicator, in case it can't release it.
+   */
+  private Duration probeExpiresIn = Duration.ofSeconds(10);
+
+}
@@ -0,0 +1,34 @@
+package com.github.elgleidson.lock;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+@Endpoint(id = "locks")
+@RequiredArgsConstructor
+public class LockManagerEndpoint {
+
+  private final LockManager lockManager;
+  private final LockStatistics lockStatistics;
+  private final int topContended;
+
+  /**
+   * @param prefix the prefix of the unique identifiers of the held locks to count, or none not to count them, as it goes
+   *               through all the matching locks of the backend.
+   */
+  @ReadOperation
+  public LocksDescriptor locks(@Nullable String prefix) {
+    return new LocksDescriptor(prefix != null ? heldLocks(prefix) : null, lockStatistics.snapshot(topContended));
+  }
+
+  private Long heldLocks(String prefix) {
+    try (var locks = lockManager.listLocks(prefix)) {
+      return locks.count();
+    } catch (UnsupportedOperationException ex) {
+      // the lock manager can't list its locks
+      return null;
+    }
+  }
+
+}
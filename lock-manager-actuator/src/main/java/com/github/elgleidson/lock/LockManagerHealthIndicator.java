@@ -0,0 +1,42 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.UUID;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Measures a real lock/unlock round trip against the lock backend.
+ * <p>When the round trip takes longer than the threshold, the backend is reported as out of service, so load balancers
+ * can drain the node before requests pile up waiting for locks.</p>
+ */
+public class LockManagerHealthIndicator extends AbstractHealthIndicator {
+
+  private final LockManager lockManager;
+  private final Duration latencyThreshold;
+  private final Duration probeExpiresIn;
+  // unique per instance, so the nodes don't contend with each other, and left out of the statistics
+  private final String probeIdentifier = LockStatistics.PROBE_PREFIX + UUID.randomUUID();
+
+  public LockManagerHealthIndicator(LockManager lockManager, Duration latencyThreshold, Duration probeExpiresIn) {
+    super("Lock manager health check failed");
+    this.lockManager = lockManager;
+    this.latencyThreshold = latencyThreshold;
+    this.probeExpiresIn = probeExpiresIn;
+  }
+
+  @Override
+  protected void doHealthCheck(Health.Builder builder) {
+    var start = System.nanoTime();
+    var lock = lockManager.lock(probeIdentifier, probeExpiresIn);
+    var unlocked = lockManager.unlock(lock);
+    var latency = Duration.ofNanos(System.nanoTime() - start);
+    builder.withDetail("latency", latency).withDetail("latencyThreshold", latencyThreshold).withDetail("unlocked", unlocked);
+    if (latency.compareTo(latencyThreshold) > 0) {
+      builder.outOfService();
+    } else {
+      builder.up();
+    }
+  }
+
+}
@@ -0,0 +1,12 @@
+package com.github.elgleidson.lock;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param heldLocks how many locks are currently held with the unique identifier starting with the prefix, only when a
+ *                  prefix is given (an empty one counting them all) and the lock manager can list its locks.
+ * @param statistics the lock acquisition statistics of this instance.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LocksDescriptor(Long heldLocks, LockStatistics.Snapshot statistics) {
+}
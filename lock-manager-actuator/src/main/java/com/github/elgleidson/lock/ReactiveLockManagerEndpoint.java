@@ -0,0 +1,34 @@
+package com.github.elgleidson.lock;
+
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+
+@Endpoint(id = "locks")
+@RequiredArgsConstructor
+public class ReactiveLockManagerEndpoint {
+
+  private final ReactiveLockManager lockManager;
+  private final LockStatistics lockStatistics;
+  private final int topContended;
+
+  /**
+   * @param prefix the prefix of the unique identifiers of the held locks to count, or none not to count them, as it goes
+   *               through all the matching locks of the backend.
+   */
+  @ReadOperation
+  public Mono<LocksDescriptor> locks(@Nullable String prefix) {
+    var heldLocks = prefix != null
+      ? lockManager.listLocks(prefix).count()
+        // the lock manager can't list its locks
+        .onErrorResume(UnsupportedOperationException.class, ex -> Mono.empty())
+      : Mono.<Long>empty();
+    return heldLocks.map(Optional::of)
+      .defaultIfEmpty(Optional.empty())
+      .map(count -> new LocksDescriptor(count.orElse(null), lockStatistics.snapshot(topContended)));
+  }
+
+}
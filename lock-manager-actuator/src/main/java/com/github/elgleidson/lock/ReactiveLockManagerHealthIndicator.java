@@ -0,0 +1,43 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.UUID;
+import org.springframework.boot.actuate.health.AbstractReactiveHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import reactor.core.publisher.Mono;
+
+/**
+ * Measures a real lock/unlock round trip against the lock backend.
+ * <p>When the round trip takes longer than the threshold, the backend is reported as out of service, so load balancers
+ * can drain the node before requests pile up waiting for locks.</p>
+ */
+public class ReactiveLockManagerHealthIndicator extends AbstractReactiveHealthIndicator {
+
+  private final ReactiveLockManager lockManager;
+  private final Duration latencyThreshold;
+  private final Duration probeExpiresIn;
+  // unique per instance, so the nodes don't contend with each other, and left out of the statistics
+  private final String probeIdentifier = LockStatistics.PROBE_PREFIX + UUID.randomUUID();
+
+  public ReactiveLockManagerHealthIndicator(ReactiveLockManager lockManager, Duration latencyThreshold, Duration probeExpiresIn) {
+    super("Lock manager health check failed");
+    this.lockManager = lockManager;
+    this.latencyThreshold = latencyThreshold;
+    this.probeExpiresIn = probeExpiresIn;
+  }
+
+  @Override
+  protected Mono<Health> doHealthCheck(Health.Builder builder) {
+    return Mono.defer(() -> {
+      var start = System.nanoTime();
+      return lockManager.lock(probeIdentifier, probeExpiresIn)
+        .flatMap(lockManager::unlock)
+        .map(unlocked -> {
+          var latency = Duration.ofNanos(System.nanoTime() - start);
+          builder.withDetail("latency", latency).withDetail("latencyThreshold", latencyThreshold).withDetail("unlocked", unlocked);
+          return latency.compareTo(latencyThreshold) > 0 ? builder.outOfService().build() : builder.up().build();
+        });
+    });
+  }
+
+}
@@ -0,0 +1,92 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.ZonedDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class LockManagerEndpointTest {
+
+  private static final Lock LOCK_1 = new Lock("id-1", "my-unique-identifier-1", ZonedDateTime.now());
+  private static final Lock LOCK_2 = new Lock("id-2", "my-unique-identifier-2", ZonedDateTime.now());
+
+  @Mock
+  private LockManager lockManager;
+  @Mock
+  private ReactiveLockManager reactiveLockManager;
+
+  private final LockStatistics lockStatistics = new LockStatistics();
+
+  @BeforeEach
+  void setUp() {
+    lockStatistics.recordAcquired("my-unique-identifier-1", 1_000_000);
+    lockStatistics.recordContended("my-unique-identifier-1", 1_000_000);
+  }
+
+  @Test
+  void locks() {
+    var descriptor = new LockManagerEndpoint(lockManager, lockStatistics, 10).locks(null);
+    // not counted unless asked for, as it goes through all the locks
+    thenTheDescriptorIsExpected(descriptor, null);
+    verify(lockManager, never()).listLocks(anyString());
+  }
+
+  @Test
+  void locksWithPrefix() {
+    doReturn(Stream.of(LOCK_1, LOCK_2)).when(lockManager).listLocks("my-unique");
+    var descriptor = new LockManagerEndpoint(lockManager, lockStatistics, 10).locks("my-unique");
+    thenTheDescriptorIsExpected(descriptor, 2L);
+    verify(lockManager).listLocks("my-unique");
+  }
+
+  @Test
+  void locksWithPrefixNotListable() {
+    doThrow(new UnsupportedOperationException("can't inspect locks")).when(lockManager).listLocks("my-unique");
+    var descriptor = new LockManagerEndpoint(lockManager, lockStatistics, 10).locks("my-unique");
+    thenTheDescriptorIsExpected(descriptor, null);
+  }
+
+  @Test
+  void locksReactive() {
+    var descriptor = new ReactiveLockManagerEndpoint(reactiveLockManager, lockStatistics, 10).locks(null);
+    StepVerifier.create(descriptor).assertNext(result -> thenTheDescriptorIsExpected(result, null)).verifyComplete();
+    verify(reactiveLockManager, never()).listLocks(anyString());
+  }
+
+  @Test
+  void locksReactiveWithPrefix() {
+    doReturn(Flux.just(LOCK_1, LOCK_2)).when(reactiveLockManager).listLocks("");
+    var descriptor = new ReactiveLockManagerEndpoint(reactiveLockManager, lockStatistics, 10).locks("");
+    StepVerifier.create(descriptor).assertNext(result -> thenTheDescriptorIsExpected(result, 2L)).verifyComplete();
+    verify(reactiveLockManager).listLocks("");
+  }
+
+  @Test
+  void locksReactiveWithPrefixNotListable() {
+    doReturn(Flux.error(new UnsupportedOperationException("can't inspect locks"))).when(reactiveLockManager).listLocks("my-unique");
+    var descriptor = new ReactiveLockManagerEndpoint(reactiveLockManager, lockStatistics, 10).locks("my-unique");
+    StepVerifier.create(descriptor).assertNext(result -> thenTheDescriptorIsExpected(result, null)).verifyComplete();
+  }
+
+  private void thenTheDescriptorIsExpected(LocksDescriptor descriptor, Long heldLocks) {
+    assertThat(descriptor.heldLocks()).isEqualTo(heldLocks);
+    assertThat(descriptor.statistics().acquired()).isEqualTo(1);
+    assertThat(descriptor.statistics().contended()).isEqualTo(1);
+    assertThat(descriptor.statistics().topContendedIdentifiers()).containsEntry("my-unique-identifier-1", 1L);
+    assertThat(descriptor.statistics().acquireLatencyMillis()).containsKeys("p50", "p90", "p99", "p999", "max");
+  }
+
+}
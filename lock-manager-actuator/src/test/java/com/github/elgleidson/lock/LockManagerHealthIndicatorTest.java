@@ -0,0 +1,94 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+@ExtendWith(MockitoExtension.class)
+class LockManagerHealthIndicatorTest {
+
+  private static final Duration LATENCY_THRESHOLD = Duration.ofMillis(100);
+  private static final Duration PROBE_EXPIRES_IN = Duration.ofSeconds(10);
+  private static final Lock LOCK = new Lock("id", "lock-manager-health", ZonedDateTime.now().plus(PROBE_EXPIRES_IN));
+
+  @Mock
+  private LockManager lockManager;
+
+  private Health health;
+
+  @Test
+  void up() {
+    givenACallToLock();
+    givenACallToUnlock();
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.UP);
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void outOfServiceWhenSlow() {
+    givenASlowCallToLock();
+    givenACallToUnlock();
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.OUT_OF_SERVICE);
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void downWhenLockFails() {
+    givenACallToLock(new RuntimeException("test exception"));
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.DOWN);
+    thenUnlockIsNotInvoked();
+  }
+
+  private void givenACallToLock() {
+    doReturn(LOCK).when(lockManager).lock(anyString(), any(Duration.class));
+  }
+
+  private void givenASlowCallToLock() {
+    doAnswer(invocation -> {
+      Thread.sleep(LATENCY_THRESHOLD.toMillis() + 50);
+      return LOCK;
+    }).when(lockManager).lock(anyString(), any(Duration.class));
+  }
+
+  private void givenACallToLock(Throwable throwable) {
+    doThrow(throwable).when(lockManager).lock(anyString(), any(Duration.class));
+  }
+
+  private void givenACallToUnlock() {
+    doReturn(true).when(lockManager).unlock(any(Lock.class));
+  }
+
+  private void whenICheckTheHealth() {
+    health = new LockManagerHealthIndicator(lockManager, LATENCY_THRESHOLD, PROBE_EXPIRES_IN).health();
+  }
+
+  private void thenTheStatusIs(Status expected) {
+    assertThat(health.getStatus()).isEqualTo(expected);
+  }
+
+  private void thenUnlockIsInvoked() {
+    verify(lockManager).unlock(LOCK);
+  }
+
+  private void thenUnlockIsNotInvoked() {
+    verify(lockManager, never()).unlock(any(Lock.class));
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveLockManagerHealthIndicatorTest {
+
+  private static final Duration LATENCY_THRESHOLD = Duration.ofMillis(100);
+  private static final Duration PROBE_EXPIRES_IN = Duration.ofSeconds(10);
+  private static final Lock LOCK = new Lock("id", "lock-manager-health", ZonedDateTime.now().plus(PROBE_EXPIRES_IN));
+
+  @Mock
+  private ReactiveLockManager lockManager;
+
+  private Mono<Health> health;
+
+  @Test
+  void up() {
+    givenACallToLock(Mono.just(LOCK));
+    givenACallToUnlock();
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.UP);
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void outOfServiceWhenSlow() {
+    givenACallToLock(Mono.just(LOCK).delayElement(LATENCY_THRESHOLD.plusMillis(50)));
+    givenACallToUnlock();
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.OUT_OF_SERVICE);
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void downWhenLockFails() {
+    givenACallToLock(Mono.error(new RuntimeException("test exception")));
+    whenICheckTheHealth();
+    thenTheStatusIs(Status.DOWN);
+    thenUnlockIsNotInvoked();
+  }
+
+  private void givenACallToLock(Mono<Lock> lock) {
+    doReturn(lock).when(lockManager).lock(anyString(), any(Duration.class));
+  }
+
+  private void givenACallToUnlock() {
+    doReturn(Mono.just(true)).when(lockManager).unlock(any(Lock.class));
+  }
+
+  private void whenICheckTheHealth() {
+    health = new ReactiveLockManagerHealthIndicator(lockManager, LATENCY_THRESHOLD, PROBE_EXPIRES_IN).health();
+  }
+
+  private void thenTheStatusIs(Status expected) {
+    StepVerifier.create(health).assertNext(actual -> assertThat(actual.getStatus()).isEqualTo(expected)).verifyComplete();
+  }
+
+  private void thenUnlockIsInvoked() {
+    verify(lockManager).unlock(LOCK);
+  }
+
+  private void thenUnlockIsNotInvoked() {
+    verify(lockManager, never()).unlock(any(Lock.class));
+  }
+
+}
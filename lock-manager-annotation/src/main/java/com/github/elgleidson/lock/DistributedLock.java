@@ -0,0 +1,37 @@
+package com.github.elgleidson.lock;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Holds a lock while the annotated method runs, the declarative equivalent of {@code lockManager.wrap(...)}.
+ * <p>Methods returning {@code Mono} or {@code Flux} are locked by the {@link ReactiveLockManager}, and the lock is held
+ * until the publisher terminates. Methods returning a {@code CompletableFuture} (or any {@code CompletionStage}) are locked by
+ * the {@link LockManager}, and the lock is held until the future completes. Any other method is locked by the
+ * {@link LockManager} while it runs.</p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DistributedLock {
+
+  /**
+   * SpEL expression of the unique identifier, evaluated against the method arguments, e.g. {@code "'order:' + #order.id"}.
+   * <p>The arguments are available by name (when compiled with {@code -parameters}) and as {@code #p0}/{@code #a0}.</p>
+   */
+  String key();
+
+  /**
+   * How long the lock is held at most, e.g. {@code 30s}, {@code 5m} or {@code PT30S}. Property placeholders are resolved.
+   */
+  String ttl();
+
+  /**
+   * Whether the lock is released when the method fails.
+   */
+  boolean onErrorUnlock() default true;
+
+}
@@ -0,0 +1,279 @@
+package com.github.elgleidson.lock;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringValueResolver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Locks the methods annotated with {@link DistributedLock}.
+ * <p>The key expression, the TTL and how the method is invoked are worked out on the first invocation of each method and
+ * cached, so later invocations only evaluate the (compiled, once hot) key expression.</p>
+ * <p>The methods returning a {@link CompletionStage} are locked by the {@link AsyncLockManager} when there's one: the
+ * method is only invoked once the lock is acquired, without blocking the caller, and a lock failure completes the returned
+ * future. Without one, they fall back to the {@link LockManager}, which blocks the caller while acquiring the lock and
+ * throws its failure. Either way, the lock is released once the stage completes.</p>
+ */
+@Slf4j
+@Aspect
+public class DistributedLockAspect implements EmbeddedValueResolverAware {
+
+  private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono", DistributedLockAspect.class.getClassLoader());
+  private static final boolean ASYNC_PRESENT = ClassUtils.isPresent("com.github.elgleidson.lock.AsyncLockManager", DistributedLockAspect.class.getClassLoader());
+  // MIXED compiles the expressions to bytecode once they've been interpreted, falling back to interpreting them if needed
+  private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+    new SpelParserConfiguration(SpelCompilerMode.MIXED, DistributedLockAspect.class.getClassLoader()));
+
+  private final ObjectProvider<LockManager> lockManager;
+  private final ObjectProvider<ReactiveLockManager> reactiveLockManager;
+  // null when lock-manager-async isn't on the classpath
+  private final ObjectProvider<AsyncLockManager> asyncLockManager;
+  private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+  private final Map<Method, LockedMethod> lockedMethods = new ConcurrentHashMap<>();
+  private StringValueResolver embeddedValueResolver;
+
+  public DistributedLockAspect(ObjectProvider<LockManager> lockManager, ObjectProvider<ReactiveLockManager> reactiveLockManager) {
+    this(lockManager, reactiveLockManager, null);
+  }
+
+  public DistributedLockAspect(ObjectProvider<LockManager> lockManager, ObjectProvider<ReactiveLockManager> reactiveLockManager,
+                               ObjectProvider<AsyncLockManager> asyncLockManager) {
+    this.lockManager = lockManager;
+    this.reactiveLockManager = reactiveLockManager;
+    this.asyncLockManager = asyncLockManager;
+  }
+
+  @Override
+  public void setEmbeddedValueResolver(StringValueResolver embeddedValueResolver) {
+    this.embeddedValueResolver = embeddedValueResolver;
+  }
+
+  @Around("@annotation(distributedLock)")
+  public Object lock(ProceedingJoinPoint joinPoint, DistributedLock distributedLock) throws Throwable {
+    var method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    var lockedMethod = lockedMethods.computeIfAbsent(method, key -> lockedMethod(key, distributedLock));
+    var uniqueIdentifier = lockedMethod.uniqueIdentifier(joinPoint.getArgs());
+    log.debug("method: {}, uniqueIdentifier: {}, invocation: {}", method, uniqueIdentifier, lockedMethod.invocation());
+    return switch (lockedMethod.invocation()) {
+      case BLOCKING -> proceedBlocking(joinPoint, uniqueIdentifier, lockedMethod);
+      case COMPLETION_STAGE -> proceedCompletionStage(joinPoint, uniqueIdentifier, lockedMethod);
+      case MONO -> ReactiveInvocations.proceedMono(reactiveLockManager(method), joinPoint, uniqueIdentifier, lockedMethod);
+      case FLUX -> ReactiveInvocations.proceedFlux(reactiveLockManager(method), joinPoint, uniqueIdentifier, lockedMethod);
+    };
+  }
+
+  private Object proceedBlocking(ProceedingJoinPoint joinPoint, String uniqueIdentifier, LockedMethod lockedMethod) throws Throwable {
+    try {
+      return lockManager(lockedMethod.method()).wrap(uniqueIdentifier, lockedMethod.ttl(), lockedMethod.onErrorUnlock(), () -> {
+        try {
+          return joinPoint.proceed();
+        } catch (RuntimeException | Error ex) {
+          throw ex;
+        } catch (Throwable throwable) {
+          throw new CheckedThrowableHolder(throwable);
+        }
+      });
+    } catch (CheckedThrowableHolder holder) {
+      throw holder.getCause();
+    }
+  }
+
+  private Object proceedCompletionStage(ProceedingJoinPoint joinPoint, String uniqueIdentifier, LockedMethod lockedMethod) throws Throwable {
+    var asyncLocked = ASYNC_PRESENT && asyncLockManager != null
+      ? AsyncInvocations.proceed(asyncLockManager, joinPoint, uniqueIdentifier, lockedMethod)
+      : null;
+    if (asyncLocked != null) {
+      return asyncLocked;
+    }
+    // acquired blocking the caller
+    var lockManager = lockManager(lockedMethod.method());
+    var lock = lockManager.lock(uniqueIdentifier, lockedMethod.ttl());
+    CompletionStage<?> completionStage;
+    try {
+      completionStage = (CompletionStage<?>) joinPoint.proceed();
+    } catch (Throwable throwable) {
+      if (lockedMethod.onErrorUnlock()) {
+        safeUnlock(lockManager, lock);
+      }
+      throw throwable;
+    }
+    if (completionStage == null) {
+      safeUnlock(lockManager, lock);
+      return null;
+    }
+    // the lock is held until the future completes, not only while the method runs
+    return completionStage.whenComplete((result, throwable) -> {
+      if (throwable == null || lockedMethod.onErrorUnlock()) {
+        safeUnlock(lockManager, lock);
+      }
+    });
+  }
+
+  private static void safeUnlock(LockManager lockManager, Lock lock) {
+    try {
+      lockManager.unlock(lock);
+    } catch (Exception ex) {
+      log.warn("lock: {}, unlock failed: {}", lock, ex.getMessage());
+    }
+  }
+
+  private LockManager lockManager(Method method) {
+    var instance = lockManager.getIfAvailable();
+    if (instance == null) {
+      throw new IllegalStateException("A LockManager bean is required to lock " + method);
+    }
+    return instance;
+  }
+
+  private ReactiveLockManager reactiveLockManager(Method method) {
+    var instance = reactiveLockManager.getIfAvailable();
+    if (instance == null) {
+      throw new IllegalStateException("A ReactiveLockManager bean is required to lock " + method);
+    }
+    return instance;
+  }
+
+  private LockedMethod lockedMethod(Method method, DistributedLock distributedLock) {
+    var ttl = distributedLock.ttl();
+    if (embeddedValueResolver != null) {
+      ttl = embeddedValueResolver.resolveStringValue(ttl);
+    }
+    var parameterNames = parameterNameDiscoverer.getParameterNames(method);
+    var variableNames = new String[method.getParameterCount()][];
+    for (int i = 0; i < variableNames.length; i++) {
+      variableNames[i] = parameterNames != null
+        ? new String[] {parameterNames[i], "p" + i, "a" + i}
+        : new String[] {"p" + i, "a" + i};
+    }
+    return new LockedMethod(method, PARSER.parseExpression(distributedLock.key()), variableNames,
+      DurationStyle.detectAndParse(ttl), distributedLock.onErrorUnlock(), Invocation.of(method.getReturnType()));
+  }
+
+  private enum Invocation {
+    BLOCKING, COMPLETION_STAGE, MONO, FLUX;
+
+    static Invocation of(Class<?> returnType) {
+      if (REACTOR_PRESENT && ReactiveInvocations.isMono(returnType)) {
+        return MONO;
+      }
+      if (REACTOR_PRESENT && ReactiveInvocations.isFlux(returnType)) {
+        return FLUX;
+      }
+      if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+        return COMPLETION_STAGE;
+      }
+      return BLOCKING;
+    }
+  }
+
+  private record LockedMethod(Method method, Expression key, String[][] variableNames, Duration ttl, boolean onErrorUnlock,
+                              Invocation invocation) {
+
+    String uniqueIdentifier(Object[] args) {
+      var context = new StandardEvaluationContext();
+      for (int i = 0; i < args.length; i++) {
+        for (var variableName : variableNames[i]) {
+          context.setVariable(variableName, args[i]);
+        }
+      }
+      var uniqueIdentifier = key.getValue(context, String.class);
+      if (uniqueIdentifier == null) {
+        throw new IllegalArgumentException("The key '" + key.getExpressionString() + "' evaluated to null for " + method);
+      }
+      return uniqueIdentifier;
+    }
+  }
+
+  // carries the checked exceptions of the method through LockManager.wrap's Supplier
+  private static class CheckedThrowableHolder extends RuntimeException {
+    CheckedThrowableHolder(Throwable cause) {
+      super(null, cause, false, false);
+    }
+  }
+
+  // keeps the AsyncLockManager calls out of the aspect itself, so it works without lock-manager-async on the classpath
+  private static final class AsyncInvocations {
+
+    // null when there's no AsyncLockManager bean
+    static CompletableFuture<Object> proceed(ObjectProvider<AsyncLockManager> lockManagerProvider, ProceedingJoinPoint joinPoint,
+                                             String uniqueIdentifier, LockedMethod lockedMethod) {
+      var lockManager = lockManagerProvider.getIfAvailable();
+      if (lockManager == null) {
+        return null;
+      }
+      // the method is only invoked once the lock is acquired
+      return lockManager.wrapAsync(uniqueIdentifier, lockedMethod.ttl(), lockedMethod.onErrorUnlock(), () -> {
+        try {
+          @SuppressWarnings("unchecked")
+          var completionStage = (CompletionStage<Object>) joinPoint.proceed();
+          return completionStage != null ? completionStage : CompletableFuture.completedFuture(null);
+        } catch (Throwable throwable) {
+          return CompletableFuture.failedFuture(throwable);
+        }
+      });
+    }
+
+  }
+
+  // keeps the reactor types out of the aspect itself, so it works without reactor on the classpath
+  private static final class ReactiveInvocations {
+
+    static boolean isMono(Class<?> returnType) {
+      return returnType == Mono.class;
+    }
+
+    static boolean isFlux(Class<?> returnType) {
+      return returnType == Flux.class;
+    }
+
+    static Mono<Object> proceedMono(ReactiveLockManager lockManager, ProceedingJoinPoint joinPoint, String uniqueIdentifier,
+                                    LockedMethod lockedMethod) {
+      // the method is only invoked once the lock is acquired
+      return lockManager.wrap(uniqueIdentifier, lockedMethod.ttl(), lockedMethod.onErrorUnlock(), () -> {
+        try {
+          @SuppressWarnings("unchecked")
+          var mono = (Mono<Object>) joinPoint.proceed();
+          return mono;
+        } catch (Throwable throwable) {
+          return Mono.error(throwable);
+        }
+      });
+    }
+
+    static Flux<Object> proceedFlux(ReactiveLockManager lockManager, ProceedingJoinPoint joinPoint, String uniqueIdentifier,
+                                    LockedMethod lockedMethod) {
+      return lockManager.wrapMany(uniqueIdentifier, lockedMethod.ttl(), lockedMethod.onErrorUnlock(), () -> {
+        try {
+          @SuppressWarnings("unchecked")
+          var flux = (Flux<Object>) joinPoint.proceed();
+          return flux;
+        } catch (Throwable throwable) {
+          return Flux.error(throwable);
+        }
+      });
+    }
+
+  }
+
+}
@@ -0,0 +1,47 @@
+package com.github.elgleidson.lock;
+
+import org.aspectj.weaver.Advice;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@AutoConfiguration(after = AopAutoConfiguration.class, afterName = {
+  "com.github.elgleidson.lock.LockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerJdbcAutoConfiguration",
+  "com.github.elgleidson.lock.ReactiveLockManagerR2dbcAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerFileAutoConfiguration",
+  "com.github.elgleidson.lock.AsyncLockManagerRedisAutoConfiguration"
+})
+@ConditionalOnClass(Advice.class)
+public class DistributedLockAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnMissingClass("com.github.elgleidson.lock.AsyncLockManager")
+  public DistributedLockAspect distributedLockAspect(ObjectProvider<LockManager> lockManager, ObjectProvider<ReactiveLockManager> reactiveLockManager) {
+    return new DistributedLockAspect(lockManager, reactiveLockManager);
+  }
+
+  // the CompletionStage methods are locked by the AsyncLockManager, when there's one
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(name = "com.github.elgleidson.lock.AsyncLockManager")
+  static class AsyncLockManagerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DistributedLockAspect distributedLockAspect(ObjectProvider<LockManager> lockManager, ObjectProvider<ReactiveLockManager> reactiveLockManager,
+                                                       ObjectProvider<AsyncLockManager> asyncLockManager) {
+      return new DistributedLockAspect(lockManager, reactiveLockManager, asyncLockManager);
+    }
+
+  }
+
+}
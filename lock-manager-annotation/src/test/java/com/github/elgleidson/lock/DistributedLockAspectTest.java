@@ -0,0 +1,227 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class DistributedLockAspectTest {
+
+  private static final String UNIQUE_IDENTIFIER = "order:42";
+  private static final Duration TTL = Duration.ofSeconds(5);
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.now().plus(TTL));
+
+  @Spy
+  private LockManager lockManager;
+  @Spy
+  private ReactiveLockManager reactiveLockManager;
+  @Spy
+  private AsyncLockManager asyncLockManager;
+
+  private OrderService orderService;
+  private CompletableFuture<String> future;
+
+  @BeforeEach
+  void setUp() {
+    future = new CompletableFuture<>();
+    givenTheLockManagers(Map.of("lockManager", lockManager, "reactiveLockManager", reactiveLockManager));
+  }
+
+  @Test
+  void blocking() {
+    givenACallToLock();
+    givenACallToUnlock();
+    assertThat(orderService.process(42)).isEqualTo("processed 42");
+    assertThat(orderService.process(42)).isEqualTo("processed 42");
+    verify(lockManager, times(2)).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(lockManager, times(2)).unlock(LOCK);
+  }
+
+  @Test
+  void blockingWithPositionalKey() {
+    givenACallToLock();
+    givenACallToUnlock();
+    assertThat(orderService.processPositional(42)).isEqualTo("processed 42");
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void blockingWithCheckedException() {
+    givenACallToLock();
+    givenACallToUnlock();
+    assertThatException().isThrownBy(() -> orderService.fail(42)).isInstanceOf(IOException.class);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void blockingAlreadyLocked() {
+    var exception = LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    doThrow(exception).when(lockManager).lock(anyString(), any(Duration.class));
+    assertThatException().isThrownBy(() -> orderService.process(42)).isEqualTo(exception);
+    verify(lockManager, never()).unlock(any(Lock.class));
+  }
+
+  @Test
+  void completableFuture() {
+    givenACallToLock();
+    givenACallToUnlock();
+    var result = orderService.processAsync(42);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    // held until the future completes
+    verify(lockManager, never()).unlock(any(Lock.class));
+    future.complete("processed 42");
+    assertThat(result).isCompletedWithValue("processed 42");
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void completableFutureWithException() {
+    givenACallToLock();
+    givenACallToUnlock();
+    var result = orderService.processAsync(42);
+    future.completeExceptionally(new IllegalStateException("test"));
+    assertThat(result).isCompletedExceptionally();
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void completableFutureWithAsyncLockManager() {
+    givenTheLockManagers(Map.of("lockManager", lockManager, "asyncLockManager", asyncLockManager));
+    var lock = new CompletableFuture<Lock>();
+    doReturn(lock).when(asyncLockManager).lock(anyString(), any(Duration.class));
+    doReturn(CompletableFuture.completedFuture(true)).when(asyncLockManager).unlock(any(Lock.class));
+    var result = orderService.processAsync(42);
+    // the caller isn't blocked while the lock is acquired, and the method is only invoked once it is
+    assertThat(result).isNotDone();
+    lock.complete(LOCK);
+    verify(asyncLockManager, never()).unlock(any(Lock.class));
+    future.complete("processed 42");
+    assertThat(result).isCompletedWithValue("processed 42");
+    verify(asyncLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(asyncLockManager).unlock(LOCK);
+    verifyNoInteractions(lockManager);
+  }
+
+  @Test
+  void completableFutureWithAsyncLockManagerAlreadyLocked() {
+    givenTheLockManagers(Map.of("lockManager", lockManager, "asyncLockManager", asyncLockManager));
+    var exception = LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    doReturn(CompletableFuture.failedFuture(exception)).when(asyncLockManager).lock(anyString(), any(Duration.class));
+    // the failure completes the future, rather than being thrown
+    assertThat(orderService.processAsync(42)).failsWithin(Duration.ZERO).withThrowableThat().havingCause().isEqualTo(exception);
+    verify(asyncLockManager, never()).unlock(any(Lock.class));
+    verifyNoInteractions(lockManager);
+  }
+
+  @Test
+  void mono() {
+    doReturn(Mono.just(LOCK)).when(reactiveLockManager).lock(anyString(), any(Duration.class));
+    doReturn(Mono.just(true)).when(reactiveLockManager).unlock(any(Lock.class));
+    var result = orderService.processMono(42);
+    // nothing happens until subscribed
+    verify(reactiveLockManager, never()).unlock(any(Lock.class));
+    StepVerifier.create(result).expectNext("processed 42").verifyComplete();
+    verify(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(reactiveLockManager).unlock(LOCK);
+    verifyNoInteractions(lockManager);
+  }
+
+  @Test
+  void flux() {
+    doReturn(Mono.just(LOCK)).when(reactiveLockManager).lock(anyString(), any(Duration.class));
+    doReturn(Mono.just(true)).when(reactiveLockManager).unlock(any(Lock.class));
+    StepVerifier.create(orderService.processFlux(42)).expectNext("processed", "42").verifyComplete();
+    verify(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(reactiveLockManager).unlock(LOCK);
+    verifyNoInteractions(lockManager);
+  }
+
+  @Test
+  void nullKey() {
+    assertThatException().isThrownBy(() -> orderService.processNullable(null)).isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(lockManager);
+  }
+
+  private void givenTheLockManagers(Map<String, Object> lockManagers) {
+    var beanFactory = new StaticListableBeanFactory(lockManagers);
+    var aspect = new DistributedLockAspect(beanFactory.getBeanProvider(LockManager.class), beanFactory.getBeanProvider(ReactiveLockManager.class),
+      beanFactory.getBeanProvider(AsyncLockManager.class));
+    var proxyFactory = new AspectJProxyFactory(new OrderService(future));
+    proxyFactory.addAspect(aspect);
+    orderService = proxyFactory.getProxy();
+  }
+
+  private void givenACallToLock() {
+    doReturn(LOCK).when(lockManager).lock(anyString(), any(Duration.class));
+  }
+
+  private void givenACallToUnlock() {
+    doReturn(true).when(lockManager).unlock(any(Lock.class));
+  }
+
+  static class OrderService {
+
+    private final CompletableFuture<String> future;
+
+    OrderService(CompletableFuture<String> future) {
+      this.future = future;
+    }
+
+    @DistributedLock(key = "'order:' + #orderId", ttl = "5s")
+    public String process(long orderId) {
+      return "processed " + orderId;
+    }
+
+    @DistributedLock(key = "'order:' + #p0", ttl = "PT5S")
+    public String processPositional(long orderId) {
+      return "processed " + orderId;
+    }
+
+    @DistributedLock(key = "#orderId", ttl = "5s")
+    public String processNullable(String orderId) {
+      return "processed " + orderId;
+    }
+
+    @DistributedLock(key = "'order:' + #orderId", ttl = "5s")
+    public String fail(long orderId) throws IOException {
+      throw new IOException("test");
+    }
+
+    @DistributedLock(key = "'order:' + #orderId", ttl = "5s")
+    public CompletableFuture<String> processAsync(long orderId) {
+      return future;
+    }
+
+    @DistributedLock(key = "'order:' + #orderId", ttl = "5s")
+    public Mono<String> processMono(long orderId) {
+      return Mono.just("processed " + orderId);
+    }
+
+    @DistributedLock(key = "'order:' + #orderId", ttl = "5s")
+    public Flux<String> processFlux(long orderId) {
+      return Flux.just("processed", String.valueOf(orderId));
+    }
+
+  }
+
+}
@@ -0,0 +1,250 @@
+package com.github.elgleidson.lock;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * An {@link AsyncLockManager} on the Lettuce asynchronous API.
+ * <p>The commands are pipelined on a connection of its own, opened by the Lettuce client of the
+ * {@link LettuceConnectionFactory} and closed by {@link #close()}, and the futures are completed by the Lettuce event
+ * loop, so an in-flight call doesn't hold any thread.</p>
+ */
+@Slf4j
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+public class AsyncLockManagerRedis implements AsyncLockManager, AutoCloseable {
+
+  private static final String OK = "OK";
+  // extends the key only if it still holds the lock id, so a lock taken over meanwhile isn't
+  private static final String RENEW_SCRIPT = """
+    if redis.call('GET', KEYS[1]) == ARGV[1] then
+      return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    end
+    return 0
+    """;
+  // deletes the key only if it still holds the lock id, so a lock taken over meanwhile isn't
+  private static final String RELEASE_SCRIPT = """
+    if redis.call('GET', KEYS[1]) == ARGV[1] then
+      return redis.call('DEL', KEYS[1])
+    end
+    return 0
+    """;
+  private static final String RENEW_SCRIPT_SHA = sha1(RENEW_SCRIPT);
+  private static final String RELEASE_SCRIPT_SHA = sha1(RELEASE_SCRIPT);
+
+  // null when the commands aren't on a connection of its own
+  private final StatefulConnection<byte[], byte[]> connection;
+  private final RedisClusterAsyncCommands<byte[], byte[]> commands;
+  private final LockKeyCodec lockKeyCodec;
+  private final LockStatistics lockStatistics;
+  private final Clock clock;
+  private final Supplier<UUID> uuidSupplier;
+
+  public AsyncLockManagerRedis(LettuceConnectionFactory lettuceConnectionFactory) {
+    this(lettuceConnectionFactory, LockKeyCodec.defaultCodec());
+  }
+
+  public AsyncLockManagerRedis(LettuceConnectionFactory lettuceConnectionFactory, LockKeyCodec lockKeyCodec) {
+    this(lettuceConnectionFactory, lockKeyCodec, new LockStatistics());
+  }
+
+  public AsyncLockManagerRedis(LettuceConnectionFactory lettuceConnectionFactory, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics) {
+    this(connect(lettuceConnectionFactory), lockKeyCodec, lockStatistics);
+  }
+
+  private AsyncLockManagerRedis(StatefulConnection<byte[], byte[]> connection, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics) {
+    this(connection, commands(connection), lockKeyCodec, lockStatistics, Clock.systemUTC(), UUID::randomUUID);
+  }
+
+  private static StatefulConnection<byte[], byte[]> connect(LettuceConnectionFactory lettuceConnectionFactory) {
+    var client = lettuceConnectionFactory.getRequiredNativeClient();
+    return client instanceof RedisClusterClient clusterClient
+      ? clusterClient.connect(ByteArrayCodec.INSTANCE)
+      : ((RedisClient) client).connect(ByteArrayCodec.INSTANCE);
+  }
+
+  private static RedisClusterAsyncCommands<byte[], byte[]> commands(StatefulConnection<byte[], byte[]> connection) {
+    return connection instanceof StatefulRedisClusterConnection<byte[], byte[]> clusterConnection
+      ? clusterConnection.async()
+      : ((StatefulRedisConnection<byte[], byte[]>) connection).async();
+  }
+
+  @Override
+  public CompletableFuture<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
+    try {
+      var lock = createLock(uniqueIdentifier, expiresIn);
+      var setArgs = SetArgs.Builder.nx().px(expiresIn.toMillis());
+      return commands.set(lockKey(uniqueIdentifier), bytes(lock.id()), setArgs).toCompletableFuture()
+        .handle((reply, throwable) -> {
+          if (throwable != null) {
+            throw lockFailed(uniqueIdentifier, start, unwrap(throwable));
+          }
+          if (!OK.equals(reply)) {
+            // this is to track concurrent calls
+            log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+            lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+            throw LockFailureException.alreadyLocked(uniqueIdentifier);
+          }
+          lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
+          log.debug("locked={}", lock);
+          return lock;
+        });
+    } catch (Exception ex) {
+      return CompletableFuture.failedFuture(lockFailed(uniqueIdentifier, start, ex));
+    }
+  }
+
+  private LockFailureException lockFailed(String uniqueIdentifier, long start, Throwable throwable) {
+    log.error("error lock(): message={}", throwable.getMessage());
+    lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+    return LockFailureException.other(uniqueIdentifier, throwable);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> unlock(Lock lock) {
+    try {
+      // only unlocks if the lock id matches as uniqueIdentifier is the cache key, compared and deleted in a single round trip
+      return evalsha(RELEASE_SCRIPT, RELEASE_SCRIPT_SHA, lockKey(lock.uniqueIdentifier()), bytes(lock.id()))
+        .thenApply(deleted -> {
+          // if nothing was deleted it means either the lock has already expired or it was released and other process has acquired the lock on the same unique identifier
+          // in this case, does not unlock it as it needs to be unlocked by the process that has acquired the lock, or it will expire automatically
+          // log it for tracking purposes!
+          if (deleted == null || deleted == 0) {
+            log.warn("unlock(): another process has acquired the lock on '{}'", lock.uniqueIdentifier());
+            return false;
+          }
+          log.debug("unlocked={}", deleted);
+          return true;
+        })
+        .exceptionally(this::unlockFailed);
+    } catch (Exception ex) {
+      return CompletableFuture.completedFuture(unlockFailed(ex));
+    }
+  }
+
+  private boolean unlockFailed(Throwable throwable) {
+    // log the error, but returns successfully as the lock will expire (TTL)
+    log.error("error unlock(): message={}", unwrap(throwable).getMessage());
+    return false;
+  }
+
+  @Override
+  public CompletableFuture<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    try {
+      log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn);
+      // taken before the calls, so the keys never expire before the locks say
+      var expiresAt = ZonedDateTime.now(clock).plus(expiresIn);
+      var expiresInMillis = bytes(String.valueOf(expiresIn.toMillis()));
+      // a script per lock, as the keys of a script must all hash to the same slot on a cluster, all pipelined
+      var renewals = locks.stream()
+        .map(lock -> evalsha(RENEW_SCRIPT, RENEW_SCRIPT_SHA, lockKey(lock.uniqueIdentifier()), bytes(lock.id()), expiresInMillis)
+          .thenApply(renewed -> renewed != null && renewed == 1 ? new Lock(lock.id(), lock.uniqueIdentifier(), expiresAt) : null))
+        .toList();
+      return CompletableFuture.allOf(renewals.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          var renewed = renewals.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+          log.debug("renewed={}", renewed.size());
+          return renewed;
+        });
+    } catch (Exception ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public CompletableFuture<Optional<Lock>> getLock(String uniqueIdentifier) {
+    var lockKey = lockKey(uniqueIdentifier);
+    // both commands are pipelined, so they take a single round trip
+    var id = commands.get(lockKey).toCompletableFuture();
+    var expiresIn = commands.pttl(lockKey).toCompletableFuture();
+    return id.thenCombine(expiresIn, (value, ttl) -> {
+      // -2: the key has expired in the meantime; -1: the key has no expiration (it was not created by the lock manager)
+      if (value == null || ttl == null || ttl == -2) {
+        return Optional.empty();
+      }
+      var expiresAt = ttl == -1 ? null : ZonedDateTime.now(clock).plus(Duration.ofMillis(ttl));
+      return Optional.of(new Lock(string(value), uniqueIdentifier, expiresAt));
+    });
+  }
+
+  /**
+   * Closes the connection of its own, if any.
+   */
+  @Override
+  public void close() {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  private Lock createLock(String uniqueIdentifier, Duration expiresIn) {
+    var id = uuidSupplier.get().toString();
+    var expiresAt = ZonedDateTime.now(clock).plus(expiresIn);
+    return new Lock(id, uniqueIdentifier, expiresAt);
+  }
+
+  private CompletableFuture<Long> evalsha(String script, String sha, byte[] key, byte[]... args) {
+    // the script itself is only sent when Redis hasn't cached it yet (e.g. after a restart), caching it then
+    return commands.<Long>evalsha(sha, ScriptOutputType.INTEGER, new byte[][] {key}, args).toCompletableFuture()
+      .exceptionallyCompose(throwable -> unwrap(throwable) instanceof RedisNoScriptException
+        ? commands.<Long>eval(script, ScriptOutputType.INTEGER, new byte[][] {key}, args).toCompletableFuture()
+        : CompletableFuture.failedFuture(throwable));
+  }
+
+  private static String sha1(String script) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(bytes(script)));
+    } catch (NoSuchAlgorithmException ex) {
+      // every Java platform is required to support SHA-1
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private byte[] lockKey(String uniqueIdentifier) {
+    return bytes(lockKeyCodec.encode(uniqueIdentifier));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+  }
+
+}
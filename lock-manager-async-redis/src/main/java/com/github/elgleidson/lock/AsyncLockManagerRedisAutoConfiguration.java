@@ -0,0 +1,34 @@
+package com.github.elgleidson.lock;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+@AutoConfiguration(after = RedisAutoConfiguration.class)
+@EnableConfigurationProperties(AsyncLockManagerRedisProperties.class)
+public class AsyncLockManagerRedisAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(LockKeyCodec.class)
+  public LockKeyCodec asyncLockManagerRedisKeyCodec(AsyncLockManagerRedisProperties properties) {
+    return properties.toLockKeyCodec();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics asyncLockManagerRedisStatistics() {
+    return new LockStatistics();
+  }
+
+  @Bean
+  @ConditionalOnBean(LettuceConnectionFactory.class)
+  @ConditionalOnMissingBean(AsyncLockManager.class)
+  public AsyncLockManagerRedis asyncLockManagerRedis(LettuceConnectionFactory lettuceConnectionFactory, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics) {
+    return new AsyncLockManagerRedis(lettuceConnectionFactory, lockKeyCodec, lockStatistics);
+  }
+
+}
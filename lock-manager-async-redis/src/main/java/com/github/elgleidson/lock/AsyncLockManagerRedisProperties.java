@@ -0,0 +1,26 @@
+package com.github.elgleidson.lock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.redis")
+public class AsyncLockManagerRedisProperties {
+
+  /**
+   * Prefix of every lock key, so several services can share the same Redis.
+   */
+  private String namespace = LockKeyCodec.DEFAULT_NAMESPACE;
+
+  /**
+   * Identifiers longer than this are stored as a fixed-size hash. Zero (default) stores every identifier as is.
+   */
+  private int maxIdentifierLength = 0;
+
+  LockKeyCodec toLockKeyCodec() {
+    return maxIdentifierLength > 0
+      ? LockKeyCodec.hashing(namespace, maxIdentifierLength)
+      : LockKeyCodec.namespaced(namespace);
+  }
+
+}
@@ -0,0 +1,195 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncLockManagerRedisTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
+  private static final UUID LOCK_ID = UUID.randomUUID();
+  private static final Lock LOCK = new Lock(LOCK_ID.toString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final byte[] LOCK_KEY = bytes("lock:" + UNIQUE_IDENTIFIER);
+
+  @Mock
+  private StatefulConnection<byte[], byte[]> connection;
+  @Mock
+  private RedisClusterAsyncCommands<byte[], byte[]> commands;
+
+  private AsyncLockManagerRedis lockManager;
+
+  private final LockStatistics lockStatistics = new LockStatistics();
+
+  @BeforeEach
+  void setUp() {
+    lockManager = new AsyncLockManagerRedis(connection, commands, LockKeyCodec.defaultCodec(), lockStatistics, CLOCK, () -> LOCK_ID);
+  }
+
+  @Test
+  void lock() {
+    doReturn(completed("OK")).when(commands).set(aryEq(LOCK_KEY), aryEq(bytes(LOCK_ID.toString())), any(SetArgs.class));
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).isCompletedWithValue(LOCK);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockAlreadyLocked() {
+    doReturn(completed(null)).when(commands).set(aryEq(LOCK_KEY), any(byte[].class), any(SetArgs.class));
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).failsWithin(Duration.ZERO).withThrowableThat()
+      .havingCause().isInstanceOf(LockFailureException.class).withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockException() {
+    doReturn(failed(new RuntimeException("test exception"))).when(commands).set(aryEq(LOCK_KEY), any(byte[].class), any(SetArgs.class));
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).failsWithin(Duration.ZERO).withThrowableThat()
+      .havingCause().isInstanceOf(LockFailureException.class).withMessage("Failed to acquire lock on 'my-unique-identifier'");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void unlock() {
+    doReturn(completed(1L)).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), argThat((byte[][] keys) -> Arrays.equals(keys[0], LOCK_KEY)), aryEq(bytes(LOCK_ID.toString())));
+    assertThat(lockManager.unlock(LOCK)).isCompletedWithValue(true);
+    // compared and deleted by a single script, cached by Redis
+    verify(commands, never()).get(any(byte[].class));
+    verify(commands, never()).eval(anyString(), any(ScriptOutputType.class), any(byte[][].class), any(byte[].class));
+  }
+
+  @Test
+  void unlockAcquiredByAnotherProcess() {
+    doReturn(completed(0L)).when(commands).evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), any(byte[].class));
+    assertThat(lockManager.unlock(LOCK)).isCompletedWithValue(false);
+  }
+
+  @Test
+  void unlockScriptNotCached() {
+    doReturn(failed(new RedisNoScriptException("NOSCRIPT No matching script"))).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), any(byte[].class));
+    doReturn(completed(1L)).when(commands)
+      .eval(anyString(), eq(ScriptOutputType.INTEGER), argThat((byte[][] keys) -> Arrays.equals(keys[0], LOCK_KEY)), aryEq(bytes(LOCK_ID.toString())));
+    assertThat(lockManager.unlock(LOCK)).isCompletedWithValue(true);
+  }
+
+  @Test
+  void unlockException() {
+    doReturn(failed(new RuntimeException("test exception"))).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), any(byte[].class));
+    assertThat(lockManager.unlock(LOCK)).isCompletedWithValue(false);
+  }
+
+  @Test
+  void renewAll() {
+    var lost = new Lock("lost-id", "lost-unique-identifier", EXPIRES_AT);
+    doReturn(completed(1L)).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), aryEq(bytes(LOCK_ID.toString())), aryEq(bytes("30000")));
+    doReturn(completed(0L)).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), aryEq(bytes("lost-id")), aryEq(bytes("30000")));
+    assertThat(lockManager.renewAll(List.of(LOCK, lost), TTL)).isCompletedWithValue(List.of(LOCK));
+  }
+
+  @Test
+  void renewAllException() {
+    doReturn(failed(new RuntimeException("test exception"))).when(commands)
+      .evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(byte[][].class), any(byte[].class), any(byte[].class));
+    assertThat(lockManager.renewAll(List.of(LOCK), TTL)).failsWithin(Duration.ZERO).withThrowableThat()
+      .havingCause().withMessage("test exception");
+  }
+
+  @Test
+  void getLock() {
+    doReturn(completed(bytes(LOCK_ID.toString()))).when(commands).get(aryEq(LOCK_KEY));
+    doReturn(completed(TTL.toMillis())).when(commands).pttl(aryEq(LOCK_KEY));
+    assertThat(lockManager.getLock(UNIQUE_IDENTIFIER)).isCompletedWithValue(Optional.of(LOCK));
+  }
+
+  @Test
+  void getLockNotLocked() {
+    doReturn(completed(null)).when(commands).get(aryEq(LOCK_KEY));
+    doReturn(completed(-2L)).when(commands).pttl(aryEq(LOCK_KEY));
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isCompletedWithValue(false);
+  }
+
+  @Test
+  void close() {
+    lockManager.close();
+    verify(connection).close();
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static <T> RedisFuture<T> completed(T value) {
+    var future = new TestRedisFuture<T>();
+    future.complete(value);
+    return future;
+  }
+
+  private static <T> RedisFuture<T> failed(Throwable throwable) {
+    var future = new TestRedisFuture<T>();
+    future.completeExceptionally(throwable);
+    return future;
+  }
+
+  private static class TestRedisFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+    @Override
+    public String getError() {
+      return null;
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) {
+      return true;
+    }
+
+  }
+
+}
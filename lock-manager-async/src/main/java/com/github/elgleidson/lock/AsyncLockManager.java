@@ -0,0 +1,105 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lock manager returning {@link CompletableFuture}s, for code that neither blocks nor uses Reactor.
+ * <p>The implementations run on the asynchronous drivers, so an in-flight call holds neither a thread nor a reactive
+ * pipeline.</p>
+ */
+public interface AsyncLockManager {
+
+  default <T> CompletableFuture<T> wrapAsync(String uniqueIdentifier, Duration expiresIn, Supplier<? extends CompletionStage<T>> supplier) {
+    return wrapAsync(uniqueIdentifier, expiresIn, true, supplier);
+  }
+
+  default <T> CompletableFuture<T> wrapAsync(String uniqueIdentifier, Duration expiresIn, boolean onErrorUnlock,
+                                             Supplier<? extends CompletionStage<T>> supplier) {
+    return lock(uniqueIdentifier, expiresIn)
+      .thenCompose(lock -> invoke(supplier)
+        .handle((result, throwable) -> {
+          var unlocked = throwable == null || onErrorUnlock ? safeUnlock(lock) : CompletableFuture.completedFuture(false);
+          return unlocked.thenCompose(ignored -> throwable == null
+            ? CompletableFuture.completedFuture(result)
+            : CompletableFuture.<T>failedFuture(unwrap(throwable)));
+        })
+        .thenCompose(Function.identity()));
+  }
+
+  private static <T> CompletionStage<T> invoke(Supplier<? extends CompletionStage<T>> supplier) {
+    try {
+      return supplier.get();
+    } catch (Exception ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+  }
+
+  private CompletableFuture<Boolean> safeUnlock(Lock lock) {
+    try {
+      return unlock(lock).exceptionally(throwable -> false);
+    } catch (Exception ex) {
+      return CompletableFuture.completedFuture(false);
+    }
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+  }
+
+  /**
+   * Acquires the lock.
+   * @param uniqueIdentifier
+   * @param expiresIn
+   * @return the lock, or a future completed with a {@link LockFailureException} when it's not acquired.
+   */
+  CompletableFuture<Lock> lock(String uniqueIdentifier, Duration expiresIn);
+
+  /**
+   * Releases the lock.
+   * <p>The future should never complete exceptionally. In case of any exception, just log it and complete with false instead.</p>
+   * <p>You should unlock only when the lock ID and unique identifier match.</p>
+   * @param lock
+   * @return whether the lock was released.
+   */
+  CompletableFuture<Boolean> unlock(Lock lock);
+
+  /**
+   * Extends the locks still held by their holders to expire in {@code expiresIn} from now.
+   * @param locks
+   * @param expiresIn
+   * @return the locks renewed, with their new expiration. The others have been lost (expired, or taken over). A future
+   * completed with an {@link UnsupportedOperationException} when the backend can't renew locks (see {@link #canRenew()}).
+   */
+  default CompletableFuture<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    return CompletableFuture.failedFuture(new UnsupportedOperationException(getClass().getSimpleName() + " can't renew locks"));
+  }
+
+  /**
+   * @return whether the backend can renew locks with {@link #renewAll(List, Duration)}.
+   */
+  default boolean canRenew() {
+    return false;
+  }
+
+  default CompletableFuture<Boolean> isLocked(String uniqueIdentifier) {
+    return getLock(uniqueIdentifier).thenApply(Optional::isPresent);
+  }
+
+  /**
+   * Gets the lock currently held on the unique identifier.
+   * @param uniqueIdentifier
+   * @return the lock, with the ID of its holder and when it expires, or empty if there is no lock held. Completed with an
+   * {@link UnsupportedOperationException} when the lock manager can't inspect its locks.
+   */
+  default CompletableFuture<Optional<Lock>> getLock(String uniqueIdentifier) {
+    return CompletableFuture.failedFuture(new UnsupportedOperationException(getClass().getSimpleName() + " can't inspect locks"));
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link AsyncLockManager} over a {@link ReactiveLockManager}, for the backends whose asynchronous driver is the
+ * reactive one (e.g. the MongoDB reactive streams driver).
+ * <p>Each call subscribes a single subscriber that completes the future, no thread waits for the response.</p>
+ */
+public class ReactiveAsyncLockManager implements AsyncLockManager {
+
+  private final ReactiveLockManager reactiveLockManager;
+
+  public ReactiveAsyncLockManager(ReactiveLockManager reactiveLockManager) {
+    this.reactiveLockManager = reactiveLockManager;
+  }
+
+  @Override
+  public CompletableFuture<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+    return reactiveLockManager.lock(uniqueIdentifier, expiresIn).toFuture();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> unlock(Lock lock) {
+    return reactiveLockManager.unlock(lock).defaultIfEmpty(false).onErrorReturn(false).toFuture();
+  }
+
+  @Override
+  public CompletableFuture<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    return reactiveLockManager.renewAll(locks, expiresIn).toFuture();
+  }
+
+  @Override
+  public boolean canRenew() {
+    return reactiveLockManager.canRenew();
+  }
+
+  @Override
+  public CompletableFuture<Optional<Lock>> getLock(String uniqueIdentifier) {
+    return reactiveLockManager.getLock(uniqueIdentifier).map(Optional::of).defaultIfEmpty(Optional.empty()).toFuture();
+  }
+
+}
@@ -0,0 +1,58 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveAsyncLockManagerTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(5);
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.now().plus(TTL));
+
+  @Mock
+  private ReactiveLockManager reactiveLockManager;
+
+  @Test
+  void lock() {
+    doReturn(Mono.just(LOCK)).when(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    assertThat(new ReactiveAsyncLockManager(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL)).isCompletedWithValue(LOCK);
+  }
+
+  @Test
+  void lockAlreadyLocked() {
+    var exception = LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    doReturn(Mono.error(exception)).when(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    assertThat(new ReactiveAsyncLockManager(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL))
+      .failsWithin(Duration.ZERO).withThrowableThat().havingCause().isEqualTo(exception);
+  }
+
+  @Test
+  void unlockException() {
+    doReturn(Mono.error(new RuntimeException("test exception"))).when(reactiveLockManager).unlock(LOCK);
+    assertThat(new ReactiveAsyncLockManager(reactiveLockManager).unlock(LOCK)).isCompletedWithValue(false);
+  }
+
+  @Test
+  void renewAll() {
+    doReturn(Mono.just(List.of(LOCK))).when(reactiveLockManager).renewAll(List.of(LOCK), TTL);
+    assertThat(new ReactiveAsyncLockManager(reactiveLockManager).renewAll(List.of(LOCK), TTL)).isCompletedWithValue(List.of(LOCK));
+  }
+
+  @Test
+  void getLock() {
+    doReturn(Mono.empty()).when(reactiveLockManager).getLock(UNIQUE_IDENTIFIER);
+    assertThat(new ReactiveAsyncLockManager(reactiveLockManager).getLock(UNIQUE_IDENTIFIER)).isCompletedWithValue(Optional.empty());
+  }
+
+}
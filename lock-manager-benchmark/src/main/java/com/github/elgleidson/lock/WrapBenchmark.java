@@ -0,0 +1,164 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Throughput of {@value #CONCURRENT_CALLS} concurrent {@code wrap} calls, each one doing two backend round trips (lock and
+ * unlock) of {@code backendLatencyMicros}.
+ * <ul>
+ *   <li>{@code platformThreads}: the blocking lock manager on a pool of {@code platformThreads} threads.</li>
+ *   <li>{@code virtualThreadsBlockingDriver}: the blocking lock manager on a virtual thread per call.</li>
+ *   <li>{@code virtualThreadsAsyncDriver}: the {@link VirtualThreadLockManager} on a virtual thread per call.</li>
+ * </ul>
+ * <p>The backends are simulated, so only the threading model is measured: {@code mvn -Pbenchmark package -DskipTests},
+ * then {@code java -jar lock-manager-benchmark/target/benchmarks.jar}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(WrapBenchmark.CONCURRENT_CALLS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WrapBenchmark {
+
+  static final int CONCURRENT_CALLS = 10_000;
+
+  @Param("1000")
+  private long backendLatencyMicros;
+  @Param("200")
+  private int platformThreads;
+
+  private LockManager blockingLockManager;
+  private LockManager virtualThreadLockManager;
+  private ExecutorService platformThreadExecutor;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var latency = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(backendLatencyMicros));
+    blockingLockManager = new SimulatedBlockingLockManager(latency);
+    virtualThreadLockManager = new VirtualThreadLockManager(new SimulatedReactiveLockManager(latency));
+    platformThreadExecutor = Executors.newFixedThreadPool(platformThreads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    platformThreadExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public long platformThreads() throws Exception {
+    return wrapAll(platformThreadExecutor, blockingLockManager);
+  }
+
+  @Benchmark
+  public long virtualThreadsBlockingDriver() throws Exception {
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      return wrapAll(executor, blockingLockManager);
+    }
+  }
+
+  @Benchmark
+  public long virtualThreadsAsyncDriver() throws Exception {
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      return wrapAll(executor, virtualThreadLockManager);
+    }
+  }
+
+  private static long wrapAll(ExecutorService executor, LockManager lockManager) throws InterruptedException, ExecutionException {
+    var futures = new ArrayList<Future<Integer>>(CONCURRENT_CALLS);
+    for (int i = 0; i < CONCURRENT_CALLS; i++) {
+      var uniqueIdentifier = "benchmark:" + i;
+      futures.add(executor.submit(() -> lockManager.wrap(uniqueIdentifier, Duration.ofSeconds(30), uniqueIdentifier::length)));
+    }
+    long sum = 0;
+    for (var future : futures) {
+      sum += future.get();
+    }
+    return sum;
+  }
+
+  private static Lock newLock(String uniqueIdentifier, Duration expiresIn) {
+    return new Lock(UUID.randomUUID().toString(), uniqueIdentifier, ZonedDateTime.now().plus(expiresIn));
+  }
+
+  // a blocking driver: the calling thread waits for the whole round trip
+  private record SimulatedBlockingLockManager(Duration latency) implements LockManager {
+
+    @Override
+    public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+      LockSupport.parkNanos(latency.toNanos());
+      return newLock(uniqueIdentifier, expiresIn);
+    }
+
+    @Override
+    public boolean unlock(Lock lock) {
+      LockSupport.parkNanos(latency.toNanos());
+      return true;
+    }
+
+    @Override
+    public Optional<Lock> getLock(String uniqueIdentifier) {
+      return Optional.empty();
+    }
+
+    @Override
+    public Stream<Lock> listLocks(String prefix) {
+      return Stream.empty();
+    }
+
+  }
+
+  // an async driver: the response arrives on a timer thread, no thread waits for it
+  private record SimulatedReactiveLockManager(Duration latency) implements ReactiveLockManager {
+
+    @Override
+    public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+      return Mono.delay(latency).map(tick -> newLock(uniqueIdentifier, expiresIn));
+    }
+
+    @Override
+    public Mono<Boolean> unlock(Lock lock) {
+      return Mono.delay(latency).thenReturn(true);
+    }
+
+    @Override
+    public Mono<Lock> getLock(String uniqueIdentifier) {
+      return Mono.empty();
+    }
+
+    @Override
+    public Flux<Lock> listLocks(String prefix) {
+      return Flux.empty();
+    }
+
+  }
+
+}
@@ -0,0 +1,185 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+/**
+ * A {@link Cache} whose misses are computed once across the nodes: the first one to miss a key computes it under a lock,
+ * and publishes it to the cache; the others poll the cache until it's published, rather than computing it again or taking
+ * the lock in turn just to read it. Only the ones still missing it once the lock is released try to compute it (e.g. the
+ * one computing it failed).
+ * <p>The cache decorated is the one shared by the nodes (e.g. Redis), so the value published is what the others get, and
+ * it expires as configured there. Only {@link #get(Object, Callable)} is computed once, e.g. {@code @Cacheable(sync = true)};
+ * everything else goes straight to the cache.</p>
+ */
+@Slf4j
+public class ComputeOnceCache implements Cache {
+
+  // how often the others check the cache (and the lock) while a key is being computed
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+  private final Cache cache;
+  private final LockManager lockManager;
+  private final String keyPrefix;
+  private final Duration expiresIn;
+  private final Duration waitFor;
+
+  /**
+   * @param keyPrefix prefix of the unique identifier locked for each key, followed by the cache name and the key.
+   * @param expiresIn how long the lock is held at most, so another node computes the key if the one computing it crashed.
+   * @param waitFor how long the others wait for the key to be computed.
+   */
+  public ComputeOnceCache(Cache cache, LockManager lockManager, String keyPrefix, Duration expiresIn, Duration waitFor) {
+    this.cache = cache;
+    this.lockManager = lockManager;
+    this.keyPrefix = keyPrefix;
+    this.expiresIn = expiresIn;
+    this.waitFor = waitFor;
+  }
+
+  @Override
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public <T> T get(Object key, Class<T> type) {
+    return cache.get(key, type);
+  }
+
+  @Override
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    return computeOnce(key, expiresIn, valueLoader);
+  }
+
+  /**
+   * Gets the cached value, or computes it once across the nodes.
+   * @param expiresIn how long the computation may take, before another node computes the key too.
+   * @return the cached value, the one computed, or the one published meanwhile by the node that computed it.
+   * @throws ValueRetrievalException when the loader fails.
+   * @throws LockFailureException when the key is still being computed after {@code waitFor}.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T computeOnce(Object key, Duration expiresIn, Callable<T> valueLoader) {
+    var uniqueIdentifier = keyPrefix + cache.getName() + ":" + key;
+    var deadline = System.nanoTime() + waitFor.toNanos();
+    while (true) {
+      var cached = cache.get(key);
+      if (cached != null) {
+        return (T) cached.get();
+      }
+      Lock lock;
+      try {
+        lock = lockManager.lock(uniqueIdentifier, expiresIn);
+      } catch (LockFailureException ex) {
+        if (!ex.isAlreadyLocked()) {
+          // the cache keeps working while the lock backend doesn't, just without the stampede protection
+          log.warn("error lock(): uniqueIdentifier={}, message={}, computing without it", uniqueIdentifier, ex.getMessage());
+          return compute(key, valueLoader, null);
+        }
+        // being computed by another node, published once it's done
+        awaitPoll(deadline, ex);
+        continue;
+      }
+      return compute(key, valueLoader, lock);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T compute(Object key, Callable<T> valueLoader, Lock lock) {
+    try {
+      // published meanwhile by the one holding the lock before
+      var cached = cache.get(key);
+      if (cached != null) {
+        return (T) cached.get();
+      }
+      var value = load(key, valueLoader);
+      cache.put(key, value);
+      return value;
+    } finally {
+      if (lock != null) {
+        lockManager.unlock(lock);
+      }
+    }
+  }
+
+  /**
+   * Waits for the next poll.
+   * @throws LockFailureException the one given, once {@code waitFor} is over, or when interrupted.
+   */
+  private static void awaitPoll(long deadline, LockFailureException alreadyLocked) {
+    var remaining = deadline - System.nanoTime();
+    if (remaining <= 0) {
+      throw alreadyLocked;
+    }
+    try {
+      Thread.sleep(Duration.ofNanos(Math.min(remaining, POLL_INTERVAL.toNanos())));
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw alreadyLocked;
+    }
+  }
+
+  private static <T> T load(Object key, Callable<T> valueLoader) {
+    try {
+      return valueLoader.call();
+    } catch (Exception ex) {
+      throw new ValueRetrievalException(key, valueLoader, ex);
+    }
+  }
+
+  @Override
+  public CompletableFuture<?> retrieve(Object key) {
+    return cache.retrieve(key);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+    return cache.retrieve(key, valueLoader);
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    cache.put(key, value);
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    return cache.putIfAbsent(key, value);
+  }
+
+  @Override
+  public void evict(Object key) {
+    cache.evict(key);
+  }
+
+  @Override
+  public boolean evictIfPresent(Object key) {
+    return cache.evictIfPresent(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public boolean invalidate() {
+    return cache.invalidate();
+  }
+
+}
@@ -0,0 +1,34 @@
+package com.github.elgleidson.lock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.context.annotation.Bean;
+
+@AutoConfiguration(afterName = {
+  "com.github.elgleidson.lock.LockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerJdbcAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerFileAutoConfiguration",
+  "org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration"
+})
+@ConditionalOnClass(CacheManager.class)
+@ConditionalOnProperty(prefix = "lock-manager.cache", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ComputeOnceCacheProperties.class)
+public class ComputeOnceCacheAutoConfiguration {
+
+  // only one CachingConfigurer is allowed: with your own, return a ComputeOnceCacheManager from its cacheManager()
+  @Bean
+  @ConditionalOnMissingBean(CachingConfigurer.class)
+  public ComputeOnceCachingConfigurer computeOnceCachingConfigurer(ObjectProvider<CacheManager> cacheManager,
+                                                                   ObjectProvider<LockManager> lockManager,
+                                                                   ComputeOnceCacheProperties properties) {
+    return new ComputeOnceCachingConfigurer(cacheManager, lockManager, properties);
+  }
+
+}
@@ -0,0 +1,47 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.cache.CacheManager;
+
+/**
+ * A {@link CacheManager} whose caches are {@link ComputeOnceCache}s of the ones of the cache manager decorated.
+ */
+public class ComputeOnceCacheManager implements CacheManager {
+
+  private final CacheManager cacheManager;
+  private final LockManager lockManager;
+  private final String keyPrefix;
+  private final Duration expiresIn;
+  private final Duration waitFor;
+  private final Map<String, ComputeOnceCache> caches = new ConcurrentHashMap<>();
+
+  public ComputeOnceCacheManager(CacheManager cacheManager, LockManager lockManager, String keyPrefix, Duration expiresIn, Duration waitFor) {
+    this.cacheManager = cacheManager;
+    this.lockManager = lockManager;
+    this.keyPrefix = keyPrefix;
+    this.expiresIn = expiresIn;
+    this.waitFor = waitFor;
+  }
+
+  @Override
+  public ComputeOnceCache getCache(String name) {
+    var cache = caches.get(name);
+    if (cache != null) {
+      return cache;
+    }
+    var decorated = cacheManager.getCache(name);
+    if (decorated == null) {
+      return null;
+    }
+    return caches.computeIfAbsent(name, key -> new ComputeOnceCache(decorated, lockManager, keyPrefix, expiresIn, waitFor));
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return cacheManager.getCacheNames();
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.cache")
+public class ComputeOnceCacheProperties {
+
+  /**
+   * Whether the cache misses of the CacheManager are computed once across the nodes, the others waiting for the result.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Prefix of the unique identifier locked for each key, followed by the cache name and the key.
+   */
+  private String keyPrefix = "cache:";
+
+  /**
+   * How long a key may take to compute, before another node computes it too (e.g. the one computing it crashed).
+   */
+  private Duration expiresIn = Duration.ofSeconds(30);
+
+  /**
+   * How long the other nodes wait for a key being computed, before failing.
+   */
+  private Duration waitFor = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,42 @@
+package com.github.elgleidson.lock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.util.function.SingletonSupplier;
+
+/**
+ * Has the caching annotations use a {@link ComputeOnceCacheManager} decorating the cache manager they'd use otherwise:
+ * the single (or primary) {@link CacheManager} bean.
+ * <p>The other cache managers, e.g. the delegates of a {@link org.springframework.cache.support.CompositeCacheManager},
+ * aren't decorated, and neither is the {@link CacheManager} bean itself.</p>
+ */
+public class ComputeOnceCachingConfigurer implements CachingConfigurer {
+
+  private final SingletonSupplier<ComputeOnceCacheManager> cacheManager;
+
+  // resolves the beans lazily, once the caching infrastructure asks for the cache manager
+  public ComputeOnceCachingConfigurer(ObjectProvider<CacheManager> cacheManager, ObjectProvider<LockManager> lockManager,
+                                      ComputeOnceCacheProperties properties) {
+    this.cacheManager = SingletonSupplier.of(() -> {
+      var decorated = cacheManager.getIfUnique();
+      if (decorated == null) {
+        throw new IllegalStateException("A single (or primary) CacheManager bean is required to compute its misses once");
+      }
+      var instance = lockManager.getIfAvailable();
+      if (instance == null) {
+        throw new IllegalStateException("A LockManager bean is required to compute the cache misses once");
+      }
+      return new ComputeOnceCacheManager(decorated, instance, properties.getKeyPrefix(), properties.getExpiresIn(), properties.getWaitFor());
+    });
+  }
+
+  /**
+   * @return the cache manager the caching annotations use, e.g. to call {@link ComputeOnceCache#computeOnce} by hand.
+   */
+  @Override
+  public ComputeOnceCacheManager cacheManager() {
+    return cacheManager.obtain();
+  }
+
+}
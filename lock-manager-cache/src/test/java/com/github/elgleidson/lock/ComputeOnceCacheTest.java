@@ -0,0 +1,183 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.CompositeCacheManager;
+
+@ExtendWith(MockitoExtension.class)
+class ComputeOnceCacheTest {
+
+  private static final Duration EXPIRES_IN = Duration.ofSeconds(30);
+  private static final Duration WAIT_FOR = Duration.ofSeconds(10);
+  private static final String UNIQUE_IDENTIFIER = "cache:books:my-key";
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.now().plus(EXPIRES_IN));
+
+  @Mock
+  private LockManager lockManager;
+
+  private final ConcurrentMapCache cache = new ConcurrentMapCache("books");
+  private final AtomicInteger loads = new AtomicInteger();
+  private ComputeOnceCache computeOnceCache;
+
+  @BeforeEach
+  void setUp() {
+    computeOnceCache = new ComputeOnceCache(cache, lockManager, "cache:", EXPIRES_IN, WAIT_FOR);
+  }
+
+  private String load() {
+    loads.incrementAndGet();
+    return "my-value";
+  }
+
+  @Test
+  void getCached() {
+    cache.put("my-key", "cached-value");
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("cached-value");
+    assertThat(loads).hasValue(0);
+    verify(lockManager, never()).lock(any(), any());
+  }
+
+  @Test
+  void getComputedUnderTheLock() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("my-value");
+    // published for the others
+    assertThat(cache.get("my-key")).extracting(Cache.ValueWrapper::get).isEqualTo("my-value");
+    assertThat(loads).hasValue(1);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void getPublishedWhileWaiting() {
+    doAnswer(invocation -> {
+      // by the node holding the lock
+      cache.put("my-key", "published-value");
+      throw LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    }).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    // read from the cache, without taking the lock in turn
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("published-value");
+    assertThat(loads).hasValue(0);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void getPublishedBeforeTheLock() {
+    doAnswer(invocation -> {
+      // by the node holding the lock before
+      cache.put("my-key", "published-value");
+      return LOCK;
+    }).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("published-value");
+    assertThat(loads).hasValue(0);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void getReleasedWithoutBeingPublished() {
+    // e.g. the one computing it failed
+    doThrow(LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER)).doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("my-value");
+    assertThat(loads).hasValue(1);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void computeOnceForLonger() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, Duration.ofMinutes(5));
+    assertThat(computeOnceCache.computeOnce("my-key", Duration.ofMinutes(5), this::load)).isEqualTo("my-value");
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void getStillBeingComputedAfterWaiting() {
+    computeOnceCache = new ComputeOnceCache(cache, lockManager, "cache:", EXPIRES_IN, Duration.ofMillis(250));
+    doThrow(LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER)).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    assertThatThrownBy(() -> computeOnceCache.get("my-key", this::load))
+      .isInstanceOf(LockFailureException.class);
+    assertThat(loads).hasValue(0);
+  }
+
+  @Test
+  void getWithTheLockBackendFailing() {
+    doThrow(LockFailureException.other(UNIQUE_IDENTIFIER, new RuntimeException("test exception")))
+      .when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    // computed anyway, without the stampede protection
+    assertThat(computeOnceCache.get("my-key", this::load)).isEqualTo("my-value");
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void getWithTheLoaderFailing() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, EXPIRES_IN);
+    assertThatThrownBy(() -> computeOnceCache.get("my-key", () -> {
+      throw new IllegalStateException("test exception");
+    }))
+      .isInstanceOf(Cache.ValueRetrievalException.class)
+      .hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(cache.get("my-key")).isNull();
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void cacheManager() {
+    var cacheManager = new ComputeOnceCacheManager(new ConcurrentMapCacheManager("books"),
+      lockManager, "cache:", EXPIRES_IN, WAIT_FOR);
+    assertThat(cacheManager.getCache("books")).isInstanceOf(ComputeOnceCache.class).isSameAs(cacheManager.getCache("books"));
+    assertThat(cacheManager.getCacheNames()).containsExactly("books");
+  }
+
+  @Test
+  void cachingConfigurer() {
+    var cachingConfigurer = cachingConfigurer(Map.of("cacheManager", new ConcurrentMapCacheManager("books"), "lockManager", lockManager));
+    assertThat(cachingConfigurer.cacheManager()).isSameAs(cachingConfigurer.cacheManager());
+    assertThat(cachingConfigurer.cacheManager().getCache("books")).isInstanceOf(ComputeOnceCache.class);
+  }
+
+  @Test
+  void cachingConfigurerWithoutASingleCacheManager() {
+    // the delegates of a composite one are cache managers too
+    var booksCacheManager = new ConcurrentMapCacheManager("books");
+    var cachingConfigurer = cachingConfigurer(Map.of("cacheManager", new CompositeCacheManager(booksCacheManager),
+      "booksCacheManager", booksCacheManager, "lockManager", lockManager));
+    assertThatThrownBy(cachingConfigurer::cacheManager)
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("A single (or primary) CacheManager bean is required to compute its misses once");
+  }
+
+  @Test
+  void cachingConfigurerWithoutALockManager() {
+    var cachingConfigurer = cachingConfigurer(Map.of("cacheManager", new ConcurrentMapCacheManager("books")));
+    assertThatThrownBy(cachingConfigurer::cacheManager)
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("A LockManager bean is required to compute the cache misses once");
+  }
+
+  private static ComputeOnceCachingConfigurer cachingConfigurer(Map<String, Object> beans) {
+    var beanFactory = new StaticListableBeanFactory(beans);
+    var properties = new ComputeOnceCacheProperties();
+    return new ComputeOnceCachingConfigurer(beanFactory.getBeanProvider(CacheManager.class), beanFactory.getBeanProvider(LockManager.class), properties);
+  }
+
+}
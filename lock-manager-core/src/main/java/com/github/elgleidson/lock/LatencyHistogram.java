@@ -0,0 +1,68 @@
+package com.github.elgleidson.lock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds.
+ * <p>Values are recorded into log-linear buckets (8 buckets per power of two), so the percentiles are within ~12% of the
+ * actual values, using a fixed amount of memory regardless of how many values are recorded.</p>
+ */
+class LatencyHistogram {
+
+  private static final int LINEAR_BUCKETS = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // from 2^4 to 2^63, 8 buckets each
+  private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 4) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(long micros) {
+    counts.incrementAndGet(bucketOf(Math.max(micros, 0)));
+  }
+
+  /**
+   * @param percentile between 0 and 1, e.g. 0.99 for the 99th percentile.
+   * @return the (upper bound of the) value at the percentile, or 0 when nothing has been recorded.
+   */
+  long valueAt(double percentile) {
+    var snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    var rank = Math.max(1, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  static int bucketOf(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    var exponent = 63 - Long.numberOfLeadingZeros(value);
+    var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    var exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+    var subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    var lowerBound = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+}
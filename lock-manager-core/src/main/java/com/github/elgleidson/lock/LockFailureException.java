@@ -2,12 +2,16 @@ package com.github.elgleidson.lock;
 
 public class LockFailureException extends RuntimeException {
 
+  private final boolean alreadyLocked;
+
   private LockFailureException(String message) {
     super(message);
+    this.alreadyLocked = true;
   }
 
   private LockFailureException(String message, Throwable cause) {
     super(message, cause);
+    this.alreadyLocked = false;
   }
 
   public static LockFailureException alreadyLocked(String uniqueIdentifier) {
@@ -17,4 +21,11 @@ public class LockFailureException extends RuntimeException {
   public static LockFailureException other(String uniqueIdentifier, Throwable cause) {
     return new LockFailureException("Failed to acquire lock on '" + uniqueIdentifier + "'", cause);
   }
+
+  /**
+   * @return true if the lock is held by someone else, false if acquiring it failed for another reason (e.g. a connection error).
+   */
+  public boolean isAlreadyLocked() {
+    return alreadyLocked;
+  }
 }
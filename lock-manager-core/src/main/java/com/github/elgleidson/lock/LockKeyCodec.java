@@ -0,0 +1,59 @@
+package com.github.elgleidson.lock;
+
+/**
+ * Encodes the unique identifier of a lock into the key stored in the backend.
+ * <p>Implementations must be deterministic: the same unique identifier must always produce the same key.</p>
+ */
+public interface LockKeyCodec {
+
+  String DEFAULT_NAMESPACE = "lock:";
+
+  /**
+   * @param uniqueIdentifier the unique identifier of the lock.
+   * @return the key to store the lock under.
+   */
+  String encode(String uniqueIdentifier);
+
+  /**
+   * @param key a key produced by {@link #encode(String)}.
+   * @return the unique identifier, or the key without the namespace when the identifier was hashed, as it cannot be recovered.
+   */
+  String decode(String key);
+
+  /**
+   * @return the namespace every key produced by this codec starts with.
+   */
+  String namespace();
+
+  /**
+   * @return a codec that prefixes the unique identifier with {@link #DEFAULT_NAMESPACE}.
+   */
+  static LockKeyCodec defaultCodec() {
+    return namespaced(DEFAULT_NAMESPACE);
+  }
+
+  /**
+   * @param namespace the prefix of every key, e.g. {@code my-service:lock:}.
+   * @return a codec that prefixes the unique identifier with the given namespace.
+   */
+  static LockKeyCodec namespaced(String namespace) {
+    return new NamespacedLockKeyCodec(namespace, 0);
+  }
+
+  /**
+   * Unique identifiers longer than {@code maxIdentifierLength} are replaced by a fixed-size (16 bytes) hash, which keeps
+   * keys small regardless of how long the identifiers are (e.g. URLs or composite business keys).
+   * <p>The hash is marked by a leading {@code #}, which is doubled in the unique identifiers stored as is that start with
+   * it, so they never share a key with a hash.</p>
+   * @param namespace the prefix of every key, e.g. {@code my-service:lock:}.
+   * @param maxIdentifierLength the maximum length of an identifier to be stored as is.
+   * @return a codec that prefixes the (possibly hashed) unique identifier with the given namespace.
+   */
+  static LockKeyCodec hashing(String namespace, int maxIdentifierLength) {
+    if (maxIdentifierLength < 1) {
+      throw new IllegalArgumentException("maxIdentifierLength must be greater than zero");
+    }
+    return new NamespacedLockKeyCodec(namespace, maxIdentifierLength);
+  }
+
+}
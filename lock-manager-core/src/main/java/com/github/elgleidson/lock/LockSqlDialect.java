@@ -0,0 +1,167 @@
+package com.github.elgleidson.lock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The SQL of the lock table on each supported database, shared by the JDBC and R2DBC lock managers.
+ * <p>A lock is a row, keyed by its unique identifier, with its expiration in epoch milliseconds, so it's compared the same
+ * way on every database. Acquiring a lock inserts the row, or takes it over when it has expired, in a single statement.
+ * The statements use named parameters ({@code :name}).</p>
+ */
+public enum LockSqlDialect {
+
+  POSTGRESQL("""
+    INSERT INTO %1$s (unique_identifier, id, expires_at) VALUES (:uniqueIdentifier, :id, :expiresAt)
+    ON CONFLICT (unique_identifier) DO UPDATE SET id = EXCLUDED.id, expires_at = EXCLUDED.expires_at
+    WHERE %1$s.expires_at <= :now""", false),
+
+  // the assignments are made in order, so expires_at is still the old one when id is assigned
+  MYSQL("""
+    INSERT INTO %1$s (unique_identifier, id, expires_at) VALUES (:uniqueIdentifier, :id, :expiresAt)
+    ON DUPLICATE KEY UPDATE id = IF(expires_at <= :now, VALUES(id), id), expires_at = IF(expires_at <= :now, VALUES(expires_at), expires_at)""", true),
+
+  H2("""
+    MERGE INTO %1$s t USING (VALUES (:uniqueIdentifier, :id, :expiresAt)) s (unique_identifier, id, expires_at)
+    ON t.unique_identifier = s.unique_identifier
+    WHEN MATCHED AND t.expires_at <= :now THEN UPDATE SET id = s.id, expires_at = s.expires_at
+    WHEN NOT MATCHED THEN INSERT (unique_identifier, id, expires_at) VALUES (s.unique_identifier, s.id, s.expires_at)""", false);
+
+  private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+  private final String acquireSql;
+  private final boolean countsUnchangedRows;
+
+  LockSqlDialect(String acquireSql, boolean countsUnchangedRows) {
+    this.acquireSql = acquireSql;
+    this.countsUnchangedRows = countsUnchangedRows;
+  }
+
+  /**
+   * @param databaseName the name the driver gives to the database, e.g. "PostgreSQL", "MySQL", "MariaDB" or "H2".
+   * @return the dialect of the database.
+   */
+  public static LockSqlDialect of(String databaseName) {
+    var name = databaseName.toLowerCase(Locale.ROOT);
+    if (name.contains("postgres")) {
+      return POSTGRESQL;
+    }
+    if (name.contains("mysql") || name.contains("mariadb")) {
+      return MYSQL;
+    }
+    if (name.contains("h2")) {
+      return H2;
+    }
+    throw new IllegalArgumentException("unsupported database: " + databaseName);
+  }
+
+  /**
+   * @return the table name, if it's a valid (and optionally schema qualified) SQL identifier, as it's part of every statement.
+   */
+  public static String checkTableName(String tableName) {
+    if (tableName == null || !TABLE_NAME.matcher(tableName).matches()) {
+      throw new IllegalArgumentException("invalid lock table name: " + tableName);
+    }
+    return tableName;
+  }
+
+  public String createTableSql(String tableName) {
+    return """
+      CREATE TABLE IF NOT EXISTS %s (
+        unique_identifier VARCHAR(255) NOT NULL PRIMARY KEY,
+        id VARCHAR(36) NOT NULL,
+        expires_at BIGINT NOT NULL
+      )""".formatted(tableName);
+  }
+
+  /**
+   * Parameters: uniqueIdentifier, id, expiresAt and now.
+   * @return the statement updating one row when the lock is acquired, and none when it's held by someone else.
+   */
+  public String acquireSql(String tableName) {
+    return acquireSql.formatted(tableName);
+  }
+
+  /**
+   * @return whether {@link #acquireSql(String)} may count the row of a lock held by someone else as updated (e.g. MySQL,
+   * unless the driver is told to count the affected rows instead of the matched ones), so a count above zero has to be
+   * checked against the id holding the lock.
+   */
+  public boolean countsUnchangedRows() {
+    return countsUnchangedRows;
+  }
+
+  /**
+   * Parameters: uniqueIdentifier and id.
+   */
+  public String releaseSql(String tableName) {
+    return "DELETE FROM %s WHERE unique_identifier = :uniqueIdentifier AND id = :id".formatted(tableName);
+  }
+
+  /**
+   * Parameters: ids, as the lock ids are unique.
+   */
+  public String releaseAllSql(String tableName) {
+    return "DELETE FROM %s WHERE id IN (:ids)".formatted(tableName);
+  }
+
+  /**
+   * Parameters: ids, expiresAt and now.
+   * @return the statement extending the locks still held by their ids, and not expired, as they may be taken over anytime.
+   */
+  public String renewAllSql(String tableName) {
+    return "UPDATE %s SET expires_at = :expiresAt WHERE id IN (:ids) AND expires_at > :now".formatted(tableName);
+  }
+
+  /**
+   * Parameters: ids and expiresAt, the ones {@link #renewAllSql(String)} was run with.
+   * @return the query of the id of the locks it renewed, as the count of rows updated doesn't tell which ones.
+   */
+  public String renewedSql(String tableName) {
+    return "SELECT id FROM %s WHERE id IN (:ids) AND expires_at = :expiresAt".formatted(tableName);
+  }
+
+  /**
+   * Parameters: uniqueIdentifier and now.
+   * @return the query of the id and expires_at of the lock held.
+   */
+  public String selectSql(String tableName) {
+    return "SELECT id, expires_at FROM %s WHERE unique_identifier = :uniqueIdentifier AND expires_at > :now".formatted(tableName);
+  }
+
+  /**
+   * Parameters: prefix, from {@link #likePrefix(String)}, and now.
+   * @return the query of the unique_identifier, id and expires_at of the locks held.
+   */
+  public String listSql(String tableName) {
+    return "SELECT unique_identifier, id, expires_at FROM %s WHERE unique_identifier LIKE :prefix ESCAPE '!' AND expires_at > :now"
+      .formatted(tableName);
+  }
+
+  /**
+   * @return the LIKE pattern matching the unique identifiers starting with the prefix, with its wildcards escaped.
+   */
+  public static String likePrefix(String prefix) {
+    // '!' rather than a backslash, which some databases treat as an escape in string literals too
+    return prefix.replaceAll("[!%_]", "!$0") + "%";
+  }
+
+  /**
+   * @return the 64-bit key of the PostgreSQL advisory lock on the unique identifier: the first 8 bytes of its SHA-256, so
+   * the keys of different identifiers practically never collide.
+   */
+  public static long advisoryLockKey(String uniqueIdentifier) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256").digest(uniqueIdentifier.getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest).getLong();
+    } catch (NoSuchAlgorithmException ex) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(ex);
+    }
+  }
+
+}
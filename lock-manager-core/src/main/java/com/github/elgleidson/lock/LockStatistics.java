@@ -0,0 +1,150 @@
+package com.github.elgleidson.lock;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the lock acquisitions: outcomes, the most contended unique identifiers and the acquire latency.
+ * <p>It's safe to use concurrently and never blocks, so it can be recorded on every lock path.</p>
+ * <p>The contended unique identifiers are tracked with the space-saving algorithm: once the bound is reached, a new
+ * identifier replaces the least contended one and takes over its count, so an identifier that becomes hot late is
+ * still reported, its count being an upper bound. The one replaced is the least contended of a few sampled at random,
+ * rather than of all of them, so a new identifier costs the same however many are tracked.</p>
+ * <p>The unique identifiers starting with {@link #PROBE_PREFIX} (the health probe) are not recorded.</p>
+ */
+public class LockStatistics {
+
+  public static final String PROBE_PREFIX = "lock-manager-health:";
+
+  // bounds the memory used to track the contended unique identifiers
+  static final int MAX_TRACKED_IDENTIFIERS = 1000;
+  // how many of the tracked unique identifiers are sampled to pick the one a new identifier replaces
+  static final int EVICTION_SAMPLE_SIZE = 8;
+
+  private final LongAdder acquired = new LongAdder();
+  private final LongAdder contended = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final Map<String, LongAdder> contendedByIdentifier = new ConcurrentHashMap<>();
+  // the slot of each tracked unique identifier, to sample them without going through the map
+  private final AtomicReferenceArray<String> trackedSlots = new AtomicReferenceArray<>(MAX_TRACKED_IDENTIFIERS);
+  private final AtomicInteger filledSlots = new AtomicInteger();
+  private final LatencyHistogram acquireLatency = new LatencyHistogram();
+
+  public void recordAcquired(String uniqueIdentifier, long elapsedNanos) {
+    if (isProbe(uniqueIdentifier)) {
+      return;
+    }
+    acquired.increment();
+    acquireLatency.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+  }
+
+  public void recordContended(String uniqueIdentifier, long elapsedNanos) {
+    if (isProbe(uniqueIdentifier)) {
+      return;
+    }
+    contended.increment();
+    acquireLatency.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    var counter = contendedByIdentifier.get(uniqueIdentifier);
+    if (counter == null) {
+      counter = track(uniqueIdentifier);
+    }
+    counter.increment();
+  }
+
+  private LongAdder track(String uniqueIdentifier) {
+    var counter = new LongAdder();
+    var existing = contendedByIdentifier.putIfAbsent(uniqueIdentifier, counter);
+    if (existing != null) {
+      return existing;
+    }
+    var slot = filledSlots.get() < MAX_TRACKED_IDENTIFIERS ? filledSlots.getAndIncrement() : MAX_TRACKED_IDENTIFIERS;
+    if (slot < MAX_TRACKED_IDENTIFIERS) {
+      trackedSlots.set(slot, uniqueIdentifier);
+    } else {
+      replaceLeastContended(uniqueIdentifier, counter);
+    }
+    return counter;
+  }
+
+  private void replaceLeastContended(String uniqueIdentifier, LongAdder counter) {
+    var random = ThreadLocalRandom.current();
+    while (true) {
+      var leastSlot = -1;
+      String least = null;
+      LongAdder leastCounter = null;
+      for (var i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+        var slot = random.nextInt(MAX_TRACKED_IDENTIFIERS);
+        var candidate = trackedSlots.get(slot);
+        // not filled yet, or replaced meanwhile
+        var candidateCounter = candidate != null ? contendedByIdentifier.get(candidate) : null;
+        if (candidateCounter != null && (leastCounter == null || candidateCounter.sum() < leastCounter.sum())) {
+          leastSlot = slot;
+          least = candidate;
+          leastCounter = candidateCounter;
+        }
+      }
+      // when racing threads pick the same one, only one replaces it, and the others sample again
+      if (leastCounter != null && trackedSlots.compareAndSet(leastSlot, least, uniqueIdentifier)) {
+        if (contendedByIdentifier.remove(least, leastCounter)) {
+          counter.add(leastCounter.sum());
+        }
+        return;
+      }
+    }
+  }
+
+  public void recordFailed(String uniqueIdentifier, long elapsedNanos) {
+    if (isProbe(uniqueIdentifier)) {
+      return;
+    }
+    failed.increment();
+    acquireLatency.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+  }
+
+  /**
+   * @param topContended how many of the most contended unique identifiers to include.
+   * @return a point-in-time copy of the statistics.
+   */
+  public Snapshot snapshot(int topContended) {
+    var mostContended = new LinkedHashMap<String, Long>();
+    contendedByIdentifier.entrySet().stream()
+      .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+      .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+      .limit(topContended)
+      .forEachOrdered(entry -> mostContended.put(entry.getKey(), entry.getValue()));
+    var latency = new LinkedHashMap<String, Double>();
+    latency.put("p50", millis(acquireLatency.valueAt(0.5)));
+    latency.put("p90", millis(acquireLatency.valueAt(0.9)));
+    latency.put("p99", millis(acquireLatency.valueAt(0.99)));
+    latency.put("p999", millis(acquireLatency.valueAt(0.999)));
+    latency.put("max", millis(acquireLatency.valueAt(1)));
+    return new Snapshot(acquired.sum(), contended.sum(), failed.sum(), mostContended, latency);
+  }
+
+  private static boolean isProbe(String uniqueIdentifier) {
+    return uniqueIdentifier.startsWith(PROBE_PREFIX);
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000d;
+  }
+
+  /**
+   * @param acquired how many locks have been acquired.
+   * @param contended how many locks have not been acquired because they were already acquired.
+   * @param failed how many locks have not been acquired because of an error.
+   * @param topContendedIdentifiers the most contended unique identifiers, and how many times (at most) they were contended.
+   * @param acquireLatencyMillis the percentiles of the acquire latency, in milliseconds.
+   */
+  public record Snapshot(long acquired, long contended, long failed, Map<String, Long> topContendedIdentifiers,
+                         Map<String, Double> acquireLatencyMillis) {
+  }
+
+}
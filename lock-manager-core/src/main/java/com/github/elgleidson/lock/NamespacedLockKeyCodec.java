@@ -0,0 +1,53 @@
+package com.github.elgleidson.lock;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+record NamespacedLockKeyCodec(String namespace, int maxIdentifierLength) implements LockKeyCodec {
+
+  // marks a hashed identifier, so it never clashes with a plain identifier of the same length; a plain identifier starting
+  // with it has it doubled, so it never clashes with a hash either (the hash never starts with it)
+  static final String HASH_MARKER = "#";
+  private static final int HASH_SIZE = 16;
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+  NamespacedLockKeyCodec {
+    Objects.requireNonNull(namespace, "namespace must not be null");
+  }
+
+  @Override
+  public String encode(String uniqueIdentifier) {
+    if (maxIdentifierLength <= 0) {
+      return namespace + uniqueIdentifier;
+    }
+    if (uniqueIdentifier.length() > maxIdentifierLength) {
+      return namespace + HASH_MARKER + hash(uniqueIdentifier);
+    }
+    return namespace + (uniqueIdentifier.startsWith(HASH_MARKER) ? HASH_MARKER : "") + uniqueIdentifier;
+  }
+
+  @Override
+  public String decode(String key) {
+    var identifier = key.startsWith(namespace) ? key.substring(namespace.length()) : key;
+    if (maxIdentifierLength > 0 && identifier.startsWith(HASH_MARKER + HASH_MARKER)) {
+      return identifier.substring(HASH_MARKER.length());
+    }
+    return identifier;
+  }
+
+  private static String hash(String uniqueIdentifier) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-1").digest(uniqueIdentifier.getBytes(StandardCharsets.UTF_8));
+      // 16 bytes -> 22 characters, still printable (e.g. redis-cli), but a fraction of a long URL or composite key
+      return ENCODER.encodeToString(Arrays.copyOf(digest, HASH_SIZE));
+    } catch (NoSuchAlgorithmException ex) {
+      // every Java platform is required to support SHA-1
+      throw new IllegalStateException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.Test;
+
+class LockKeyCodecTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final String LONG_UNIQUE_IDENTIFIER = "https://example.com/orders/123456789/items/987654321?include=customer,payments";
+
+  @Test
+  void defaultCodec() {
+    var codec = LockKeyCodec.defaultCodec();
+    assertThat(codec.namespace()).isEqualTo("lock:");
+    assertThat(codec.encode(UNIQUE_IDENTIFIER)).isEqualTo("lock:my-unique-identifier");
+  }
+
+  @Test
+  void decode() {
+    var codec = LockKeyCodec.namespaced("my-service:lock:");
+    assertThat(codec.decode(codec.encode(UNIQUE_IDENTIFIER))).isEqualTo(UNIQUE_IDENTIFIER);
+  }
+
+  @Test
+  void decodeHashed() {
+    var codec = LockKeyCodec.hashing("lock:", 32);
+    var key = codec.encode(LONG_UNIQUE_IDENTIFIER);
+    assertThat(codec.decode(key)).isEqualTo(key.substring("lock:".length())).startsWith("#");
+  }
+
+  @Test
+  void namespaced() {
+    var codec = LockKeyCodec.namespaced("my-service:lock:");
+    assertThat(codec.encode(UNIQUE_IDENTIFIER)).isEqualTo("my-service:lock:my-unique-identifier");
+    assertThat(codec.encode(LONG_UNIQUE_IDENTIFIER)).isEqualTo("my-service:lock:" + LONG_UNIQUE_IDENTIFIER);
+  }
+
+  @Test
+  void hashingShortIdentifier() {
+    var codec = LockKeyCodec.hashing("lock:", 32);
+    assertThat(codec.encode(UNIQUE_IDENTIFIER)).isEqualTo("lock:my-unique-identifier");
+  }
+
+  @Test
+  void hashingLongIdentifier() {
+    var codec = LockKeyCodec.hashing("lock:", 32);
+    var key = codec.encode(LONG_UNIQUE_IDENTIFIER);
+    assertThat(key).startsWith("lock:#").hasSize("lock:#".length() + 22);
+    assertThat(codec.encode(LONG_UNIQUE_IDENTIFIER)).isEqualTo(key);
+    assertThat(codec.encode(LONG_UNIQUE_IDENTIFIER + "-other")).isNotEqualTo(key);
+  }
+
+  @Test
+  void hashingIdentifierStartingWithTheHashMarker() {
+    var codec = LockKeyCodec.hashing("lock:", 32);
+    var hashedKey = codec.encode(LONG_UNIQUE_IDENTIFIER);
+    // a plain identifier that looks like the hash of another one
+    var lookalike = hashedKey.substring("lock:".length());
+    assertThat(codec.encode(lookalike)).isEqualTo("lock:#" + lookalike).isNotEqualTo(hashedKey);
+    assertThat(codec.decode(codec.encode(lookalike))).isEqualTo(lookalike);
+  }
+
+  @Test
+  void namespacedIdentifierStartingWithTheHashMarker() {
+    // nothing is hashed, so it's stored as is
+    var codec = LockKeyCodec.namespaced("lock:");
+    assertThat(codec.encode("#my-unique-identifier")).isEqualTo("lock:#my-unique-identifier");
+    assertThat(codec.decode("lock:#my-unique-identifier")).isEqualTo("#my-unique-identifier");
+  }
+
+  @Test
+  void hashingInvalidLength() {
+    assertThatIllegalArgumentException().isThrownBy(() -> LockKeyCodec.hashing("lock:", 0));
+  }
+
+}
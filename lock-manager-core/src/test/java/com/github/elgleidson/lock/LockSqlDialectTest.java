@@ -0,0 +1,50 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.Test;
+
+class LockSqlDialectTest {
+
+  @Test
+  void of() {
+    assertThat(LockSqlDialect.of("PostgreSQL")).isEqualTo(LockSqlDialect.POSTGRESQL);
+    assertThat(LockSqlDialect.of("MySQL")).isEqualTo(LockSqlDialect.MYSQL);
+    assertThat(LockSqlDialect.of("MariaDB")).isEqualTo(LockSqlDialect.MYSQL);
+    assertThat(LockSqlDialect.of("H2")).isEqualTo(LockSqlDialect.H2);
+    assertThatIllegalArgumentException().isThrownBy(() -> LockSqlDialect.of("Oracle"))
+      .withMessage("unsupported database: Oracle");
+  }
+
+  @Test
+  void checkTableName() {
+    assertThat(LockSqlDialect.checkTableName("locks")).isEqualTo("locks");
+    assertThat(LockSqlDialect.checkTableName("my_schema.my_locks")).isEqualTo("my_schema.my_locks");
+    assertThatIllegalArgumentException().isThrownBy(() -> LockSqlDialect.checkTableName("locks; DROP TABLE users"))
+      .withMessage("invalid lock table name: locks; DROP TABLE users");
+  }
+
+  @Test
+  void tableNameInStatements() {
+    assertThat(LockSqlDialect.POSTGRESQL.acquireSql("my_locks"))
+      .startsWith("INSERT INTO my_locks ")
+      .endsWith("WHERE my_locks.expires_at <= :now");
+    assertThat(LockSqlDialect.H2.releaseSql("my_locks")).isEqualTo("DELETE FROM my_locks WHERE unique_identifier = :uniqueIdentifier AND id = :id");
+  }
+
+  @Test
+  void likePrefix() {
+    assertThat(LockSqlDialect.likePrefix("order-")).isEqualTo("order-%");
+    // the wildcards are matched literally
+    assertThat(LockSqlDialect.likePrefix("100%_off!")).isEqualTo("100!%!_off!!%");
+  }
+
+  @Test
+  void advisoryLockKey() {
+    assertThat(LockSqlDialect.advisoryLockKey("my-unique-identifier"))
+      .isEqualTo(LockSqlDialect.advisoryLockKey("my-unique-identifier"))
+      .isNotEqualTo(LockSqlDialect.advisoryLockKey("my-unique-identifier-2"));
+  }
+
+}
@@ -0,0 +1,88 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class LockStatisticsTest {
+
+  private final LockStatistics lockStatistics = new LockStatistics();
+
+  @Test
+  void outcomes() {
+    lockStatistics.recordAcquired("a", 0);
+    lockStatistics.recordAcquired("b", 0);
+    lockStatistics.recordContended("a", 0);
+    lockStatistics.recordFailed("c", 0);
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(2);
+    assertThat(snapshot.contended()).isEqualTo(1);
+    assertThat(snapshot.failed()).isEqualTo(1);
+  }
+
+  @Test
+  void topContendedIdentifiers() {
+    IntStream.range(0, 3).forEach(i -> lockStatistics.recordContended("a", 0));
+    IntStream.range(0, 5).forEach(i -> lockStatistics.recordContended("b", 0));
+    lockStatistics.recordContended("c", 0);
+    assertThat(lockStatistics.snapshot(2).topContendedIdentifiers()).containsExactly(entry("b", 5L), entry("a", 3L));
+  }
+
+  @Test
+  void topContendedIdentifiersAreBounded() {
+    IntStream.range(0, LockStatistics.MAX_TRACKED_IDENTIFIERS + 10).forEach(i -> lockStatistics.recordContended("id-" + i, 0));
+    assertThat(lockStatistics.snapshot(Integer.MAX_VALUE).topContendedIdentifiers()).hasSize(LockStatistics.MAX_TRACKED_IDENTIFIERS);
+    assertThat(lockStatistics.snapshot(10).contended()).isEqualTo(LockStatistics.MAX_TRACKED_IDENTIFIERS + 10);
+  }
+
+  @Test
+  void topContendedIdentifiersReplaceTheLeastContended() {
+    IntStream.range(0, LockStatistics.MAX_TRACKED_IDENTIFIERS).forEach(i -> lockStatistics.recordContended("id-" + i, 0));
+    lockStatistics.recordContended("id-0", 0);
+    // hot once the bound is reached, it takes over the count of one contended once
+    IntStream.range(0, 5).forEach(i -> lockStatistics.recordContended("late", 0));
+    assertThat(lockStatistics.snapshot(2).topContendedIdentifiers()).containsExactly(entry("late", 6L), entry("id-0", 2L));
+    assertThat(lockStatistics.snapshot(Integer.MAX_VALUE).topContendedIdentifiers()).hasSize(LockStatistics.MAX_TRACKED_IDENTIFIERS);
+  }
+
+  @Test
+  void topContendedIdentifiersKeepTheHotOnes() {
+    IntStream.range(0, 100).forEach(i -> lockStatistics.recordContended("hot", 0));
+    // only a few of the tracked ones are sampled each time, the least contended of them being replaced
+    IntStream.range(0, LockStatistics.MAX_TRACKED_IDENTIFIERS * 5).forEach(i -> lockStatistics.recordContended("id-" + i, 0));
+    assertThat(lockStatistics.snapshot(1).topContendedIdentifiers()).containsExactly(entry("hot", 100L));
+    assertThat(lockStatistics.snapshot(Integer.MAX_VALUE).topContendedIdentifiers()).hasSize(LockStatistics.MAX_TRACKED_IDENTIFIERS);
+  }
+
+  @Test
+  void probeIsNotRecorded() {
+    lockStatistics.recordAcquired(LockStatistics.PROBE_PREFIX + "node", 0);
+    lockStatistics.recordContended(LockStatistics.PROBE_PREFIX + "node", 0);
+    lockStatistics.recordFailed(LockStatistics.PROBE_PREFIX + "node", 0);
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isZero();
+    assertThat(snapshot.contended()).isZero();
+    assertThat(snapshot.failed()).isZero();
+    assertThat(snapshot.topContendedIdentifiers()).isEmpty();
+    assertThat(snapshot.acquireLatencyMillis()).containsEntry("max", 0d);
+  }
+
+  @Test
+  void acquireLatency() {
+    // 1ms to 100ms
+    IntStream.rangeClosed(1, 100).forEach(i -> lockStatistics.recordAcquired("a", TimeUnit.MILLISECONDS.toNanos(i)));
+    var latency = lockStatistics.snapshot(10).acquireLatencyMillis();
+    assertThat(latency.get("p50")).isBetween(50d, 50 * 1.125);
+    assertThat(latency.get("p99")).isBetween(99d, 99 * 1.125);
+    assertThat(latency.get("max")).isBetween(100d, 100 * 1.125);
+  }
+
+  @Test
+  void acquireLatencyEmpty() {
+    assertThat(lockStatistics.snapshot(10).acquireLatencyMillis()).containsEntry("p50", 0d).containsEntry("max", 0d);
+  }
+
+}
@@ -0,0 +1,206 @@
+package com.github.elgleidson.lock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Locks in a memory-mapped file, shared by the processes of a single host (see {@link LockSlotTable}), with no server
+ * and no system call to acquire or release a lock.
+ * <p>The lock id is a random token, and the expiration is kept in nanoseconds, off by up to about 65 microseconds from
+ * the one asked for, as its lowest bits hold the lock id's.</p>
+ * <p>The expirations are compared against each process' clock, which is the same one on a single host.</p>
+ * <p>The file only holds a 64-bit hash of each unique identifier, so two unique identifiers with the same hash (practically
+ * never) share their lock, and {@link #listLocks(String)} only knows the locks held by this lock manager.</p>
+ */
+@Slf4j
+public class LockManagerFile implements LockManager {
+
+  public static final int DEFAULT_BUCKETS = 4096;
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private final LockSlotTable table;
+  private final LockStatistics lockStatistics;
+  private final Clock clock;
+  private final LongSupplier ownerSupplier;
+  // the locks acquired by this lock manager, by lock id
+  private final Map<String, Lock> locks = new ConcurrentHashMap<>();
+
+  public LockManagerFile(Path path) {
+    this(path, DEFAULT_BUCKETS);
+  }
+
+  public LockManagerFile(Path path, int buckets) {
+    this(path, buckets, new LockStatistics());
+  }
+
+  public LockManagerFile(Path path, int buckets, LockStatistics lockStatistics) {
+    this(path, buckets, lockStatistics, Clock.systemUTC(), LockManagerFile::randomOwner);
+  }
+
+  protected LockManagerFile(Path path, int buckets, LockStatistics lockStatistics, Clock clock, LongSupplier ownerSupplier) {
+    try {
+      this.table = LockSlotTable.open(path, buckets);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("error opening the lock file " + path, ex);
+    }
+    this.lockStatistics = lockStatistics;
+    this.clock = clock;
+    this.ownerSupplier = ownerSupplier;
+  }
+
+  private static long randomOwner() {
+    long owner;
+    do {
+      owner = ThreadLocalRandom.current().nextLong();
+    } while (owner == 0);
+    return owner;
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
+    try {
+      log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn);
+      var owner = ownerSupplier.getAsLong();
+      var now = epochNanos(clock.instant());
+      var lease = LockSlotTable.lease(owner, Math.addExact(now, expiresIn.toNanos()));
+      if (!table.acquire(key(uniqueIdentifier), owner, lease, now)) {
+        // this is to track concurrent calls
+        log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+        lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+        throw LockFailureException.alreadyLocked(uniqueIdentifier);
+      }
+      var lock = new Lock(HEX.toHexDigits(owner), uniqueIdentifier, toZonedDateTime(lease));
+      locks.put(lock.id(), lock);
+      lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
+      log.debug("locked={}", lock);
+      return lock;
+    } catch (Exception ex) {
+      if (ex instanceof LockFailureException) {
+        throw ex;
+      }
+      log.error("error lock(): message={}", ex.getMessage());
+      lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+      throw LockFailureException.other(uniqueIdentifier, ex);
+    }
+  }
+
+  @Override
+  public boolean unlock(Lock lock) {
+    try {
+      log.debug("trying to unlock {}", lock);
+      if (!isLockId(lock.id()) || lock.expiresAt() == null) {
+        // not a lock from this lock manager
+        return false;
+      }
+      locks.remove(lock.id());
+      // only unlocks if lock id and unique identifier match, with the lease the lock was acquired with
+      var unlocked = table.release(key(lock.uniqueIdentifier()), HexFormat.fromHexDigitsToLong(lock.id()), epochNanos(lock.expiresAt().toInstant()));
+      log.debug("unlocked={}", unlocked);
+      return unlocked;
+    } catch (Exception ex) {
+      // log the error, but returns successfully as the lock will expire
+      log.error("error unlock(): message={}", ex.getMessage());
+      return false;
+    }
+  }
+
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn);
+    var now = epochNanos(clock.instant());
+    var expiresAt = Math.addExact(now, expiresIn.toNanos());
+    var renewed = new ArrayList<Lock>(locks.size());
+    for (var lock : locks) {
+      if (!isLockId(lock.id()) || lock.expiresAt() == null) {
+        // not a lock from this lock manager
+        continue;
+      }
+      var owner = HexFormat.fromHexDigitsToLong(lock.id());
+      var lease = LockSlotTable.lease(owner, expiresAt);
+      // a CAS from the lease the lock was acquired (or last renewed) with, so a lock taken over meanwhile isn't
+      if (table.renew(key(lock.uniqueIdentifier()), owner, epochNanos(lock.expiresAt().toInstant()), lease, now)) {
+        var renewal = new Lock(lock.id(), lock.uniqueIdentifier(), toZonedDateTime(lease));
+        // unless it was released meanwhile
+        this.locks.replace(lock.id(), renewal);
+        renewed.add(renewal);
+      }
+    }
+    log.debug("renewed={}", renewed.size());
+    return renewed;
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    return Optional.ofNullable(table.holder(key(uniqueIdentifier), epochNanos(clock.instant())))
+      .map(holder -> new Lock(HEX.toHexDigits(holder.owner()), uniqueIdentifier, toZonedDateTime(holder.lease())));
+  }
+
+  /**
+   * @return the locks held by this lock manager whose unique identifier starts with the prefix, as the file only holds
+   * the hashes of the unique identifiers.
+   */
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    var held = new ArrayList<Lock>();
+    for (var lock : locks.values()) {
+      if (!getLock(lock.uniqueIdentifier()).map(Lock::id).orElse("").equals(lock.id())) {
+        // expired, and maybe taken over
+        locks.remove(lock.id(), lock);
+      } else if (lock.uniqueIdentifier().startsWith(prefix)) {
+        held.add(lock);
+      }
+    }
+    return held.stream();
+  }
+
+  private static boolean isLockId(String id) {
+    return id.length() == 16 && id.chars().allMatch(HexFormat::isHexDigit);
+  }
+
+  /**
+   * @return the 64-bit hash (FNV-1a, then mixed) of the unique identifier, never 0 as it marks the slots never bound.
+   */
+  static long key(String uniqueIdentifier) {
+    var hash = 0xCBF29CE484222325L;
+    for (var i = 0; i < uniqueIdentifier.length(); i++) {
+      hash = (hash ^ uniqueIdentifier.charAt(i)) * 0x100000001B3L;
+    }
+    // the FNV-1a low bits, which pick the bucket, are weak on similar identifiers
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash == 0 ? 1 : hash;
+  }
+
+  private static long epochNanos(Instant instant) {
+    return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+  }
+
+  private static ZonedDateTime toZonedDateTime(long epochNanos) {
+    return Instant.ofEpochSecond(0, epochNanos).atZone(ZoneOffset.UTC);
+  }
+
+}
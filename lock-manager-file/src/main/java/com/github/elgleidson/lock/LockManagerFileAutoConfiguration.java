@@ -0,0 +1,38 @@
+package com.github.elgleidson.lock;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@AutoConfiguration
+@EnableConfigurationProperties(LockManagerFileProperties.class)
+public class LockManagerFileAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics lockManagerFileStatistics() {
+    return new LockStatistics();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(LockManagerFile.class)
+  public LockManagerFile lockManagerFile(LockStatistics lockStatistics, LockManagerFileProperties properties) {
+    return new LockManagerFile(properties.getPath(), properties.getBuckets(), lockStatistics);
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(ReactiveLockManager.class)
+  static class ReactiveLockManagerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(ReactiveLockManagerFile.class)
+    public ReactiveLockManagerFile reactiveLockManagerFile(LockManagerFile lockManagerFile) {
+      return new ReactiveLockManagerFile(lockManagerFile);
+    }
+
+  }
+
+}
@@ -0,0 +1,21 @@
+package com.github.elgleidson.lock;
+
+import java.nio.file.Path;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.file")
+public class LockManagerFileProperties {
+
+  /**
+   * The lock file, the same for every process sharing the locks.
+   */
+  private Path path = Path.of(System.getProperty("java.io.tmpdir"), "lock-manager.locks");
+
+  /**
+   * Number of buckets of 7 locks each (256 bytes), the same for every process sharing the file.
+   */
+  private int buckets = LockManagerFile.DEFAULT_BUCKETS;
+
+}
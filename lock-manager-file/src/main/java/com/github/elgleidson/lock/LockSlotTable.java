@@ -0,0 +1,234 @@
+package com.github.elgleidson.lock;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-size table of lock slots in a memory-mapped file, shared by every process mapping the same file.
+ * <p>A unique identifier is hashed to a bucket of {@value #WAYS} slots. Each slot holds the hash of the unique identifier
+ * it's bound to, the owner (a random token) and the lease, all updated with CAS on the mapped memory, so acquiring and
+ * releasing a lock is a few atomic instructions, with no system call.</p>
+ * <p>The lease is the expiration in epoch nanoseconds, with its lowest bits replaced by the owner's (see
+ * {@link #lease(long, long)}), and 0 once released. It's the only word a lock is won, renewed or released with: acquiring
+ * is a CAS from a lease in the past, so only one process can win it, and renewing or releasing is a CAS from the owner's
+ * lease, so an owner whose lease expired and was taken over can't renew or release the new one. The owner is only written
+ * by the process holding the lease, for {@link #holder(long, long)}.</p>
+ * <p>Binding a free slot of the bucket to another unique identifier is the only step taken under the bucket latch, so two
+ * processes never bind the same unique identifier twice. The latch is held until the deadline it was taken with, and
+ * taken over past it, so a process dying while holding it only holds the binding of new unique identifiers in its bucket
+ * for {@link #LATCH_TIMEOUT_NANOS}.</p>
+ */
+class LockSlotTable {
+
+  static final int WAYS = 7;
+  static final long LATCH_TIMEOUT_NANOS = 1_000_000_000L;
+
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private static final long MAGIC = 0x4C4F434B534C4F54L; // "LOCKSLOT"
+  private static final int VERSION = 1;
+  // magic, version and buckets, padded to a cache line
+  private static final int FILE_HEADER_SIZE = 64;
+  // the latch, padded to the size of a slot
+  private static final int BUCKET_HEADER_SIZE = 32;
+  private static final int SLOT_SIZE = 32;
+  private static final int BUCKET_SIZE = BUCKET_HEADER_SIZE + WAYS * SLOT_SIZE;
+  private static final int KEY = 0;
+  private static final int OWNER = 8;
+  private static final int LEASE = 16;
+  // the lowest bits of the expiration holding the owner's, about 65 microseconds
+  private static final long OWNER_BITS = 0xFFFFL;
+  // the offsets are ints, as the whole table is a single mapping
+  private static final int MAX_BUCKETS = (Integer.MAX_VALUE - FILE_HEADER_SIZE) / BUCKET_SIZE;
+
+  private final MappedByteBuffer buffer;
+  private final int buckets;
+
+  private LockSlotTable(MappedByteBuffer buffer, int buckets) {
+    this.buffer = buffer;
+    this.buckets = buckets;
+  }
+
+  /**
+   * Maps the table of the file, creating it with the number of buckets if it's empty, or checking it has them otherwise.
+   */
+  static LockSlotTable open(Path path, int buckets) throws IOException {
+    if (buckets < 1 || buckets > MAX_BUCKETS) {
+      throw new IllegalArgumentException("buckets must be between 1 and %d: %d".formatted(MAX_BUCKETS, buckets));
+    }
+    var size = FILE_HEADER_SIZE + (long) buckets * BUCKET_SIZE;
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         // only while opening, so processes starting together don't create the file twice
+         var ignored = channel.lock()) {
+      var created = channel.size() == 0;
+      if (!created && channel.size() != size) {
+        throw new IllegalStateException("lock file %s has %d bytes, expected %d for %d buckets".formatted(path, channel.size(), size, buckets));
+      }
+      var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.nativeOrder());
+      if (created) {
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, buckets);
+        buffer.putLong(0, MAGIC);
+        buffer.force();
+      } else if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION || buffer.getInt(12) != buckets) {
+        throw new IllegalStateException("lock file %s is not a lock table of %d buckets".formatted(path, buckets));
+      }
+      // the mapping stays valid once the channel is closed
+      return new LockSlotTable(buffer, buckets);
+    }
+  }
+
+  /**
+   * @return the lease of the owner until the expiration: the expiration, with its lowest bits replaced by the owner's, so
+   * the leases of two owners practically never match.
+   */
+  static long lease(long owner, long expiresAt) {
+    return (expiresAt & ~OWNER_BITS) | (owner & OWNER_BITS);
+  }
+
+  /**
+   * @return whether the slot of the key was acquired with the lease, i.e. it was released or expired.
+   * @throws IllegalStateException when the key has no slot and every slot of its bucket is held.
+   */
+  boolean acquire(long key, long owner, long lease, long now) {
+    var bucket = bucket(key);
+    var slot = find(bucket, key);
+    if (slot >= 0) {
+      if (!tryAcquire(slot, owner, lease, now)) {
+        return false;
+      }
+      if (getLong(slot + KEY) == key) {
+        return true;
+      }
+      // the slot was bound to another key, and released, since it was found, so release it and bind one for this key
+      compareAndSet(slot + LEASE, lease, 0L);
+    }
+    return bindAndAcquire(bucket, key, owner, lease, now);
+  }
+
+  private boolean tryAcquire(int slot, long owner, long lease, long now) {
+    var currentLease = getLong(slot + LEASE);
+    if (currentLease > now || !compareAndSet(slot + LEASE, currentLease, lease)) {
+      return false;
+    }
+    setLong(slot + OWNER, owner);
+    return true;
+  }
+
+  private boolean bindAndAcquire(int bucket, long key, long owner, long lease, long now) {
+    var latch = lockBucket(bucket, now);
+    try {
+      // it may have been bound while waiting for the latch
+      var slot = find(bucket, key);
+      if (slot >= 0) {
+        return tryAcquire(slot, owner, lease, now);
+      }
+      for (var way = 0; way < WAYS; way++) {
+        slot = slot(bucket, way);
+        // a free slot is won like any other, so a process acquiring its former key can't win it too
+        if (tryAcquire(slot, owner, lease, now)) {
+          setLong(slot + KEY, key);
+          return true;
+        }
+      }
+      throw new IllegalStateException("no free lock slot: all the " + WAYS + " slots of the bucket are held");
+    } finally {
+      unlockBucket(bucket, latch);
+    }
+  }
+
+  /**
+   * @return whether the slot of the key was released, i.e. it was still held with the owner's lease.
+   */
+  boolean release(long key, long owner, long lease) {
+    var slot = find(bucket(key), key);
+    return slot >= 0 && getLong(slot + OWNER) == owner && compareAndSet(slot + LEASE, lease, 0L);
+  }
+
+  /**
+   * @return whether the slot of the key was renewed with the new lease, i.e. it was still held with the owner's lease, and
+   * not expired, as it may be taken over anytime past it.
+   */
+  boolean renew(long key, long owner, long lease, long newLease, long now) {
+    var slot = find(bucket(key), key);
+    return slot >= 0 && lease > now && getLong(slot + OWNER) == owner && compareAndSet(slot + LEASE, lease, newLease);
+  }
+
+  /**
+   * @return the owner and lease of the slot of the key, if it's held.
+   */
+  Holder holder(long key, long now) {
+    var slot = find(bucket(key), key);
+    if (slot < 0) {
+      return null;
+    }
+    var lease = getLong(slot + LEASE);
+    var owner = getLong(slot + OWNER);
+    return lease > now ? new Holder(owner, lease) : null;
+  }
+
+  private int find(int bucket, long key) {
+    for (var way = 0; way < WAYS; way++) {
+      var slot = slot(bucket, way);
+      if (getLong(slot + KEY) == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private long lockBucket(int bucket, long now) {
+    var latch = bucketOffset(bucket);
+    var spinStart = System.nanoTime();
+    while (true) {
+      var time = now + (System.nanoTime() - spinStart);
+      var current = getLong(latch);
+      var deadline = time + LATCH_TIMEOUT_NANOS;
+      // 0 is free, otherwise the deadline of its holder
+      if ((current == 0 || current < time) && compareAndSet(latch, current, deadline)) {
+        return deadline;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private void unlockBucket(int bucket, long deadline) {
+    // unless it was taken over meanwhile
+    compareAndSet(bucketOffset(bucket), deadline, 0L);
+  }
+
+  private int bucket(long key) {
+    return (int) Long.remainderUnsigned(key, buckets);
+  }
+
+  private static int bucketOffset(int bucket) {
+    return FILE_HEADER_SIZE + bucket * BUCKET_SIZE;
+  }
+
+  private static int slot(int bucket, int way) {
+    return bucketOffset(bucket) + BUCKET_HEADER_SIZE + way * SLOT_SIZE;
+  }
+
+  private long getLong(int offset) {
+    return (long) LONGS.getVolatile(buffer, offset);
+  }
+
+  private void setLong(int offset, long value) {
+    LONGS.setVolatile(buffer, offset, value);
+  }
+
+  private boolean compareAndSet(int offset, long expected, long value) {
+    return LONGS.compareAndSet(buffer, offset, expected, value);
+  }
+
+  record Holder(long owner, long lease) {
+  }
+
+}
@@ -0,0 +1,50 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive side of a {@link LockManagerFile}: its calls are a few atomic instructions on the mapped file, never
+ * waiting on anything, so they're made on the subscribing thread.
+ */
+public class ReactiveLockManagerFile implements ReactiveLockManager {
+
+  private final LockManagerFile lockManager;
+
+  public ReactiveLockManagerFile(LockManagerFile lockManager) {
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+    return Mono.fromCallable(() -> lockManager.lock(uniqueIdentifier, expiresIn));
+  }
+
+  @Override
+  public Mono<Boolean> unlock(Lock lock) {
+    return Mono.fromCallable(() -> lockManager.unlock(lock));
+  }
+
+  @Override
+  public Mono<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    return Mono.fromCallable(() -> lockManager.renewAll(locks, expiresIn));
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Mono<Lock> getLock(String uniqueIdentifier) {
+    return Mono.fromCallable(() -> lockManager.getLock(uniqueIdentifier).orElse(null));
+  }
+
+  @Override
+  public Flux<Lock> listLocks(String prefix) {
+    return Flux.defer(() -> Flux.fromStream(lockManager.listLocks(prefix)));
+  }
+
+}
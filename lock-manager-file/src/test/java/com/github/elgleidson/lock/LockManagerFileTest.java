@@ -0,0 +1,332 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+class LockManagerFileTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  private static final long OWNER = 0x1234567890ABCDEFL;
+  private static final String LOCK_ID = "1234567890abcdef";
+
+  @TempDir
+  private Path directory;
+  private Path path;
+  private final AtomicLong owners = new AtomicLong(OWNER);
+
+  private LockManager lockManager;
+
+  private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
+  private Lock lockResult;
+  private boolean unlockResult;
+  private Optional<Lock> getLockResult;
+  private List<Lock> listLocksResult;
+
+  @BeforeEach
+  void setUp() {
+    path = directory.resolve("test.locks");
+    lockManager = lockManager(CLOCK, 16);
+    var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
+    logger.addAppender(listAppender);
+    listAppender.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listAppender.stop();
+  }
+
+  private LockManagerFile lockManager(Clock clock, int buckets) {
+    return new LockManagerFile(path, buckets, lockStatistics, clock, owners::getAndIncrement);
+  }
+
+  @Test
+  void lock() {
+    whenILock();
+    thenIExpectLock(LOCK_ID, OWNER, NOW);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockAlreadyAcquired() {
+    whenILock();
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(1, 1, 0);
+  }
+
+  @Test
+  void lockExpired() {
+    whenILock();
+    var later = NOW.plus(TTL).plusSeconds(1);
+    lockManager = lockManager(Clock.fixed(later, UTC), 16);
+    whenILock();
+    thenIExpectLock("1234567890abcdf0", OWNER + 1, later);
+    thenTheStatisticsAre(2, 0, 0);
+  }
+
+  @Test
+  void lockAcrossLockManagers() {
+    whenILock();
+    // another process mapping the same file
+    var other = lockManager(CLOCK, 16);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(() -> other.lock(UNIQUE_IDENTIFIER, TTL))
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    assertThat(other.getLock(UNIQUE_IDENTIFIER)).map(Lock::id).contains(LOCK_ID);
+    assertThat(other.unlock(lockResult)).isTrue();
+    // the failed attempt took an owner too
+    assertThat(other.lock(UNIQUE_IDENTIFIER, TTL).id()).isEqualTo("1234567890abcdf1");
+  }
+
+  @Test
+  void lockConcurrently() throws Exception {
+    var threads = 8;
+    var ready = new CountDownLatch(threads);
+    var tasks = new ArrayList<Callable<Boolean>>();
+    for (var i = 0; i < threads; i++) {
+      tasks.add(() -> {
+        ready.countDown();
+        ready.await();
+        try {
+          lockManager.lock(UNIQUE_IDENTIFIER, TTL);
+          return true;
+        } catch (LockFailureException ex) {
+          return false;
+        }
+      });
+    }
+    try (var executor = Executors.newFixedThreadPool(threads)) {
+      var acquired = executor.invokeAll(tasks).stream().map(LockManagerFileTest::get).filter(Boolean::booleanValue).count();
+      assertThat(acquired).isEqualTo(1);
+    }
+    thenTheStatisticsAre(1, threads - 1, 0);
+  }
+
+  @Test
+  void lockNoFreeSlot() {
+    path = directory.resolve("single-bucket.locks");
+    lockManager = lockManager(CLOCK, 1);
+    for (var i = 0; i < LockSlotTable.WAYS; i++) {
+      lockManager.lock(UNIQUE_IDENTIFIER + i, TTL);
+    }
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Failed to acquire lock on 'my-unique-identifier'");
+    thenTheStatisticsAre(LockSlotTable.WAYS, 0, 1);
+  }
+
+  @Test
+  void lockReusesReleasedSlots() {
+    path = directory.resolve("single-bucket.locks");
+    lockManager = lockManager(CLOCK, 1);
+    for (var i = 0; i < LockSlotTable.WAYS * 3; i++) {
+      assertThat(lockManager.unlock(lockManager.lock(UNIQUE_IDENTIFIER + i, TTL))).isTrue();
+    }
+    thenTheStatisticsAre(LockSlotTable.WAYS * 3, 0, 0);
+  }
+
+  @Test
+  void openWithOtherBuckets() {
+    assertThatExceptionOfType(IllegalStateException.class)
+      .isThrownBy(() -> lockManager(CLOCK, 32))
+      .withMessage("lock file %s has %d bytes, expected %d for 32 buckets".formatted(path, 64 + 16 * 256, 64 + 32 * 256));
+  }
+
+  @Test
+  void openOtherFile() throws IOException {
+    var other = directory.resolve("other");
+    Files.write(other, new byte[64 + 16 * 256]);
+    assertThatExceptionOfType(IllegalStateException.class)
+      .isThrownBy(() -> new LockManagerFile(other, 16))
+      .withMessage("lock file %s is not a lock table of 16 buckets".formatted(other));
+  }
+
+  @Test
+  void unlock() {
+    whenILock();
+    whenIUnlock(lockResult);
+    thenIExpectUnlock(true);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+  }
+
+  @Test
+  void unlockTakenOver() {
+    whenILock();
+    var expired = lockResult;
+    lockManager = lockManager(Clock.fixed(NOW.plus(TTL).plusSeconds(1), UTC), 16);
+    whenILock();
+    whenIUnlock(expired);
+    thenIExpectUnlock(false);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(lockResult));
+  }
+
+  @Test
+  void unlockOtherLock() {
+    whenILock();
+    whenIUnlock(new Lock("1234567890abcdf0", UNIQUE_IDENTIFIER, lockResult.expiresAt()));
+    thenIExpectUnlock(false);
+    whenIUnlock(new Lock(LOCK_ID, "other-unique-identifier", lockResult.expiresAt()));
+    thenIExpectUnlock(false);
+    whenIUnlock(new Lock("not-a-lock-id", UNIQUE_IDENTIFIER, lockResult.expiresAt()));
+    thenIExpectUnlock(false);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(lockResult));
+  }
+
+  @Test
+  void renewAll() {
+    whenILock();
+    var later = NOW.plusSeconds(10);
+    lockManager = lockManager(Clock.fixed(later, UTC), 16);
+    var renewed = lockManager.renewAll(List.of(lockResult), TTL);
+    assertThat(renewed).hasSize(1);
+    lockResult = renewed.getFirst();
+    thenIExpectLock(LOCK_ID, OWNER, later);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(lockResult));
+    // released with its renewed lease
+    assertThat(lockManager.unlock(lockResult)).isTrue();
+  }
+
+  @Test
+  void renewAllLost() {
+    whenILock();
+    var expired = lockResult;
+    var other = lockManager.lock("other-unique-identifier", TTL);
+    lockManager.unlock(other);
+    lockManager = lockManager(Clock.fixed(NOW.plus(TTL).plusSeconds(1), UTC), 16);
+    whenILock();
+    assertThat(lockManager.renewAll(List.of(expired, other, new Lock("not-a-lock-id", UNIQUE_IDENTIFIER, expired.expiresAt())), TTL))
+      .isEmpty();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(lockResult));
+  }
+
+  @Test
+  void getLock() {
+    whenILock();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(lockResult));
+  }
+
+  @Test
+  void getLockNotFound() {
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+  }
+
+  @Test
+  void isLocked() {
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isFalse();
+    whenILock();
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isTrue();
+  }
+
+  @Test
+  void listLocks() {
+    whenILock();
+    var other = lockManager.lock("other-unique-identifier", TTL);
+    var released = lockManager.lock("my-released-identifier", TTL);
+    lockManager.unlock(released);
+    whenIListLocks("my-");
+    assertThat(listLocksResult).containsExactly(lockResult);
+    whenIListLocks("");
+    assertThat(listLocksResult).containsExactlyInAnyOrder(lockResult, other);
+  }
+
+  @Test
+  void keyIsNeverZero() {
+    assertThat(LockManagerFile.key(UNIQUE_IDENTIFIER)).isNotZero().isEqualTo(LockManagerFile.key(UNIQUE_IDENTIFIER));
+    assertThat(LockManagerFile.key(UNIQUE_IDENTIFIER)).isNotEqualTo(LockManagerFile.key("my-unique-identifieR"));
+  }
+
+  private void whenILock() {
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  private void whenIUnlock(Lock lock) {
+    unlockResult = lockManager.unlock(lock);
+  }
+
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    listLocksResult = lockManager.listLocks(prefix).toList();
+  }
+
+  private void thenIExpectLock(String id, long owner, Instant now) {
+    var expiresAt = now.plus(TTL);
+    var lease = LockSlotTable.lease(owner, expiresAt.getEpochSecond() * 1_000_000_000L + expiresAt.getNano());
+    assertThat(HexFormat.fromHexDigitsToLong(id)).isEqualTo(owner);
+    assertThat(lockResult).isEqualTo(new Lock(id, UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, lease), UTC)));
+    // the expiration is off by less than the owner bits
+    assertThat(Duration.between(expiresAt, lockResult.expiresAt().toInstant()).abs()).isLessThan(Duration.ofNanos(0x10000));
+  }
+
+  private void thenIExpectUnlock(boolean expected) {
+    assertThat(unlockResult).isEqualTo(expected);
+  }
+
+  private void thenIExpectGetLock(Optional<Lock> expected) {
+    assertThat(getLockResult).isEqualTo(expected);
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private void thenTheLogsContains(String expectedErrorMessage) {
+    assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
+  }
+
+  private static <T> T get(Future<T> future) {
+    try {
+      return future.get();
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+}
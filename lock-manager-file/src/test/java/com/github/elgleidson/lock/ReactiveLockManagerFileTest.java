@@ -0,0 +1,48 @@
+package com.github.elgleidson.lock;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+class ReactiveLockManagerFileTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  @TempDir
+  private Path directory;
+
+  private ReactiveLockManager lockManager;
+
+  @BeforeEach
+  void setUp() {
+    lockManager = new ReactiveLockManagerFile(new LockManagerFile(directory.resolve("test.locks"), 16));
+  }
+
+  @Test
+  void lockAndUnlock() {
+    var lock = lockManager.lock(UNIQUE_IDENTIFIER, TTL).block();
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER))
+      .expectNext(lock)
+      .verifyComplete();
+    StepVerifier.create(lockManager.listLocks("my-"))
+      .expectNext(lock)
+      .verifyComplete();
+    StepVerifier.create(lockManager.unlock(lock))
+      .expectNext(true)
+      .verifyComplete();
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER))
+      .verifyComplete();
+  }
+
+  @Test
+  void lockAlreadyAcquired() {
+    lockManager.lock(UNIQUE_IDENTIFIER, TTL).block();
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .verifyErrorMessage("Lock already acquired on 'my-unique-identifier'!");
+  }
+
+}
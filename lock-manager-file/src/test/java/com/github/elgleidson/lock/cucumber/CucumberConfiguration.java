@@ -0,0 +1,13 @@
+package com.github.elgleidson.lock.cucumber;
+
+import com.github.elgleidson.lock.TestApplication;
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// a lock file of its own for every run
+@CucumberContextConfiguration
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  properties = "lock-manager.file.path=${java.io.tmpdir}/lock-manager-${random.uuid}.locks")
+public class CucumberConfiguration {
+
+}
@@ -0,0 +1,18 @@
+package com.github.elgleidson.lock.cucumber;
+
+import static io.cucumber.junit.platform.engine.Constants.GLUE_PROPERTY_NAME;
+import static io.cucumber.junit.platform.engine.Constants.PARALLEL_EXECUTION_ENABLED_PROPERTY_NAME;
+
+import org.junit.platform.suite.api.ConfigurationParameter;
+import org.junit.platform.suite.api.IncludeEngines;
+import org.junit.platform.suite.api.SelectPackages;
+import org.junit.platform.suite.api.Suite;
+
+@Suite
+@IncludeEngines("cucumber")
+@SelectPackages("com.github.elgleidson.lock.cucumber")
+@ConfigurationParameter(key = GLUE_PROPERTY_NAME, value = "com.github.elgleidson.lock.cucumber")
+@ConfigurationParameter(key = PARALLEL_EXECUTION_ENABLED_PROPERTY_NAME, value = "true")
+public class CucumberTest {
+
+}
\ No newline at end of file
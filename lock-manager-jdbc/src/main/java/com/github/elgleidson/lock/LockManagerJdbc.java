@@ -0,0 +1,188 @@
+package com.github.elgleidson.lock;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Locks on a table of a relational database, one row per lock held.
+ * <p>Acquiring a lock inserts its row, or takes it over when it has expired, in a single statement (see
+ * {@link LockSqlDialect}), so an expired lock never needs cleaning up before it can be acquired again.</p>
+ */
+@Slf4j
+public class LockManagerJdbc implements LockManager {
+
+  public static final String DEFAULT_TABLE_NAME = "locks";
+
+  // how many locks a renewal statement goes through at most, so its IN list stays within what every database accepts
+  private static final int RENEW_CHUNK = 1000;
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final LockSqlDialect dialect;
+  private final String tableName;
+  private final LockStatistics lockStatistics;
+  private final Clock clock;
+  private final Supplier<UUID> uuidSupplier;
+
+  public LockManagerJdbc(NamedParameterJdbcTemplate jdbcTemplate, LockSqlDialect dialect) {
+    this(jdbcTemplate, dialect, DEFAULT_TABLE_NAME);
+  }
+
+  public LockManagerJdbc(NamedParameterJdbcTemplate jdbcTemplate, LockSqlDialect dialect, String tableName) {
+    this(jdbcTemplate, dialect, tableName, new LockStatistics());
+  }
+
+  public LockManagerJdbc(NamedParameterJdbcTemplate jdbcTemplate, LockSqlDialect dialect, String tableName, LockStatistics lockStatistics) {
+    this(jdbcTemplate, dialect, tableName, lockStatistics, Clock.systemUTC(), UUID::randomUUID);
+  }
+
+  protected LockManagerJdbc(NamedParameterJdbcTemplate jdbcTemplate, LockSqlDialect dialect, String tableName, LockStatistics lockStatistics,
+                            Clock clock, Supplier<UUID> uuidSupplier) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.dialect = dialect;
+    this.tableName = LockSqlDialect.checkTableName(tableName);
+    this.lockStatistics = lockStatistics;
+    this.clock = clock;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  /**
+   * Creates the lock table, unless it already exists.
+   */
+  public void ensureTable() {
+    jdbcTemplate.getJdbcTemplate().execute(dialect.createTableSql(tableName));
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
+    try {
+      log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn);
+      var id = uuidSupplier.get().toString();
+      var now = Instant.now(clock).toEpochMilli();
+      var expiresAt = now + expiresIn.toMillis();
+      var parameters = new MapSqlParameterSource()
+        .addValue("uniqueIdentifier", uniqueIdentifier)
+        .addValue("id", id)
+        .addValue("expiresAt", expiresAt)
+        .addValue("now", now);
+      var updated = jdbcTemplate.update(dialect.acquireSql(tableName), parameters);
+      if (updated == 0 || dialect.countsUnchangedRows() && !getLock(uniqueIdentifier).map(Lock::id).orElse("").equals(id)) {
+        throw alreadyLocked(uniqueIdentifier, start);
+      }
+      var lock = new Lock(id, uniqueIdentifier, Instant.ofEpochMilli(expiresAt).atZone(ZoneOffset.UTC));
+      lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
+      log.debug("locked={}", lock);
+      return lock;
+    } catch (DuplicateKeyException ex) {
+      // two inserts racing for a unique identifier without a row yet
+      throw alreadyLocked(uniqueIdentifier, start);
+    } catch (Exception ex) {
+      if (ex instanceof LockFailureException) {
+        throw ex;
+      }
+      log.error("error lock(): message={}", ex.getMessage());
+      lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+      throw LockFailureException.other(uniqueIdentifier, ex);
+    }
+  }
+
+  private LockFailureException alreadyLocked(String uniqueIdentifier, long start) {
+    // this is to track concurrent calls
+    log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+    lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+    return LockFailureException.alreadyLocked(uniqueIdentifier);
+  }
+
+  @Override
+  public boolean unlock(Lock lock) {
+    try {
+      log.debug("trying to unlock {}", lock);
+      // only unlocks if lock id and unique identifier match
+      var parameters = new MapSqlParameterSource()
+        .addValue("uniqueIdentifier", lock.uniqueIdentifier())
+        .addValue("id", lock.id());
+      var unlocked = jdbcTemplate.update(dialect.releaseSql(tableName), parameters) > 0;
+      log.debug("unlocked={}", unlocked);
+      return unlocked;
+    } catch (Exception ex) {
+      // log the error, but returns successfully as the lock will expire
+      log.error("error unlock(): message={}", ex.getMessage());
+      return false;
+    }
+  }
+
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn);
+    var renewed = new ArrayList<Lock>(locks.size());
+    for (var from = 0; from < locks.size(); from += RENEW_CHUNK) {
+      renewed.addAll(renew(locks.subList(from, Math.min(from + RENEW_CHUNK, locks.size())), expiresIn));
+    }
+    log.debug("renewed={}", renewed.size());
+    return renewed;
+  }
+
+  private List<Lock> renew(List<Lock> locks, Duration expiresIn) {
+    var now = Instant.now(clock).toEpochMilli();
+    var expiresAt = now + expiresIn.toMillis();
+    var ids = locks.stream().map(Lock::id).distinct().toList();
+    var parameters = new MapSqlParameterSource()
+      .addValue("ids", ids)
+      .addValue("expiresAt", expiresAt)
+      .addValue("now", now);
+    // the lock ids are unique, so matching them only renews the locks still held by their holders
+    var updated = jdbcTemplate.update(dialect.renewAllSql(tableName), parameters);
+    // some were lost (or not counted, e.g. by MySQL when the expiration is unchanged), the ones renewed tell them apart
+    var renewedIds = updated == ids.size() ? Set.copyOf(ids) : Set.copyOf(jdbcTemplate.queryForList(dialect.renewedSql(tableName), parameters, String.class));
+    var renewedExpiresAt = Instant.ofEpochMilli(expiresAt).atZone(ZoneOffset.UTC);
+    return locks.stream()
+      .filter(lock -> renewedIds.contains(lock.id()))
+      .map(lock -> new Lock(lock.id(), lock.uniqueIdentifier(), renewedExpiresAt))
+      .toList();
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    var parameters = new MapSqlParameterSource()
+      .addValue("uniqueIdentifier", uniqueIdentifier)
+      .addValue("now", Instant.now(clock).toEpochMilli());
+    return jdbcTemplate.query(dialect.selectSql(tableName), parameters, (resultSet, rowNum) -> convertToLock(uniqueIdentifier, resultSet))
+      .stream()
+      .findFirst();
+  }
+
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    // the rows are read from the result set as the stream is consumed
+    var parameters = new MapSqlParameterSource()
+      .addValue("prefix", LockSqlDialect.likePrefix(prefix))
+      .addValue("now", Instant.now(clock).toEpochMilli());
+    return jdbcTemplate.queryForStream(dialect.listSql(tableName), parameters,
+      (resultSet, rowNum) -> convertToLock(resultSet.getString("unique_identifier"), resultSet));
+  }
+
+  private Lock convertToLock(String uniqueIdentifier, ResultSet resultSet) throws SQLException {
+    return new Lock(resultSet.getString("id"), uniqueIdentifier, Instant.ofEpochMilli(resultSet.getLong("expires_at")).atZone(ZoneOffset.UTC));
+  }
+
+}
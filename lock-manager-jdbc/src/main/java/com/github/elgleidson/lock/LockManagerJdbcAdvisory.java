@@ -0,0 +1,190 @@
+package com.github.elgleidson.lock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Locks with PostgreSQL's advisory locks, so acquiring and releasing a lock writes nothing: no row, no WAL, no vacuum.
+ * <p>Outside a transaction, the lock is a session lock, held by a connection taken out of the pool until the lock is
+ * released. Inside a transaction on the same data source (e.g. {@code @Transactional}), the lock is a transaction lock on
+ * the transaction's connection, released once the transaction commits or rolls back, which {@link #unlock(Lock)} leaves it
+ * to. A transaction on another resource (e.g. another data source) doesn't hold a connection of this one, so the lock is a
+ * session lock then.</p>
+ * <p>Advisory locks don't expire: they're held until released, or until their session ends (e.g. the application dies),
+ * which is what the expiration stands for on the other backends. So the locks have no expiration.</p>
+ * <p>The locks are keyed by a hash of the unique identifier (see {@link LockSqlDialect#advisoryLockKey(String)}), so
+ * {@link #listLocks(String)} only knows the session locks held by this lock manager, and {@link #getLock(String)} only
+ * knows the id of those, a lock held elsewhere being identified by the process id of the session holding it.</p>
+ */
+@Slf4j
+public class LockManagerJdbcAdvisory implements LockManager {
+
+  private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(?), pg_backend_pid()";
+  private static final String TRY_TRANSACTION_LOCK_SQL = "SELECT pg_try_advisory_xact_lock(?), pg_backend_pid()";
+  private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+  // a bigint key is held as its high (classid) and low (objid) 32 bits, with objsubid 1
+  private static final String HOLDER_SQL = """
+    SELECT pid FROM pg_locks
+    WHERE locktype = 'advisory' AND classid = CAST(? AS oid) AND objid = CAST(? AS oid) AND objsubid = 1 AND granted""";
+
+  private final DataSource dataSource;
+  private final JdbcTemplate jdbcTemplate;
+  private final LockStatistics lockStatistics;
+  private final Supplier<UUID> uuidSupplier;
+  // the session locks held, by lock id
+  private final Map<String, SessionLock> sessionLocks = new ConcurrentHashMap<>();
+
+  public LockManagerJdbcAdvisory(DataSource dataSource) {
+    this(dataSource, new LockStatistics());
+  }
+
+  public LockManagerJdbcAdvisory(DataSource dataSource, LockStatistics lockStatistics) {
+    this(dataSource, lockStatistics, UUID::randomUUID);
+  }
+
+  protected LockManagerJdbcAdvisory(DataSource dataSource, LockStatistics lockStatistics, Supplier<UUID> uuidSupplier) {
+    this.dataSource = dataSource;
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.lockStatistics = lockStatistics;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
+    try {
+      log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn);
+      var key = LockSqlDialect.advisoryLockKey(uniqueIdentifier);
+      // a transaction bound to this data source, whose connection holds the lock until it ends
+      var lock = TransactionSynchronizationManager.hasResource(dataSource)
+        ? transactionLock(uniqueIdentifier, key)
+        : sessionLock(uniqueIdentifier, key);
+      if (lock == null) {
+        // this is to track concurrent calls
+        log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+        lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+        throw LockFailureException.alreadyLocked(uniqueIdentifier);
+      }
+      lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
+      log.debug("locked={}", lock);
+      return lock;
+    } catch (LockFailureException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      log.error("error lock(): message={}", ex.getMessage());
+      lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+      throw LockFailureException.other(uniqueIdentifier, ex);
+    }
+  }
+
+  private Lock transactionLock(String uniqueIdentifier, long key) throws SQLException {
+    var connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      return tryLock(connection, TRY_TRANSACTION_LOCK_SQL, key) != null ? new Lock(uuidSupplier.get().toString(), uniqueIdentifier, null) : null;
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  private Lock sessionLock(String uniqueIdentifier, long key) throws SQLException {
+    var connection = dataSource.getConnection();
+    try {
+      // the session must not be left idle in a transaction while it holds the lock
+      if (!connection.getAutoCommit()) {
+        connection.setAutoCommit(true);
+      }
+      var pid = tryLock(connection, TRY_LOCK_SQL, key);
+      if (pid == null) {
+        connection.close();
+        return null;
+      }
+      var lock = new Lock(uuidSupplier.get().toString(), uniqueIdentifier, null);
+      sessionLocks.put(lock.id(), new SessionLock(lock, connection, pid, key));
+      return lock;
+    } catch (SQLException | RuntimeException ex) {
+      connection.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the process id of the session holding the lock, or null if it's already held elsewhere.
+   */
+  private Integer tryLock(Connection connection, String sql, long key) throws SQLException {
+    try (var statement = connection.prepareStatement(sql)) {
+      statement.setLong(1, key);
+      try (var resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getBoolean(1) ? resultSet.getInt(2) : null;
+      }
+    }
+  }
+
+  @Override
+  public boolean unlock(Lock lock) {
+    log.debug("trying to unlock {}", lock);
+    var sessionLock = sessionLocks.get(lock.id());
+    // only unlocks if lock id and unique identifier match
+    if (sessionLock == null || !sessionLock.lock().uniqueIdentifier().equals(lock.uniqueIdentifier()) || !sessionLocks.remove(lock.id(), sessionLock)) {
+      // e.g. a transaction lock, released once its transaction ends
+      log.debug("unlocked=false, not a session lock held by this lock manager");
+      return false;
+    }
+    try (var connection = sessionLock.connection(); var statement = connection.prepareStatement(UNLOCK_SQL)) {
+      statement.setLong(1, sessionLock.key());
+      try (var resultSet = statement.executeQuery()) {
+        var unlocked = resultSet.next() && resultSet.getBoolean(1);
+        log.debug("unlocked={}", unlocked);
+        return unlocked;
+      }
+    } catch (Exception ex) {
+      // log the error, but returns successfully as the lock is released once the connection is closed
+      log.error("error unlock(): message={}", ex.getMessage());
+      return false;
+    }
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    var key = LockSqlDialect.advisoryLockKey(uniqueIdentifier);
+    return jdbcTemplate.query(HOLDER_SQL, (resultSet, rowNum) -> holder(uniqueIdentifier, resultSet.getInt("pid")), key >>> 32, key & 0xFFFFFFFFL)
+      .stream()
+      .findFirst();
+  }
+
+  private Lock holder(String uniqueIdentifier, int pid) {
+    return sessionLocks.values().stream()
+      .filter(sessionLock -> sessionLock.pid() == pid && sessionLock.lock().uniqueIdentifier().equals(uniqueIdentifier))
+      .map(SessionLock::lock)
+      .findFirst()
+      // held elsewhere, e.g. by another instance, or in a transaction
+      .orElseGet(() -> new Lock(String.valueOf(pid), uniqueIdentifier, null));
+  }
+
+  /**
+   * @return the session locks held by this lock manager whose unique identifier starts with the prefix, as the advisory
+   * locks are keyed by a hash of the unique identifier, which can't be matched against a prefix.
+   */
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    return sessionLocks.values().stream()
+      .map(SessionLock::lock)
+      .filter(lock -> lock.uniqueIdentifier().startsWith(prefix));
+  }
+
+  private record SessionLock(Lock lock, Connection connection, int pid, long key) {
+  }
+
+}
@@ -0,0 +1,52 @@
+package com.github.elgleidson.lock;
+
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+@AutoConfiguration(after = {DataSourceAutoConfiguration.class, JdbcTemplateAutoConfiguration.class})
+@EnableConfigurationProperties(LockManagerJdbcProperties.class)
+public class LockManagerJdbcAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics lockManagerJdbcStatistics() {
+    return new LockStatistics();
+  }
+
+  @Bean
+  @ConditionalOnBean(NamedParameterJdbcTemplate.class)
+  @ConditionalOnMissingBean(LockManagerJdbc.class)
+  @ConditionalOnProperty(prefix = "lock-manager.jdbc", name = "mode", havingValue = "table", matchIfMissing = true)
+  public LockManagerJdbc lockManagerJdbc(NamedParameterJdbcTemplate jdbcTemplate, LockStatistics lockStatistics, LockManagerJdbcProperties properties) {
+    var dialect = properties.getDialect() != null ? properties.getDialect() : detectDialect(jdbcTemplate);
+    var lockManager = new LockManagerJdbc(jdbcTemplate, dialect, properties.getTableName(), lockStatistics);
+    if (properties.isEnsureTable()) {
+      // a single statement, as the table is created only if it doesn't exist
+      lockManager.ensureTable();
+    }
+    return lockManager;
+  }
+
+  private LockSqlDialect detectDialect(NamedParameterJdbcTemplate jdbcTemplate) {
+    var databaseName = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+    return LockSqlDialect.of(databaseName);
+  }
+
+  @Bean
+  @ConditionalOnBean(DataSource.class)
+  @ConditionalOnMissingBean(LockManagerJdbcAdvisory.class)
+  @ConditionalOnProperty(prefix = "lock-manager.jdbc", name = "mode", havingValue = "advisory")
+  public LockManagerJdbcAdvisory lockManagerJdbcAdvisory(DataSource dataSource, LockStatistics lockStatistics) {
+    return new LockManagerJdbcAdvisory(dataSource, lockStatistics);
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.github.elgleidson.lock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.jdbc")
+public class LockManagerJdbcProperties {
+
+  /**
+   * How the locks are held: rows of the lock table, or PostgreSQL advisory locks.
+   */
+  private Mode mode = Mode.TABLE;
+
+  /**
+   * SQL dialect of the lock table. Unset, it's detected from the database.
+   */
+  private LockSqlDialect dialect;
+
+  /**
+   * Name of the lock table, optionally qualified by its schema.
+   */
+  private String tableName = LockManagerJdbc.DEFAULT_TABLE_NAME;
+
+  /**
+   * Whether to create the lock table on startup, unless it already exists. Disable it when the table is created by other
+   * means, e.g. a migration.
+   */
+  private boolean ensureTable = true;
+
+  public enum Mode {
+    TABLE,
+    ADVISORY
+  }
+
+}
@@ -0,0 +1,242 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+// the JDBC calls made around the statements (e.g. the warnings) are not all stubbed
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LockManagerJdbcAdvisoryTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final long KEY = LockSqlDialect.advisoryLockKey(UNIQUE_IDENTIFIER);
+  private static final Duration TTL = Duration.ofSeconds(30);
+  private static final int PID = 4242;
+  private static final UUID LOCK_UUID = UUID.randomUUID();
+  private static final Lock LOCK = new Lock(LOCK_UUID.toString(), UNIQUE_IDENTIFIER, null);
+  // its id isn't known to this lock manager
+  private static final Lock LOCK_HELD_ELSEWHERE = new Lock(String.valueOf(PID), UNIQUE_IDENTIFIER, null);
+
+  @Mock
+  private DataSource dataSource;
+  @Mock
+  private Connection connection;
+  @Mock
+  private PreparedStatement statement;
+  @Mock
+  private ResultSet resultSet;
+
+  private LockManager lockManager;
+
+  private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
+  private Lock lockResult;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    doReturn(connection).when(dataSource).getConnection();
+    doReturn(true).when(connection).getAutoCommit();
+    doReturn(statement).when(connection).prepareStatement(anyString());
+    doReturn(resultSet).when(statement).executeQuery();
+    lockManager = new LockManagerJdbcAdvisory(dataSource, lockStatistics, () -> LOCK_UUID);
+    var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
+    logger.addAppender(listAppender);
+    listAppender.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listAppender.stop();
+  }
+
+  @Test
+  void lock() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    assertThat(lockResult).isEqualTo(LOCK);
+    verify(connection).prepareStatement("SELECT pg_try_advisory_lock(?), pg_backend_pid()");
+    verify(statement).setLong(1, KEY);
+    // the session holds the lock until it's released
+    verify(connection, never()).close();
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockTurnsAutoCommitOn() throws SQLException {
+    doReturn(false).when(connection).getAutoCommit();
+    givenTheTryLockReturns(true);
+    whenILock();
+    verify(connection).setAutoCommit(true);
+  }
+
+  @Test
+  void lockAlreadyAcquired() throws SQLException {
+    givenTheTryLockReturns(false);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(connection).close();
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockException() throws SQLException {
+    var exception = new SQLException("test exception");
+    doThrow(exception).when(statement).executeQuery();
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Failed to acquire lock on 'my-unique-identifier'")
+      .withCause(exception);
+    verify(connection).close();
+    thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void lockInTransaction() throws SQLException {
+    givenTheTryLockReturns(true);
+    TransactionSynchronizationManager.bindResource(dataSource, new ConnectionHolder(connection));
+    try {
+      whenILock();
+    } finally {
+      TransactionSynchronizationManager.unbindResource(dataSource);
+    }
+    assertThat(lockResult).isEqualTo(LOCK);
+    verify(connection).prepareStatement("SELECT pg_try_advisory_xact_lock(?), pg_backend_pid()");
+    // the transaction lock is released once the transaction ends, not by unlock
+    assertThat(lockManager.unlock(lockResult)).isFalse();
+    verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+  }
+
+  @Test
+  void lockInTransactionOnAnotherResource() throws SQLException {
+    givenTheTryLockReturns(true);
+    // e.g. on another data source
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    try {
+      whenILock();
+    } finally {
+      TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    // it doesn't hold a connection of this data source, so it's a session lock
+    verify(connection).prepareStatement("SELECT pg_try_advisory_lock(?), pg_backend_pid()");
+    assertThat(lockManager.listLocks("")).containsExactly(LOCK);
+  }
+
+  @Test
+  void unlock() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    givenTheTryLockReturns(true);
+    assertThat(lockManager.unlock(LOCK)).isTrue();
+    verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    verify(statement, times(2)).setLong(1, KEY);
+    // and the connection goes back to the pool
+    verify(connection).close();
+    assertThat(lockManager.listLocks("")).isEmpty();
+  }
+
+  @Test
+  void unlockOtherUniqueIdentifier() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    assertThat(lockManager.unlock(new Lock(LOCK.id(), "other-unique-identifier", null))).isFalse();
+    verify(connection, never()).close();
+  }
+
+  @Test
+  void unlockException() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    doThrow(new SQLException("test exception")).when(statement).executeQuery();
+    assertThat(lockManager.unlock(LOCK)).isFalse();
+    // the lock is released anyway, as its session ends
+    verify(connection).close();
+    thenTheLogsContains("[ERROR] error unlock(): message=test exception");
+  }
+
+  @Test
+  void getLock() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    doReturn(true, false).when(resultSet).next();
+    doReturn(PID).when(resultSet).getInt("pid");
+    assertThat(lockManager.getLock(UNIQUE_IDENTIFIER)).isEqualTo(Optional.of(LOCK));
+  }
+
+  @Test
+  void getLockHeldElsewhere() throws SQLException {
+    doReturn(true, false).when(resultSet).next();
+    doReturn(PID).when(resultSet).getInt("pid");
+    assertThat(lockManager.getLock(UNIQUE_IDENTIFIER)).isEqualTo(Optional.of(LOCK_HELD_ELSEWHERE));
+    // the bigint key is matched against its high and low 32 bits
+    verify(statement).setObject(1, KEY >>> 32);
+    verify(statement).setObject(2, KEY & 0xFFFFFFFFL);
+  }
+
+  @Test
+  void getLockNotFound() throws SQLException {
+    doReturn(false).when(resultSet).next();
+    assertThat(lockManager.getLock(UNIQUE_IDENTIFIER)).isEmpty();
+  }
+
+  @Test
+  void listLocks() throws SQLException {
+    givenTheTryLockReturns(true);
+    whenILock();
+    assertThat(lockManager.listLocks("my-unique")).containsExactly(LOCK);
+    assertThat(lockManager.listLocks("other")).isEmpty();
+  }
+
+  private void givenTheTryLockReturns(boolean locked) throws SQLException {
+    doReturn(true).when(resultSet).next();
+    doReturn(locked).when(resultSet).getBoolean(1);
+    doReturn(PID).when(resultSet).getInt(2);
+  }
+
+  private void whenILock() {
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private void thenTheLogsContains(String expectedErrorMessage) {
+    assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
+  }
+
+}
@@ -0,0 +1,324 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+@ExtendWith(MockitoExtension.class)
+class LockManagerJdbcTest {
+
+  // the expirations are stored in epoch milliseconds
+  private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
+  private static final UUID LOCK_UUID = UUID.randomUUID();
+  private static final String LOCK_ID = LOCK_UUID.toString();
+  private static final Lock LOCK = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT);
+
+  @Mock
+  private NamedParameterJdbcTemplate jdbcTemplate;
+  @Mock
+  private JdbcTemplate plainJdbcTemplate;
+
+  private LockManager lockManager;
+
+  private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
+  private Lock lockResult;
+  private boolean unlockResult;
+  private Optional<Lock> getLockResult;
+  private List<Lock> listLocksResult;
+
+  @BeforeEach
+  void setUp() {
+    lockManager = lockManager(LockSqlDialect.POSTGRESQL);
+    var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
+    logger.addAppender(listAppender);
+    listAppender.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listAppender.stop();
+  }
+
+  private LockManagerJdbc lockManager(LockSqlDialect dialect) {
+    return new LockManagerJdbc(jdbcTemplate, dialect, "locks", lockStatistics, CLOCK, () -> LOCK_UUID);
+  }
+
+  @Test
+  void invalidTableName() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new LockManagerJdbc(jdbcTemplate, LockSqlDialect.POSTGRESQL, "locks; DROP TABLE locks"))
+      .withMessage("invalid lock table name: locks; DROP TABLE locks");
+  }
+
+  @Test
+  void ensureTable() {
+    doReturn(plainJdbcTemplate).when(jdbcTemplate).getJdbcTemplate();
+    ((LockManagerJdbc) lockManager).ensureTable();
+    verify(plainJdbcTemplate).execute(LockSqlDialect.POSTGRESQL.createTableSql("locks"));
+  }
+
+  @Test
+  void lock() {
+    givenTheAcquireUpdates(1);
+    whenILock();
+    thenIExpectLock();
+    thenTheAcquireIsInvoked(LockSqlDialect.POSTGRESQL);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockAlreadyAcquired() {
+    givenTheAcquireUpdates(0);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheAcquireIsInvoked(LockSqlDialect.POSTGRESQL);
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockDuplicateKey() {
+    doThrow(new DuplicateKeyException("duplicate key")).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockCountingUnchangedRows() {
+    lockManager = lockManager(LockSqlDialect.MYSQL);
+    givenTheAcquireUpdates(1);
+    givenTheSelectReturns(LOCK);
+    whenILock();
+    thenIExpectLock();
+    thenTheAcquireIsInvoked(LockSqlDialect.MYSQL);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockCountingUnchangedRowsAlreadyAcquired() {
+    lockManager = lockManager(LockSqlDialect.MYSQL);
+    // the row of the lock held by someone else is counted, but the lock id is not ours
+    givenTheAcquireUpdates(1);
+    givenTheSelectReturns(new Lock("someone-else", UNIQUE_IDENTIFIER, EXPIRES_AT));
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockException() {
+    var exception = new RuntimeException("test exception");
+    doThrow(exception).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Failed to acquire lock on 'my-unique-identifier'")
+      .withCause(exception);
+    thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void unlock() {
+    givenTheReleaseDeletes(1);
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    thenTheReleaseIsInvoked();
+  }
+
+  @Test
+  void unlockRecordNotFound() {
+    givenTheReleaseDeletes(0);
+    whenIUnlock();
+    thenIExpectUnlock(false);
+    thenTheReleaseIsInvoked();
+  }
+
+  @Test
+  void unlockException() {
+    doThrow(new RuntimeException("test exception")).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    whenIUnlock();
+    thenIExpectUnlock(false);
+    thenTheLogsContains("[ERROR] error unlock(): message=test exception");
+  }
+
+  @Test
+  void renewAll() {
+    var renewal = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plus(TTL.multipliedBy(2)));
+    doReturn(1).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    assertThat(lockManager.renewAll(List.of(LOCK), TTL.multipliedBy(2))).containsExactly(renewal);
+    var expected = Map.<String, Object>of("ids", List.of(LOCK_ID), "expiresAt", renewal.expiresAt().toInstant().toEpochMilli(), "now", NOW.toEpochMilli());
+    verify(jdbcTemplate).update(eq(LockSqlDialect.POSTGRESQL.renewAllSql("locks")), argThat((SqlParameterSource parameters) -> hasValues(parameters, expected)));
+    // all of them were renewed, so they aren't told apart
+    verify(jdbcTemplate, never()).queryForList(anyString(), any(SqlParameterSource.class), eq(String.class));
+  }
+
+  @Test
+  void renewAllSomeLost() {
+    var lost = new Lock(UUID.randomUUID().toString(), "lost-unique-identifier", EXPIRES_AT);
+    doReturn(1).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    doReturn(List.of(LOCK_ID)).when(jdbcTemplate).queryForList(eq(LockSqlDialect.POSTGRESQL.renewedSql("locks")), any(SqlParameterSource.class), eq(String.class));
+    assertThat(lockManager.renewAll(List.of(LOCK, lost), TTL))
+      .containsExactly(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT));
+  }
+
+  @Test
+  void renewAllException() {
+    doThrow(new RuntimeException("test exception")).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+    assertThatExceptionOfType(RuntimeException.class)
+      .isThrownBy(() -> lockManager.renewAll(List.of(LOCK), TTL))
+      .withMessage("test exception");
+  }
+
+  @Test
+  void getLock() {
+    givenTheSelectReturns(LOCK);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(LOCK));
+    thenTheSelectIsInvoked();
+  }
+
+  @Test
+  void getLockNotFound() {
+    givenTheSelectReturns();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+    thenTheSelectIsInvoked();
+  }
+
+  @Test
+  void isLocked() {
+    givenTheSelectReturns(LOCK);
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isTrue();
+  }
+
+  @Test
+  void listLocks() {
+    doReturn(Stream.of(LOCK)).when(jdbcTemplate).queryForStream(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    whenIListLocks("my_unique%");
+    assertThat(listLocksResult).containsExactly(LOCK);
+    verify(jdbcTemplate).queryForStream(eq(LockSqlDialect.POSTGRESQL.listSql("locks")),
+      argThat((SqlParameterSource parameters) -> hasValues(parameters, Map.of("prefix", "my!_unique!%%", "now", NOW.toEpochMilli()))), any(RowMapper.class));
+  }
+
+  private void givenTheAcquireUpdates(int rows) {
+    doReturn(rows).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+  }
+
+  private void givenTheReleaseDeletes(int rows) {
+    doReturn(rows).when(jdbcTemplate).update(anyString(), any(SqlParameterSource.class));
+  }
+
+  private void givenTheSelectReturns(Lock... locks) {
+    doReturn(List.of(locks)).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+  }
+
+  private void whenILock() {
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  private void whenIUnlock() {
+    unlockResult = lockManager.unlock(LOCK);
+  }
+
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    try (var locks = lockManager.listLocks(prefix)) {
+      listLocksResult = locks.toList();
+    }
+  }
+
+  private void thenIExpectLock() {
+    assertThat(lockResult).isEqualTo(LOCK);
+  }
+
+  private void thenIExpectUnlock(boolean expected) {
+    assertThat(unlockResult).isEqualTo(expected);
+  }
+
+  private void thenIExpectGetLock(Optional<Lock> expected) {
+    assertThat(getLockResult).isEqualTo(expected);
+  }
+
+  private void thenTheAcquireIsInvoked(LockSqlDialect dialect) {
+    var expected = Map.<String, Object>of("uniqueIdentifier", UNIQUE_IDENTIFIER, "id", LOCK_ID,
+      "expiresAt", EXPIRES_AT.toInstant().toEpochMilli(), "now", NOW.toEpochMilli());
+    verify(jdbcTemplate).update(eq(dialect.acquireSql("locks")), argThat((SqlParameterSource parameters) -> hasValues(parameters, expected)));
+  }
+
+  private void thenTheReleaseIsInvoked() {
+    var expected = Map.<String, Object>of("uniqueIdentifier", UNIQUE_IDENTIFIER, "id", LOCK_ID);
+    verify(jdbcTemplate).update(eq(LockSqlDialect.POSTGRESQL.releaseSql("locks")), argThat((SqlParameterSource parameters) -> hasValues(parameters, expected)));
+    verify(jdbcTemplate, never()).update(eq(LockSqlDialect.POSTGRESQL.acquireSql("locks")), any(SqlParameterSource.class));
+  }
+
+  private void thenTheSelectIsInvoked() {
+    var expected = Map.<String, Object>of("uniqueIdentifier", UNIQUE_IDENTIFIER, "now", NOW.toEpochMilli());
+    verify(jdbcTemplate).query(eq(LockSqlDialect.POSTGRESQL.selectSql("locks")), argThat((SqlParameterSource parameters) -> hasValues(parameters, expected)),
+      any(RowMapper.class));
+  }
+
+  private static boolean hasValues(SqlParameterSource parameters, Map<String, Object> expected) {
+    return parameters instanceof MapSqlParameterSource map && map.getValues().equals(expected);
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private void thenTheLogsContains(String expectedErrorMessage) {
+    assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
+  }
+
+}
@@ -0,0 +1,18 @@
+package com.github.elgleidson.lock.cucumber.advisory;
+
+import com.github.elgleidson.lock.TestApplication;
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+// the advisory locks, their holders read from pg_locks, each session lock holding a connection of the pool until released
+@CucumberContextConfiguration
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  properties = {"lock-manager.jdbc.mode=advisory", "spring.datasource.hikari.maximum-pool-size=20"})
+public class TestContainerConfiguration {
+
+  @ServiceConnection
+  static final PostgreSQLContainer<?> postgresql = new PostgreSQLContainer<>("postgres:16.9");
+
+}
@@ -0,0 +1,18 @@
+package com.github.elgleidson.lock.cucumber.postgresql;
+
+import static io.cucumber.junit.platform.engine.Constants.GLUE_PROPERTY_NAME;
+import static io.cucumber.junit.platform.engine.Constants.PARALLEL_EXECUTION_ENABLED_PROPERTY_NAME;
+
+import org.junit.platform.suite.api.ConfigurationParameter;
+import org.junit.platform.suite.api.IncludeEngines;
+import org.junit.platform.suite.api.SelectClasspathResource;
+import org.junit.platform.suite.api.Suite;
+
+@Suite
+@IncludeEngines("cucumber")
+@SelectClasspathResource("com/github/elgleidson/lock/cucumber")
+@ConfigurationParameter(key = GLUE_PROPERTY_NAME, value = "com.github.elgleidson.lock.cucumber.steps,com.github.elgleidson.lock.cucumber.postgresql")
+@ConfigurationParameter(key = PARALLEL_EXECUTION_ENABLED_PROPERTY_NAME, value = "true")
+public class CucumberTest {
+
+}
@@ -1,62 +1,436 @@
 package com.github.elgleidson.lock;
 
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.expr;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.regex;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.ClusteredIndexOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.DeleteResult;
 import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DuplicateKeyException;
-import org.springframework.data.annotation.Id;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.index.Indexed;
-import org.springframework.data.mongodb.core.mapping.Document;
 
+/**
+ * Locks on a MongoDB collection, with a unique index on the unique identifier and a TTL index on the expiration.
+ * <p>The lock paths use the raw documents of the driver, with the id generated by the client, so there's no mapping
+ * (reflection, conversions) and no document read back on any of them.</p>
+ * <p>With the {@link Layout#UNIQUE_IDENTIFIER} and {@link Layout#CLUSTERED} layouts, the unique identifier is the {@code _id}
+ * and the lock id is the {@code owner}, so there's no unique index on the unique identifier to update on every write.</p>
+ * <p>With these layouts, the expirations can also be computed with the server's clock ({@code $$NOW}) instead of the
+ * application's, so skewed clocks across the instances don't shift how long the locks last. Acquiring a lock is then an
+ * upsert that takes over an expired lock right away, instead of waiting for the TTL monitor to remove it.</p>
+ * <p>Under high acquire rates, the lock inserts arriving within a short window can go together in one unordered
+ * {@code bulkWrite}, so the throughput is bounded by the batch size rather than the round trip.</p>
+ * <p>The acquires waiting for a lock are woken up by a single change stream on the lock releases, instead of polling.</p>
+ * <p>With a session, the locks are held by a single document of the instance instead, heartbeated for all of them: they
+ * don't expire on their own ({@code expiresIn} is ignored), but as long as the session lives, and a crashed instance's
+ * locks are taken over once its session lapses.</p>
+ */
 @Slf4j
-public class LockManagerMongo implements LockManager {
+public class LockManagerMongo implements LockManager, AutoCloseable {
+
+  static final String COLLECTION = "locks";
+  static final String ID = "_id";
+  static final String UNIQUE_IDENTIFIER = "uniqueIdentifier";
+  static final String EXPIRES_AT = "expiresAt";
+  static final String OWNER = "owner";
+  static final String SESSION = "session";
+  // error code of a collection that already exists
+  private static final int NAMESPACE_EXISTS = 48;
+  private static final String NOW = "$$NOW";
+  private static final Bson EXPIRES_AT_PROJECTION = Projections.include(EXPIRES_AT);
+  // the expiration of the session locks, never reached: neither the TTL monitor nor an acquire with the server's clock
+  // removes them, only the next acquire once their session lapses
+  static final Instant NO_EXPIRATION = Instant.parse("9999-12-31T23:59:59Z");
 
   private final MongoTemplate mongoTemplate;
+  private final Layout layout;
+  private final boolean serverClock;
+  private final boolean batching;
+  // null when the waiters poll
+  private final LockReleaseWatcherMongo releaseWatcher;
+  private final Duration waitPollInterval;
+  // null when the locks only expire on their own
+  private final LockSessionMongo session;
+  // the fields the unique identifier and the lock id are stored in, depending on the layout
+  private final String uniqueIdentifierField;
+  private final String lockIdField;
+  private final Bson lockProjection;
+  private final List<LockCollection> lockCollections;
+  private final LockStatistics lockStatistics;
   private final Clock clock;
+  private final Supplier<ObjectId> idSupplier;
+  // completed unless ensureIndexes() is called, as the indexes are then someone else's job (e.g. a migration)
+  private final AtomicReference<CompletableFuture<Void>> indexesReady = new AtomicReference<>(CompletableFuture.completedFuture(null));
 
   public LockManagerMongo(MongoTemplate mongoTemplate) {
-    this(mongoTemplate, Clock.systemUTC());
+    this(mongoTemplate, new LockStatistics());
+  }
+
+  public LockManagerMongo(MongoTemplate mongoTemplate, LockStatistics lockStatistics) {
+    this(mongoTemplate, lockStatistics, Options.builder().build());
+  }
+
+  public LockManagerMongo(MongoTemplate mongoTemplate, LockStatistics lockStatistics, Options options) {
+    this(mongoTemplate, lockStatistics, options, Clock.systemUTC(), ObjectId::new);
   }
 
-  protected LockManagerMongo(MongoTemplate mongoTemplate, Clock clock) {
+  protected LockManagerMongo(MongoTemplate mongoTemplate, LockStatistics lockStatistics, Options options, Clock clock,
+                             Supplier<ObjectId> idSupplier) {
+    var layout = options.layout();
+    var collections = options.collections();
+    var batchSize = options.batchSize();
+    var sessionTimeout = options.sessionTimeout();
+    var acquireWriteConcern = options.acquireWriteConcern();
+    var releaseWriteConcern = options.releaseWriteConcern();
+    var readPreference = options.readPreference();
+    var waitPollInterval = options.waitPollInterval();
     this.mongoTemplate = mongoTemplate;
+    this.layout = layout;
+    this.serverClock = options.serverClock();
+    this.uniqueIdentifierField = layout == Layout.OBJECT_ID ? UNIQUE_IDENTIFIER : ID;
+    this.lockIdField = layout == Layout.OBJECT_ID ? ID : OWNER;
+    // the _id is always returned
+    var lockIdOrUniqueIdentifier = layout == Layout.OBJECT_ID ? UNIQUE_IDENTIFIER : OWNER;
+    this.lockProjection = sessionTimeout != null
+      ? Projections.include(lockIdOrUniqueIdentifier, EXPIRES_AT, SESSION)
+      : Projections.include(lockIdOrUniqueIdentifier, EXPIRES_AT);
+    this.batching = batchSize > 1;
+    this.lockCollections = IntStream.range(0, collections)
+      .mapToObj(index -> {
+        var name = collectionName(index, collections);
+        var lockCollection = mongoTemplate.getCollection(name);
+        var acquire = acquireWriteConcern != null ? lockCollection.withWriteConcern(acquireWriteConcern) : lockCollection;
+        var release = releaseWriteConcern != null ? lockCollection.withWriteConcern(releaseWriteConcern) : lockCollection;
+        var insertBatcher = batching ? new LockWriteBatcherMongo(acquire, batchSize, options.batchWindow()) : null;
+        return new LockCollection(name, acquire, release, readPreference != null ? lockCollection.withReadPreference(readPreference) : lockCollection,
+          insertBatcher);
+      })
+      .toList();
+    this.releaseWatcher = options.watchReleases()
+      ? new LockReleaseWatcherMongo(mongoTemplate::getDb, lockCollections.stream().map(LockCollection::name).toList(), waitPollInterval)
+      : null;
+    this.waitPollInterval = waitPollInterval;
+    this.session = sessionTimeout != null ? new LockSessionMongo(sessionCollection(mongoTemplate, acquireWriteConcern), sessionTimeout, clock, idSupplier) : null;
+    this.lockStatistics = lockStatistics;
     this.clock = clock;
+    this.idSupplier = idSupplier;
+  }
+
+  private static MongoCollection<Document> sessionCollection(MongoTemplate mongoTemplate, WriteConcern acquireWriteConcern) {
+    // as durable as the locks it holds
+    var sessions = mongoTemplate.getCollection(LockSessionMongo.COLLECTION);
+    return acquireWriteConcern != null ? sessions.withWriteConcern(acquireWriteConcern) : sessions;
+  }
+
+  /**
+   * @return the name of the lock collection, "locks" when there's only one, or "locks_0" to "locks_{n-1}" otherwise.
+   */
+  static String collectionName(int index, int collections) {
+    return collections == 1 ? COLLECTION : COLLECTION + "_" + index;
+  }
+
+  private LockCollection lockCollection(String uniqueIdentifier) {
+    // String.hashCode() is specified, so every instance routes a unique identifier to the same collection
+    return lockCollections.get(Math.floorMod(uniqueIdentifier.hashCode(), lockCollections.size()));
+  }
+
+  /**
+   * Creates the indexes of the lock collections that are missing (the unique one on the unique identifier, unless it's the
+   * {@code _id}, and the TTL one on the expiration), in the background, and the clustered collections that don't exist yet.
+   * <p>The existing indexes are listed once, so a restart with the indexes in place costs a single round trip. Until the
+   * indexes are there, {@link #lock(String, Duration)} waits for them, as a lock taken without the unique index could be
+   * acquired twice. If creating them fails, the next lock tries again.</p>
+   * @return completes once the indexes exist.
+   */
+  public CompletableFuture<Void> ensureIndexes() {
+    var ensured = new CompletableFuture<Void>();
+    indexesReady.set(ensured);
+    createIndexesInBackground(ensured);
+    return ensured;
+  }
+
+  private void createIndexesInBackground(CompletableFuture<Void> ensured) {
+    Thread.ofVirtual().name("lock-manager-mongodb-indexes").start(() -> {
+      try {
+        createMissingIndexes();
+        ensured.complete(null);
+      } catch (Exception ex) {
+        log.error("error ensureIndexes(): message={}", ex.getMessage());
+        ensured.completeExceptionally(ex);
+      }
+    });
+  }
+
+  private void createMissingIndexes() {
+    lockCollections.forEach(lockCollection -> {
+      if (layout == Layout.CLUSTERED) {
+        createClusteredCollection(mongoTemplate.getDb(), lockCollection.name());
+      }
+      createMissingIndexes(lockCollection.acquire());
+    });
+    if (session != null) {
+      session.createIndexes();
+    }
+  }
+
+  private void createClusteredCollection(MongoDatabase database, String name) {
+    try {
+      // the documents are stored in the _id index itself
+      database.createCollection(name, new CreateCollectionOptions().clusteredIndexOptions(new ClusteredIndexOptions(Indexes.ascending(ID), true)));
+    } catch (MongoCommandException ex) {
+      if (ex.getErrorCode() != NAMESPACE_EXISTS) {
+        throw ex;
+      }
+    }
+  }
+
+  private void createMissingIndexes(MongoCollection<Document> acquireCollection) {
+    var existing = acquireCollection.listIndexes().into(new ArrayList<>()).stream().map(index -> index.getString("name")).toList();
+    if (layout == Layout.OBJECT_ID && !existing.contains(UNIQUE_IDENTIFIER)) {
+      acquireCollection.createIndex(Indexes.ascending(UNIQUE_IDENTIFIER), new IndexOptions().name(UNIQUE_IDENTIFIER).unique(true));
+    }
+    if (!existing.contains(EXPIRES_AT)) {
+      // the documents expire at their expiresAt
+      acquireCollection.createIndex(Indexes.ascending(EXPIRES_AT), new IndexOptions().name(EXPIRES_AT).expireAfter(0L, TimeUnit.SECONDS));
+    }
+    log.debug("indexes ready, existing={}", existing);
+  }
+
+  private void awaitIndexes() {
+    var ready = indexesReady.get();
+    if (ready.isCompletedExceptionally()) {
+      // tries again, once for all the locks waiting on it
+      var retry = new CompletableFuture<Void>();
+      if (indexesReady.compareAndSet(ready, retry)) {
+        createIndexesInBackground(retry);
+      }
+      ready = indexesReady.get();
+    }
+    try {
+      ready.join();
+    } catch (CompletionException ex) {
+      throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+    }
   }
 
   @Override
   public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
     try {
       log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn);
-      var lockMongoEntity = createMongoEntity(uniqueIdentifier, expiresIn);
-      var inserted = mongoTemplate.insert(lockMongoEntity);
-      var lock = convertToLock(inserted);
+      awaitIndexes();
+      var id = idSupplier.get();
+      var expiresAt = acquire(uniqueIdentifier, id, expiresIn);
+      var lock = new Lock(id.toHexString(), uniqueIdentifier, expiresAt(expiresAt));
+      lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
       log.debug("locked={}", lock);
       return lock;
     } catch (Exception ex) {
-      if (ex instanceof DuplicateKeyException) {
+      if (isDuplicateKey(ex)) {
         // this is to track concurrent calls
         log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+        lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
         throw LockFailureException.alreadyLocked(uniqueIdentifier);
       }
       log.error("error lock(): message={}", ex.getMessage());
+      lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
       throw LockFailureException.other(uniqueIdentifier, ex);
     }
   }
 
+  private static boolean isDuplicateKey(Exception ex) {
+    // a MongoWriteException from an insert, a MongoCommandException from an upsert
+    return ex instanceof MongoServerException serverException && ErrorCategory.fromErrorCode(serverException.getCode()) == ErrorCategory.DUPLICATE_KEY;
+  }
+
+  private Instant acquire(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    try {
+      return serverClock ? acquireWithServerClock(uniqueIdentifier, id, expiresIn) : insert(uniqueIdentifier, id, expiresIn);
+    } catch (MongoServerException ex) {
+      if (session == null || !isDuplicateKey(ex) || !removeLapsed(uniqueIdentifier)) {
+        throw ex;
+      }
+      // a lock of a lapsed session is taken over
+      return serverClock ? acquireWithServerClock(uniqueIdentifier, id, expiresIn) : insert(uniqueIdentifier, id, expiresIn);
+    }
+  }
+
+  private boolean removeLapsed(String uniqueIdentifier) {
+    var holder = holder(uniqueIdentifier);
+    if (holder == null) {
+      // released meanwhile
+      return true;
+    }
+    var holderSession = holder.get(SESSION);
+    if (holderSession == null || session.isAlive(holderSession)) {
+      return false;
+    }
+    log.debug("taking over the lock of a lapsed session: uniqueIdentifier={}, session={}", uniqueIdentifier, holderSession);
+    // only if it's still the lapsed session's
+    lockCollection(uniqueIdentifier).acquire().deleteOne(and(eq(ID, holder.get(ID)), eq(SESSION, holderSession)));
+    return true;
+  }
+
+  private Instant insert(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    var expiresAt = session != null ? NO_EXPIRATION : Instant.now(clock).plus(expiresIn);
+    var document = new Document(uniqueIdentifierField, uniqueIdentifier).append(lockIdField, id).append(EXPIRES_AT, Date.from(expiresAt));
+    if (session != null) {
+      document.append(SESSION, session.id());
+    }
+    var lockCollection = lockCollection(uniqueIdentifier);
+    if (batching) {
+      // a duplicate key fails this write only, as a MongoWriteException
+      lockCollection.insertBatcher().insert(document);
+    } else {
+      lockCollection.acquire().insertOne(document);
+    }
+    return expiresAt;
+  }
+
+  private Instant acquireWithServerClock(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    // takes the lock over when it has expired, or inserts it when there's none, failing on the _id when it's held
+    var fields = new ArrayList<Field<?>>(List.of(new Field<>(OWNER, id)));
+    if (session != null) {
+      fields.add(new Field<>(EXPIRES_AT, Date.from(NO_EXPIRATION)));
+      fields.add(new Field<>(SESSION, session.id()));
+    } else {
+      fields.add(new Field<>(EXPIRES_AT, new Document("$add", List.of(NOW, expiresIn.toMillis()))));
+    }
+    var document = lockCollection(uniqueIdentifier).acquire().findOneAndUpdate(
+      and(eq(ID, uniqueIdentifier), expr(new Document("$lte", List.of("$" + EXPIRES_AT, NOW)))),
+      List.of(Aggregates.set(fields)),
+      new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(EXPIRES_AT_PROJECTION));
+    return document.getDate(EXPIRES_AT).toInstant();
+  }
+
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>The waiter is woken up as soon as its holder's lock document is deleted, by the change stream on the lock releases,
+   * so there's no polling of the primary meanwhile. It only polls once the lock has expired but isn't removed yet (e.g. the
+   * TTL monitor is late), or when there's no change stream.</p>
+   */
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    var deadline = System.nanoTime() + waitFor.toNanos();
+    while (true) {
+      try {
+        return lock(uniqueIdentifier, expiresIn);
+      } catch (LockFailureException ex) {
+        if (!ex.isAlreadyLocked() || deadline - System.nanoTime() <= 0) {
+          throw ex;
+        }
+        awaitRelease(uniqueIdentifier, deadline, ex);
+      }
+    }
+  }
+
+  private void awaitRelease(String uniqueIdentifier, long deadline, LockFailureException alreadyLocked) {
+    var holder = holder(uniqueIdentifier);
+    if (holder == null) {
+      // released meanwhile
+      return;
+    }
+    var deleted = releaseWatcher != null ? releaseWatcher.awaitDeletion(holder.get(ID)) : null;
+    try {
+      // it may have been released before the waiter was registered
+      if (deleted != null && !holder.equals(holder(uniqueIdentifier))) {
+        return;
+      }
+      var wait = Math.min(deadline - System.nanoTime(), wakeUpIn(holder, deleted != null));
+      if (deleted != null) {
+        deleted.get(wait, TimeUnit.NANOSECONDS);
+      } else {
+        Thread.sleep(Duration.ofNanos(Math.max(wait, 0)));
+      }
+    } catch (TimeoutException | ExecutionException ex) {
+      // tries again
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw alreadyLocked;
+    } finally {
+      if (deleted != null) {
+        releaseWatcher.forget(holder.get(ID), deleted);
+      }
+    }
+  }
+
+  private Document holder(String uniqueIdentifier) {
+    // expired or not, as it's its deletion that is waited for, and on the acquire collection, as a lagging secondary could
+    // still show a holder whose release has already been seen
+    return lockCollection(uniqueIdentifier).acquire().find(eq(uniqueIdentifierField, uniqueIdentifier)).projection(lockProjection).first();
+  }
+
+  private long wakeUpIn(Document holder, boolean watching) {
+    var untilExpiry = Duration.between(Instant.now(clock), holder.getDate(EXPIRES_AT).toInstant()).toNanos();
+    if (session != null && holder.get(SESSION) != null) {
+      // its session may lapse before, and its release isn't seen then
+      untilExpiry = Math.min(untilExpiry, session.timeout().toNanos());
+    }
+    if (untilExpiry <= 0) {
+      // expired, but not removed yet
+      return waitPollInterval.toNanos();
+    }
+    // the change stream tells when it's released, not when it expires (when the server clock takes it over)
+    return watching ? untilExpiry : Math.min(untilExpiry, waitPollInterval.toNanos());
+  }
+
   @Override
   public boolean unlock(Lock lock) {
     try {
       log.debug("trying to unlock {}", lock);
+      if (!ObjectId.isValid(lock.id())) {
+        // not a lock from this lock manager
+        return false;
+      }
       // only unlocks if lock id and unique identifier match
-      var query = query(where("id").is(lock.id()).and("uniqueIdentifier").is(lock.uniqueIdentifier())).limit(1);
-      var removed = mongoTemplate.remove(query, LockMongoEntity.class);
-      var unlocked = removed.getDeletedCount() > 0;
+      var filter = and(eq(lockIdField, new ObjectId(lock.id())), eq(uniqueIdentifierField, lock.uniqueIdentifier()));
+      var unlocked = released(lockCollection(lock.uniqueIdentifier()).release().deleteOne(filter));
       log.debug("unlocked={}", unlocked);
       return unlocked;
     } catch (Exception ex) {
@@ -66,23 +440,313 @@ public class LockManagerMongo implements LockManager {
     }
   }
 
-  private Lock convertToLock(LockMongoEntity lockMongoEntity) {
-    return new Lock(lockMongoEntity.id(), lockMongoEntity.uniqueIdentifier(), lockMongoEntity.expiresAt().atZone(ZoneOffset.UTC));
+  private boolean released(DeleteResult deleteResult) {
+    // an unacknowledged (w:0) release can't tell, but the lock expires anyway (TTL) if it didn't go through
+    return !deleteResult.wasAcknowledged() || deleteResult.getDeletedCount() > 0;
   }
 
-  private LockMongoEntity createMongoEntity(String uniqueIdentifier, Duration expiresIn) {
-    var expiresAt = LocalDateTime.now(clock).plus(expiresIn);
-    return new LockMongoEntity(null, uniqueIdentifier, expiresAt);
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn);
+    var locksByCollection = locks.stream()
+      .filter(this::renewable)
+      .collect(Collectors.groupingBy(lock -> lockCollection(lock.uniqueIdentifier())));
+    // a single updateMany per collection
+    var renewed = new ArrayList<Lock>(locks.size());
+    locksByCollection.forEach((lockCollection, collectionLocks) -> renewed.addAll(renewAll(lockCollection, collectionLocks, expiresIn)));
+    log.debug("renewed={}", renewed.size());
+    return renewed;
   }
 
-  @Document("locks")
-  record LockMongoEntity(
-    @Id
-    String id,
-    @Indexed(unique = true, name = "uniqueIdentifier")
-    String uniqueIdentifier,
-    @Indexed(expireAfter = "0s", name = "expiresAt")
-    LocalDateTime expiresAt
-  ) {
+  private List<Lock> renewAll(LockCollection lockCollection, List<Lock> locks, Duration expiresIn) {
+    // only the ones still held by their holders, and not expired, as the TTL monitor may remove those anytime
+    var filter = lockFilter(heldBy(locks));
+    if (session != null) {
+      // the session locks don't expire on their own, they're only still held while their session lives
+      var sessionsAlive = new HashMap<Object, Boolean>();
+      return lockCollection.acquire().find(filter).projection(lockProjection).into(new ArrayList<>()).stream()
+        .filter(document -> !lapsed(document, sessionsAlive))
+        .map(this::convertToLock)
+        .toList();
+    }
+    // taken before the call, so the document never expires before the lock says
+    var expiresAt = Instant.now(clock).plus(expiresIn);
+    var updated = serverClock
+      ? lockCollection.acquire().updateMany(filter, List.of(Aggregates.set(new Field<>(EXPIRES_AT, new Document("$add", List.of(NOW, expiresIn.toMillis()))))))
+      : lockCollection.acquire().updateMany(filter, Updates.set(EXPIRES_AT, Date.from(expiresAt)));
+    if (!serverClock && updated.getMatchedCount() == locks.size()) {
+      return locks.stream().map(lock -> new Lock(lock.id(), lock.uniqueIdentifier(), expiresAt.atZone(ZoneOffset.UTC))).toList();
+    }
+    // some were lost, the ones still held are the ones renewed; or read back for the expirations set by the server's clock
+    return lockCollection.acquire().find(filter).projection(lockProjection).into(new ArrayList<>()).stream().map(this::convertToLock).toList();
   }
+
+  private boolean renewable(Lock lock) {
+    if (ObjectId.isValid(lock.id())) {
+      return true;
+    }
+    // reported as lost, as it can't be held here
+    log.warn("renewAll(): not a lock from this lock manager: {}", lock);
+    return false;
+  }
+
+  private Bson heldBy(List<Lock> locks) {
+    var ids = locks.stream().map(lock -> new ObjectId(lock.id())).toList();
+    // the lock ids are unique, so matching them only matches the locks still held by their holders (on the _id index when
+    // it's the unique identifier, as a lock id is only ever held for the unique identifier it was generated for)
+    return layout == Layout.OBJECT_ID
+      ? in(ID, ids)
+      : and(in(ID, locks.stream().map(Lock::uniqueIdentifier).toList()), in(OWNER, ids));
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    return Optional.ofNullable(lockCollection(uniqueIdentifier).read().find(lockFilter(eq(uniqueIdentifierField, uniqueIdentifier))).projection(lockProjection).first())
+      .filter(document -> !lapsed(document, new HashMap<>()))
+      .map(this::convertToLock);
+  }
+
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    // a prefix doesn't tell the collection, so each one is queried in turn, once the previous one is consumed
+    var opened = new ArrayList<Stream<Lock>>();
+    return lockCollections.stream()
+      .flatMap(lockCollection -> {
+        var locks = listLocks(lockCollection.read(), prefix);
+        opened.add(locks);
+        return locks;
+      })
+      .onClose(() -> opened.forEach(Stream::close));
+  }
+
+  private Stream<Lock> listLocks(MongoCollection<Document> readCollection, String prefix) {
+    // the cursor fetches the documents in batches as the stream is consumed
+    var cursor = readCollection.find(lockFilter(regex(uniqueIdentifierField, prefixRegex(prefix)))).projection(lockProjection).cursor();
+    // each session is only looked up once
+    var sessionsAlive = new HashMap<Object, Boolean>();
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(cursor::close)
+      .filter(document -> !lapsed(document, sessionsAlive))
+      .map(this::convertToLock);
+  }
+
+  private boolean lapsed(Document document, Map<Object, Boolean> sessionsAlive) {
+    // released as soon as its session lapses, even if it isn't taken over yet
+    var holderSession = session != null ? document.get(SESSION) : null;
+    return holderSession != null && !sessionsAlive.computeIfAbsent(holderSession, session::isAlive);
+  }
+
+  /**
+   * Closes the change stream of the releases, if open, and ends the session, if any, so its locks can be taken over
+   * straight away.
+   */
+  @Override
+  public void close() {
+    if (releaseWatcher != null) {
+      releaseWatcher.close();
+    }
+    if (session != null) {
+      session.close();
+    }
+  }
+
+  private Bson lockFilter(Bson uniqueIdentifierFilter) {
+    // the TTL monitor runs periodically, so expired locks may still be there for a while
+    return and(uniqueIdentifierFilter, serverClock
+      ? expr(new Document("$gt", List.of("$" + EXPIRES_AT, NOW)))
+      : gt(EXPIRES_AT, Date.from(Instant.now(clock))));
+  }
+
+  private String prefixRegex(String prefix) {
+    // an anchored regex without special characters can use the uniqueIdentifier (or _id) index
+    return "^" + prefix.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+  }
+
+  private Lock convertToLock(Document document) {
+    return new Lock(document.getObjectId(lockIdField).toHexString(), document.getString(uniqueIdentifierField),
+      expiresAt(document.getDate(EXPIRES_AT).toInstant()));
+  }
+
+  private static ZonedDateTime expiresAt(Instant expiresAt) {
+    // a session lock has no expiration of its own
+    return expiresAt.equals(NO_EXPIRATION) ? null : expiresAt.atZone(ZoneOffset.UTC);
+  }
+
+  private record LockCollection(String name, MongoCollection<Document> acquire, MongoCollection<Document> release,
+                                MongoCollection<Document> read, LockWriteBatcherMongo insertBatcher) {
+  }
+
+  /**
+   * How the lock manager stores, writes and waits for the locks, built with {@link #builder()}.
+   */
+  public record Options(WriteConcern acquireWriteConcern, WriteConcern releaseWriteConcern, ReadPreference readPreference, int collections,
+                        Layout layout, boolean serverClock, int batchSize, Duration batchWindow, boolean watchReleases,
+                        Duration waitPollInterval, Duration sessionTimeout) {
+
+    public Options {
+      if (collections < 1) {
+        throw new IllegalArgumentException("collections must be at least 1, but was " + collections);
+      }
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be at least 1, but was " + batchSize);
+      }
+      if (serverClock && layout == Layout.OBJECT_ID) {
+        throw new IllegalArgumentException("the server clock needs the unique identifier as the _id, but the layout was " + layout);
+      }
+    }
+
+    public static Builder builder() {
+      return new Builder();
+    }
+
+    public static final class Builder {
+
+      private WriteConcern acquireWriteConcern;
+      private WriteConcern releaseWriteConcern;
+      private ReadPreference readPreference;
+      private int collections = 1;
+      private Layout layout = Layout.OBJECT_ID;
+      private boolean serverClock;
+      private int batchSize = 1;
+      private Duration batchWindow = Duration.ZERO;
+      private boolean watchReleases = true;
+      private Duration waitPollInterval = Duration.ofSeconds(1);
+      private Duration sessionTimeout;
+
+      private Builder() {
+      }
+
+      /**
+       * @param acquireWriteConcern write concern of the lock acquisitions, or null for the collection's one.
+       */
+      public Builder acquireWriteConcern(WriteConcern acquireWriteConcern) {
+        this.acquireWriteConcern = acquireWriteConcern;
+        return this;
+      }
+
+      /**
+       * @param releaseWriteConcern write concern of the lock releases, or null for the collection's one.
+       */
+      public Builder releaseWriteConcern(WriteConcern releaseWriteConcern) {
+        this.releaseWriteConcern = releaseWriteConcern;
+        return this;
+      }
+
+      /**
+       * @param readPreference read preference of getLock, isLocked and listLocks, or null for the collection's one.
+       */
+      public Builder readPreference(ReadPreference readPreference) {
+        this.readPreference = readPreference;
+        return this;
+      }
+
+      /**
+       * @param collections how many collections the locks are spread across, each unique identifier always going to the
+       *                    same one. More than one spreads the writes, the unique index and the TTL monitor's work across
+       *                    them. 1 by default.
+       */
+      public Builder collections(int collections) {
+        this.collections = collections;
+        return this;
+      }
+
+      /**
+       * @param layout how the lock documents are keyed, {@link Layout#OBJECT_ID} by default. Every instance must use the
+       *               same one, and the lock collections are only created clustered by
+       *               {@link LockManagerMongo#ensureIndexes()} when they don't exist yet.
+       */
+      public Builder layout(Layout layout) {
+        this.layout = layout;
+        return this;
+      }
+
+      /**
+       * @param serverClock whether the expirations are computed and compared with the server's clock rather than the
+       *                    application's. Only with the {@link Layout#UNIQUE_IDENTIFIER} and {@link Layout#CLUSTERED}
+       *                    layouts, as an expired lock is taken over by replacing its owner.
+       */
+      public Builder serverClock(boolean serverClock) {
+        this.serverClock = serverClock;
+        return this;
+      }
+
+      /**
+       * @param batchSize up to how many lock inserts go together in one unordered bulkWrite, or 1 (the default) to send each
+       *                  one on its own. The releases aren't batched, as each one tells whether it matched, and with the
+       *                  server clock neither are the acquisitions, as each one returns the expiration the server computed.
+       */
+      public Builder batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+      }
+
+      /**
+       * @param batchWindow how long the first insert of a batch waits for others to join it.
+       */
+      public Builder batchWindow(Duration batchWindow) {
+        this.batchWindow = batchWindow;
+        return this;
+      }
+
+      /**
+       * @param watchReleases whether the acquires waiting for a lock are woken up by a change stream on the lock releases,
+       *                      shared by all of them, rather than polling, as by default. Without change streams (e.g. a
+       *                      standalone server), they poll.
+       */
+      public Builder watchReleases(boolean watchReleases) {
+        this.watchReleases = watchReleases;
+        return this;
+      }
+
+      /**
+       * @param waitPollInterval how often the waiters poll once the lock they wait for has expired but isn't removed yet
+       *                         (the TTL monitor runs every minute), or when there's no change stream. 1s by default.
+       */
+      public Builder waitPollInterval(Duration waitPollInterval) {
+        this.waitPollInterval = waitPollInterval;
+        return this;
+      }
+
+      /**
+       * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, which heartbeats every third
+       *                       of it, or null (the default) for the locks to only expire on their own. Every instance must use
+       *                       a session, as the ones without can't take over a lapsed one's locks.
+       */
+      public Builder sessionTimeout(Duration sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        return this;
+      }
+
+      public Options build() {
+        return new Options(acquireWriteConcern, releaseWriteConcern, readPreference, collections, layout, serverClock, batchSize,
+          batchWindow, watchReleases, waitPollInterval, sessionTimeout);
+      }
+
+    }
+
+  }
+
+  /**
+   * How the lock documents are keyed.
+   */
+  public enum Layout {
+    /**
+     * {@code {_id: <lock id>, uniqueIdentifier, expiresAt}}, with a unique index on the unique identifier.
+     */
+    OBJECT_ID,
+    /**
+     * {@code {_id: <unique identifier>, owner: <lock id>, expiresAt}}, so the {@code _id} index is the only unique one.
+     */
+    UNIQUE_IDENTIFIER,
+    /**
+     * As {@link #UNIQUE_IDENTIFIER}, in clustered collections: the documents are stored in the {@code _id} index itself.
+     */
+    CLUSTERED
+  }
+
 }
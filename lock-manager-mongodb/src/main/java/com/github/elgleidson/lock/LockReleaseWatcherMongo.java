@@ -0,0 +1,189 @@
+package com.github.elgleidson.lock;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * Wakes up the acquires of {@link LockManagerMongo} waiting for a lock to be released, through a single change stream on the
+ * deletes of the lock collections, shared by all of them.
+ * <p>The change stream is opened by the first waiter, and closed once none is left. If it fails (e.g. on a standalone
+ * server, which has no change streams), the waiters are woken up to fall back on polling, and the first one waiting after
+ * the retry interval opens it again.</p>
+ */
+@Slf4j
+final class LockReleaseWatcherMongo implements AutoCloseable {
+
+  private static final String ID = "_id";
+
+  private final Supplier<MongoDatabase> database;
+  private final List<Bson> pipeline;
+  private final long retryIntervalNanos;
+  // the waiters by the _id of the lock document they wait for
+  private final Map<Object, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+  private final ReentrantLock mutex = new ReentrantLock();
+  private volatile boolean watching;
+  // guarded by mutex, the open change stream, if any
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+  // guarded by mutex
+  private long retryAt;
+  // guarded by mutex
+  private boolean closed;
+
+  LockReleaseWatcherMongo(Supplier<MongoDatabase> database, List<String> collectionNames, Duration retryInterval) {
+    this.database = database;
+    this.pipeline = List.of(Aggregates.match(and(eq("operationType", "delete"), in("ns.coll", collectionNames))));
+    this.retryIntervalNanos = retryInterval.toNanos();
+    this.retryAt = System.nanoTime();
+  }
+
+  /**
+   * Registers a waiter for the deletion of a lock document, opening the change stream if it isn't yet.
+   * <p>A deletion is only seen once registered, so the lock should be checked again afterwards.</p>
+   * @param id the {@code _id} of the lock document.
+   * @return completes once the lock document is deleted (or the change stream fails), or null if there's no change stream.
+   */
+  CompletableFuture<Void> awaitDeletion(Object id) {
+    if (!watching && !watch()) {
+      return null;
+    }
+    var deleted = new CompletableFuture<Void>();
+    waiters.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(deleted);
+    if (!watching) {
+      // it stopped before the waiter was registered, so it wouldn't be woken up
+      forget(id, deleted);
+      return null;
+    }
+    return deleted;
+  }
+
+  /**
+   * Unregisters a waiter, once it's no longer waiting, closing the change stream if it was the last one.
+   */
+  void forget(Object id, CompletableFuture<Void> deleted) {
+    waiters.computeIfPresent(id, (key, deletions) -> {
+      deletions.remove(deleted);
+      return deletions.isEmpty() ? null : deletions;
+    });
+    if (waiters.isEmpty()) {
+      unwatch(false);
+    }
+  }
+
+  private boolean watch() {
+    mutex.lock();
+    try {
+      if (watching) {
+        return true;
+      }
+      if (closed || System.nanoTime() - retryAt < 0) {
+        return false;
+      }
+      // opened before anyone registers, so no deletion is missed once registered
+      var opened = database.get().watch(pipeline).cursor();
+      cursor = opened;
+      watching = true;
+      Thread.ofVirtual().name("lock-manager-mongodb-releases").start(() -> read(opened));
+      return true;
+    } catch (RuntimeException ex) {
+      stopped(null, ex);
+      return false;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void read(MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened) {
+    try (opened) {
+      while (true) {
+        var documentKey = opened.next().getDocumentKey();
+        // e.g. an invalidate event, the next one fails as the change stream is closed
+        if (documentKey != null) {
+          wakeUp(value(documentKey.get(ID)));
+        }
+      }
+    } catch (RuntimeException ex) {
+      stopped(opened, ex);
+    }
+  }
+
+  private static Object value(BsonValue id) {
+    // as the _id of the lock documents read by the waiters
+    if (id.isObjectId()) {
+      return id.asObjectId().getValue();
+    }
+    return id.isString() ? id.asString().getValue() : id;
+  }
+
+  private void wakeUp(Object id) {
+    var deletions = waiters.remove(id);
+    if (deletions != null) {
+      deletions.forEach(deleted -> deleted.complete(null));
+    }
+  }
+
+  private void stopped(MongoChangeStreamCursor<ChangeStreamDocument<Document>> failed, RuntimeException ex) {
+    mutex.lock();
+    try {
+      if (failed != cursor) {
+        // closed on purpose, it's the reader noticing it
+        return;
+      }
+      cursor = null;
+      watching = false;
+      retryAt = System.nanoTime() + retryIntervalNanos;
+    } finally {
+      mutex.unlock();
+    }
+    log.warn("error watching the lock releases, polling instead: message={}", ex.getMessage());
+    // they poll until it's opened again
+    waiters.keySet().forEach(this::wakeUp);
+  }
+
+  private void unwatch(boolean closing) {
+    MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened;
+    mutex.lock();
+    try {
+      closed |= closing;
+      // one may have registered meanwhile
+      if (cursor == null || !closing && !waiters.isEmpty()) {
+        return;
+      }
+      opened = cursor;
+      cursor = null;
+      watching = false;
+    } finally {
+      mutex.unlock();
+    }
+    // its reader stops on its next getMore at the latest
+    opened.close();
+    // the ones that registered as it was being closed check the lock again
+    waiters.keySet().forEach(this::wakeUp);
+  }
+
+  /**
+   * Closes the change stream, if open, the waiters falling back on polling.
+   */
+  @Override
+  public void close() {
+    unwatch(true);
+  }
+
+}
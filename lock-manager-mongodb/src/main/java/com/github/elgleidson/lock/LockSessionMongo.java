@@ -0,0 +1,159 @@
+package com.github.elgleidson.lock;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * The session of a {@link LockManagerMongo}: a single document, heartbeated for all the locks the instance holds.
+ * <p>The lock documents reference the session, and are held without an expiration of their own, as long as the session
+ * lives. Once the instance stops heartbeating (e.g. it crashed), the session expires, and the next one acquiring any of its
+ * locks takes it over.</p>
+ * <p>The session starts with the first lock. If it lapses anyway (e.g. the primary was unreachable for longer than the
+ * timeout), its locks are lost, and the next lock starts a new one.</p>
+ */
+@Slf4j
+final class LockSessionMongo implements AutoCloseable {
+
+  static final String COLLECTION = "lock_sessions";
+  private static final String ID = "_id";
+  private static final String EXPIRES_AT = "expiresAt";
+
+  private final MongoCollection<Document> sessions;
+  private final Duration timeout;
+  private final Clock clock;
+  private final Supplier<ObjectId> idSupplier;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private ObjectId id;
+  private ScheduledExecutorService heartbeat;
+
+  LockSessionMongo(MongoCollection<Document> sessions, Duration timeout, Clock clock, Supplier<ObjectId> idSupplier) {
+    this.sessions = sessions;
+    this.timeout = timeout;
+    this.clock = clock;
+    this.idSupplier = idSupplier;
+  }
+
+  Duration timeout() {
+    return timeout;
+  }
+
+  /**
+   * Creates the TTL index of the sessions, unless it exists, so the lapsed ones are removed.
+   */
+  void createIndexes() {
+    sessions.createIndex(Indexes.ascending(EXPIRES_AT), new IndexOptions().name(EXPIRES_AT).expireAfter(0L, TimeUnit.SECONDS));
+  }
+
+  /**
+   * @return the id of the session, starting it if there's none.
+   */
+  ObjectId id() {
+    mutex.lock();
+    try {
+      if (id == null) {
+        var started = idSupplier.get();
+        sessions.insertOne(new Document(ID, started).append(EXPIRES_AT, expiresAt()));
+        id = started;
+        log.debug("session started, id={}", id);
+      }
+      if (heartbeat == null) {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lock-manager-mongodb-session").factory());
+        var interval = timeout.toNanos() / 3;
+        heartbeat.scheduleAtFixedRate(this::heartbeat, interval, interval, TimeUnit.NANOSECONDS);
+      }
+      return id;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * @return true if the session hasn't lapsed (the TTL monitor may not have removed a lapsed one yet).
+   */
+  boolean isAlive(Object sessionId) {
+    return sessions.find(and(eq(ID, sessionId), gt(EXPIRES_AT, Date.from(Instant.now(clock))))).projection(Projections.include(ID)).first() != null;
+  }
+
+  private void heartbeat() {
+    ObjectId current;
+    mutex.lock();
+    try {
+      current = id;
+    } finally {
+      mutex.unlock();
+    }
+    if (current == null) {
+      return;
+    }
+    try {
+      // only renewed while it hasn't lapsed, as its locks may have been taken over already
+      var renewed = sessions.updateOne(and(eq(ID, current), gt(EXPIRES_AT, Date.from(Instant.now(clock)))), Updates.set(EXPIRES_AT, expiresAt()));
+      if (renewed.getMatchedCount() == 0) {
+        log.warn("session lapsed, its locks are lost: id={}", current);
+        lapsed(current);
+      }
+    } catch (Exception ex) {
+      // tries again on the next one, it only lapses if it keeps failing for longer than the timeout
+      log.error("error heartbeat(): message={}", ex.getMessage());
+    }
+  }
+
+  private Date expiresAt() {
+    return Date.from(Instant.now(clock).plus(timeout));
+  }
+
+  private void lapsed(ObjectId lapsed) {
+    mutex.lock();
+    try {
+      if (lapsed.equals(id)) {
+        id = null;
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Ends the session, so its locks can be taken over straight away.
+   */
+  @Override
+  public void close() {
+    mutex.lock();
+    try {
+      if (heartbeat != null) {
+        heartbeat.shutdownNow();
+        heartbeat = null;
+      }
+      if (id != null) {
+        sessions.deleteOne(eq(ID, id));
+        id = null;
+      }
+    } catch (Exception ex) {
+      // it lapses anyway
+      log.error("error close(): message={}", ex.getMessage());
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+package com.github.elgleidson.lock;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bson.Document;
+
+/**
+ * Batches the lock inserts of {@link LockManagerMongo} into unordered {@code bulkWrite} calls.
+ * <p>The first insert of a batch sends it once the window elapses, unless someone fills it up and sends it before. The
+ * others wait for their own result: the error of their own insert (e.g. a duplicate key), mapped by its index in the batch,
+ * as the inserts are unordered and one failing doesn't stop the others. Only the inserts are batched, as a
+ * {@link BulkWriteResult} only counts the deletes of the whole batch, so it can't tell each release whether it matched.</p>
+ */
+final class LockWriteBatcherMongo {
+
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+  private final MongoCollection<Document> collection;
+  private final int maxSize;
+  private final long windowNanos;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private List<PendingWrite> open;
+
+  LockWriteBatcherMongo(MongoCollection<Document> collection, int maxSize, Duration window) {
+    this.collection = collection;
+    this.maxSize = maxSize;
+    this.windowNanos = window.toNanos();
+  }
+
+  /**
+   * Inserts the document along with the others of its batch.
+   * @throws RuntimeException the error of this insert, or of the whole batch.
+   */
+  void insert(Document document) {
+    var pending = new PendingWrite(new InsertOneModel<>(document), new CompletableFuture<>());
+    List<PendingWrite> batch;
+    boolean first;
+    boolean full;
+    mutex.lock();
+    try {
+      first = open == null;
+      if (first) {
+        open = new ArrayList<>(maxSize);
+      }
+      batch = open;
+      batch.add(pending);
+      full = batch.size() >= maxSize;
+      if (full) {
+        open = null;
+      }
+    } finally {
+      mutex.unlock();
+    }
+    if (full) {
+      send(batch);
+    } else if (first && !sentWithinWindow(pending) && close(batch)) {
+      send(batch);
+    }
+    try {
+      pending.result().join();
+    } catch (CompletionException ex) {
+      throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+    }
+  }
+
+  private boolean sentWithinWindow(PendingWrite pending) {
+    try {
+      // returns early when someone fills the batch up and sends it meanwhile
+      pending.result().get(windowNanos, TimeUnit.NANOSECONDS);
+      return true;
+    } catch (ExecutionException ex) {
+      return true;
+    } catch (TimeoutException ex) {
+      return false;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private boolean close(List<PendingWrite> batch) {
+    mutex.lock();
+    try {
+      // it was already sent if someone filled it up meanwhile
+      if (open != batch) {
+        return false;
+      }
+      open = null;
+      return true;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void send(List<PendingWrite> batch) {
+    try {
+      var result = collection.bulkWrite(batch.stream().map(PendingWrite::model).toList(), UNORDERED);
+      batch.forEach(pending -> pending.result().complete(result));
+    } catch (MongoBulkWriteException ex) {
+      // the writes without an error of their own did go through
+      var errors = ex.getWriteErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+      for (var index = 0; index < batch.size(); index++) {
+        var error = errors.get(index);
+        if (error != null) {
+          // as a single write would have failed
+          batch.get(index).result().completeExceptionally(new MongoWriteException(error, ex.getServerAddress(), ex.getErrorLabels()));
+        } else if (ex.getWriteConcernError() != null) {
+          // applied, but not as durably as asked for
+          batch.get(index).result().completeExceptionally(ex);
+        } else {
+          batch.get(index).result().complete(ex.getWriteResult());
+        }
+      }
+    } catch (RuntimeException ex) {
+      batch.forEach(pending -> pending.result().completeExceptionally(ex));
+    }
+  }
+
+  private record PendingWrite(InsertOneModel<Document> model, CompletableFuture<BulkWriteResult> result) {
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LockManagerMongoPropertiesTest {
+
+  private final LockManagerMongoProperties properties = new LockManagerMongoProperties();
+
+  @Test
+  void writeConcerns() {
+    properties.getAcquire().setW("majority");
+    properties.getAcquire().setJournal(true);
+    properties.getAcquire().setTimeout(Duration.ofSeconds(2));
+    properties.getRelease().setW("1");
+    assertThat(properties.acquireWriteConcern()).isEqualTo(WriteConcern.MAJORITY.withJournal(true).withWTimeout(2000, TimeUnit.MILLISECONDS));
+    assertThat(properties.releaseWriteConcern()).isEqualTo(WriteConcern.W1);
+  }
+
+  @Test
+  void writeConcernsNothingSet() {
+    // the collection's ones are used
+    assertThat(properties.acquireWriteConcern()).isNull();
+    assertThat(properties.releaseWriteConcern()).isNull();
+  }
+
+  @Test
+  void writeConcernUnacknowledgedAcquire() {
+    properties.getAcquire().setW("0");
+    assertThatThrownBy(properties::acquireWriteConcern)
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("lock-manager.mongodb.acquire.w can't be 0");
+  }
+
+  @Test
+  void writeConcernUnacknowledgedRelease() {
+    properties.getRelease().setW("0");
+    assertThat(properties.releaseWriteConcern()).isEqualTo(WriteConcern.UNACKNOWLEDGED);
+  }
+
+  @Test
+  void readPreference() {
+    assertThat(properties.toReadPreference()).isNull();
+    properties.setReadPreference("primaryPreferred");
+    assertThat(properties.toReadPreference()).isEqualTo(ReadPreference.primaryPreferred());
+  }
+
+  @Test
+  void batchSize() {
+    // not batched unless enabled
+    assertThat(properties.getBatch().size()).isEqualTo(1);
+    properties.getBatch().setEnabled(true);
+    assertThat(properties.getBatch().size()).isEqualTo(256);
+    assertThat(properties.getBatch().getWindow()).isEqualTo(Duration.ofNanos(200_000));
+  }
+
+  @Test
+  void toOptions() {
+    properties.getAcquire().setW("majority");
+    properties.setReadPreference("primaryPreferred");
+    properties.setCollections(4);
+    properties.setLayout(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    properties.setServerClock(true);
+    properties.getBatch().setEnabled(true);
+    properties.getWait().setChangeStream(false);
+    properties.getSession().setEnabled(true);
+    assertThat(properties.toOptions()).isEqualTo(new LockManagerMongo.Options(WriteConcern.MAJORITY, null, ReadPreference.primaryPreferred(), 4,
+      LockManagerMongo.Layout.UNIQUE_IDENTIFIER, true, 256, Duration.ofNanos(200_000), false, Duration.ofSeconds(1), Duration.ofSeconds(10)));
+  }
+
+  @Test
+  void toOptionsServerClockWithObjectIds() {
+    properties.setServerClock(true);
+    assertThatThrownBy(properties::toOptions)
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("the server clock needs the unique identifier as the _id, but the layout was OBJECT_ID");
+  }
+
+}
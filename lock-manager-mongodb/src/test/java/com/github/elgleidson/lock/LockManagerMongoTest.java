@@ -1,24 +1,79 @@
 package com.github.elgleidson.lock;
 
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.expr;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.regex;
 import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
-import com.github.elgleidson.lock.LockManagerMongo.LockMongoEntity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,35 +81,84 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Query;
 
 @ExtendWith(MockitoExtension.class)
 class LockManagerMongoTest {
 
-  private static final Instant NOW = Instant.now();
+  // the dates are stored with millisecond precision
+  private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
   private static final Clock CLOCK = Clock.fixed(NOW, UTC);
 
   private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
   private static final Duration TTL = Duration.ofSeconds(30);
 
   private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
-  private static final String LOCK_ID = "some-mongodb-id";
+  private static final ObjectId LOCK_OBJECT_ID = new ObjectId();
+  private static final String LOCK_ID = LOCK_OBJECT_ID.toHexString();
   private static final Lock LOCK = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final Document LOCK_DOCUMENT = new Document("_id", LOCK_OBJECT_ID)
+    .append("uniqueIdentifier", UNIQUE_IDENTIFIER)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final Document LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER = new Document("_id", UNIQUE_IDENTIFIER)
+    .append("owner", LOCK_OBJECT_ID)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final Document OTHER_HOLDER_DOCUMENT = new Document("_id", UNIQUE_IDENTIFIER)
+    .append("owner", new ObjectId())
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final ObjectId SESSION_OBJECT_ID = new ObjectId();
+  private static final Duration SESSION_TIMEOUT = Duration.ofSeconds(10);
+  // the session locks have no expiration of their own
+  private static final Lock SESSION_LOCK = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, null);
+  private static final Document SESSION_LOCK_DOCUMENT = new Document(LOCK_DOCUMENT)
+    .append("expiresAt", Date.from(LockManagerMongo.NO_EXPIRATION))
+    .append("session", SESSION_OBJECT_ID);
+  private static final ObjectId OTHER_SESSION_OBJECT_ID = new ObjectId();
+  private static final Document OTHER_SESSION_HOLDER_DOCUMENT = new Document("_id", new ObjectId())
+    .append("uniqueIdentifier", UNIQUE_IDENTIFIER)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()))
+    .append("session", OTHER_SESSION_OBJECT_ID);
 
   @Mock
-  private MongoTemplate reactiveMongoTemplate;
+  private MongoTemplate mongoTemplate;
+  @Mock
+  private MongoCollection<Document> lockCollection;
+  @Mock
+  private FindIterable<Document> findIterable;
+  @Mock
+  private MongoCursor<Document> cursor;
+  @Mock
+  private ListIndexesIterable<Document> listIndexesIterable;
+  @Mock
+  private MongoCollection<Document> otherLockCollection;
+  @Mock
+  private MongoDatabase mongoDatabase;
+  @Mock
+  private BulkWriteResult bulkWriteResult;
+  @Mock
+  private ChangeStreamIterable<Document> changeStreamIterable;
+  @Mock
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStreamCursor;
+  @Mock
+  private ChangeStreamDocument<Document> changeStreamDocument;
+  @Mock
+  private MongoCollection<Document> sessionCollection;
+  @Mock
+  private FindIterable<Document> sessionFindIterable;
 
   private LockManager lockManager;
 
   private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
   private Lock lockResult;
   private boolean unlockResult;
+  private Optional<Lock> getLockResult;
+  private List<Lock> listLocksResult;
 
   @BeforeEach
   void setUp() {
-    lockManager = new LockManagerMongo(reactiveMongoTemplate, CLOCK);
+    doReturn(lockCollection).when(mongoTemplate).getCollection("locks");
+    lockManager = lockManager(1, LockManagerMongo.Layout.OBJECT_ID, false);
     var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
     logger.addAppender(listAppender);
     listAppender.start();
@@ -62,6 +166,7 @@ class LockManagerMongoTest {
 
   @AfterEach
   void tearDown() {
+    ((LockManagerMongo) lockManager).close();
     listAppender.stop();
   }
 
@@ -71,17 +176,19 @@ class LockManagerMongoTest {
     whenILock();
     thenIExpectLock();
     thenMongoInsertIsInvoked();
+    thenTheStatisticsAre(1, 0, 0);
   }
 
   @Test
   void lockAlreadyAcquired() {
-    var exception = new DuplicateKeyException("test exception");
+    var exception = new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()), new ServerAddress(), Set.of());
     givenMongoInsertThrowsAnException(exception);
     assertThatExceptionOfType(LockFailureException.class)
       .isThrownBy(this::whenILock)
       .withMessage("Lock already acquired on 'my-unique-identifier'!");
     thenMongoInsertIsInvoked();
     thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
   }
 
   @Test
@@ -94,6 +201,471 @@ class LockManagerMongoTest {
       .withCause(exception);
     thenMongoInsertIsInvoked();
     thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void lockSpreadAcrossCollections() {
+    doReturn(lockCollection).when(mongoTemplate).getCollection("locks_0");
+    doReturn(otherLockCollection).when(mongoTemplate).getCollection("locks_1");
+    lockManager = lockManager(2, LockManagerMongo.Layout.OBJECT_ID, false);
+    // "a".hashCode() is 97 and "b".hashCode() is 98
+    var lockA = lockManager.lock("a", TTL);
+    var lockB = lockManager.lock("b", TTL);
+    verify(otherLockCollection).insertOne(argThat((Document document) -> "a".equals(document.getString("uniqueIdentifier"))));
+    verify(lockCollection).insertOne(argThat((Document document) -> "b".equals(document.getString("uniqueIdentifier"))));
+    // and released from where they were acquired
+    lockManager.unlock(lockA);
+    lockManager.unlock(lockB);
+    verify(otherLockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", "a")));
+    verify(lockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", "b")));
+  }
+
+  @Test
+  void ensureIndexes() {
+    givenMongoListIndexesReturns("_id_");
+    ((LockManagerMongo) lockManager).ensureIndexes().join();
+    thenMongoCreateIndexIsInvoked("uniqueIdentifier", "expiresAt");
+  }
+
+  @Test
+  void ensureIndexesAlreadyThere() {
+    givenMongoListIndexesReturns("_id_", "uniqueIdentifier", "expiresAt");
+    ((LockManagerMongo) lockManager).ensureIndexes().join();
+    thenMongoCreateIndexIsInvoked();
+  }
+
+  @Test
+  void lockIndexesFailed() {
+    var exception = new RuntimeException("test exception");
+    doReturn(listIndexesIterable).when(lockCollection).listIndexes();
+    doThrow(exception).when(listIndexesIterable).into(any());
+    assertThat(((LockManagerMongo) lockManager).ensureIndexes()).failsWithin(Duration.ofSeconds(5));
+    // the lock tries the indexes again, and fails without inserting as the lock could be acquired twice without them
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Failed to acquire lock on 'my-unique-identifier'")
+      .withCause(exception);
+    verify(listIndexesIterable, times(2)).into(any());
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheLogsContains("[ERROR] error ensureIndexes(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void lockIndexesFailedThenCreated() {
+    doReturn(listIndexesIterable).when(lockCollection).listIndexes();
+    doThrow(new RuntimeException("test exception")).doReturn(indexes("_id_", "uniqueIdentifier", "expiresAt"))
+      .when(listIndexesIterable).into(any());
+    assertThat(((LockManagerMongo) lockManager).ensureIndexes()).failsWithin(Duration.ofSeconds(5));
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock();
+    thenMongoInsertIsInvoked();
+  }
+
+  @Test
+  void lockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock();
+    verify(lockCollection).insertOne(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER);
+  }
+
+  @Test
+  void unlockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoRemoveIsInvokedSuccessfully();
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    verify(lockCollection).deleteOne(and(eq("owner", LOCK_OBJECT_ID), eq("_id", UNIQUE_IDENTIFIER)));
+  }
+
+  @Test
+  void getLockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoFindOneReturns(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(LOCK));
+    verify(lockCollection).find(and(eq("_id", UNIQUE_IDENTIFIER), gt("expiresAt", Date.from(NOW))));
+    verify(findIterable).projection(Projections.include("owner", "expiresAt"));
+  }
+
+  @Test
+  void ensureIndexesKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoListIndexesReturns("_id_");
+    ((LockManagerMongo) lockManager).ensureIndexes().join();
+    // the _id is the unique index
+    thenMongoCreateIndexIsInvoked("expiresAt");
+    verify(mongoTemplate, never()).getDb();
+  }
+
+  @Test
+  void ensureIndexesClustered() {
+    givenTheLayoutIs(LockManagerMongo.Layout.CLUSTERED);
+    doReturn(mongoDatabase).when(mongoTemplate).getDb();
+    givenMongoListIndexesReturns("_id_");
+    ((LockManagerMongo) lockManager).ensureIndexes().join();
+    verify(mongoDatabase).createCollection(argThat("locks"::equals), argThat((CreateCollectionOptions options) ->
+      options.getClusteredIndexOptions().getKey().equals(Indexes.ascending("_id")) && options.getClusteredIndexOptions().isUnique()));
+    thenMongoCreateIndexIsInvoked("expiresAt");
+  }
+
+  @Test
+  void ensureIndexesClusteredAlreadyThere() {
+    givenTheLayoutIs(LockManagerMongo.Layout.CLUSTERED);
+    doReturn(mongoDatabase).when(mongoTemplate).getDb();
+    doThrow(new MongoCommandException(new BsonDocument("code", new BsonInt32(48)).append("errmsg", new BsonString("exists")),
+      new ServerAddress())).when(mongoDatabase).createCollection(argThat("locks"::equals), any(CreateCollectionOptions.class));
+    givenMongoListIndexesReturns("_id_", "expiresAt");
+    ((LockManagerMongo) lockManager).ensureIndexes().join();
+    thenMongoCreateIndexIsInvoked();
+  }
+
+  @Test
+  void lockWithServerClock() {
+    givenTheServerClock();
+    // the server's clock is ahead of the application's
+    var serverExpiresAt = EXPIRES_AT.plusSeconds(5);
+    doReturn(new Document("_id", UNIQUE_IDENTIFIER).append("expiresAt", Date.from(serverExpiresAt.toInstant())))
+      .when(lockCollection).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    whenILock();
+    assertThat(lockResult).isEqualTo(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, serverExpiresAt));
+    // takes the lock over once it has expired on the server's clock
+    var filter = and(eq("_id", UNIQUE_IDENTIFIER), expr(new Document("$lte", List.of("$expiresAt", "$$NOW"))));
+    var update = List.of(Aggregates.set(new Field<>("owner", LOCK_OBJECT_ID),
+      new Field<>("expiresAt", new Document("$add", List.of("$$NOW", 30_000L)))));
+    verify(lockCollection).findOneAndUpdate(argThat((Bson actual) -> actual.equals(filter)),
+      argThat((List<? extends Bson> actual) -> actual.equals(update)), argThat(FindOneAndUpdateOptions::isUpsert));
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockWithServerClockAlreadyAcquired() {
+    givenTheServerClock();
+    var duplicateKey = new BsonDocument("code", new BsonInt32(11000)).append("errmsg", new BsonString("E11000 duplicate key error"));
+    doThrow(new MongoCommandException(duplicateKey, new ServerAddress()))
+      .when(lockCollection).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void getLockWithServerClock() {
+    givenTheServerClock();
+    givenMongoFindOneReturns(null);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+    verify(lockCollection).find(and(eq("_id", UNIQUE_IDENTIFIER), expr(new Document("$gt", List.of("$expiresAt", "$$NOW")))));
+  }
+
+  @Test
+  void serverClockNeedsTheUniqueIdentifierAsId() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> lockManager(1, LockManagerMongo.Layout.OBJECT_ID, true))
+      .withMessage("the server clock needs the unique identifier as the _id, but the layout was OBJECT_ID");
+  }
+
+  @Test
+  void lockBatched() {
+    lockManager = lockManager(1, LockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    doReturn(bulkWriteResult).when(lockCollection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    // the second lock fills the batch up, so neither waits for the window
+    var lockA = CompletableFuture.supplyAsync(() -> lockManager.lock("a", TTL));
+    var lockB = lockManager.lock("b", TTL);
+    assertThat(lockA).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(new Lock(LOCK_ID, "a", EXPIRES_AT));
+    assertThat(lockB).isEqualTo(new Lock(LOCK_ID, "b", EXPIRES_AT));
+    verify(lockCollection).bulkWrite(argThat((List<? extends WriteModel<? extends Document>> models) -> models.size() == 2),
+      argThat((BulkWriteOptions options) -> !options.isOrdered()));
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheStatisticsAre(2, 0, 0);
+  }
+
+  @Test
+  void lockBatchedAlreadyAcquired() {
+    lockManager = lockManager(1, LockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    doAnswer(invocation -> {
+      List<InsertOneModel<Document>> models = invocation.getArgument(0);
+      // only the write of "a" fails, wherever it is in the batch
+      var index = "a".equals(models.get(0).getDocument().getString("uniqueIdentifier")) ? 0 : 1;
+      var duplicateKey = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), index);
+      throw new MongoBulkWriteException(bulkWriteResult, List.of(duplicateKey), null, new ServerAddress(), Set.of());
+    }).when(lockCollection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    var lockA = CompletableFuture.supplyAsync(() -> lockManager.lock("a", TTL));
+    var lockB = lockManager.lock("b", TTL);
+    assertThat(lockA).failsWithin(Duration.ofSeconds(5))
+      .withThrowableOfType(ExecutionException.class)
+      .havingCause()
+      .isInstanceOf(LockFailureException.class)
+      .withMessage("Lock already acquired on 'a'!");
+    assertThat(lockB).isEqualTo(new Lock(LOCK_ID, "b", EXPIRES_AT));
+    thenTheStatisticsAre(1, 1, 0);
+  }
+
+  @Test
+  void unlockBatchedOnlyOneMatching() {
+    lockManager = lockManager(1, LockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    var otherLock = new Lock(new ObjectId().toHexString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+    doReturn(DeleteResult.acknowledged(1L)).when(lockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+    // expired, or taken over meanwhile
+    doReturn(DeleteResult.acknowledged(0L))
+      .when(lockCollection).deleteOne(and(eq("_id", new ObjectId(otherLock.id())), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+    // two releases at once, each one told whether its own lock was released
+    var unlockOther = CompletableFuture.supplyAsync(() -> lockManager.unlock(otherLock));
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    assertThat(unlockOther).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(false);
+    verify(lockCollection, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+
+  @Test
+  void batchSizeAtLeastOne() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> lockManager(1, LockManagerMongo.Layout.OBJECT_ID, false, 0, Duration.ZERO))
+      .withMessage("batchSize must be at least 1, but was 0");
+  }
+
+  @Test
+  void lockWaitingWokenUpByTheRelease() {
+    // without the change stream, it would only poll after 10s
+    lockManager = waitingLockManager(true, Duration.ofSeconds(10));
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(OTHER_HOLDER_DOCUMENT);
+    doReturn(mongoDatabase).when(mongoTemplate).getDb();
+    doReturn(changeStreamIterable).when(mongoDatabase).watch(anyList());
+    doReturn(changeStreamCursor).when(changeStreamIterable).cursor();
+    doReturn(new BsonDocument("_id", new BsonString(UNIQUE_IDENTIFIER))).when(changeStreamDocument).getDocumentKey();
+    var released = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      released.await();
+      return changeStreamDocument;
+    }).doAnswer(invocation -> {
+      new CountDownLatch(1).await();
+      return null;
+    }).when(changeStreamCursor).next();
+    var waiting = CompletableFuture.supplyAsync(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)));
+    // the holder is read again once the waiter is registered
+    verify(findIterable, timeout(5_000).times(2)).first();
+    released.countDown();
+    assertThat(waiting).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(LOCK);
+    verify(lockCollection, times(2)).insertOne(any(Document.class));
+    thenTheStatisticsAre(1, 1, 0);
+    // no waiter is left
+    verify(changeStreamCursor, timeout(5_000)).close();
+  }
+
+  @Test
+  void closeClosesTheChangeStream() {
+    lockManager = waitingLockManager(true, Duration.ofSeconds(10));
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(OTHER_HOLDER_DOCUMENT);
+    doReturn(mongoDatabase).when(mongoTemplate).getDb();
+    doReturn(changeStreamIterable).when(mongoDatabase).watch(anyList());
+    doReturn(changeStreamCursor).when(changeStreamIterable).cursor();
+    doAnswer(invocation -> {
+      new CountDownLatch(1).await();
+      return null;
+    }).when(changeStreamCursor).next();
+    CompletableFuture.runAsync(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)));
+    verify(changeStreamCursor, timeout(5_000)).next();
+    ((LockManagerMongo) lockManager).close();
+    verify(changeStreamCursor).close();
+  }
+
+  @Test
+  void lockWaitingWithoutChangeStream() {
+    lockManager = waitingLockManager(true, Duration.ofMillis(100));
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(OTHER_HOLDER_DOCUMENT);
+    doReturn(mongoDatabase).when(mongoTemplate).getDb();
+    // e.g. a standalone server
+    doThrow(new RuntimeException("test exception")).when(mongoDatabase).watch(anyList());
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5))).isEqualTo(LOCK);
+    // polled, so the holder isn't read again
+    verify(findIterable).first();
+  }
+
+  @Test
+  void lockWaitingStillHeld() {
+    lockManager = waitingLockManager(false, Duration.ofMillis(100));
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(OTHER_HOLDER_DOCUMENT);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofMillis(250)))
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(mongoTemplate, never()).getDb();
+  }
+
+  @Test
+  void lockWaitingOtherFailure() {
+    lockManager = waitingLockManager(true, Duration.ofMillis(100));
+    givenMongoInsertThrowsAnException(new RuntimeException("test exception"));
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)))
+      .withMessage("Failed to acquire lock on 'my-unique-identifier'");
+    verify(lockCollection).insertOne(any(Document.class));
+  }
+
+  @Test
+  void lockWithSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    // started by the first lock only
+    whenILock();
+    verify(sessionCollection).insertOne(new Document("_id", SESSION_OBJECT_ID).append("expiresAt", Date.from(NOW.plus(SESSION_TIMEOUT))));
+    verify(lockCollection, times(2)).insertOne(SESSION_LOCK_DOCUMENT);
+  }
+
+  @Test
+  void lockWithSessionHeartbeat() {
+    givenASession(Duration.ofMillis(300));
+    givenMongoInsertedIsInvokedSuccessfully();
+    doReturn(UpdateResult.acknowledged(1L, 1L, null)).when(sessionCollection).updateOne(any(Bson.class), any(Bson.class));
+    whenILock();
+    // every third of the timeout, for all the locks of the session, and only while it hasn't lapsed
+    verify(sessionCollection, timeout(1_000).atLeast(2))
+      .updateOne(argThat((Bson filter) -> filter.equals(and(eq("_id", SESSION_OBJECT_ID), gt("expiresAt", Date.from(NOW))))), any(Bson.class));
+  }
+
+  @Test
+  void lockWithSessionOutlivesItsTtl() {
+    givenASession(Duration.ofMillis(300));
+    givenMongoInsertedIsInvokedSuccessfully();
+    doReturn(UpdateResult.acknowledged(1L, 1L, null)).when(sessionCollection).updateOne(any(Bson.class), any(Bson.class));
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, Duration.ofMillis(100));
+    thenIExpectLock(SESSION_LOCK);
+    // still held long after its TTL, as long as the session is heartbeated
+    verify(sessionCollection, timeout(1_000).atLeast(2)).updateOne(any(Bson.class), any(Bson.class));
+    givenMongoFindIntoReturns(SESSION_LOCK_DOCUMENT);
+    givenTheSessionIsAlive(SESSION_OBJECT_ID, true);
+    assertThat(lockManager.renewAll(List.of(SESSION_LOCK), Duration.ofMillis(100))).containsExactly(SESSION_LOCK);
+    // nothing to extend
+    verify(lockCollection, never()).updateMany(any(Bson.class), any(Bson.class));
+  }
+
+  @Test
+  void renewAllOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoFindIntoReturns(SESSION_LOCK_DOCUMENT);
+    givenTheSessionIsAlive(SESSION_OBJECT_ID, false);
+    assertThat(lockManager.renewAll(List.of(SESSION_LOCK), Duration.ofSeconds(60))).isEmpty();
+  }
+
+  @Test
+  void lockTakingOverALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(OTHER_SESSION_HOLDER_DOCUMENT);
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, false);
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    // only if it's still the lapsed session's
+    verify(lockCollection).deleteOne(and(eq("_id", OTHER_SESSION_HOLDER_DOCUMENT.get("_id")), eq("session", OTHER_SESSION_OBJECT_ID)));
+    verify(lockCollection, times(2)).insertOne(SESSION_LOCK_DOCUMENT);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockHeldByALiveSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(OTHER_SESSION_HOLDER_DOCUMENT);
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, true);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(lockCollection, never()).deleteOne(any(Bson.class));
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockHeldWithoutSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneIsInvokedSuccessfully();
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(sessionCollection, never()).find(any(Bson.class));
+  }
+
+  @Test
+  void getLockOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoFindOneReturns(OTHER_SESSION_HOLDER_DOCUMENT);
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, false);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+    verify(findIterable).projection(Projections.include("uniqueIdentifier", "expiresAt", "session"));
+  }
+
+  @Test
+  void closeEndsTheSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    ((LockManagerMongo) lockManager).close();
+    verify(sessionCollection).deleteOne(eq("_id", SESSION_OBJECT_ID));
+  }
+
+  @Test
+  void renewAll() {
+    var otherLockObjectId = new ObjectId();
+    var otherLock = new Lock(otherLockObjectId.toHexString(), "other-unique-identifier", EXPIRES_AT);
+    doReturn(UpdateResult.acknowledged(2L, 2L, null)).when(lockCollection).updateMany(any(Bson.class), any(Bson.class));
+    var renewed = lockManager.renewAll(List.of(LOCK, otherLock), Duration.ofSeconds(60));
+    var expiresAt = ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(60);
+    assertThat(renewed).containsExactly(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, expiresAt), new Lock(otherLock.id(), "other-unique-identifier", expiresAt));
+    // a single updateMany, only for the ones still held by their holders
+    verify(lockCollection).updateMany(and(in("_id", List.of(LOCK_OBJECT_ID, otherLockObjectId)), gt("expiresAt", Date.from(NOW))),
+      Updates.set("expiresAt", Date.from(expiresAt.toInstant())));
+  }
+
+  @Test
+  void renewAllSomeLost() {
+    var otherLock = new Lock(new ObjectId().toHexString(), "other-unique-identifier", EXPIRES_AT);
+    doReturn(UpdateResult.acknowledged(1L, 1L, null)).when(lockCollection).updateMany(any(Bson.class), any(Bson.class));
+    var renewedDocument = new Document(LOCK_DOCUMENT).append("expiresAt", Date.from(NOW.plusSeconds(60)));
+    doReturn(findIterable).when(lockCollection).find(any(Bson.class));
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doReturn(new ArrayList<>(List.of(renewedDocument))).when(findIterable).into(any());
+    var renewed = lockManager.renewAll(List.of(LOCK, otherLock), Duration.ofSeconds(60));
+    // the ones still held are the ones renewed
+    assertThat(renewed).containsExactly(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(60)));
+  }
+
+  @Test
+  void renewAllWithServerClock() {
+    givenTheServerClock();
+    doReturn(UpdateResult.acknowledged(1L, 1L, null)).when(lockCollection).updateMany(any(Bson.class), anyList());
+    // the server's clock is ahead of the application's
+    var serverExpiresAt = ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(65);
+    var renewedDocument = new Document(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER).append("expiresAt", Date.from(serverExpiresAt.toInstant()));
+    doReturn(findIterable).when(lockCollection).find(any(Bson.class));
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doReturn(new ArrayList<>(List.of(renewedDocument))).when(findIterable).into(any());
+    // read back, even though all of them were renewed, for the expirations the server set
+    assertThat(lockManager.renewAll(List.of(LOCK), Duration.ofSeconds(60))).containsExactly(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, serverExpiresAt));
+  }
+
+  @Test
+  void renewAllNotALockId() {
+    var notALock = new Lock("not-a-lock-id", UNIQUE_IDENTIFIER, EXPIRES_AT);
+    assertThat(lockManager.renewAll(List.of(notALock), Duration.ofSeconds(60))).isEmpty();
+    verify(lockCollection, never()).updateMany(any(Bson.class), any(Bson.class));
+    thenTheLogsContains("[WARN] renewAll(): not a lock from this lock manager: " + notALock);
   }
 
   @Test
@@ -112,6 +684,21 @@ class LockManagerMongoTest {
     thenMongoRemoveIsInvoked();
   }
 
+  @Test
+  void unlockUnacknowledged() {
+    givenMongoRemoveIsUnacknowledged();
+    whenIUnlock();
+    // a fire-and-forget release (w:0) is assumed to go through, the lock expires anyway otherwise
+    thenIExpectUnlock(true);
+    thenMongoRemoveIsInvoked();
+  }
+
+  @Test
+  void unlockNotALockId() {
+    lockManager.unlock(new Lock("not-an-object-id", UNIQUE_IDENTIFIER, EXPIRES_AT));
+    verify(lockCollection, never()).deleteOne(any(Bson.class));
+  }
+
   @Test
   void unlockException() {
     var exception = new RuntimeException("test exception");
@@ -122,30 +709,179 @@ class LockManagerMongoTest {
     thenTheLogsContains("[ERROR] error unlock(): message=test exception");
   }
 
+  @Test
+  void getLock() {
+    givenMongoFindOneIsInvokedSuccessfully();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(LOCK));
+    thenMongoFindOneIsInvoked();
+  }
+
+  @Test
+  void getLockNotFound() {
+    givenMongoFindOneDoesNotFindAnyRecord();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+    thenMongoFindOneIsInvoked();
+  }
+
+  @Test
+  void isLocked() {
+    givenMongoFindOneIsInvokedSuccessfully();
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isTrue();
+  }
+
+  @Test
+  void listLocks() {
+    givenMongoFindIsInvokedSuccessfully();
+    whenIListLocks("my-unique.");
+    thenIExpectListLocks(LOCK);
+    thenMongoFindIsInvoked(regex("uniqueIdentifier", "^my-unique\\."));
+    // closing the stream closes the cursor
+    verify(cursor, atLeastOnce()).close();
+  }
+
+  @Test
+  void listLocksKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(LockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoFindReturns(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER);
+    whenIListLocks("my-unique.");
+    thenIExpectListLocks(LOCK);
+    verify(lockCollection).find(and(regex("_id", "^my-unique\\."), gt("expiresAt", Date.from(NOW))));
+  }
+
+  private LockManagerMongo lockManager(int collections, LockManagerMongo.Layout layout, boolean serverClock) {
+    return lockManager(collections, layout, serverClock, 1, Duration.ZERO);
+  }
+
+  private LockManagerMongo lockManager(int collections, LockManagerMongo.Layout layout, boolean serverClock, int batchSize, Duration batchWindow) {
+    var options = LockManagerMongo.Options.builder().collections(collections).layout(layout).serverClock(serverClock).batchSize(batchSize)
+      .batchWindow(batchWindow).watchReleases(false).build();
+    return new LockManagerMongo(mongoTemplate, lockStatistics, options, CLOCK, () -> LOCK_OBJECT_ID);
+  }
+
+  private LockManagerMongo waitingLockManager(boolean watchReleases, Duration waitPollInterval) {
+    var options = LockManagerMongo.Options.builder().layout(LockManagerMongo.Layout.UNIQUE_IDENTIFIER).watchReleases(watchReleases)
+      .waitPollInterval(waitPollInterval).build();
+    return new LockManagerMongo(mongoTemplate, lockStatistics, options, CLOCK, () -> LOCK_OBJECT_ID);
+  }
+
+  private void givenASession(Duration timeout) {
+    doReturn(sessionCollection).when(mongoTemplate).getCollection("lock_sessions");
+    // the id of the first lock, then the one of the session it starts
+    var ids = new ArrayDeque<>(List.of(LOCK_OBJECT_ID, SESSION_OBJECT_ID));
+    var options = LockManagerMongo.Options.builder().watchReleases(false).sessionTimeout(timeout).build();
+    lockManager = new LockManagerMongo(mongoTemplate, lockStatistics, options, CLOCK, () -> ids.isEmpty() ? LOCK_OBJECT_ID : ids.poll());
+  }
+
+  private void givenTheSessionIsAlive(ObjectId sessionId, boolean alive) {
+    doReturn(sessionFindIterable).when(sessionCollection).find(and(eq("_id", sessionId), gt("expiresAt", Date.from(NOW))));
+    doReturn(sessionFindIterable).when(sessionFindIterable).projection(any(Bson.class));
+    doReturn(alive ? new Document("_id", sessionId) : null).when(sessionFindIterable).first();
+  }
+
+  private void givenMongoInsertFailsAsDuplicateKeyOnce() {
+    doThrow(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()), new ServerAddress(), Set.of()))
+      .doReturn(null)
+      .when(lockCollection).insertOne(any(Document.class));
+  }
+
+  private void givenTheLayoutIs(LockManagerMongo.Layout layout) {
+    lockManager = lockManager(1, layout, false);
+  }
+
+  private void givenTheServerClock() {
+    lockManager = lockManager(1, LockManagerMongo.Layout.UNIQUE_IDENTIFIER, true);
+  }
+
+  private void givenMongoListIndexesReturns(String... names) {
+    doReturn(listIndexesIterable).when(lockCollection).listIndexes();
+    doReturn(indexes(names)).when(listIndexesIterable).into(any());
+  }
+
+  private List<Document> indexes(String... names) {
+    return new ArrayList<>(Arrays.stream(names).map(name -> new Document("name", name)).toList());
+  }
+
+  private void thenMongoCreateIndexIsInvoked(String... names) {
+    verify(lockCollection, times(names.length)).createIndex(any(Bson.class), any(IndexOptions.class));
+    for (var name : names) {
+      verify(lockCollection).createIndex(argThat((Bson keys) -> keys.equals(Indexes.ascending(name))),
+        argThat((IndexOptions options) -> name.equals(options.getName())));
+    }
+  }
+
+  private void givenMongoFindOneIsInvokedSuccessfully() {
+    givenMongoFindOneReturns(LOCK_DOCUMENT);
+  }
+
+  private void givenMongoFindOneDoesNotFindAnyRecord() {
+    givenMongoFindOneReturns(null);
+  }
+
+  private void givenMongoFindOneReturns(Document document) {
+    doReturn(findIterable).when(lockCollection).find(any(Bson.class));
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doReturn(document).when(findIterable).first();
+  }
+
+  private void givenMongoFindIsInvokedSuccessfully() {
+    givenMongoFindReturns(LOCK_DOCUMENT);
+  }
+
+  private void givenMongoFindIntoReturns(Document document) {
+    doReturn(findIterable).when(lockCollection).find(any(Bson.class));
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doReturn(new ArrayList<>(List.of(document))).when(findIterable).into(any());
+  }
+
+  private void givenMongoFindReturns(Document document) {
+    doReturn(findIterable).when(lockCollection).find(any(Bson.class));
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doReturn(cursor).when(findIterable).cursor();
+    doReturn(true, false).when(cursor).hasNext();
+    doReturn(document).when(cursor).next();
+    doCallRealMethod().when(cursor).forEachRemaining(any());
+  }
+
   private void givenMongoInsertedIsInvokedSuccessfully() {
-    var lockMongoEntity = new LockMongoEntity(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT.toLocalDateTime());
-    doReturn(lockMongoEntity)
-      .when(reactiveMongoTemplate).insert(any(LockMongoEntity.class));
+    doReturn(null)
+      .when(lockCollection).insertOne(any(Document.class));
   }
 
   private void givenMongoInsertThrowsAnException(Throwable throwable) {
     doThrow(throwable)
-      .when(reactiveMongoTemplate).insert(any(LockMongoEntity.class));
+      .when(lockCollection).insertOne(any(Document.class));
   }
 
   private void givenMongoRemoveIsInvokedSuccessfully() {
     doReturn(DeleteResult.acknowledged(1L))
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
+  }
+
+  private void givenMongoRemoveIsUnacknowledged() {
+    doReturn(DeleteResult.unacknowledged())
+      .when(lockCollection).deleteOne(any(Bson.class));
   }
 
   private void givenMongoRemoveDoesNotFindAnyRecord() {
     doReturn(DeleteResult.acknowledged(0L))
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
   }
 
   private void givenMongoTemplateRemoveThrowsAnException(Throwable throwable) {
     doThrow(throwable)
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
+  }
+
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    try (var locks = lockManager.listLocks(prefix)) {
+      listLocksResult = locks.toList();
+    }
   }
 
   private void whenILock() {
@@ -157,7 +893,11 @@ class LockManagerMongoTest {
   }
 
   private void thenIExpectLock() {
-    assertThat(lockResult).isEqualTo(LOCK);
+    thenIExpectLock(LOCK);
+  }
+
+  private void thenIExpectLock(Lock expected) {
+    assertThat(lockResult).isEqualTo(expected);
   }
 
   private void thenIExpectUnlock(boolean expected) {
@@ -165,13 +905,35 @@ class LockManagerMongoTest {
   }
 
   private void thenMongoInsertIsInvoked() {
-    var expected = new LockMongoEntity(null, UNIQUE_IDENTIFIER, EXPIRES_AT.toLocalDateTime());
-    verify(reactiveMongoTemplate).insert(expected);
+    verify(lockCollection).insertOne(LOCK_DOCUMENT);
   }
 
   private void thenMongoRemoveIsInvoked() {
-    var expected = query(where("id").is(LOCK_ID).and("uniqueIdentifier").is(UNIQUE_IDENTIFIER)).limit(1);
-    verify(reactiveMongoTemplate).remove(expected, LockMongoEntity.class);
+    verify(lockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+  }
+
+  private void thenIExpectGetLock(Optional<Lock> expected) {
+    assertThat(getLockResult).isEqualTo(expected);
+  }
+
+  private void thenIExpectListLocks(Lock... expected) {
+    assertThat(listLocksResult).containsExactly(expected);
+  }
+
+  private void thenMongoFindOneIsInvoked() {
+    thenMongoFindIsInvoked(eq("uniqueIdentifier", UNIQUE_IDENTIFIER));
+  }
+
+  private void thenMongoFindIsInvoked(Bson uniqueIdentifierFilter) {
+    verify(lockCollection).find(and(uniqueIdentifierFilter, gt("expiresAt", Date.from(NOW))));
+    verify(findIterable).projection(Projections.include("uniqueIdentifier", "expiresAt"));
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
   }
 
   private void thenTheLogsContains(String expectedErrorMessage) {
@@ -158,4 +158,23 @@ public class CucumberSteps {
   public void thenTheLockIsReleased() {
     assertThat(unlockResult).isTrue();
   }
+
+  @Then("the record with id {string} is locked")
+  public void thenTheRecordIsLocked(String id) {
+    assertThat(lockManager.isLocked(id)).isTrue();
+    assertThat(lockManager.getLock(id)).map(Lock::id).isEqualTo(lockResult.map(Lock::id));
+  }
+
+  @Then("the record with id {string} is not locked")
+  public void thenTheRecordIsNotLocked(String id) {
+    assertThat(lockManager.isLocked(id)).isFalse();
+    assertThat(lockManager.getLock(id)).isEmpty();
+  }
+
+  @Then("listing the locks with prefix {string} returns {int} lock(s)")
+  public void thenListingTheLocksReturns(String prefix, int expectedLocks) {
+    try (var locks = lockManager.listLocks(prefix)) {
+      assertThat(locks).hasSize(expectedLocks);
+    }
+  }
 }
\ No newline at end of file
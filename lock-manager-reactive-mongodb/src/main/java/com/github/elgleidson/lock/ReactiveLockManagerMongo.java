@@ -1,59 +1,387 @@
 package com.github.elgleidson.lock;
 
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.expr;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.regex;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.ClusteredIndexOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
 import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DuplicateKeyException;
-import org.springframework.data.annotation.Id;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.index.Indexed;
-import org.springframework.data.mongodb.core.mapping.Document;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+/**
+ * Locks on a MongoDB collection, with a unique index on the unique identifier and a TTL index on the expiration.
+ * <p>The lock paths use the raw documents of the driver, with the id generated by the client, so there's no mapping
+ * (reflection, conversions) and no document read back on any of them.</p>
+ * <p>With the {@link Layout#UNIQUE_IDENTIFIER} and {@link Layout#CLUSTERED} layouts, the unique identifier is the {@code _id}
+ * and the lock id is the {@code owner}, so there's no unique index on the unique identifier to update on every write.</p>
+ * <p>With these layouts, the expirations can also be computed with the server's clock ({@code $$NOW}) instead of the
+ * application's, so skewed clocks across the instances don't shift how long the locks last. Acquiring a lock is then an
+ * upsert that takes over an expired lock right away, instead of waiting for the TTL monitor to remove it.</p>
+ * <p>Under high acquire rates, the lock inserts arriving within a short window can go together in one unordered
+ * {@code bulkWrite}, so the throughput is bounded by the batch size rather than the round trip.</p>
+ * <p>The acquires waiting for a lock are woken up by a single change stream on the lock releases, instead of polling.</p>
+ * <p>With a session, the locks are held by a single document of the instance instead, heartbeated for all of them: they
+ * don't expire on their own ({@code expiresIn} is ignored), but as long as the session lives, and a crashed instance's
+ * locks are taken over once its session lapses.</p>
+ */
 @Slf4j
-public class ReactiveLockManagerMongo implements ReactiveLockManager {
+public class ReactiveLockManagerMongo implements ReactiveLockManager, AutoCloseable {
+
+  static final String COLLECTION = "locks";
+  static final String ID = "_id";
+  static final String UNIQUE_IDENTIFIER = "uniqueIdentifier";
+  static final String EXPIRES_AT = "expiresAt";
+  static final String OWNER = "owner";
+  static final String SESSION = "session";
+  // error code of a collection that already exists
+  private static final int NAMESPACE_EXISTS = 48;
+  private static final String NOW = "$$NOW";
+  private static final Bson EXPIRES_AT_PROJECTION = Projections.include(EXPIRES_AT);
+  // the expiration of the session locks, never reached: neither the TTL monitor nor an acquire with the server's clock
+  // removes them, only the next acquire once their session lapses
+  static final Instant NO_EXPIRATION = Instant.parse("9999-12-31T23:59:59Z");
 
   private final ReactiveMongoTemplate reactiveMongoTemplate;
+  private final Layout layout;
+  private final boolean serverClock;
+  private final boolean batching;
+  // null when the waiters poll
+  private final ReactiveLockReleaseWatcherMongo releaseWatcher;
+  private final Duration waitPollInterval;
+  // null when the locks only expire on their own
+  private final ReactiveLockSessionMongo session;
+  // the fields the unique identifier and the lock id are stored in, depending on the layout
+  private final String uniqueIdentifierField;
+  private final String lockIdField;
+  private final Bson lockProjection;
+  private final List<LockCollection> lockCollections;
+  private final LockStatistics lockStatistics;
   private final Clock clock;
+  private final Supplier<ObjectId> idSupplier;
+  // empty unless ensureIndexes() is called, as the indexes are then someone else's job (e.g. a migration)
+  private volatile Mono<Void> indexesReady = Mono.empty();
 
   public ReactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate) {
-    this(reactiveMongoTemplate, Clock.systemUTC());
+    this(reactiveMongoTemplate, new LockStatistics());
+  }
+
+  public ReactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate, LockStatistics lockStatistics) {
+    this(reactiveMongoTemplate, lockStatistics, Options.builder().build());
   }
 
-  protected ReactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate, Clock clock) {
+  public ReactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate, LockStatistics lockStatistics, Options options) {
+    this(reactiveMongoTemplate, lockStatistics, options, Clock.systemUTC(), ObjectId::new);
+  }
+
+  protected ReactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate, LockStatistics lockStatistics, Options options, Clock clock,
+                                     Supplier<ObjectId> idSupplier) {
+    var layout = options.layout();
+    var collections = options.collections();
+    var batchSize = options.batchSize();
+    var sessionTimeout = options.sessionTimeout();
+    var acquireWriteConcern = options.acquireWriteConcern();
+    var releaseWriteConcern = options.releaseWriteConcern();
+    var readPreference = options.readPreference();
+    var waitPollInterval = options.waitPollInterval();
     this.reactiveMongoTemplate = reactiveMongoTemplate;
+    this.layout = layout;
+    this.serverClock = options.serverClock();
+    this.uniqueIdentifierField = layout == Layout.OBJECT_ID ? UNIQUE_IDENTIFIER : ID;
+    this.lockIdField = layout == Layout.OBJECT_ID ? ID : OWNER;
+    // the _id is always returned
+    var lockIdOrUniqueIdentifier = layout == Layout.OBJECT_ID ? UNIQUE_IDENTIFIER : OWNER;
+    this.lockProjection = sessionTimeout != null
+      ? Projections.include(lockIdOrUniqueIdentifier, EXPIRES_AT, SESSION)
+      : Projections.include(lockIdOrUniqueIdentifier, EXPIRES_AT);
+    this.batching = batchSize > 1;
+    this.lockCollections = IntStream.range(0, collections)
+      .mapToObj(index -> {
+        var name = collectionName(index, collections);
+        var lockCollection = reactiveMongoTemplate.getCollection(name);
+        var acquire = cached(acquireWriteConcern != null ? lockCollection.map(collection -> collection.withWriteConcern(acquireWriteConcern)) : lockCollection);
+        var release = cached(releaseWriteConcern != null ? lockCollection.map(collection -> collection.withWriteConcern(releaseWriteConcern)) : lockCollection);
+        var insertBatcher = batching ? new ReactiveLockWriteBatcherMongo(acquire, batchSize, options.batchWindow()) : null;
+        return new LockCollection(name, acquire, release,
+          cached(readPreference != null ? lockCollection.map(collection -> collection.withReadPreference(readPreference)) : lockCollection),
+          insertBatcher);
+      })
+      .toList();
+    this.releaseWatcher = options.watchReleases()
+      ? new ReactiveLockReleaseWatcherMongo(Mono.defer(reactiveMongoTemplate::getMongoDatabase),
+          lockCollections.stream().map(LockCollection::name).toList(), waitPollInterval)
+      : null;
+    this.waitPollInterval = waitPollInterval;
+    this.session = sessionTimeout != null
+      ? new ReactiveLockSessionMongo(sessionCollection(reactiveMongoTemplate, acquireWriteConcern), sessionTimeout, clock, idSupplier)
+      : null;
+    this.lockStatistics = lockStatistics;
     this.clock = clock;
+    this.idSupplier = idSupplier;
+  }
+
+  private static Mono<MongoCollection<Document>> cached(Mono<MongoCollection<Document>> collection) {
+    // the collection is only looked up once, unless it fails
+    return collection.cache(found -> Duration.ofMillis(Long.MAX_VALUE), throwable -> Duration.ZERO, () -> Duration.ZERO);
+  }
+
+  private static Mono<MongoCollection<Document>> sessionCollection(ReactiveMongoTemplate reactiveMongoTemplate, WriteConcern acquireWriteConcern) {
+    // as durable as the locks it holds
+    var sessions = reactiveMongoTemplate.getCollection(ReactiveLockSessionMongo.COLLECTION);
+    return cached(acquireWriteConcern != null ? sessions.map(collection -> collection.withWriteConcern(acquireWriteConcern)) : sessions);
+  }
+
+  /**
+   * @return the name of the lock collection, "locks" when there's only one, or "locks_0" to "locks_{n-1}" otherwise.
+   */
+  static String collectionName(int index, int collections) {
+    return collections == 1 ? COLLECTION : COLLECTION + "_" + index;
+  }
+
+  private LockCollection lockCollection(String uniqueIdentifier) {
+    // String.hashCode() is specified, so every instance routes a unique identifier to the same collection
+    return lockCollections.get(Math.floorMod(uniqueIdentifier.hashCode(), lockCollections.size()));
+  }
+
+  /**
+   * Creates the indexes of the lock collections that are missing (the unique one on the unique identifier, unless it's the
+   * {@code _id}, and the TTL one on the expiration), once subscribed, and the clustered collections that don't exist yet.
+   * <p>The existing indexes are listed once, so a restart with the indexes in place costs a single round trip. Until the
+   * indexes are there, {@link #lock(String, Duration)} waits for them, as a lock taken without the unique index could be
+   * acquired twice. If creating them fails, the next lock tries again.</p>
+   * @return completes once the indexes exist.
+   */
+  public Mono<Void> ensureIndexes() {
+    var ensured = Flux.fromIterable(lockCollections)
+      .concatMap(lockCollection -> (layout == Layout.CLUSTERED ? createClusteredCollection(lockCollection.name()) : Mono.<Void>empty())
+        .then(lockCollection.acquire())
+        .flatMap(collection -> Flux.from(collection.listIndexes()).map(index -> index.getString("name")).collectList()
+          .flatMap(existing -> createMissingIndexes(collection, existing))))
+      .then(session != null ? session.createIndexes() : Mono.empty())
+      .doOnError(throwable -> log.error("error ensureIndexes(): message={}", throwable.getMessage()))
+      .cache(ignored -> Duration.ofMillis(Long.MAX_VALUE), throwable -> Duration.ZERO, () -> Duration.ofMillis(Long.MAX_VALUE));
+    indexesReady = ensured;
+    return ensured;
+  }
+
+  private Mono<Void> createClusteredCollection(String name) {
+    // the documents are stored in the _id index itself
+    var options = new CreateCollectionOptions().clusteredIndexOptions(new ClusteredIndexOptions(Indexes.ascending(ID), true));
+    return reactiveMongoTemplate.getMongoDatabase()
+      .flatMap(database -> Mono.from(database.createCollection(name, options)))
+      .onErrorComplete(throwable -> throwable instanceof MongoCommandException commandException
+        && commandException.getErrorCode() == NAMESPACE_EXISTS);
+  }
+
+  private Mono<Void> createMissingIndexes(MongoCollection<Document> collection, List<String> existing) {
+    var uniqueIdentifierIndex = layout != Layout.OBJECT_ID || existing.contains(UNIQUE_IDENTIFIER)
+      ? Mono.<String>empty()
+      : Mono.from(collection.createIndex(Indexes.ascending(UNIQUE_IDENTIFIER), new IndexOptions().name(UNIQUE_IDENTIFIER).unique(true)));
+    // the documents expire at their expiresAt
+    var expiresAtIndex = existing.contains(EXPIRES_AT)
+      ? Mono.<String>empty()
+      : Mono.from(collection.createIndex(Indexes.ascending(EXPIRES_AT), new IndexOptions().name(EXPIRES_AT).expireAfter(0L, TimeUnit.SECONDS)));
+    return uniqueIdentifierIndex.then(expiresAtIndex)
+      .then()
+      .doOnSuccess(ignored -> log.debug("indexes ready, existing={}", existing));
   }
 
   @Override
   public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
-    return Mono.fromSupplier(() -> createMongoEntity(uniqueIdentifier, expiresIn))
-      .flatMap(reactiveMongoTemplate::insert)
-      .map(this::convertToLock)
-      .onErrorMap(throwable -> {
-        if (throwable instanceof DuplicateKeyException) {
-          // this is to track concurrent calls
-          log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
-          return LockFailureException.alreadyLocked(uniqueIdentifier);
-        }
-        log.error("error lock(): message={}", throwable.getMessage());
-        return LockFailureException.other(uniqueIdentifier, throwable);
+    return Mono.defer(() -> {
+        var start = System.nanoTime();
+        var id = idSupplier.get();
+        return indexesReady.then(acquire(uniqueIdentifier, id, expiresIn))
+          .map(expiresAt -> new Lock(id.toHexString(), uniqueIdentifier, expiresAt(expiresAt)))
+          .doOnNext(lock -> lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start))
+          .onErrorMap(throwable -> {
+            if (isDuplicateKey(throwable)) {
+              // this is to track concurrent calls
+              log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+              lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+              return LockFailureException.alreadyLocked(uniqueIdentifier);
+            }
+            log.error("error lock(): message={}", throwable.getMessage());
+            lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+            return LockFailureException.other(uniqueIdentifier, throwable);
+          });
       })
       .doFirst(() -> log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn))
       .doOnSuccess(lock -> log.debug("locked={}", lock));
   }
 
+  private static boolean isDuplicateKey(Throwable throwable) {
+    // a MongoWriteException from an insert, a MongoCommandException from an upsert
+    return throwable instanceof MongoServerException serverException
+      && ErrorCategory.fromErrorCode(serverException.getCode()) == ErrorCategory.DUPLICATE_KEY;
+  }
+
+  private Mono<Instant> acquire(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    var acquired = serverClock ? acquireWithServerClock(uniqueIdentifier, id, expiresIn) : insert(uniqueIdentifier, id, expiresIn);
+    if (session == null) {
+      return acquired;
+    }
+    // a lock of a lapsed session is taken over
+    return acquired.onErrorResume(ReactiveLockManagerMongo::isDuplicateKey, throwable -> removeLapsed(uniqueIdentifier)
+      .flatMap(removed -> removed ? acquired : Mono.error(throwable)));
+  }
+
+  private Mono<Boolean> removeLapsed(String uniqueIdentifier) {
+    return holder(uniqueIdentifier)
+      .flatMap(holder -> {
+        var holderSession = holder.get(SESSION);
+        if (holderSession == null) {
+          return Mono.just(false);
+        }
+        return session.isAlive(holderSession)
+          .flatMap(alive -> alive ? Mono.just(false) : lockCollection(uniqueIdentifier).acquire()
+            // only if it's still the lapsed session's
+            .flatMap(collection -> Mono.from(collection.deleteOne(and(eq(ID, holder.get(ID)), eq(SESSION, holderSession)))))
+            .doFirst(() -> log.debug("taking over the lock of a lapsed session: uniqueIdentifier={}, session={}", uniqueIdentifier, holderSession))
+            .thenReturn(true));
+      })
+      // released meanwhile
+      .defaultIfEmpty(true);
+  }
+
+  private Mono<Instant> insert(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    return Mono.defer(() -> {
+      var expiresAt = session != null ? NO_EXPIRATION : Instant.now(clock).plus(expiresIn);
+      var document = new Document(uniqueIdentifierField, uniqueIdentifier).append(lockIdField, id).append(EXPIRES_AT, Date.from(expiresAt));
+      var lockCollection = lockCollection(uniqueIdentifier);
+      // a duplicate key fails this write only, as a MongoWriteException
+      var inserted = batching
+        ? withSession(document).flatMap(held -> lockCollection.insertBatcher().insert(held))
+        : withSession(document).flatMap(held -> lockCollection.acquire().flatMap(collection -> Mono.from(collection.insertOne(held)))).then();
+      return inserted.thenReturn(expiresAt);
+    });
+  }
+
+  private Mono<Instant> acquireWithServerClock(String uniqueIdentifier, ObjectId id, Duration expiresIn) {
+    // takes the lock over when it has expired, or inserts it when there's none, failing on the _id when it's held
+    var filter = and(eq(ID, uniqueIdentifier), expr(new Document("$lte", List.of("$" + EXPIRES_AT, NOW))));
+    var fields = new Document(OWNER, id)
+      .append(EXPIRES_AT, session != null ? Date.from(NO_EXPIRATION) : new Document("$add", List.of(NOW, expiresIn.toMillis())));
+    var options = new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(EXPIRES_AT_PROJECTION);
+    return withSession(fields)
+      .map(held -> List.of(Aggregates.set(held.entrySet().stream().<Field<?>>map(field -> new Field<>(field.getKey(), field.getValue())).toList())))
+      .flatMap(update -> lockCollection(uniqueIdentifier).acquire()
+        .flatMap(collection -> Mono.from(collection.findOneAndUpdate(filter, update, options))))
+      .map(document -> document.getDate(EXPIRES_AT).toInstant());
+  }
+
+  private Mono<Document> withSession(Document fields) {
+    // the session is started by the first lock
+    return session != null ? session.id().map(sessionId -> new Document(fields).append(SESSION, sessionId)) : Mono.just(fields);
+  }
+
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>The waiter is woken up as soon as its holder's lock document is deleted, by the change stream on the lock releases,
+   * so there's no polling of the primary meanwhile. It only polls once the lock has expired but isn't removed yet (e.g. the
+   * TTL monitor is late), or when there's no change stream.</p>
+   */
+  @Override
+  public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    return Mono.defer(() -> {
+      var deadline = System.nanoTime() + waitFor.toNanos();
+      return lock(uniqueIdentifier, expiresIn)
+        .retryWhen(Retry.from(failures -> failures.concatMap(failure ->
+          failure.failure() instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked() && deadline - System.nanoTime() > 0
+            ? awaitRelease(uniqueIdentifier, deadline).thenReturn(true)
+            : Mono.<Boolean>error(failure.failure()))));
+    });
+  }
+
+  private Mono<Void> awaitRelease(String uniqueIdentifier, long deadline) {
+    // completes empty when released meanwhile
+    return holder(uniqueIdentifier).flatMap(holder -> {
+      var deleted = releaseWatcher != null ? releaseWatcher.awaitDeletion(holder.get(ID)) : null;
+      // it may have been released before the waiter was registered
+      var stillHeld = deleted != null ? holder(uniqueIdentifier).filter(holder::equals) : Mono.just(holder);
+      return stillHeld
+        .flatMap(held -> {
+          var wait = Duration.ofNanos(Math.max(Math.min(deadline - System.nanoTime(), wakeUpIn(holder, deleted != null)), 0));
+          return deleted != null ? Mono.firstWithSignal(Mono.fromFuture(deleted, true), Mono.delay(wait).then()) : Mono.delay(wait).then();
+        })
+        .doFinally(signal -> {
+          if (deleted != null) {
+            releaseWatcher.forget(holder.get(ID), deleted);
+          }
+        });
+    });
+  }
+
+  private Mono<Document> holder(String uniqueIdentifier) {
+    // expired or not, as it's its deletion that is waited for, and on the acquire collection, as a lagging secondary could
+    // still show a holder whose release has already been seen
+    return lockCollection(uniqueIdentifier).acquire()
+      .flatMap(collection -> Mono.from(collection.find(eq(uniqueIdentifierField, uniqueIdentifier)).projection(lockProjection).first()));
+  }
+
+  private long wakeUpIn(Document holder, boolean watching) {
+    var untilExpiry = Duration.between(Instant.now(clock), holder.getDate(EXPIRES_AT).toInstant()).toNanos();
+    if (session != null && holder.get(SESSION) != null) {
+      // its session may lapse before, and its release isn't seen then
+      untilExpiry = Math.min(untilExpiry, session.timeout().toNanos());
+    }
+    if (untilExpiry <= 0) {
+      // expired, but not removed yet
+      return waitPollInterval.toNanos();
+    }
+    // the change stream tells when it's released, not when it expires (when the server clock takes it over)
+    return watching ? untilExpiry : Math.min(untilExpiry, waitPollInterval.toNanos());
+  }
+
   @Override
   public Mono<Boolean> unlock(Lock lock) {
+    if (!ObjectId.isValid(lock.id())) {
+      // not a lock from this lock manager
+      return Mono.just(false);
+    }
     // only unlocks if lock id and unique identifier match
-    var query = query(where("id").is(lock.id()).and("uniqueIdentifier").is(lock.uniqueIdentifier())).limit(1);
-    return reactiveMongoTemplate.remove(query, LockMongoEntity.class)
-      .map(deleteResult -> deleteResult.getDeletedCount() > 0)
+    var filter = and(eq(lockIdField, new ObjectId(lock.id())), eq(uniqueIdentifierField, lock.uniqueIdentifier()));
+    return lockCollection(lock.uniqueIdentifier()).release()
+      .flatMap(collection -> Mono.from(collection.deleteOne(filter)))
+      .map(this::released)
       .defaultIfEmpty(false)
       .onErrorResume(throwable -> {
         // log the error, but returns successfully as the lock will expire (TTL)
@@ -64,23 +392,332 @@ public class ReactiveLockManagerMongo implements ReactiveLockManager {
       .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
   }
 
-  private Lock convertToLock(LockMongoEntity lockMongoEntity) {
-    return new Lock(lockMongoEntity.id(), lockMongoEntity.uniqueIdentifier(), lockMongoEntity.expiresAt().atZone(ZoneOffset.UTC));
+  private boolean released(DeleteResult deleteResult) {
+    // an unacknowledged (w:0) release can't tell, but the lock expires anyway (TTL) if it didn't go through
+    return !deleteResult.wasAcknowledged() || deleteResult.getDeletedCount() > 0;
+  }
+
+  @Override
+  public Mono<Long> unlockAll(List<Lock> locks) {
+    var locksByCollection = locks.stream()
+      .filter(lock -> ObjectId.isValid(lock.id()))
+      .collect(Collectors.groupingBy(lock -> lockCollection(lock.uniqueIdentifier())));
+    // a single deleteMany per collection
+    return Flux.fromIterable(locksByCollection.entrySet())
+      .flatMap(collectionAndIds -> unlockAll(collectionAndIds.getKey(), collectionAndIds.getValue()))
+      .reduce(0L, Long::sum)
+      .doFirst(() -> log.debug("trying to unlock {} locks", locks.size()))
+      .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
+  }
+
+  private Mono<Long> unlockAll(LockCollection lockCollection, List<Lock> locks) {
+    var filter = heldBy(locks);
+    return lockCollection.release().flatMap(collection -> Mono.from(collection.deleteMany(filter)))
+      .map(deleteResult -> deleteResult.wasAcknowledged() ? deleteResult.getDeletedCount() : locks.size())
+      .defaultIfEmpty(0L)
+      .onErrorResume(throwable -> {
+        // log the error, but returns successfully as the locks will expire (TTL)
+        log.error("error unlockAll(): message={}", throwable.getMessage());
+        return Mono.just(0L);
+      });
+  }
+
+  private Bson heldBy(List<Lock> locks) {
+    var ids = locks.stream().map(lock -> new ObjectId(lock.id())).toList();
+    // the lock ids are unique, so matching them only matches the locks still held by their holders (on the _id index when
+    // it's the unique identifier, as a lock id is only ever held for the unique identifier it was generated for)
+    return layout == Layout.OBJECT_ID
+      ? in(ID, ids)
+      : and(in(ID, locks.stream().map(Lock::uniqueIdentifier).toList()), in(OWNER, ids));
+  }
+
+  @Override
+  public Mono<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    var locksByCollection = locks.stream()
+      .filter(this::renewable)
+      .collect(Collectors.groupingBy(lock -> lockCollection(lock.uniqueIdentifier())));
+    // a single updateMany per collection
+    return Flux.fromIterable(locksByCollection.entrySet())
+      .flatMap(collectionAndLocks -> renewAll(collectionAndLocks.getKey(), collectionAndLocks.getValue(), expiresIn))
+      .collectList()
+      .doFirst(() -> log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn))
+      .doOnSuccess(renewed -> log.debug("renewed={}", renewed.size()));
+  }
+
+  private Flux<Lock> renewAll(LockCollection lockCollection, List<Lock> locks, Duration expiresIn) {
+    return Flux.defer(() -> {
+      // only the ones still held by their holders, and not expired, as the TTL monitor may remove those anytime
+      var filter = lockFilter(heldBy(locks));
+      if (session != null) {
+        // the session locks don't expire on their own, they're only still held while their session lives
+        var sessionsAlive = new ConcurrentHashMap<Object, Mono<Boolean>>();
+        return lockCollection.acquire()
+          .flatMapMany(collection -> collection.find(filter).projection(lockProjection))
+          .filterWhen(document -> held(document, sessionsAlive))
+          .map(this::convertToLock);
+      }
+      // taken before the call, so the document never expires before the lock says
+      var expiresAt = Instant.now(clock).plus(expiresIn);
+      return lockCollection.acquire()
+        .flatMap(collection -> Mono.from(serverClock
+          ? collection.updateMany(filter, List.of(Aggregates.set(new Field<>(EXPIRES_AT, new Document("$add", List.of(NOW, expiresIn.toMillis()))))))
+          : collection.updateMany(filter, Updates.set(EXPIRES_AT, Date.from(expiresAt)))))
+        .flatMapMany(updated -> !serverClock && updated.getMatchedCount() == locks.size()
+          ? Flux.fromIterable(locks).map(lock -> new Lock(lock.id(), lock.uniqueIdentifier(), expiresAt.atZone(ZoneOffset.UTC)))
+          // some were lost, the ones still held are the ones renewed; or read back for the expirations set by the server's clock
+          : lockCollection.acquire().flatMapMany(collection -> collection.find(filter).projection(lockProjection)).map(this::convertToLock));
+    });
+  }
+
+  private boolean renewable(Lock lock) {
+    if (ObjectId.isValid(lock.id())) {
+      return true;
+    }
+    // reported as lost, as it can't be held here
+    log.warn("renewAll(): not a lock from this lock manager: {}", lock);
+    return false;
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Mono<Lock> getLock(String uniqueIdentifier) {
+    return lockCollection(uniqueIdentifier).read()
+      .flatMap(collection -> Mono.from(collection.find(lockFilter(eq(uniqueIdentifierField, uniqueIdentifier))).projection(lockProjection).first()))
+      .filterWhen(document -> held(document, new HashMap<>()))
+      .map(this::convertToLock);
+  }
+
+  @Override
+  public Flux<Lock> listLocks(String prefix) {
+    // a prefix doesn't tell the collection, so each one is queried in turn, and each cursor fetches the next batch only
+    // when requested, respecting backpressure
+    return Flux.defer(() -> {
+      // each session is only looked up once
+      var sessionsAlive = new ConcurrentHashMap<Object, Mono<Boolean>>();
+      return Flux.fromIterable(lockCollections)
+        .concatMap(lockCollection -> lockCollection.read()
+          .flatMapMany(collection -> collection.find(lockFilter(regex(uniqueIdentifierField, prefixRegex(prefix)))).projection(lockProjection)))
+        .filterWhen(document -> held(document, sessionsAlive))
+        .map(this::convertToLock);
+    });
+  }
+
+  private Mono<Boolean> held(Document document, Map<Object, Mono<Boolean>> sessionsAlive) {
+    // released as soon as its session lapses, even if it isn't taken over yet
+    var holderSession = session != null ? document.get(SESSION) : null;
+    return holderSession == null ? Mono.just(true) : sessionsAlive.computeIfAbsent(holderSession, id -> session.isAlive(id).cache());
+  }
+
+  /**
+   * Cancels the change stream of the releases, if subscribed to, and ends the session, if any, so its locks can be taken
+   * over straight away. Blocks until its document is deleted.
+   */
+  @Override
+  public void close() {
+    if (releaseWatcher != null) {
+      releaseWatcher.close();
+    }
+    if (session != null) {
+      session.close();
+    }
+  }
+
+  private Bson lockFilter(Bson uniqueIdentifierFilter) {
+    // the TTL monitor runs periodically, so expired locks may still be there for a while
+    return and(uniqueIdentifierFilter, serverClock
+      ? expr(new Document("$gt", List.of("$" + EXPIRES_AT, NOW)))
+      : gt(EXPIRES_AT, Date.from(Instant.now(clock))));
+  }
+
+  private String prefixRegex(String prefix) {
+    // an anchored regex without special characters can use the uniqueIdentifier (or _id) index
+    return "^" + prefix.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
   }
 
-  private LockMongoEntity createMongoEntity(String uniqueIdentifier, Duration expiresIn) {
-    var expiresAt = LocalDateTime.now(clock).plus(expiresIn);
-    return new LockMongoEntity(null, uniqueIdentifier, expiresAt);
+  private Lock convertToLock(Document document) {
+    return new Lock(document.getObjectId(lockIdField).toHexString(), document.getString(uniqueIdentifierField),
+      expiresAt(document.getDate(EXPIRES_AT).toInstant()));
   }
 
-  @Document("locks")
-  record LockMongoEntity(
-    @Id
-    String id,
-    @Indexed(unique = true, name = "uniqueIdentifier")
-    String uniqueIdentifier,
-    @Indexed(expireAfter = "0s", name = "expiresAt")
-    LocalDateTime expiresAt
-  ) {
+  private static ZonedDateTime expiresAt(Instant expiresAt) {
+    // a session lock has no expiration of its own
+    return expiresAt.equals(NO_EXPIRATION) ? null : expiresAt.atZone(ZoneOffset.UTC);
   }
+
+  private record LockCollection(String name, Mono<MongoCollection<Document>> acquire, Mono<MongoCollection<Document>> release,
+                                Mono<MongoCollection<Document>> read, ReactiveLockWriteBatcherMongo insertBatcher) {
+  }
+
+  /**
+   * How the lock manager stores, writes and waits for the locks, built with {@link #builder()}.
+   */
+  public record Options(WriteConcern acquireWriteConcern, WriteConcern releaseWriteConcern, ReadPreference readPreference, int collections,
+                        Layout layout, boolean serverClock, int batchSize, Duration batchWindow, boolean watchReleases,
+                        Duration waitPollInterval, Duration sessionTimeout) {
+
+    public Options {
+      if (collections < 1) {
+        throw new IllegalArgumentException("collections must be at least 1, but was " + collections);
+      }
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be at least 1, but was " + batchSize);
+      }
+      if (serverClock && layout == Layout.OBJECT_ID) {
+        throw new IllegalArgumentException("the server clock needs the unique identifier as the _id, but the layout was " + layout);
+      }
+    }
+
+    public static Builder builder() {
+      return new Builder();
+    }
+
+    public static final class Builder {
+
+      private WriteConcern acquireWriteConcern;
+      private WriteConcern releaseWriteConcern;
+      private ReadPreference readPreference;
+      private int collections = 1;
+      private Layout layout = Layout.OBJECT_ID;
+      private boolean serverClock;
+      private int batchSize = 1;
+      private Duration batchWindow = Duration.ZERO;
+      private boolean watchReleases = true;
+      private Duration waitPollInterval = Duration.ofSeconds(1);
+      private Duration sessionTimeout;
+
+      private Builder() {
+      }
+
+      /**
+       * @param acquireWriteConcern write concern of the lock acquisitions, or null for the collection's one.
+       */
+      public Builder acquireWriteConcern(WriteConcern acquireWriteConcern) {
+        this.acquireWriteConcern = acquireWriteConcern;
+        return this;
+      }
+
+      /**
+       * @param releaseWriteConcern write concern of the lock releases, or null for the collection's one.
+       */
+      public Builder releaseWriteConcern(WriteConcern releaseWriteConcern) {
+        this.releaseWriteConcern = releaseWriteConcern;
+        return this;
+      }
+
+      /**
+       * @param readPreference read preference of getLock, isLocked and listLocks, or null for the collection's one.
+       */
+      public Builder readPreference(ReadPreference readPreference) {
+        this.readPreference = readPreference;
+        return this;
+      }
+
+      /**
+       * @param collections how many collections the locks are spread across, each unique identifier always going to the
+       *                    same one. More than one spreads the writes, the unique index and the TTL monitor's work across
+       *                    them. 1 by default.
+       */
+      public Builder collections(int collections) {
+        this.collections = collections;
+        return this;
+      }
+
+      /**
+       * @param layout how the lock documents are keyed, {@link Layout#OBJECT_ID} by default. Every instance must use the
+       *               same one, and the lock collections are only created clustered by
+       *               {@link ReactiveLockManagerMongo#ensureIndexes()} when they don't exist yet.
+       */
+      public Builder layout(Layout layout) {
+        this.layout = layout;
+        return this;
+      }
+
+      /**
+       * @param serverClock whether the expirations are computed and compared with the server's clock rather than the
+       *                    application's. Only with the {@link Layout#UNIQUE_IDENTIFIER} and {@link Layout#CLUSTERED}
+       *                    layouts, as an expired lock is taken over by replacing its owner.
+       */
+      public Builder serverClock(boolean serverClock) {
+        this.serverClock = serverClock;
+        return this;
+      }
+
+      /**
+       * @param batchSize up to how many lock inserts go together in one unordered bulkWrite, or 1 (the default) to send each
+       *                  one on its own. The releases aren't batched, as each one tells whether it matched, and with the
+       *                  server clock neither are the acquisitions, as each one returns the expiration the server computed.
+       */
+      public Builder batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+      }
+
+      /**
+       * @param batchWindow how long the first insert of a batch waits for others to join it.
+       */
+      public Builder batchWindow(Duration batchWindow) {
+        this.batchWindow = batchWindow;
+        return this;
+      }
+
+      /**
+       * @param watchReleases whether the acquires waiting for a lock are woken up by a change stream on the lock releases,
+       *                      shared by all of them, rather than polling, as by default. Without change streams (e.g. a
+       *                      standalone server), they poll.
+       */
+      public Builder watchReleases(boolean watchReleases) {
+        this.watchReleases = watchReleases;
+        return this;
+      }
+
+      /**
+       * @param waitPollInterval how often the waiters poll once the lock they wait for has expired but isn't removed yet
+       *                         (the TTL monitor runs every minute), or when there's no change stream. 1s by default.
+       */
+      public Builder waitPollInterval(Duration waitPollInterval) {
+        this.waitPollInterval = waitPollInterval;
+        return this;
+      }
+
+      /**
+       * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, which heartbeats every third
+       *                       of it, or null (the default) for the locks to only expire on their own. Every instance must use
+       *                       a session, as the ones without can't take over a lapsed one's locks.
+       */
+      public Builder sessionTimeout(Duration sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        return this;
+      }
+
+      public Options build() {
+        return new Options(acquireWriteConcern, releaseWriteConcern, readPreference, collections, layout, serverClock, batchSize,
+          batchWindow, watchReleases, waitPollInterval, sessionTimeout);
+      }
+
+    }
+
+  }
+
+  /**
+   * How the lock documents are keyed.
+   */
+  public enum Layout {
+    /**
+     * {@code {_id: <lock id>, uniqueIdentifier, expiresAt}}, with a unique index on the unique identifier.
+     */
+    OBJECT_ID,
+    /**
+     * {@code {_id: <unique identifier>, owner: <lock id>, expiresAt}}, so the {@code _id} index is the only unique one.
+     */
+    UNIQUE_IDENTIFIER,
+    /**
+     * As {@link #UNIQUE_IDENTIFIER}, in clustered collections: the documents are stored in the {@code _id} index itself.
+     */
+    CLUSTERED
+  }
+
 }
@@ -1,32 +1,51 @@
 package com.github.elgleidson.lock;
 
-import java.time.Duration;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
-import org.springframework.data.domain.Sort;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.index.Index;
 
-@AutoConfiguration(after = MongoReactiveDataAutoConfiguration.class)
+// after the async Redis one, so a ReactiveAsyncLockManager is only registered when there's no other AsyncLockManager
+@AutoConfiguration(after = MongoReactiveDataAutoConfiguration.class,
+  afterName = "com.github.elgleidson.lock.AsyncLockManagerRedisAutoConfiguration")
+@EnableConfigurationProperties(ReactiveLockManagerMongoProperties.class)
 public class ReactiveLockManagerMongoAutoConfiguration {
 
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics reactiveLockManagerMongoStatistics() {
+    return new LockStatistics();
+  }
+
   @Bean
   @ConditionalOnBean(ReactiveMongoTemplate.class)
   @ConditionalOnMissingBean(ReactiveLockManagerMongo.class)
-  public ReactiveLockManagerMongo reactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate) {
-    ensureIndex(reactiveMongoTemplate);
-    return new ReactiveLockManagerMongo(reactiveMongoTemplate);
+  public ReactiveLockManagerMongo reactiveLockManagerMongo(ReactiveMongoTemplate reactiveMongoTemplate, LockStatistics lockStatistics,
+                                                           ReactiveLockManagerMongoProperties properties) {
+    var lockManager = new ReactiveLockManagerMongo(reactiveMongoTemplate, lockStatistics, properties.toOptions());
+    if (properties.isEnsureIndexes()) {
+      // off the startup path, the locks wait for the indexes instead (a failure is logged and tried again by the next lock)
+      lockManager.ensureIndexes().onErrorComplete().subscribe();
+    }
+    return lockManager;
   }
 
-  private void ensureIndex(ReactiveMongoTemplate reactiveMongoTemplate) {
-    var indexOps = reactiveMongoTemplate.indexOps(ReactiveLockManagerMongo.LockMongoEntity.class);
-    // the index definitions need to match to what's in the LockMongoEntity's annotations
-    indexOps.ensureIndex(new Index().on("uniqueIdentifier", Sort.Direction.ASC).unique().named("uniqueIdentifier"))
-      .then(indexOps.ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO).named("expiresAt")))
-      .subscribe();
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(ReactiveAsyncLockManager.class)
+  @ConditionalOnBean(ReactiveMongoTemplate.class)
+  static class AsyncLockManagerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(AsyncLockManager.class)
+    public ReactiveAsyncLockManager asyncLockManagerMongo(ReactiveLockManagerMongo reactiveLockManagerMongo) {
+      return new ReactiveAsyncLockManager(reactiveLockManagerMongo);
+    }
+
   }
 
 }
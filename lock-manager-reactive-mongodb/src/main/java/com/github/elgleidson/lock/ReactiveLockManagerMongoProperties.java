@@ -0,0 +1,207 @@
+package com.github.elgleidson.lock;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.mongodb")
+public class ReactiveLockManagerMongoProperties {
+
+  /**
+   * Write concern of the lock acquisitions. Unset, the collection's one is used.
+   */
+  private WriteConcernProperties acquire = new WriteConcernProperties();
+
+  /**
+   * Write concern of the lock releases. Unset, the collection's one is used.
+   */
+  private WriteConcernProperties release = new WriteConcernProperties();
+
+  /**
+   * Read preference of getLock, isLocked and listLocks, e.g. primaryPreferred. Unset, the collection's one is used.
+   */
+  private String readPreference;
+
+  /**
+   * Whether to create the missing indexes of the lock collection in the background on startup. Disable it when the indexes
+   * are created by other means, e.g. a migration.
+   */
+  private boolean ensureIndexes = true;
+
+  /**
+   * How many collections the locks are spread across ("locks" when 1, "locks_0" to "locks_{n-1}" otherwise), each unique
+   * identifier always going to the same one. Every instance must use the same number, so change it only with all of them
+   * stopped.
+   */
+  private int collections = 1;
+
+  /**
+   * How the lock documents are keyed: object-id (a generated _id, with a unique index on the unique identifier),
+   * unique-identifier (the unique identifier as the _id) or clustered (as unique-identifier, in clustered collections).
+   * Every instance must use the same one, so change it only with all of them stopped and the lock collections dropped.
+   */
+  private ReactiveLockManagerMongo.Layout layout = ReactiveLockManagerMongo.Layout.OBJECT_ID;
+
+  /**
+   * Whether the expirations are computed and compared with the server's clock ($$NOW) rather than the application's, so
+   * skewed clocks across the instances don't shift how long the locks last. Needs the unique-identifier or clustered layout.
+   */
+  private boolean serverClock;
+
+  /**
+   * Micro-batching of the lock inserts into unordered bulkWrite calls.
+   */
+  private BatchProperties batch = new BatchProperties();
+
+  /**
+   * How the acquires waiting for a lock are woken up once it's released.
+   */
+  private WaitProperties wait = new WaitProperties();
+
+  /**
+   * The session of the instance, holding all its locks.
+   */
+  private SessionProperties session = new SessionProperties();
+
+  WriteConcern acquireWriteConcern() {
+    if ("0".equals(acquire.getW())) {
+      // an unacknowledged insert doesn't report the duplicate key, so an already acquired lock would look acquired
+      throw new IllegalArgumentException("lock-manager.mongodb.acquire.w can't be 0");
+    }
+    return acquire.toWriteConcern();
+  }
+
+  WriteConcern releaseWriteConcern() {
+    return release.toWriteConcern();
+  }
+
+  ReadPreference toReadPreference() {
+    return readPreference != null ? ReadPreference.valueOf(readPreference) : null;
+  }
+
+  ReactiveLockManagerMongo.Options toOptions() {
+    return ReactiveLockManagerMongo.Options.builder()
+      .acquireWriteConcern(acquireWriteConcern())
+      .releaseWriteConcern(releaseWriteConcern())
+      .readPreference(toReadPreference())
+      .collections(collections)
+      .layout(layout)
+      .serverClock(serverClock)
+      .batchSize(batch.size())
+      .batchWindow(batch.getWindow())
+      .watchReleases(wait.isChangeStream())
+      .waitPollInterval(wait.getPollInterval())
+      .sessionTimeout(session.sessionTimeout())
+      .build();
+  }
+
+  @Data
+  public static class BatchProperties {
+
+    /**
+     * Whether the lock inserts arriving within the window go together in one unordered bulkWrite, so the throughput under
+     * high acquire rates is bounded by the batch size rather than the round trip. Each insert waits up to the window more.
+     * The releases are never batched, as each one tells whether its lock was still held.
+     */
+    private boolean enabled;
+
+    /**
+     * How long the first insert of a batch waits for others to join it.
+     */
+    private Duration window = Duration.ofNanos(200_000);
+
+    /**
+     * Up to how many inserts go in one bulkWrite, a full batch being sent straight away.
+     */
+    private int maxSize = 256;
+
+    int size() {
+      return enabled ? maxSize : 1;
+    }
+
+  }
+
+  @Data
+  public static class WaitProperties {
+
+    /**
+     * Whether the waiters are woken up by a change stream on the lock releases, shared by all of them, rather than polling.
+     * Change streams need a replica set or a sharded cluster, the waiters poll otherwise.
+     */
+    private boolean changeStream = true;
+
+    /**
+     * How often the waiters poll once the lock they wait for has expired but isn't removed yet, or when there's no change
+     * stream. Also how long before opening the change stream again when it fails.
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+  }
+
+  @Data
+  public static class SessionProperties {
+
+    /**
+     * Whether the locks are also held by a session of the instance, a single document in "lock_sessions" heartbeated for
+     * all of them, so a crashed instance's locks are taken over once its session lapses rather than when they expire.
+     * Every instance must enable it.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How long the session outlives the last heartbeat of its instance, which heartbeats every third of it.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    Duration sessionTimeout() {
+      return enabled ? timeout : null;
+    }
+
+  }
+
+  @Data
+  public static class WriteConcernProperties {
+
+    /**
+     * How many members acknowledge the write: "majority", a number, or 0 to not wait for any acknowledgement.
+     */
+    private String w;
+
+    /**
+     * Whether the write is acknowledged only once it's in the journal.
+     */
+    private Boolean journal;
+
+    /**
+     * How long to wait for the acknowledgement before failing.
+     */
+    private Duration timeout;
+
+    /**
+     * @return the write concern, or null when nothing is set.
+     */
+    WriteConcern toWriteConcern() {
+      if (w == null && journal == null && timeout == null) {
+        return null;
+      }
+      // what isn't set is left to the server's default
+      var writeConcern = WriteConcern.ACKNOWLEDGED;
+      if (w != null) {
+        writeConcern = w.chars().allMatch(Character::isDigit) ? writeConcern.withW(Integer.parseInt(w)) : writeConcern.withW(w);
+      }
+      if (journal != null) {
+        writeConcern = writeConcern.withJournal(journal);
+      }
+      if (timeout != null) {
+        writeConcern = writeConcern.withWTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      }
+      return writeConcern;
+    }
+
+  }
+
+}
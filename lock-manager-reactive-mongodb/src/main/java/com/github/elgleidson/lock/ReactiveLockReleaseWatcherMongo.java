@@ -0,0 +1,181 @@
+package com.github.elgleidson.lock;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wakes up the acquires of {@link ReactiveLockManagerMongo} waiting for a lock to be released, through a single change
+ * stream on the deletes of the lock collections, shared by all of them.
+ * <p>The change stream is subscribed to by the first waiter, and cancelled once none is left. If it fails (e.g. on a
+ * standalone server, which has no change streams), the waiters are woken up to fall back on polling, and the first one
+ * waiting after the retry interval subscribes to it again.</p>
+ */
+@Slf4j
+final class ReactiveLockReleaseWatcherMongo implements AutoCloseable {
+
+  private static final String ID = "_id";
+
+  private final Mono<MongoDatabase> database;
+  private final List<Bson> pipeline;
+  private final long retryIntervalNanos;
+  // the waiters by the _id of the lock document they wait for
+  private final Map<Object, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+  private final ReentrantLock mutex = new ReentrantLock();
+  private volatile boolean watching;
+  // guarded by mutex, the subscription to the change stream, if any
+  private Disposable subscription;
+  // guarded by mutex
+  private long retryAt;
+  // guarded by mutex
+  private boolean closed;
+
+  ReactiveLockReleaseWatcherMongo(Mono<MongoDatabase> database, List<String> collectionNames, Duration retryInterval) {
+    this.database = database;
+    this.pipeline = List.of(Aggregates.match(and(eq("operationType", "delete"), in("ns.coll", collectionNames))));
+    this.retryIntervalNanos = retryInterval.toNanos();
+    this.retryAt = System.nanoTime();
+  }
+
+  /**
+   * Registers a waiter for the deletion of a lock document, subscribing to the change stream if it isn't yet.
+   * <p>A deletion is only seen once registered, so the lock should be checked again afterwards. Right after subscribing, the
+   * change stream may not be open yet, in which case the waiter is only woken up by its fallback.</p>
+   * @param id the {@code _id} of the lock document.
+   * @return completes once the lock document is deleted (or the change stream fails), or null if there's no change stream.
+   */
+  CompletableFuture<Void> awaitDeletion(Object id) {
+    if (!watching && !watch()) {
+      return null;
+    }
+    var deleted = new CompletableFuture<Void>();
+    waiters.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(deleted);
+    if (!watching) {
+      // it stopped before the waiter was registered, so it wouldn't be woken up
+      forget(id, deleted);
+      return null;
+    }
+    return deleted;
+  }
+
+  /**
+   * Unregisters a waiter, once it's no longer waiting, cancelling the change stream if it was the last one.
+   */
+  void forget(Object id, CompletableFuture<Void> deleted) {
+    waiters.computeIfPresent(id, (key, deletions) -> {
+      deletions.remove(deleted);
+      return deletions.isEmpty() ? null : deletions;
+    });
+    if (waiters.isEmpty()) {
+      unwatch(false);
+    }
+  }
+
+  private boolean watch() {
+    mutex.lock();
+    try {
+      if (watching) {
+        return true;
+      }
+      if (closed || System.nanoTime() - retryAt < 0) {
+        return false;
+      }
+      watching = true;
+      var opened = new Disposable[1];
+      opened[0] = database.flatMapMany(mongoDatabase -> mongoDatabase.watch(pipeline))
+        .subscribe(this::deleted, throwable -> stopped(opened[0], throwable),
+          () -> stopped(opened[0], new IllegalStateException("change stream closed")));
+      // unless it already failed
+      subscription = watching ? opened[0] : null;
+      return true;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void deleted(ChangeStreamDocument<Document> event) {
+    // e.g. an invalidate event, the change stream completes right after
+    if (event.getDocumentKey() != null) {
+      wakeUp(value(event.getDocumentKey().get(ID)));
+    }
+  }
+
+  private static Object value(BsonValue id) {
+    // as the _id of the lock documents read by the waiters
+    if (id.isObjectId()) {
+      return id.asObjectId().getValue();
+    }
+    return id.isString() ? id.asString().getValue() : id;
+  }
+
+  private void wakeUp(Object id) {
+    var deletions = waiters.remove(id);
+    if (deletions != null) {
+      deletions.forEach(deleted -> deleted.complete(null));
+    }
+  }
+
+  private void stopped(Disposable failed, Throwable throwable) {
+    mutex.lock();
+    try {
+      // null when failing as it's subscribed to, before it's assigned
+      if (failed != null && failed != subscription) {
+        return;
+      }
+      subscription = null;
+      watching = false;
+      retryAt = System.nanoTime() + retryIntervalNanos;
+    } finally {
+      mutex.unlock();
+    }
+    log.warn("error watching the lock releases, polling instead: message={}", throwable.getMessage());
+    // they poll until it's subscribed to again
+    waiters.keySet().forEach(this::wakeUp);
+  }
+
+  private void unwatch(boolean closing) {
+    Disposable opened;
+    mutex.lock();
+    try {
+      closed |= closing;
+      // one may have registered meanwhile
+      if (subscription == null || !closing && !waiters.isEmpty()) {
+        return;
+      }
+      opened = subscription;
+      subscription = null;
+      watching = false;
+    } finally {
+      mutex.unlock();
+    }
+    opened.dispose();
+    // the ones that registered as it was being cancelled check the lock again
+    waiters.keySet().forEach(this::wakeUp);
+  }
+
+  /**
+   * Cancels the change stream, if subscribed to, the waiters falling back on polling.
+   */
+  @Override
+  public void close() {
+    unwatch(true);
+  }
+
+}
@@ -0,0 +1,163 @@
+package com.github.elgleidson.lock;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The session of a {@link ReactiveLockManagerMongo}: a single document, heartbeated for all the locks the instance holds.
+ * <p>The lock documents reference the session, and are held without an expiration of their own, as long as the session
+ * lives. Once the instance stops heartbeating (e.g. it crashed), the session expires, and the next one acquiring any of its
+ * locks takes it over.</p>
+ * <p>The session starts with the first lock. If it lapses anyway (e.g. the primary was unreachable for longer than the
+ * timeout), its locks are lost, and the next lock starts a new one.</p>
+ */
+@Slf4j
+final class ReactiveLockSessionMongo implements AutoCloseable {
+
+  static final String COLLECTION = "lock_sessions";
+  private static final String ID = "_id";
+  private static final String EXPIRES_AT = "expiresAt";
+
+  private final Mono<MongoCollection<Document>> sessions;
+  private final Duration timeout;
+  private final Clock clock;
+  private final Supplier<ObjectId> idSupplier;
+  // the session being started or started, so the concurrent first locks share it
+  private final AtomicReference<Mono<ObjectId>> session = new AtomicReference<>();
+  // the started one, heartbeated
+  private volatile ObjectId id;
+  private final AtomicBoolean heartbeating = new AtomicBoolean();
+  private volatile Disposable heartbeat;
+
+  ReactiveLockSessionMongo(Mono<MongoCollection<Document>> sessions, Duration timeout, Clock clock, Supplier<ObjectId> idSupplier) {
+    this.sessions = sessions;
+    this.timeout = timeout;
+    this.clock = clock;
+    this.idSupplier = idSupplier;
+  }
+
+  Duration timeout() {
+    return timeout;
+  }
+
+  /**
+   * @return a Mono completing once the TTL index of the sessions exists, so the lapsed ones are removed.
+   */
+  Mono<Void> createIndexes() {
+    return sessions.flatMap(collection -> Mono.from(collection.createIndex(Indexes.ascending(EXPIRES_AT),
+        new IndexOptions().name(EXPIRES_AT).expireAfter(0L, TimeUnit.SECONDS))))
+      .then();
+  }
+
+  /**
+   * @return a Mono of the id of the session, starting it if there's none.
+   */
+  Mono<ObjectId> id() {
+    return Mono.defer(() -> session.updateAndGet(current -> current != null ? current : start()));
+  }
+
+  /**
+   * @return a Mono of true if the session hasn't lapsed (the TTL monitor may not have removed a lapsed one yet).
+   */
+  Mono<Boolean> isAlive(Object sessionId) {
+    return sessions.flatMap(collection -> Mono.from(collection.find(and(eq(ID, sessionId), gt(EXPIRES_AT, Date.from(Instant.now(clock)))))
+        .projection(Projections.include(ID)).first()))
+      .hasElement();
+  }
+
+  private Mono<ObjectId> start() {
+    // lazy, so only the one that is kept goes to MongoDB
+    return Mono.defer(() -> {
+        var started = idSupplier.get();
+        return sessions.flatMap(collection -> Mono.from(collection.insertOne(new Document(ID, started).append(EXPIRES_AT, expiresAt()))))
+          .thenReturn(started);
+      })
+      .doOnNext(started -> {
+        id = started;
+        log.debug("session started, id={}", started);
+        if (heartbeating.compareAndSet(false, true)) {
+          heartbeat = Flux.interval(timeout.dividedBy(3)).concatMap(tick -> heartbeat()).subscribe();
+        }
+      })
+      // kept once started, but the next lock tries again if starting it failed
+      .cache(started -> Duration.ofMillis(Long.MAX_VALUE), throwable -> Duration.ZERO, () -> Duration.ZERO);
+  }
+
+  private Mono<Void> heartbeat() {
+    var current = id;
+    if (current == null) {
+      return Mono.empty();
+    }
+    // only renewed while it hasn't lapsed, as its locks may have been taken over already
+    return sessions.flatMap(collection -> Mono.from(collection.updateOne(and(eq(ID, current), gt(EXPIRES_AT, Date.from(Instant.now(clock)))),
+        Updates.set(EXPIRES_AT, expiresAt()))))
+      .doOnNext(renewed -> {
+        if (renewed.getMatchedCount() == 0) {
+          log.warn("session lapsed, its locks are lost: id={}", current);
+          lapsed(current);
+        }
+      })
+      .onErrorResume(throwable -> {
+        // tries again on the next one, it only lapses if it keeps failing for longer than the timeout
+        log.error("error heartbeat(): message={}", throwable.getMessage());
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  private Date expiresAt() {
+    return Date.from(Instant.now(clock).plus(timeout));
+  }
+
+  private void lapsed(ObjectId lapsed) {
+    if (lapsed.equals(id)) {
+      id = null;
+      session.set(null);
+    }
+  }
+
+  /**
+   * Ends the session, so its locks can be taken over straight away. Blocks until its document is deleted.
+   */
+  @Override
+  public void close() {
+    if (heartbeat != null) {
+      heartbeat.dispose();
+    }
+    var current = id;
+    id = null;
+    session.set(null);
+    heartbeating.set(false);
+    if (current != null) {
+      sessions.flatMap(collection -> Mono.from(collection.deleteOne(eq(ID, current))))
+        .onErrorResume(throwable -> {
+          // it lapses anyway
+          log.error("error close(): message={}", throwable.getMessage());
+          return Mono.empty();
+        })
+        .block(timeout);
+    }
+  }
+
+}
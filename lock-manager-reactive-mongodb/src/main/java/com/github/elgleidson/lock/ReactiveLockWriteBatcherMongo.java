@@ -0,0 +1,134 @@
+package com.github.elgleidson.lock;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Batches the lock inserts of {@link ReactiveLockManagerMongo} into unordered {@code bulkWrite} calls.
+ * <p>The first insert of a batch schedules it to be sent once the window elapses, and whoever fills the batch up sends it
+ * straight away. Each insert completes, or emits the error of its own insert (e.g. a duplicate key), mapped by its index in
+ * the batch, as the inserts are unordered and one failing doesn't stop the others. Only the inserts are batched, as a
+ * {@link BulkWriteResult} only counts the deletes of the whole batch, so it can't tell each release whether it matched.</p>
+ */
+final class ReactiveLockWriteBatcherMongo {
+
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+  private final Mono<MongoCollection<Document>> collection;
+  private final int maxSize;
+  private final long windowNanos;
+  private final Scheduler scheduler;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private List<PendingWrite> open;
+
+  ReactiveLockWriteBatcherMongo(Mono<MongoCollection<Document>> collection, int maxSize, Duration window) {
+    this.collection = collection;
+    this.maxSize = maxSize;
+    this.windowNanos = window.toNanos();
+    this.scheduler = Schedulers.parallel();
+  }
+
+  /**
+   * @return a Mono that inserts the document along with the others of its batch, emitting the error of this insert, or of
+   * the whole batch.
+   */
+  Mono<Void> insert(Document document) {
+    return Mono.<BulkWriteResult>create(sink -> {
+      var model = new InsertOneModel<>(document);
+      List<PendingWrite> batch;
+      boolean first;
+      boolean full;
+      mutex.lock();
+      try {
+        first = open == null;
+        if (first) {
+          open = new ArrayList<>(maxSize);
+        }
+        batch = open;
+        batch.add(new PendingWrite(model, sink));
+        full = batch.size() >= maxSize;
+        if (full) {
+          open = null;
+        }
+      } finally {
+        mutex.unlock();
+      }
+      if (full) {
+        send(batch);
+      } else if (first) {
+        scheduler.schedule(() -> {
+          if (close(batch)) {
+            send(batch);
+          }
+        }, windowNanos, TimeUnit.NANOSECONDS);
+      }
+    }).then();
+  }
+
+  private boolean close(List<PendingWrite> batch) {
+    mutex.lock();
+    try {
+      // it was already sent if someone filled it up meanwhile
+      if (open != batch) {
+        return false;
+      }
+      open = null;
+      return true;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void send(List<PendingWrite> batch) {
+    var models = batch.stream().map(PendingWrite::model).toList();
+    collection.flatMap(lockCollection -> Mono.from(lockCollection.bulkWrite(models, UNORDERED)))
+      .subscribe(
+        result -> batch.forEach(pending -> pending.sink().success(result)),
+        throwable -> fail(batch, throwable),
+        // no-op for the ones that already got the result
+        () -> batch.forEach(pending -> pending.sink().success()));
+  }
+
+  private void fail(List<PendingWrite> batch, Throwable throwable) {
+    if (!(throwable instanceof MongoBulkWriteException ex)) {
+      batch.forEach(pending -> pending.sink().error(throwable));
+      return;
+    }
+    // the writes without an error of their own did go through
+    var errors = ex.getWriteErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+    for (var index = 0; index < batch.size(); index++) {
+      var error = errors.get(index);
+      if (error != null) {
+        // as a single write would have failed
+        batch.get(index).sink().error(new MongoWriteException(error, ex.getServerAddress(), ex.getErrorLabels()));
+      } else if (ex.getWriteConcernError() != null) {
+        // applied, but not as durably as asked for
+        batch.get(index).sink().error(ex);
+      } else {
+        batch.get(index).sink().success(ex.getWriteResult());
+      }
+    }
+  }
+
+  private record PendingWrite(InsertOneModel<Document> model, MonoSink<BulkWriteResult> sink) {
+  }
+
+}
@@ -1,60 +1,162 @@
 package com.github.elgleidson.lock;
 
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.expr;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.regex;
 import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
-import com.github.elgleidson.lock.ReactiveLockManagerMongo.LockMongoEntity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.ListIndexesPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
 class ReactiveLockManagerMongoTest {
 
-  private static final Instant NOW = Instant.now();
+  // the dates are stored with millisecond precision
+  private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
   private static final Clock CLOCK = Clock.fixed(NOW, UTC);
 
   private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
   private static final Duration TTL = Duration.ofSeconds(30);
 
   private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
-  private static final String LOCK_ID = "some-mongodb-id";
+  private static final ObjectId LOCK_OBJECT_ID = new ObjectId();
+  private static final String LOCK_ID = LOCK_OBJECT_ID.toHexString();
   private static final Lock LOCK = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final ObjectId OTHER_LOCK_OBJECT_ID = new ObjectId();
+  private static final Lock OTHER_LOCK = new Lock(OTHER_LOCK_OBJECT_ID.toHexString(), "other-unique-identifier", EXPIRES_AT);
+  private static final Document LOCK_DOCUMENT = new Document("_id", LOCK_OBJECT_ID)
+    .append("uniqueIdentifier", UNIQUE_IDENTIFIER)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final Document LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER = new Document("_id", UNIQUE_IDENTIFIER)
+    .append("owner", LOCK_OBJECT_ID)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final Document OTHER_HOLDER_DOCUMENT = new Document("_id", UNIQUE_IDENTIFIER)
+    .append("owner", new ObjectId())
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+  private static final ObjectId SESSION_OBJECT_ID = new ObjectId();
+  private static final Duration SESSION_TIMEOUT = Duration.ofSeconds(10);
+  // the session locks have no expiration of their own
+  private static final Lock SESSION_LOCK = new Lock(LOCK_ID, UNIQUE_IDENTIFIER, null);
+  private static final Document SESSION_LOCK_DOCUMENT = new Document(LOCK_DOCUMENT)
+    .append("expiresAt", Date.from(ReactiveLockManagerMongo.NO_EXPIRATION))
+    .append("session", SESSION_OBJECT_ID);
+  private static final ObjectId OTHER_SESSION_OBJECT_ID = new ObjectId();
+  private static final Document OTHER_SESSION_HOLDER_DOCUMENT = new Document("_id", new ObjectId())
+    .append("uniqueIdentifier", UNIQUE_IDENTIFIER)
+    .append("expiresAt", Date.from(EXPIRES_AT.toInstant()))
+    .append("session", OTHER_SESSION_OBJECT_ID);
 
   @Mock
   private ReactiveMongoTemplate reactiveMongoTemplate;
+  @Mock
+  private MongoCollection<Document> lockCollection;
+  @Mock
+  private FindPublisher<Document> findPublisher;
+  @Mock
+  private ListIndexesPublisher<Document> listIndexesPublisher;
+  @Mock
+  private MongoCollection<Document> otherLockCollection;
+  @Mock
+  private FindPublisher<Document> otherFindPublisher;
+  @Mock
+  private MongoDatabase mongoDatabase;
+  @Mock
+  private BulkWriteResult bulkWriteResult;
+  @Mock
+  private ChangeStreamPublisher<Document> changeStreamPublisher;
+  @Mock
+  private ChangeStreamDocument<Document> changeStreamDocument;
+  @Mock
+  private MongoCollection<Document> sessionCollection;
+  @Mock
+  private FindPublisher<Document> sessionFindPublisher;
 
   private ReactiveLockManager lockManager;
 
   private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
   private Mono<Lock> lockResult;
   private Mono<Boolean> unlockResult;
+  private Mono<Long> unlockAllResult;
+  private Mono<Lock> getLockResult;
+  private Flux<Lock> listLocksResult;
 
   @BeforeEach
   void setUp() {
-    lockManager = new ReactiveLockManagerMongo(reactiveMongoTemplate, CLOCK);
+    doReturn(Mono.just(lockCollection)).when(reactiveMongoTemplate).getCollection("locks");
+    lockManager = lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, false);
     var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
     logger.addAppender(listAppender);
     listAppender.start();
@@ -62,6 +164,7 @@ class ReactiveLockManagerMongoTest {
 
   @AfterEach
   void tearDown() {
+    ((ReactiveLockManagerMongo) lockManager).close();
     listAppender.stop();
   }
 
@@ -71,16 +174,18 @@ class ReactiveLockManagerMongoTest {
     whenILock();
     thenIExpectLock();
     thenMongoInsertIsInvoked();
+    thenTheStatisticsAre(1, 0, 0);
   }
 
   @Test
   void lockAlreadyAcquired() {
-    var exception = new DuplicateKeyException("test exception");
+    var exception = new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()), new ServerAddress(), Set.of());
     givenMongoInsertThrowsAnException(exception);
     whenILock();
     thenIExpectLockFailureException();
     thenMongoInsertIsInvoked();
     thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
   }
 
   @Test
@@ -91,6 +196,309 @@ class ReactiveLockManagerMongoTest {
     thenIExpectLockFailureException(exception);
     thenMongoInsertIsInvoked();
     thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void unlockAllAcrossCollections() {
+    givenTwoLockCollections();
+    givenMongoRemoveAllIsInvokedSuccessfully(DeleteResult.acknowledged(1L));
+    doReturn(Mono.just(DeleteResult.acknowledged(1L)))
+      .when(otherLockCollection).deleteMany(any(Bson.class));
+    // "a".hashCode() is 97 and "b".hashCode() is 98
+    var lockA = new Lock(LOCK_ID, "a", EXPIRES_AT);
+    var lockB = new Lock(OTHER_LOCK_OBJECT_ID.toHexString(), "b", EXPIRES_AT);
+    StepVerifier.create(lockManager.unlockAll(List.of(lockA, lockB))).expectNext(2L).verifyComplete();
+    // a single deleteMany per collection
+    verify(otherLockCollection).deleteMany(in("_id", List.of(LOCK_OBJECT_ID)));
+    verify(lockCollection).deleteMany(in("_id", List.of(OTHER_LOCK_OBJECT_ID)));
+  }
+
+  @Test
+  void listLocksAcrossCollections() {
+    givenTwoLockCollections();
+    givenMongoFindIsInvokedSuccessfully();
+    var otherLockDocument = new Document("_id", OTHER_LOCK_OBJECT_ID)
+      .append("uniqueIdentifier", OTHER_LOCK.uniqueIdentifier())
+      .append("expiresAt", Date.from(EXPIRES_AT.toInstant()));
+    doReturn(otherFindPublisher).when(otherLockCollection).find(any(Bson.class));
+    doReturn(otherFindPublisher).when(otherFindPublisher).projection(any(Bson.class));
+    doAnswer(invocation -> {
+      Flux.just(otherLockDocument).subscribe(invocation.<Subscriber<Document>>getArgument(0));
+      return null;
+    }).when(otherFindPublisher).subscribe(any());
+    whenIListLocks("");
+    thenIExpectListLocks(LOCK, OTHER_LOCK);
+  }
+
+  @Test
+  void ensureIndexes() {
+    givenMongoListIndexesReturns(Flux.just(index("_id_")));
+    givenMongoCreateIndexIsInvokedSuccessfully();
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyComplete();
+    thenMongoCreateIndexIsInvoked("uniqueIdentifier", "expiresAt");
+  }
+
+  @Test
+  void ensureIndexesAlreadyThere() {
+    givenMongoListIndexesReturns(Flux.just(index("_id_"), index("uniqueIdentifier"), index("expiresAt")));
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyComplete();
+    thenMongoCreateIndexIsInvoked();
+  }
+
+  @Test
+  void ensureIndexesKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoListIndexesReturns(Flux.just(index("_id_")));
+    givenMongoCreateIndexIsInvokedSuccessfully();
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyComplete();
+    // the _id is the unique index
+    thenMongoCreateIndexIsInvoked("expiresAt");
+    verify(reactiveMongoTemplate, never()).getMongoDatabase();
+  }
+
+  @Test
+  void ensureIndexesClustered() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.CLUSTERED);
+    givenMongoCreateCollectionReturns(Mono.empty());
+    givenMongoListIndexesReturns(Flux.just(index("_id_")));
+    givenMongoCreateIndexIsInvokedSuccessfully();
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyComplete();
+    verify(mongoDatabase).createCollection(argThat("locks"::equals), argThat((CreateCollectionOptions options) ->
+      options.getClusteredIndexOptions().getKey().equals(Indexes.ascending("_id")) && options.getClusteredIndexOptions().isUnique()));
+    thenMongoCreateIndexIsInvoked("expiresAt");
+  }
+
+  @Test
+  void ensureIndexesClusteredAlreadyThere() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.CLUSTERED);
+    givenMongoCreateCollectionReturns(Mono.error(new MongoCommandException(
+      new BsonDocument("code", new BsonInt32(48)).append("errmsg", new BsonString("exists")), new ServerAddress())));
+    givenMongoListIndexesReturns(Flux.just(index("_id_"), index("expiresAt")));
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyComplete();
+    thenMongoCreateIndexIsInvoked();
+  }
+
+  @Test
+  void lockIndexesFailed() {
+    var exception = new RuntimeException("test exception");
+    givenMongoListIndexesReturns(Flux.error(exception));
+    StepVerifier.create(((ReactiveLockManagerMongo) lockManager).ensureIndexes()).verifyErrorMessage("test exception");
+    whenILock();
+    // the lock tries the indexes again, and fails without inserting as the lock could be acquired twice without them
+    thenIExpectLockFailureException(exception);
+    verify(listIndexesPublisher, times(2)).subscribe(any());
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheLogsContains("[ERROR] error ensureIndexes(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void lockWaitsForIndexes() {
+    givenMongoListIndexesReturns(Flux.just(index("_id_"), index("uniqueIdentifier"), index("expiresAt")));
+    givenMongoInsertedIsInvokedSuccessfully();
+    ((ReactiveLockManagerMongo) lockManager).ensureIndexes();
+    whenILock();
+    thenIExpectLock();
+    // listed once, no matter how many locks
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    verify(listIndexesPublisher).subscribe(any());
+  }
+
+  @Test
+  void lockWaitingWokenUpByTheRelease() {
+    // without the change stream, it would only poll after 10s
+    lockManager = waitingLockManager(true, Duration.ofSeconds(10));
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(Mono.just(OTHER_HOLDER_DOCUMENT));
+    doReturn(Mono.just(mongoDatabase)).when(reactiveMongoTemplate).getMongoDatabase();
+    doReturn(changeStreamPublisher).when(mongoDatabase).watch(anyList());
+    var events = Sinks.many().unicast().<ChangeStreamDocument<Document>>onBackpressureBuffer();
+    doAnswer(invocation -> {
+      events.asFlux().subscribe(invocation.<Subscriber<ChangeStreamDocument<Document>>>getArgument(0));
+      return null;
+    }).when(changeStreamPublisher).subscribe(any());
+    doReturn(new BsonDocument("_id", new BsonString(UNIQUE_IDENTIFIER))).when(changeStreamDocument).getDocumentKey();
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)))
+      // the holder is read again once the waiter is registered
+      .then(() -> verify(findPublisher, timeout(5_000).times(2)).first())
+      .then(() -> events.tryEmitNext(changeStreamDocument))
+      .expectNext(LOCK)
+      .expectComplete()
+      .verify(Duration.ofSeconds(5));
+    verify(lockCollection, times(2)).insertOne(any(Document.class));
+    thenTheStatisticsAre(1, 1, 0);
+    // no waiter is left
+    assertThat(events.currentSubscriberCount()).isZero();
+  }
+
+  @Test
+  void closeCancelsTheChangeStream() {
+    lockManager = waitingLockManager(true, Duration.ofSeconds(10));
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(Mono.just(OTHER_HOLDER_DOCUMENT));
+    doReturn(Mono.just(mongoDatabase)).when(reactiveMongoTemplate).getMongoDatabase();
+    doReturn(changeStreamPublisher).when(mongoDatabase).watch(anyList());
+    var events = Sinks.many().unicast().<ChangeStreamDocument<Document>>onBackpressureBuffer();
+    doAnswer(invocation -> {
+      events.asFlux().subscribe(invocation.<Subscriber<ChangeStreamDocument<Document>>>getArgument(0));
+      return null;
+    }).when(changeStreamPublisher).subscribe(any());
+    var waiting = lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)).subscribe(lock -> {}, throwable -> {});
+    verify(changeStreamPublisher, timeout(5_000)).subscribe(any());
+    ((ReactiveLockManagerMongo) lockManager).close();
+    assertThat(events.currentSubscriberCount()).isZero();
+    waiting.dispose();
+  }
+
+  @Test
+  void lockWaitingWithoutChangeStream() {
+    lockManager = waitingLockManager(true, Duration.ofMillis(100));
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(Mono.just(OTHER_HOLDER_DOCUMENT));
+    doReturn(Mono.just(mongoDatabase)).when(reactiveMongoTemplate).getMongoDatabase();
+    // e.g. a standalone server
+    doThrow(new RuntimeException("test exception")).when(mongoDatabase).watch(anyList());
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)))
+      .expectNext(LOCK)
+      .expectComplete()
+      .verify(Duration.ofSeconds(5));
+    // polled, so the holder isn't read again
+    verify(findPublisher).first();
+  }
+
+  @Test
+  void lockWaitingStillHeld() {
+    lockManager = waitingLockManager(false, Duration.ofMillis(100));
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(Mono.just(OTHER_HOLDER_DOCUMENT));
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofMillis(250));
+    thenIExpectLockFailureException();
+    verify(reactiveMongoTemplate, never()).getMongoDatabase();
+  }
+
+  @Test
+  void lockWaitingOtherFailure() {
+    lockManager = waitingLockManager(true, Duration.ofMillis(100));
+    var exception = new RuntimeException("test exception");
+    givenMongoInsertThrowsAnException(exception);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5));
+    thenIExpectLockFailureException(exception);
+    verify(lockCollection).insertOne(any(Document.class));
+  }
+
+  @Test
+  void lockWithSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    // started by the first lock only
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    verify(sessionCollection).insertOne(new Document("_id", SESSION_OBJECT_ID).append("expiresAt", Date.from(NOW.plus(SESSION_TIMEOUT))));
+    verify(lockCollection, times(2)).insertOne(SESSION_LOCK_DOCUMENT);
+  }
+
+  @Test
+  void lockWithSessionHeartbeat() {
+    givenASession(Duration.ofMillis(300));
+    givenMongoInsertedIsInvokedSuccessfully();
+    doReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null))).when(sessionCollection).updateOne(any(Bson.class), any(Bson.class));
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    // every third of the timeout, for all the locks of the session, and only while it hasn't lapsed
+    verify(sessionCollection, timeout(1_000).atLeast(2))
+      .updateOne(argThat((Bson filter) -> filter.equals(and(eq("_id", SESSION_OBJECT_ID), gt("expiresAt", Date.from(NOW))))), any(Bson.class));
+  }
+
+  @Test
+  void lockWithSessionOutlivesItsTtl() {
+    givenASession(Duration.ofMillis(300));
+    givenMongoInsertedIsInvokedSuccessfully();
+    doReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null))).when(sessionCollection).updateOne(any(Bson.class), any(Bson.class));
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, Duration.ofMillis(100));
+    thenIExpectLock(SESSION_LOCK);
+    // still held long after its TTL, as long as the session is heartbeated
+    verify(sessionCollection, timeout(1_000).atLeast(2)).updateOne(any(Bson.class), any(Bson.class));
+    givenMongoFindReturns(SESSION_LOCK_DOCUMENT);
+    givenTheSessionIsAlive(SESSION_OBJECT_ID, true);
+    StepVerifier.create(lockManager.renewAll(List.of(SESSION_LOCK), Duration.ofMillis(100)))
+      .expectNext(List.of(SESSION_LOCK))
+      .verifyComplete();
+    // nothing to extend
+    verify(lockCollection, never()).updateMany(any(Bson.class), any(Bson.class));
+  }
+
+  @Test
+  void renewAllOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoFindReturns(SESSION_LOCK_DOCUMENT);
+    givenTheSessionIsAlive(SESSION_OBJECT_ID, false);
+    StepVerifier.create(lockManager.renewAll(List.of(SESSION_LOCK), TTL))
+      .expectNext(List.of())
+      .verifyComplete();
+  }
+
+  @Test
+  void lockTakingOverALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertFailsAsDuplicateKeyOnce();
+    givenMongoFindOneReturns(Mono.just(OTHER_SESSION_HOLDER_DOCUMENT));
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, false);
+    givenMongoRemoveIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    // only if it's still the lapsed session's
+    verify(lockCollection).deleteOne(and(eq("_id", OTHER_SESSION_HOLDER_DOCUMENT.get("_id")), eq("session", OTHER_SESSION_OBJECT_ID)));
+    verify(lockCollection, times(2)).insertOne(SESSION_LOCK_DOCUMENT);
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockHeldByALiveSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(Mono.just(OTHER_SESSION_HOLDER_DOCUMENT));
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, true);
+    whenILock();
+    thenIExpectLockFailureException();
+    verify(lockCollection, never()).deleteOne(any(Bson.class));
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockHeldWithoutSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertThrowsAnException(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()),
+      new ServerAddress(), Set.of()));
+    givenMongoFindOneReturns(Mono.just(LOCK_DOCUMENT));
+    whenILock();
+    thenIExpectLockFailureException();
+    verify(sessionCollection, never()).find(any(Bson.class));
+  }
+
+  @Test
+  void getLockOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoFindOneReturns(Mono.just(OTHER_SESSION_HOLDER_DOCUMENT));
+    givenTheSessionIsAlive(OTHER_SESSION_OBJECT_ID, false);
+    whenIGetLock();
+    thenIExpectGetLockEmpty();
+    verify(findPublisher).projection(Projections.include("uniqueIdentifier", "expiresAt", "session"));
+  }
+
+  @Test
+  void closeEndsTheSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock(SESSION_LOCK);
+    ((ReactiveLockManagerMongo) lockManager).close();
+    verify(sessionCollection).deleteOne(eq("_id", SESSION_OBJECT_ID));
   }
 
   @Test
@@ -101,6 +509,146 @@ class ReactiveLockManagerMongoTest {
     thenMongoRemoveIsInvoked();
   }
 
+  @Test
+  void lockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoInsertedIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock();
+    verify(lockCollection).insertOne(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER);
+  }
+
+  @Test
+  void unlockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoRemoveIsInvokedSuccessfully();
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    verify(lockCollection).deleteOne(and(eq("owner", LOCK_OBJECT_ID), eq("_id", UNIQUE_IDENTIFIER)));
+  }
+
+  @Test
+  void unlockAllKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoRemoveAllIsInvokedSuccessfully(DeleteResult.acknowledged(2L));
+    whenIUnlockAll();
+    thenIExpectUnlockAll(2L);
+    verify(lockCollection).deleteMany(and(in("_id", List.of(UNIQUE_IDENTIFIER, "other-unique-identifier")),
+      in("owner", List.of(LOCK_OBJECT_ID, OTHER_LOCK_OBJECT_ID))));
+  }
+
+  @Test
+  void getLockKeyedByUniqueIdentifier() {
+    givenTheLayoutIs(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER);
+    givenMongoFindOneReturns(Mono.just(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER));
+    whenIGetLock();
+    thenIExpectGetLock(LOCK);
+    verify(lockCollection).find(and(eq("_id", UNIQUE_IDENTIFIER), gt("expiresAt", Date.from(NOW))));
+    verify(findPublisher).projection(Projections.include("owner", "expiresAt"));
+  }
+
+  @Test
+  void lockWithServerClock() {
+    givenTheServerClock();
+    // the server's clock is ahead of the application's
+    var serverExpiresAt = EXPIRES_AT.plusSeconds(5);
+    doReturn(Mono.just(new Document("_id", UNIQUE_IDENTIFIER).append("expiresAt", Date.from(serverExpiresAt.toInstant()))))
+      .when(lockCollection).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    whenILock();
+    StepVerifier.create(lockResult).expectNext(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, serverExpiresAt)).verifyComplete();
+    // takes the lock over once it has expired on the server's clock
+    var filter = and(eq("_id", UNIQUE_IDENTIFIER), expr(new Document("$lte", List.of("$expiresAt", "$$NOW"))));
+    var update = List.of(Aggregates.set(new Field<>("owner", LOCK_OBJECT_ID),
+      new Field<>("expiresAt", new Document("$add", List.of("$$NOW", 30_000L)))));
+    verify(lockCollection).findOneAndUpdate(argThat((Bson actual) -> actual.equals(filter)),
+      argThat((List<? extends Bson> actual) -> actual.equals(update)), argThat(FindOneAndUpdateOptions::isUpsert));
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockWithServerClockAlreadyAcquired() {
+    givenTheServerClock();
+    var duplicateKey = new BsonDocument("code", new BsonInt32(11000)).append("errmsg", new BsonString("E11000 duplicate key error"));
+    doReturn(Mono.error(new MongoCommandException(duplicateKey, new ServerAddress())))
+      .when(lockCollection).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    whenILock();
+    thenIExpectLockFailureException();
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void getLockWithServerClock() {
+    givenTheServerClock();
+    givenMongoFindOneReturns(Mono.empty());
+    whenIGetLock();
+    thenIExpectGetLockEmpty();
+    verify(lockCollection).find(and(eq("_id", UNIQUE_IDENTIFIER), expr(new Document("$gt", List.of("$expiresAt", "$$NOW")))));
+  }
+
+  @Test
+  void serverClockNeedsTheUniqueIdentifierAsId() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, true))
+      .withMessage("the server clock needs the unique identifier as the _id, but the layout was OBJECT_ID");
+  }
+
+  @Test
+  void lockBatched() {
+    lockManager = lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    doReturn(Mono.just(bulkWriteResult)).when(lockCollection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    // the second lock fills the batch up, so neither waits for the window
+    var lockA = lockManager.lock("a", TTL).toFuture();
+    var lockB = lockManager.lock("b", TTL).toFuture();
+    StepVerifier.create(Mono.fromFuture(lockA)).expectNext(new Lock(LOCK_ID, "a", EXPIRES_AT)).verifyComplete();
+    StepVerifier.create(Mono.fromFuture(lockB)).expectNext(new Lock(LOCK_ID, "b", EXPIRES_AT)).verifyComplete();
+    verify(lockCollection).bulkWrite(argThat((List<? extends WriteModel<? extends Document>> models) -> models.size() == 2),
+      argThat((BulkWriteOptions options) -> !options.isOrdered()));
+    verify(lockCollection, never()).insertOne(any(Document.class));
+    thenTheStatisticsAre(2, 0, 0);
+  }
+
+  @Test
+  void lockBatchedAlreadyAcquired() {
+    lockManager = lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    // only the write of "a" fails
+    var duplicateKey = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0);
+    doReturn(Mono.error(new MongoBulkWriteException(bulkWriteResult, List.of(duplicateKey), null, new ServerAddress(), Set.of())))
+      .when(lockCollection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    var lockA = lockManager.lock("a", TTL).toFuture();
+    var lockB = lockManager.lock("b", TTL).toFuture();
+    StepVerifier.create(Mono.fromFuture(lockA)).verifyErrorSatisfies(throwable -> assertThat(throwable)
+      .isInstanceOf(LockFailureException.class)
+      .hasMessage("Lock already acquired on 'a'!"));
+    StepVerifier.create(Mono.fromFuture(lockB)).expectNext(new Lock(LOCK_ID, "b", EXPIRES_AT)).verifyComplete();
+    thenTheStatisticsAre(1, 1, 0);
+  }
+
+  @Test
+  void unlockBatchedOnlyOneMatching() {
+    lockManager = lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, false, 2, Duration.ofSeconds(10));
+    var otherLock = new Lock(new ObjectId().toHexString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+    doReturn(Mono.just(DeleteResult.acknowledged(1L)))
+      .when(lockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+    // expired, or taken over meanwhile
+    doReturn(Mono.just(DeleteResult.acknowledged(0L)))
+      .when(lockCollection).deleteOne(and(eq("_id", new ObjectId(otherLock.id())), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+    // two releases at once, each one told whether its own lock was released
+    var unlock = lockManager.unlock(LOCK).toFuture();
+    var unlockOther = lockManager.unlock(otherLock).toFuture();
+    StepVerifier.create(Mono.fromFuture(unlock)).expectNext(true).verifyComplete();
+    StepVerifier.create(Mono.fromFuture(unlockOther)).expectNext(false).verifyComplete();
+    verify(lockCollection, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+
+  @Test
+  void batchSizeAtLeastOne() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> lockManager(1, ReactiveLockManagerMongo.Layout.OBJECT_ID, false, 0, Duration.ZERO))
+      .withMessage("batchSize must be at least 1, but was 0");
+  }
+
   @Test
   void unlockRecordNotFound() {
     givenMongoRemoveDoesNotFindAnyRecord();
@@ -109,40 +657,281 @@ class ReactiveLockManagerMongoTest {
     thenMongoRemoveIsInvoked();
   }
 
+  @Test
+  void unlockUnacknowledged() {
+    givenMongoRemoveIsUnacknowledged();
+    whenIUnlock();
+    // a fire-and-forget release (w:0) is assumed to go through, the lock expires anyway otherwise
+    thenIExpectUnlock(true);
+    thenMongoRemoveIsInvoked();
+  }
+
+  @Test
+  void unlockNotALockId() {
+    StepVerifier.create(lockManager.unlock(new Lock("not-an-object-id", UNIQUE_IDENTIFIER, EXPIRES_AT))).expectNext(false).verifyComplete();
+    verify(lockCollection, never()).deleteOne(any(Bson.class));
+  }
+
   @Test
   void unlockException() {
     var exception = new RuntimeException("test exception");
-    givenMongoTemplateRemoveThrowsAnException(exception);
+    givenMongoRemoveThrowsAnException(exception);
     whenIUnlock();
     thenIExpectUnlock(false);
     thenMongoRemoveIsInvoked();
     thenTheLogsContains("[ERROR] error unlock(): message=test exception");
   }
 
+  @Test
+  void renewAll() {
+    doReturn(Mono.just(UpdateResult.acknowledged(2L, 2L, null))).when(lockCollection).updateMany(any(Bson.class), any(Bson.class));
+    var expiresAt = ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(60);
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK, OTHER_LOCK), Duration.ofSeconds(60)))
+      .expectNext(List.of(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, expiresAt), new Lock(OTHER_LOCK.id(), OTHER_LOCK.uniqueIdentifier(), expiresAt)))
+      .verifyComplete();
+    // a single updateMany, only for the ones still held by their holders
+    verify(lockCollection).updateMany(and(in("_id", List.of(LOCK_OBJECT_ID, OTHER_LOCK_OBJECT_ID)), gt("expiresAt", Date.from(NOW))),
+      Updates.set("expiresAt", Date.from(expiresAt.toInstant())));
+  }
+
+  @Test
+  void renewAllSomeLost() {
+    doReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null))).when(lockCollection).updateMany(any(Bson.class), any(Bson.class));
+    givenMongoFindIsInvokedSuccessfully();
+    // the ones still held are the ones renewed
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK, OTHER_LOCK), TTL))
+      .expectNext(List.of(LOCK))
+      .verifyComplete();
+  }
+
+  @Test
+  void renewAllWithServerClock() {
+    givenTheServerClock();
+    doReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null))).when(lockCollection).updateMany(any(Bson.class), anyList());
+    // the server's clock is ahead of the application's
+    var serverExpiresAt = ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(65);
+    var renewedDocument = new Document(LOCK_DOCUMENT_KEYED_BY_UNIQUE_IDENTIFIER).append("expiresAt", Date.from(serverExpiresAt.toInstant()));
+    doReturn(findPublisher).when(lockCollection).find(any(Bson.class));
+    doReturn(findPublisher).when(findPublisher).projection(any(Bson.class));
+    doAnswer(invocation -> {
+      Flux.just(renewedDocument).subscribe(invocation.<Subscriber<Document>>getArgument(0));
+      return null;
+    }).when(findPublisher).subscribe(any());
+    // read back, even though all of them were renewed, for the expirations the server set
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK), Duration.ofSeconds(60)))
+      .expectNext(List.of(new Lock(LOCK_ID, UNIQUE_IDENTIFIER, serverExpiresAt)))
+      .verifyComplete();
+  }
+
+  @Test
+  void renewAllNotALockId() {
+    var notALock = new Lock("not-a-lock-id", UNIQUE_IDENTIFIER, EXPIRES_AT);
+    StepVerifier.create(lockManager.renewAll(List.of(notALock), Duration.ofSeconds(60)))
+      .expectNext(List.of())
+      .verifyComplete();
+    verify(lockCollection, never()).updateMany(any(Bson.class), any(Bson.class));
+    thenTheLogsContains("[WARN] renewAll(): not a lock from this lock manager: " + notALock);
+  }
+
+  @Test
+  void unlockAll() {
+    givenMongoRemoveAllIsInvokedSuccessfully(DeleteResult.acknowledged(2L));
+    whenIUnlockAll();
+    thenIExpectUnlockAll(2L);
+    thenMongoRemoveAllIsInvoked();
+  }
+
+  @Test
+  void unlockAllUnacknowledged() {
+    givenMongoRemoveAllIsInvokedSuccessfully(DeleteResult.unacknowledged());
+    whenIUnlockAll();
+    thenIExpectUnlockAll(2L);
+    thenMongoRemoveAllIsInvoked();
+  }
+
+  @Test
+  void unlockAllException() {
+    doReturn(Mono.error(new RuntimeException("test exception")))
+      .when(lockCollection).deleteMany(any(Bson.class));
+    whenIUnlockAll();
+    thenIExpectUnlockAll(0L);
+    thenMongoRemoveAllIsInvoked();
+    thenTheLogsContains("[ERROR] error unlockAll(): message=test exception");
+  }
+
+  @Test
+  void getLock() {
+    givenMongoFindOneReturns(Mono.just(LOCK_DOCUMENT));
+    whenIGetLock();
+    thenIExpectGetLock(LOCK);
+    thenMongoFindOneIsInvoked();
+  }
+
+  @Test
+  void getLockNotFound() {
+    givenMongoFindOneReturns(Mono.empty());
+    whenIGetLock();
+    thenIExpectGetLockEmpty();
+    thenMongoFindOneIsInvoked();
+  }
+
+  @Test
+  void isLocked() {
+    givenMongoFindOneReturns(Mono.just(LOCK_DOCUMENT));
+    StepVerifier.create(lockManager.isLocked(UNIQUE_IDENTIFIER)).expectNext(true).verifyComplete();
+  }
+
+  @Test
+  void listLocks() {
+    givenMongoFindIsInvokedSuccessfully();
+    whenIListLocks("my-unique.");
+    thenIExpectListLocks(LOCK);
+    thenMongoFindIsInvoked(regex("uniqueIdentifier", "^my-unique\\."));
+  }
+
+  private ReactiveLockManagerMongo lockManager(int collections, ReactiveLockManagerMongo.Layout layout, boolean serverClock) {
+    return lockManager(collections, layout, serverClock, 1, Duration.ZERO);
+  }
+
+  private ReactiveLockManagerMongo lockManager(int collections, ReactiveLockManagerMongo.Layout layout, boolean serverClock, int batchSize,
+                                               Duration batchWindow) {
+    var options = ReactiveLockManagerMongo.Options.builder().collections(collections).layout(layout).serverClock(serverClock)
+      .batchSize(batchSize).batchWindow(batchWindow).watchReleases(false).build();
+    return new ReactiveLockManagerMongo(reactiveMongoTemplate, lockStatistics, options, CLOCK, () -> LOCK_OBJECT_ID);
+  }
+
+  private ReactiveLockManagerMongo waitingLockManager(boolean watchReleases, Duration waitPollInterval) {
+    var options = ReactiveLockManagerMongo.Options.builder().layout(ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER)
+      .watchReleases(watchReleases).waitPollInterval(waitPollInterval).build();
+    return new ReactiveLockManagerMongo(reactiveMongoTemplate, lockStatistics, options, CLOCK, () -> LOCK_OBJECT_ID);
+  }
+
+  private void givenASession(Duration timeout) {
+    doReturn(Mono.just(sessionCollection)).when(reactiveMongoTemplate).getCollection("lock_sessions");
+    lenient().doReturn(Mono.just(InsertOneResult.acknowledged(new BsonObjectId(SESSION_OBJECT_ID)))).when(sessionCollection).insertOne(any(Document.class));
+    lenient().doReturn(Mono.just(DeleteResult.acknowledged(1L))).when(sessionCollection).deleteOne(any(Bson.class));
+    // the id of the first lock, then the one of the session it starts
+    var ids = new ArrayDeque<>(List.of(LOCK_OBJECT_ID, SESSION_OBJECT_ID));
+    var options = ReactiveLockManagerMongo.Options.builder().watchReleases(false).sessionTimeout(timeout).build();
+    lockManager = new ReactiveLockManagerMongo(reactiveMongoTemplate, lockStatistics, options, CLOCK, () -> ids.isEmpty() ? LOCK_OBJECT_ID : ids.poll());
+  }
+
+  private void givenTheSessionIsAlive(ObjectId sessionId, boolean alive) {
+    doReturn(sessionFindPublisher).when(sessionCollection).find(and(eq("_id", sessionId), gt("expiresAt", Date.from(NOW))));
+    doReturn(sessionFindPublisher).when(sessionFindPublisher).projection(any(Bson.class));
+    doReturn(alive ? Mono.just(new Document("_id", sessionId)) : Mono.empty()).when(sessionFindPublisher).first();
+  }
+
+  private void givenMongoInsertFailsAsDuplicateKeyOnce() {
+    doReturn(Mono.error(new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", new BsonDocument()), new ServerAddress(), Set.of())))
+      .doReturn(Mono.just(InsertOneResult.acknowledged(new BsonObjectId(LOCK_OBJECT_ID))))
+      .when(lockCollection).insertOne(any(Document.class));
+  }
+
+  private void givenTheLayoutIs(ReactiveLockManagerMongo.Layout layout) {
+    lockManager = lockManager(1, layout, false);
+  }
+
+  private void givenTheServerClock() {
+    lockManager = lockManager(1, ReactiveLockManagerMongo.Layout.UNIQUE_IDENTIFIER, true);
+  }
+
+  private void givenMongoCreateCollectionReturns(Mono<Void> created) {
+    doReturn(Mono.just(mongoDatabase)).when(reactiveMongoTemplate).getMongoDatabase();
+    doReturn(created).when(mongoDatabase).createCollection(any(String.class), any(CreateCollectionOptions.class));
+  }
+
+  private void givenTwoLockCollections() {
+    doReturn(Mono.just(lockCollection)).when(reactiveMongoTemplate).getCollection("locks_0");
+    doReturn(Mono.just(otherLockCollection)).when(reactiveMongoTemplate).getCollection("locks_1");
+    lockManager = lockManager(2, ReactiveLockManagerMongo.Layout.OBJECT_ID, false);
+  }
+
+  private void givenMongoListIndexesReturns(Flux<Document> indexes) {
+    doReturn(listIndexesPublisher).when(lockCollection).listIndexes();
+    doAnswer(invocation -> {
+      indexes.subscribe(invocation.<Subscriber<Document>>getArgument(0));
+      return null;
+    }).when(listIndexesPublisher).subscribe(any());
+  }
+
+  private Document index(String name) {
+    return new Document("name", name);
+  }
+
+  private void givenMongoCreateIndexIsInvokedSuccessfully() {
+    doAnswer(invocation -> Mono.just(invocation.<IndexOptions>getArgument(1).getName()))
+      .when(lockCollection).createIndex(any(Bson.class), any(IndexOptions.class));
+  }
+
+  private void thenMongoCreateIndexIsInvoked(String... names) {
+    verify(lockCollection, times(names.length)).createIndex(any(Bson.class), any(IndexOptions.class));
+    for (var name : names) {
+      verify(lockCollection).createIndex(argThat((Bson keys) -> keys.equals(Indexes.ascending(name))),
+        argThat((IndexOptions options) -> name.equals(options.getName())));
+    }
+  }
+
+  private void givenMongoFindOneReturns(Mono<Document> document) {
+    doReturn(findPublisher).when(lockCollection).find(any(Bson.class));
+    doReturn(findPublisher).when(findPublisher).projection(any(Bson.class));
+    doReturn(document).when(findPublisher).first();
+  }
+
+  private void givenMongoFindIsInvokedSuccessfully() {
+    givenMongoFindReturns(LOCK_DOCUMENT);
+  }
+
+  private void givenMongoFindReturns(Document document) {
+    doReturn(findPublisher).when(lockCollection).find(any(Bson.class));
+    doReturn(findPublisher).when(findPublisher).projection(any(Bson.class));
+    doAnswer(invocation -> {
+      Flux.just(document).subscribe(invocation.<Subscriber<Document>>getArgument(0));
+      return null;
+    }).when(findPublisher).subscribe(any());
+  }
+
   private void givenMongoInsertedIsInvokedSuccessfully() {
-    var lockMongoEntity = new LockMongoEntity(LOCK_ID, UNIQUE_IDENTIFIER, EXPIRES_AT.toLocalDateTime());
-    doReturn(Mono.just(lockMongoEntity))
-      .when(reactiveMongoTemplate).insert(any(LockMongoEntity.class));
+    doReturn(Mono.just(InsertOneResult.acknowledged(new BsonObjectId(LOCK_OBJECT_ID))))
+      .when(lockCollection).insertOne(any(Document.class));
   }
 
   private void givenMongoInsertThrowsAnException(Throwable throwable) {
     doReturn(Mono.error(throwable))
-      .when(reactiveMongoTemplate).insert(any(LockMongoEntity.class));
+      .when(lockCollection).insertOne(any(Document.class));
   }
 
   private void givenMongoRemoveIsInvokedSuccessfully() {
     doReturn(Mono.just(DeleteResult.acknowledged(1L)))
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
+  }
+
+  private void givenMongoRemoveIsUnacknowledged() {
+    doReturn(Mono.just(DeleteResult.unacknowledged()))
+      .when(lockCollection).deleteOne(any(Bson.class));
   }
 
   private void givenMongoRemoveDoesNotFindAnyRecord() {
     doReturn(Mono.just(DeleteResult.acknowledged(0L)))
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
   }
 
-  private void givenMongoTemplateRemoveThrowsAnException(Throwable throwable) {
+  private void givenMongoRemoveThrowsAnException(Throwable throwable) {
     doReturn(Mono.error(throwable))
-      .when(reactiveMongoTemplate).remove(any(Query.class), any(Class.class));
+      .when(lockCollection).deleteOne(any(Bson.class));
+  }
+
+  private void givenMongoRemoveAllIsInvokedSuccessfully(DeleteResult deleteResult) {
+    doReturn(Mono.just(deleteResult))
+      .when(lockCollection).deleteMany(any(Bson.class));
+  }
+
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    listLocksResult = lockManager.listLocks(prefix);
   }
 
   private void whenILock() {
@@ -153,8 +942,16 @@ class ReactiveLockManagerMongoTest {
     unlockResult = lockManager.unlock(LOCK);
   }
 
+  private void whenIUnlockAll() {
+    unlockAllResult = lockManager.unlockAll(List.of(LOCK, OTHER_LOCK));
+  }
+
   private void thenIExpectLock() {
-    StepVerifier.create(lockResult).expectNext(LOCK).verifyComplete();
+    thenIExpectLock(LOCK);
+  }
+
+  private void thenIExpectLock(Lock expected) {
+    StepVerifier.create(lockResult).expectNext(expected).verifyComplete();
   }
 
   private void thenIExpectLockFailureException() {
@@ -176,18 +973,52 @@ class ReactiveLockManagerMongoTest {
     StepVerifier.create(unlockResult).expectNext(expected).verifyComplete();
   }
 
+  private void thenIExpectUnlockAll(long expected) {
+    StepVerifier.create(unlockAllResult).expectNext(expected).verifyComplete();
+  }
+
   private void thenMongoInsertIsInvoked() {
-    var expected = new LockMongoEntity(null, UNIQUE_IDENTIFIER, EXPIRES_AT.toLocalDateTime());
-    verify(reactiveMongoTemplate).insert(expected);
+    verify(lockCollection).insertOne(LOCK_DOCUMENT);
   }
 
   private void thenMongoRemoveIsInvoked() {
-    var expected = query(where("id").is(LOCK_ID).and("uniqueIdentifier").is(UNIQUE_IDENTIFIER)).limit(1);
-    verify(reactiveMongoTemplate).remove(expected, LockMongoEntity.class);
+    verify(lockCollection).deleteOne(and(eq("_id", LOCK_OBJECT_ID), eq("uniqueIdentifier", UNIQUE_IDENTIFIER)));
+  }
+
+  private void thenMongoRemoveAllIsInvoked() {
+    verify(lockCollection).deleteMany(in("_id", List.of(LOCK_OBJECT_ID, OTHER_LOCK_OBJECT_ID)));
+  }
+
+  private void thenIExpectGetLock(Lock expected) {
+    StepVerifier.create(getLockResult).expectNext(expected).verifyComplete();
+  }
+
+  private void thenIExpectGetLockEmpty() {
+    StepVerifier.create(getLockResult).verifyComplete();
+  }
+
+  private void thenIExpectListLocks(Lock... expected) {
+    StepVerifier.create(listLocksResult).expectNext(expected).verifyComplete();
+  }
+
+  private void thenMongoFindOneIsInvoked() {
+    thenMongoFindIsInvoked(eq("uniqueIdentifier", UNIQUE_IDENTIFIER));
+  }
+
+  private void thenMongoFindIsInvoked(Bson uniqueIdentifierFilter) {
+    verify(lockCollection).find(and(uniqueIdentifierFilter, gt("expiresAt", Date.from(NOW))));
+    verify(findPublisher).projection(Projections.include("uniqueIdentifier", "expiresAt"));
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
   }
 
   private void thenTheLogsContains(String expectedErrorMessage) {
     assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
   }
 
-}
\ No newline at end of file
+}
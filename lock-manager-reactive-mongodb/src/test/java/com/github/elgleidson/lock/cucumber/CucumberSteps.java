@@ -15,6 +15,7 @@ import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import lombok.SneakyThrows;
@@ -106,6 +107,25 @@ public class CucumberSteps {
     callUpdateSequentially(times, id, this::updateLock);
   }
 
+  @When("I call the lock update {int} times with id prefix {string}, cancelling at random points")
+  public void callTheLockUpdateCancellingAtRandomPoints(int times, String prefix) {
+    var random = ThreadLocalRandom.current();
+    for (int i = 1; i <= times; i++) {
+      var id = prefix + i;
+      db.put(id, new AtomicInteger(0));
+      var subscription = updateLock(i, id).subscribe();
+      // cancels while acquiring, while updating, while releasing or once done
+      var cancelAfter = Duration.ofMillis(random.nextLong(delay.toMillis() * 2));
+      Mono.delay(cancelAfter).subscribe(unused -> subscription.dispose());
+    }
+  }
+
+  @When("I call the lock update on {int} records with id prefix {string}, {int} at a time")
+  public void callTheLockUpdateOnEach(int records, String prefix, int concurrency) {
+    var ids = Flux.range(1, records).map(i -> prefix + i).doOnNext(id -> db.put(id, new AtomicInteger(0)));
+    lockManager.wrapEach(ids, ttl, concurrency, id -> update(0, id)).then().block();
+  }
+
   private void callUpdateSequentially(int times, String id, BiFunction<Integer, String, Mono<Boolean>> function) {
     var responses = Flux.range(1, times)
       .concatMap(i -> function.apply(i, id)
@@ -153,6 +173,16 @@ public class CucumberSteps {
     assertThat(updates).isEqualTo(expectedUpdates);
   }
 
+  @Then("the records with id prefix {string} are updated {int} time(s)")
+  public void thenTheRecordsAreUpdated(String prefix, int expectedUpdates) {
+    assertThat(db).isNotEmpty();
+    db.forEach((id, updates) -> {
+      if (id.startsWith(prefix)) {
+        assertThat(updates).hasValue(expectedUpdates);
+      }
+    });
+  }
+
   @Then("the lock is acquired")
   public void thenTheLockIsAcquired() {
     assertThat(lockResult).isPresent();
@@ -167,4 +197,27 @@ public class CucumberSteps {
   public void thenTheLockIsReleased() {
     assertThat(unlockResult).isTrue();
   }
+
+  @Then("the record with id {string} is locked")
+  public void thenTheRecordIsLocked(String id) {
+    assertThat(lockManager.isLocked(id).block()).isTrue();
+    assertThat(lockManager.getLock(id).blockOptional()).map(Lock::id).isEqualTo(lockResult.map(Lock::id));
+  }
+
+  @Then("the record with id {string} is not locked")
+  public void thenTheRecordIsNotLocked(String id) {
+    assertThat(lockManager.isLocked(id).block()).isFalse();
+    assertThat(lockManager.getLock(id).blockOptional()).isEmpty();
+  }
+
+  @Then("no record with id prefix {string} is left locked")
+  public void thenNoRecordIsLeftLocked(String prefix) {
+    await().pollDelay(Duration.ofSeconds(1)).atMost(Duration.ofSeconds(5))
+      .untilAsserted(() -> assertThat(lockManager.listLocks(prefix).collectList().block()).isEmpty());
+  }
+
+  @Then("listing the locks with prefix {string} returns {int} lock(s)")
+  public void thenListingTheLocksReturns(String prefix, int expectedLocks) {
+    assertThat(lockManager.listLocks(prefix).collectList().block()).hasSize(expectedLocks);
+  }
 }
\ No newline at end of file
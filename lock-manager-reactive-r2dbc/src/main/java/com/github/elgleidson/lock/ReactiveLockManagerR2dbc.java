@@ -0,0 +1,226 @@
+package com.github.elgleidson.lock;
+
+import io.r2dbc.spi.Readable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Locks on a table of a relational database, one row per lock held, the reactive counterpart of the JDBC lock manager.
+ * <p>Acquiring a lock inserts its row, or takes it over when it has expired, in a single statement (see
+ * {@link LockSqlDialect}), so an expired lock never needs cleaning up before it can be acquired again.</p>
+ */
+@Slf4j
+public class ReactiveLockManagerR2dbc implements ReactiveLockManager {
+
+  public static final String DEFAULT_TABLE_NAME = "locks";
+
+  // how many locks a renewal statement goes through at most, so its IN list stays within what every database accepts
+  private static final int RENEW_CHUNK = 1000;
+
+  private final DatabaseClient databaseClient;
+  private final LockSqlDialect dialect;
+  private final String tableName;
+  private final LockStatistics lockStatistics;
+  private final Clock clock;
+  private final Supplier<UUID> uuidSupplier;
+
+  public ReactiveLockManagerR2dbc(DatabaseClient databaseClient, LockSqlDialect dialect) {
+    this(databaseClient, dialect, DEFAULT_TABLE_NAME);
+  }
+
+  public ReactiveLockManagerR2dbc(DatabaseClient databaseClient, LockSqlDialect dialect, String tableName) {
+    this(databaseClient, dialect, tableName, new LockStatistics());
+  }
+
+  public ReactiveLockManagerR2dbc(DatabaseClient databaseClient, LockSqlDialect dialect, String tableName, LockStatistics lockStatistics) {
+    this(databaseClient, dialect, tableName, lockStatistics, Clock.systemUTC(), UUID::randomUUID);
+  }
+
+  protected ReactiveLockManagerR2dbc(DatabaseClient databaseClient, LockSqlDialect dialect, String tableName, LockStatistics lockStatistics,
+                                     Clock clock, Supplier<UUID> uuidSupplier) {
+    this.databaseClient = databaseClient;
+    this.dialect = dialect;
+    this.tableName = LockSqlDialect.checkTableName(tableName);
+    this.lockStatistics = lockStatistics;
+    this.clock = clock;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  /**
+   * Creates the lock table, unless it already exists.
+   */
+  public Mono<Void> ensureTable() {
+    return databaseClient.sql(dialect.createTableSql(tableName)).then();
+  }
+
+  @Override
+  public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+    return Mono.defer(() -> {
+        var start = System.nanoTime();
+        var id = uuidSupplier.get().toString();
+        var now = Instant.now(clock).toEpochMilli();
+        var expiresAt = now + expiresIn.toMillis();
+        return databaseClient.sql(dialect.acquireSql(tableName))
+          .bind("uniqueIdentifier", uniqueIdentifier)
+          .bind("id", id)
+          .bind("expiresAt", expiresAt)
+          .bind("now", now)
+          .fetch()
+          .rowsUpdated()
+          .flatMap(updated -> updated == 0 ? Mono.just(false) : checkHeldBy(uniqueIdentifier, id))
+          .flatMap(acquired -> acquired
+            ? Mono.just(new Lock(id, uniqueIdentifier, Instant.ofEpochMilli(expiresAt).atZone(ZoneOffset.UTC)))
+            : Mono.error(alreadyLocked(uniqueIdentifier, start)))
+          .doOnNext(lock -> lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start))
+          .onErrorMap(throwable -> {
+            if (throwable instanceof LockFailureException) {
+              return throwable;
+            }
+            if (throwable instanceof DuplicateKeyException) {
+              // two inserts racing for a unique identifier without a row yet
+              return alreadyLocked(uniqueIdentifier, start);
+            }
+            log.error("error lock(): message={}", throwable.getMessage());
+            lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+            return LockFailureException.other(uniqueIdentifier, throwable);
+          });
+      })
+      .doFirst(() -> log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn))
+      .doOnSuccess(lock -> log.debug("locked={}", lock));
+  }
+
+  private LockFailureException alreadyLocked(String uniqueIdentifier, long start) {
+    // this is to track concurrent calls
+    log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+    lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+    return LockFailureException.alreadyLocked(uniqueIdentifier);
+  }
+
+  private Mono<Boolean> checkHeldBy(String uniqueIdentifier, String id) {
+    if (!dialect.countsUnchangedRows()) {
+      return Mono.just(true);
+    }
+    return getLock(uniqueIdentifier).map(lock -> lock.id().equals(id)).defaultIfEmpty(false);
+  }
+
+  @Override
+  public Mono<Boolean> unlock(Lock lock) {
+    // only unlocks if lock id and unique identifier match
+    return databaseClient.sql(dialect.releaseSql(tableName))
+      .bind("uniqueIdentifier", lock.uniqueIdentifier())
+      .bind("id", lock.id())
+      .fetch()
+      .rowsUpdated()
+      .map(deleted -> deleted > 0)
+      .defaultIfEmpty(false)
+      .onErrorResume(throwable -> {
+        // log the error, but returns successfully as the lock will expire
+        log.error("error unlock(): message={}", throwable.getMessage());
+        return Mono.just(false);
+      })
+      .doFirst(() -> log.debug("trying to unlock {}", lock))
+      .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
+  }
+
+  @Override
+  public Mono<Long> unlockAll(List<Lock> locks) {
+    if (locks.isEmpty()) {
+      return Mono.just(0L);
+    }
+    // the lock ids are unique, so matching them only removes the locks still held by their holders
+    return databaseClient.sql(dialect.releaseAllSql(tableName))
+      .bind("ids", locks.stream().map(Lock::id).toList())
+      .fetch()
+      .rowsUpdated()
+      .defaultIfEmpty(0L)
+      .onErrorResume(throwable -> {
+        // log the error, but returns successfully as the locks will expire
+        log.error("error unlockAll(): message={}", throwable.getMessage());
+        return Mono.just(0L);
+      })
+      .doFirst(() -> log.debug("trying to unlock {} locks", locks.size()))
+      .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
+  }
+
+  @Override
+  public Mono<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    return Flux.fromIterable(locks)
+      .buffer(RENEW_CHUNK)
+      .concatMap(chunk -> renew(chunk, expiresIn))
+      .collectList()
+      .doFirst(() -> log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn))
+      .doOnSuccess(renewed -> log.debug("renewed={}", renewed.size()));
+  }
+
+  private Flux<Lock> renew(List<Lock> locks, Duration expiresIn) {
+    return Flux.defer(() -> {
+      var now = Instant.now(clock).toEpochMilli();
+      var expiresAt = now + expiresIn.toMillis();
+      var ids = locks.stream().map(Lock::id).distinct().toList();
+      var renewedExpiresAt = Instant.ofEpochMilli(expiresAt).atZone(ZoneOffset.UTC);
+      // the lock ids are unique, so matching them only renews the locks still held by their holders
+      return databaseClient.sql(dialect.renewAllSql(tableName))
+        .bind("ids", ids)
+        .bind("expiresAt", expiresAt)
+        .bind("now", now)
+        .fetch()
+        .rowsUpdated()
+        .defaultIfEmpty(0L)
+        // some were lost (or not counted, e.g. by MySQL when the expiration is unchanged), the ones renewed tell them apart
+        .flatMap(updated -> updated == ids.size() ? Mono.just(List.copyOf(ids)) : renewedIds(ids, expiresAt))
+        .map(HashSet::new)
+        .flatMapMany(renewedIds -> Flux.fromIterable(locks)
+          .filter(lock -> renewedIds.contains(lock.id()))
+          .map(lock -> new Lock(lock.id(), lock.uniqueIdentifier(), renewedExpiresAt)));
+    });
+  }
+
+  private Mono<List<String>> renewedIds(List<String> ids, long expiresAt) {
+    return databaseClient.sql(dialect.renewedSql(tableName))
+      .bind("ids", ids)
+      .bind("expiresAt", expiresAt)
+      .map(row -> row.get("id", String.class))
+      .all()
+      .collectList();
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Mono<Lock> getLock(String uniqueIdentifier) {
+    return Mono.defer(() -> databaseClient.sql(dialect.selectSql(tableName))
+      .bind("uniqueIdentifier", uniqueIdentifier)
+      .bind("now", Instant.now(clock).toEpochMilli())
+      .map(row -> convertToLock(uniqueIdentifier, row))
+      .first());
+  }
+
+  @Override
+  public Flux<Lock> listLocks(String prefix) {
+    // the rows are fetched as they are requested, respecting backpressure
+    return Flux.defer(() -> databaseClient.sql(dialect.listSql(tableName))
+      .bind("prefix", LockSqlDialect.likePrefix(prefix))
+      .bind("now", Instant.now(clock).toEpochMilli())
+      .map(row -> convertToLock(row.get("unique_identifier", String.class), row))
+      .all());
+  }
+
+  private Lock convertToLock(String uniqueIdentifier, Readable row) {
+    return new Lock(row.get("id", String.class), uniqueIdentifier, Instant.ofEpochMilli(row.get("expires_at", Long.class)).atZone(ZoneOffset.UTC));
+  }
+
+}
@@ -0,0 +1,182 @@
+package com.github.elgleidson.lock;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.connection.ConnectionFactoryUtils;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Locks with PostgreSQL's advisory locks, so acquiring and releasing a lock writes nothing: no row, no WAL, no vacuum.
+ * <p>Outside a transaction, the lock is a session lock, held by a connection taken out of the pool until the lock is
+ * released. Inside a transaction on the same connection factory (e.g. {@code @Transactional}), the lock is a transaction
+ * lock on the transaction's connection, released once the transaction commits or rolls back, which {@link #unlock(Lock)}
+ * leaves it to. A transaction on another resource doesn't hold a connection of this one, so the lock is a session lock
+ * then.</p>
+ * <p>Advisory locks don't expire: they're held until released, or until their session ends (e.g. the application dies),
+ * which is what the expiration stands for on the other backends. So the locks have no expiration.</p>
+ * <p>The locks are keyed by a hash of the unique identifier (see {@link LockSqlDialect#advisoryLockKey(String)}), so
+ * {@link #listLocks(String)} only knows the session locks held by this lock manager, and {@link #getLock(String)} only
+ * knows the id of those, a lock held elsewhere being identified by the process id of the session holding it.</p>
+ */
+@Slf4j
+public class ReactiveLockManagerR2dbcAdvisory implements ReactiveLockManager {
+
+  private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock($1), pg_backend_pid()";
+  private static final String TRY_TRANSACTION_LOCK_SQL = "SELECT pg_try_advisory_xact_lock($1), pg_backend_pid()";
+  private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock($1)";
+  // a bigint key is held as its high (classid) and low (objid) 32 bits, with objsubid 1
+  private static final String HOLDER_SQL = """
+    SELECT pid FROM pg_locks
+    WHERE locktype = 'advisory' AND classid = CAST($1 AS oid) AND objid = CAST($2 AS oid) AND objsubid = 1 AND granted""";
+
+  private final ConnectionFactory connectionFactory;
+  private final LockStatistics lockStatistics;
+  private final Supplier<UUID> uuidSupplier;
+  // the session locks held, by lock id
+  private final Map<String, SessionLock> sessionLocks = new ConcurrentHashMap<>();
+
+  public ReactiveLockManagerR2dbcAdvisory(ConnectionFactory connectionFactory) {
+    this(connectionFactory, new LockStatistics());
+  }
+
+  public ReactiveLockManagerR2dbcAdvisory(ConnectionFactory connectionFactory, LockStatistics lockStatistics) {
+    this(connectionFactory, lockStatistics, UUID::randomUUID);
+  }
+
+  protected ReactiveLockManagerR2dbcAdvisory(ConnectionFactory connectionFactory, LockStatistics lockStatistics, Supplier<UUID> uuidSupplier) {
+    this.connectionFactory = connectionFactory;
+    this.lockStatistics = lockStatistics;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  @Override
+  public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+    return Mono.defer(() -> {
+        var start = System.nanoTime();
+        var key = LockSqlDialect.advisoryLockKey(uniqueIdentifier);
+        return TransactionSynchronizationManager.forCurrentTransaction()
+          // a transaction bound to this connection factory, whose connection holds the lock until it ends
+          .map(synchronizationManager -> synchronizationManager.hasResource(connectionFactory))
+          // no transaction context at all
+          .onErrorReturn(false)
+          .flatMap(inTransaction -> inTransaction ? transactionLock(uniqueIdentifier, key) : sessionLock(uniqueIdentifier, key))
+          .switchIfEmpty(Mono.error(() -> {
+            // this is to track concurrent calls
+            log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+            lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
+            return LockFailureException.alreadyLocked(uniqueIdentifier);
+          }))
+          .doOnNext(lock -> lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start))
+          .onErrorMap(throwable -> !(throwable instanceof LockFailureException), throwable -> {
+            log.error("error lock(): message={}", throwable.getMessage());
+            lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+            return LockFailureException.other(uniqueIdentifier, throwable);
+          });
+      })
+      .doFirst(() -> log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn))
+      .doOnSuccess(lock -> log.debug("locked={}", lock));
+  }
+
+  private Mono<Lock> transactionLock(String uniqueIdentifier, long key) {
+    return Mono.usingWhen(ConnectionFactoryUtils.getConnection(connectionFactory),
+      connection -> tryLock(connection, TRY_TRANSACTION_LOCK_SQL, key).map(pid -> new Lock(uuidSupplier.get().toString(), uniqueIdentifier, null)),
+      connection -> ConnectionFactoryUtils.releaseConnection(connection, connectionFactory));
+  }
+
+  private Mono<Lock> sessionLock(String uniqueIdentifier, long key) {
+    return Mono.from(connectionFactory.create()).flatMap(connection ->
+      // the session must not be left idle in a transaction while it holds the lock
+      Mono.from(connection.setAutoCommit(true))
+        .then(tryLock(connection, TRY_LOCK_SQL, key))
+        .map(pid -> {
+          var lock = new Lock(uuidSupplier.get().toString(), uniqueIdentifier, null);
+          sessionLocks.put(lock.id(), new SessionLock(lock, connection, pid, key));
+          return lock;
+        })
+        // the connection holds the lock from now on, or goes back to the pool right away
+        .switchIfEmpty(Mono.defer(() -> Mono.from(connection.close()).then(Mono.empty())))
+        .onErrorResume(throwable -> Mono.from(connection.close()).onErrorComplete().then(Mono.error(throwable))));
+  }
+
+  /**
+   * @return a Mono that emits the process id of the session holding the lock, or empty if it's already held elsewhere.
+   */
+  private Mono<Integer> tryLock(Connection connection, String sql, long key) {
+    return Flux.from(connection.createStatement(sql).bind(0, key).execute())
+      // a row can't be mapped to null, so one not acquired is mapped to an empty optional
+      .concatMap(result -> result.map((row, rowMetadata) -> Boolean.TRUE.equals(row.get(0, Boolean.class))
+        ? Optional.ofNullable(row.get(1, Integer.class))
+        : Optional.<Integer>empty()))
+      .next()
+      .flatMap(Mono::justOrEmpty);
+  }
+
+  @Override
+  public Mono<Boolean> unlock(Lock lock) {
+    return Mono.defer(() -> {
+        var sessionLock = sessionLocks.get(lock.id());
+        // only unlocks if lock id and unique identifier match
+        if (sessionLock == null || !sessionLock.lock().uniqueIdentifier().equals(lock.uniqueIdentifier()) || !sessionLocks.remove(lock.id(), sessionLock)) {
+          // e.g. a transaction lock, released once its transaction ends
+          log.debug("unlocked=false, not a session lock held by this lock manager");
+          return Mono.just(false);
+        }
+        return Mono.usingWhen(Mono.just(sessionLock.connection()),
+            connection -> Flux.from(connection.createStatement(UNLOCK_SQL).bind(0, sessionLock.key()).execute())
+              .concatMap(result -> result.map((row, rowMetadata) -> Boolean.TRUE.equals(row.get(0, Boolean.class))))
+              .next()
+              .defaultIfEmpty(false),
+            Connection::close)
+          .onErrorResume(throwable -> {
+            // log the error, but returns successfully as the lock is released once the connection is closed
+            log.error("error unlock(): message={}", throwable.getMessage());
+            return Mono.just(false);
+          });
+      })
+      .doFirst(() -> log.debug("trying to unlock {}", lock))
+      .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
+  }
+
+  @Override
+  public Mono<Lock> getLock(String uniqueIdentifier) {
+    var key = LockSqlDialect.advisoryLockKey(uniqueIdentifier);
+    return Mono.usingWhen(connectionFactory.create(),
+      connection -> Flux.from(connection.createStatement(HOLDER_SQL).bind(0, key >>> 32).bind(1, key & 0xFFFFFFFFL).execute())
+        .concatMap(result -> result.map((row, rowMetadata) -> holder(uniqueIdentifier, row.get("pid", Integer.class))))
+        .next(),
+      Connection::close);
+  }
+
+  private Lock holder(String uniqueIdentifier, int pid) {
+    return sessionLocks.values().stream()
+      .filter(sessionLock -> sessionLock.pid() == pid && sessionLock.lock().uniqueIdentifier().equals(uniqueIdentifier))
+      .map(SessionLock::lock)
+      .findFirst()
+      // held elsewhere, e.g. by another instance, or in a transaction
+      .orElseGet(() -> new Lock(String.valueOf(pid), uniqueIdentifier, null));
+  }
+
+  /**
+   * @return the session locks held by this lock manager whose unique identifier starts with the prefix, as the advisory
+   * locks are keyed by a hash of the unique identifier, which can't be matched against a prefix.
+   */
+  @Override
+  public Flux<Lock> listLocks(String prefix) {
+    return Flux.defer(() -> Flux.fromIterable(sessionLocks.values()))
+      .map(SessionLock::lock)
+      .filter(lock -> lock.uniqueIdentifier().startsWith(prefix));
+  }
+
+  private record SessionLock(Lock lock, Connection connection, int pid, long key) {
+  }
+
+}
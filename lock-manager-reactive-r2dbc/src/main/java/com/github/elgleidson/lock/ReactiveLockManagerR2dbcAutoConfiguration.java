@@ -0,0 +1,46 @@
+package com.github.elgleidson.lock;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+@AutoConfiguration(after = R2dbcAutoConfiguration.class)
+@EnableConfigurationProperties(ReactiveLockManagerR2dbcProperties.class)
+public class ReactiveLockManagerR2dbcAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics reactiveLockManagerR2dbcStatistics() {
+    return new LockStatistics();
+  }
+
+  @Bean
+  @ConditionalOnBean(ConnectionFactory.class)
+  @ConditionalOnMissingBean(ReactiveLockManagerR2dbc.class)
+  @ConditionalOnProperty(prefix = "lock-manager.r2dbc", name = "mode", havingValue = "table", matchIfMissing = true)
+  public ReactiveLockManagerR2dbc reactiveLockManagerR2dbc(ConnectionFactory connectionFactory, LockStatistics lockStatistics,
+                                                           ReactiveLockManagerR2dbcProperties properties) {
+    var dialect = properties.getDialect() != null ? properties.getDialect() : LockSqlDialect.of(connectionFactory.getMetadata().getName());
+    var lockManager = new ReactiveLockManagerR2dbc(DatabaseClient.create(connectionFactory), dialect, properties.getTableName(), lockStatistics);
+    if (properties.isEnsureTable()) {
+      // a single statement, as the table is created only if it doesn't exist, and the locks need it from the start
+      lockManager.ensureTable().block();
+    }
+    return lockManager;
+  }
+
+  @Bean
+  @ConditionalOnBean(ConnectionFactory.class)
+  @ConditionalOnMissingBean(ReactiveLockManagerR2dbcAdvisory.class)
+  @ConditionalOnProperty(prefix = "lock-manager.r2dbc", name = "mode", havingValue = "advisory")
+  public ReactiveLockManagerR2dbcAdvisory reactiveLockManagerR2dbcAdvisory(ConnectionFactory connectionFactory, LockStatistics lockStatistics) {
+    return new ReactiveLockManagerR2dbcAdvisory(connectionFactory, lockStatistics);
+  }
+
+}
@@ -0,0 +1,212 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.LoggerFactory;
+import org.springframework.r2dbc.connection.ConnectionHolder;
+import org.springframework.transaction.reactive.TransactionContextManager;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+// the connection, statement and result are stubbed once for all the statements
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReactiveLockManagerR2dbcAdvisoryTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final long KEY = LockSqlDialect.advisoryLockKey(UNIQUE_IDENTIFIER);
+  private static final Duration TTL = Duration.ofSeconds(30);
+  private static final int PID = 4242;
+  private static final UUID LOCK_UUID = UUID.randomUUID();
+  private static final Lock LOCK = new Lock(LOCK_UUID.toString(), UNIQUE_IDENTIFIER, null);
+  // its id isn't known to this lock manager
+  private static final Lock LOCK_HELD_ELSEWHERE = new Lock(String.valueOf(PID), UNIQUE_IDENTIFIER, null);
+
+  @Mock
+  private ConnectionFactory connectionFactory;
+  @Mock
+  private Connection connection;
+  @Mock
+  private Statement statement;
+  @Mock
+  private Result result;
+  @Mock
+  private Row row;
+  @Mock
+  private RowMetadata rowMetadata;
+
+  private ReactiveLockManager lockManager;
+
+  private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
+
+  @BeforeEach
+  void setUp() {
+    doReturn(Mono.just(connection)).when(connectionFactory).create();
+    doReturn(Mono.empty()).when(connection).setAutoCommit(true);
+    doReturn(Mono.empty()).when(connection).close();
+    doReturn(statement).when(connection).createStatement(anyString());
+    doReturn(statement).when(statement).bind(anyInt(), any());
+    doReturn(Flux.just(result)).when(statement).execute();
+    doAnswer(invocation -> Flux.just(invocation.<BiFunction<Row, RowMetadata, ?>>getArgument(0).apply(row, rowMetadata)))
+      .when(result).map(any(BiFunction.class));
+    lockManager = new ReactiveLockManagerR2dbcAdvisory(connectionFactory, lockStatistics, () -> LOCK_UUID);
+    var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
+    logger.addAppender(listAppender);
+    listAppender.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listAppender.stop();
+  }
+
+  @Test
+  void lock() {
+    givenTheTryLockReturns(true);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    verify(connection).createStatement("SELECT pg_try_advisory_lock($1), pg_backend_pid()");
+    verify(statement).bind(0, KEY);
+    // the session holds the lock until it's released
+    verify(connection, never()).close();
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockAlreadyAcquired() {
+    givenTheTryLockReturns(false);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .verifyErrorSatisfies(throwable -> assertThat(throwable)
+        .isInstanceOf(LockFailureException.class)
+        .hasMessage("Lock already acquired on 'my-unique-identifier'!"));
+    verify(connection).close();
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockException() {
+    var exception = new RuntimeException("test exception");
+    doReturn(Flux.error(exception)).when(statement).execute();
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .verifyErrorSatisfies(throwable -> assertThat(throwable)
+        .isInstanceOf(LockFailureException.class)
+        .hasMessage("Failed to acquire lock on 'my-unique-identifier'")
+        .hasCause(exception));
+    verify(connection).close();
+    thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void lockInTransaction() {
+    givenTheTryLockReturns(true);
+    var inTransaction = TransactionSynchronizationManager.forCurrentTransaction()
+      .doOnNext(synchronizationManager -> synchronizationManager.bindResource(connectionFactory, new ConnectionHolder(connection)))
+      .then(lockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .contextWrite(TransactionContextManager.createTransactionContext())
+      .contextWrite(TransactionContextManager.getOrCreateContextHolder());
+    StepVerifier.create(inTransaction).expectNext(LOCK).verifyComplete();
+    verify(connection).createStatement("SELECT pg_try_advisory_xact_lock($1), pg_backend_pid()");
+    // on the transaction's connection, released once the transaction ends
+    verify(connectionFactory, never()).create();
+    StepVerifier.create(lockManager.listLocks("")).verifyComplete();
+  }
+
+  @Test
+  void unlock() {
+    givenTheTryLockReturns(true);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(true).verifyComplete();
+    verify(connection).createStatement("SELECT pg_advisory_unlock($1)");
+    // and the connection goes back to the pool
+    verify(connection).close();
+    StepVerifier.create(lockManager.listLocks("")).verifyComplete();
+  }
+
+  @Test
+  void unlockOtherUniqueIdentifier() {
+    givenTheTryLockReturns(true);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    StepVerifier.create(lockManager.unlock(new Lock(LOCK.id(), "other-unique-identifier", null))).expectNext(false).verifyComplete();
+    verify(connection, never()).close();
+  }
+
+  @Test
+  void unlockNotHeld() {
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(false).verifyComplete();
+    verify(connection, never()).createStatement(anyString());
+  }
+
+  @Test
+  void getLock() {
+    givenTheTryLockReturns(true);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    doReturn(PID).when(row).get("pid", Integer.class);
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).expectNext(LOCK).verifyComplete();
+  }
+
+  @Test
+  void getLockHeldElsewhere() {
+    doReturn(PID).when(row).get("pid", Integer.class);
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).expectNext(LOCK_HELD_ELSEWHERE).verifyComplete();
+    // the bigint key is matched against its high and low 32 bits
+    verify(statement).bind(0, KEY >>> 32);
+    verify(statement).bind(1, KEY & 0xFFFFFFFFL);
+    verify(connection).close();
+  }
+
+  @Test
+  void listLocks() {
+    givenTheTryLockReturns(true);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    StepVerifier.create(lockManager.listLocks("my-unique")).expectNext(LOCK).verifyComplete();
+    StepVerifier.create(lockManager.listLocks("other")).verifyComplete();
+  }
+
+  private void givenTheTryLockReturns(boolean locked) {
+    doReturn(locked).when(row).get(0, Boolean.class);
+    doReturn(PID).when(row).get(1, Integer.class);
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private void thenTheLogsContains(String expectedErrorMessage) {
+    assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
+  }
+
+}
@@ -0,0 +1,213 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.r2dbc.h2.H2ConnectionFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+// against an in-memory H2 database, the statements being the point of the lock manager
+class ReactiveLockManagerR2dbcTest {
+
+  // the expirations are stored in epoch milliseconds
+  private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
+  private static final UUID LOCK_UUID = UUID.randomUUID();
+  private static final Lock LOCK = new Lock(LOCK_UUID.toString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final UUID OTHER_LOCK_UUID = UUID.randomUUID();
+
+  private DatabaseClient databaseClient;
+  private ReactiveLockManagerR2dbc lockManager;
+
+  private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
+
+  @BeforeEach
+  void setUp() {
+    databaseClient = DatabaseClient.create(H2ConnectionFactory.inMemory(UUID.randomUUID().toString()));
+    lockManager = lockManager(CLOCK, LOCK_UUID);
+    StepVerifier.create(lockManager.ensureTable()).verifyComplete();
+    var logger = (Logger) LoggerFactory.getLogger(lockManager.getClass());
+    logger.addAppender(listAppender);
+    listAppender.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listAppender.stop();
+  }
+
+  private ReactiveLockManagerR2dbc lockManager(Clock clock, UUID uuid) {
+    return new ReactiveLockManagerR2dbc(databaseClient, LockSqlDialect.H2, "locks", lockStatistics, clock, () -> uuid);
+  }
+
+  @Test
+  void ensureTableAlreadyThere() {
+    StepVerifier.create(lockManager.ensureTable()).verifyComplete();
+  }
+
+  @Test
+  void lock() {
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).expectNext(LOCK).verifyComplete();
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockAlreadyAcquired() {
+    givenTheLockIsHeld();
+    StepVerifier.create(lockManager(CLOCK, OTHER_LOCK_UUID).lock(UNIQUE_IDENTIFIER, TTL))
+      .verifyErrorSatisfies(throwable -> assertThat(throwable)
+        .isInstanceOf(LockFailureException.class)
+        .hasMessage("Lock already acquired on 'my-unique-identifier'!"));
+    // still held by its holder
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).expectNext(LOCK).verifyComplete();
+    thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(1, 1, 0);
+  }
+
+  @Test
+  void lockTakesOverExpiredLock() {
+    givenTheLockIsHeld();
+    var later = Clock.offset(CLOCK, TTL);
+    var otherLock = new Lock(OTHER_LOCK_UUID.toString(), UNIQUE_IDENTIFIER, EXPIRES_AT.plus(TTL));
+    StepVerifier.create(lockManager(later, OTHER_LOCK_UUID).lock(UNIQUE_IDENTIFIER, TTL)).expectNext(otherLock).verifyComplete();
+    // and the former holder can't release it anymore
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(false).verifyComplete();
+    StepVerifier.create(lockManager(later, OTHER_LOCK_UUID).getLock(UNIQUE_IDENTIFIER)).expectNext(otherLock).verifyComplete();
+    thenTheStatisticsAre(2, 0, 0);
+  }
+
+  @Test
+  void lockException() {
+    var lockManager = new ReactiveLockManagerR2dbc(databaseClient, LockSqlDialect.H2, "missing_locks", lockStatistics, CLOCK, () -> LOCK_UUID);
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .verifyErrorSatisfies(throwable -> assertThat(throwable)
+        .isInstanceOf(LockFailureException.class)
+        .hasMessage("Failed to acquire lock on 'my-unique-identifier'")
+        .hasCauseInstanceOf(Exception.class));
+    assertThat(listAppender.list.stream().map(Object::toString)).anyMatch(log -> log.startsWith("[ERROR] error lock(): message="));
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void unlock() {
+    givenTheLockIsHeld();
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(true).verifyComplete();
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).verifyComplete();
+  }
+
+  @Test
+  void unlockRecordNotFound() {
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(false).verifyComplete();
+  }
+
+  @Test
+  void unlockOtherUniqueIdentifier() {
+    givenTheLockIsHeld();
+    StepVerifier.create(lockManager.unlock(new Lock(LOCK.id(), "other-unique-identifier", EXPIRES_AT))).expectNext(false).verifyComplete();
+    StepVerifier.create(lockManager.isLocked(UNIQUE_IDENTIFIER)).expectNext(true).verifyComplete();
+  }
+
+  @Test
+  void unlockException() {
+    var lockManager = new ReactiveLockManagerR2dbc(databaseClient, LockSqlDialect.H2, "missing_locks", lockStatistics, CLOCK, () -> LOCK_UUID);
+    StepVerifier.create(lockManager.unlock(LOCK)).expectNext(false).verifyComplete();
+    assertThat(listAppender.list.stream().map(Object::toString)).anyMatch(log -> log.startsWith("[ERROR] error unlock(): message="));
+  }
+
+  @Test
+  void unlockAll() {
+    givenTheLockIsHeld();
+    var otherLock = lockManager(CLOCK, OTHER_LOCK_UUID).lock("other-unique-identifier", TTL).block();
+    // a single delete, matching the lock ids
+    StepVerifier.create(lockManager.unlockAll(List.of(LOCK, otherLock, new Lock("not-held", "not-held", EXPIRES_AT))))
+      .expectNext(2L)
+      .verifyComplete();
+    StepVerifier.create(lockManager.listLocks("")).verifyComplete();
+  }
+
+  @Test
+  void unlockAllNone() {
+    StepVerifier.create(lockManager.unlockAll(List.of())).expectNext(0L).verifyComplete();
+  }
+
+  @Test
+  void renewAll() {
+    givenTheLockIsHeld();
+    var later = Clock.offset(CLOCK, Duration.ofSeconds(10));
+    var renewal = new Lock(LOCK.id(), UNIQUE_IDENTIFIER, EXPIRES_AT.plusSeconds(10));
+    StepVerifier.create(lockManager(later, LOCK_UUID).renewAll(List.of(LOCK), TTL)).expectNext(List.of(renewal)).verifyComplete();
+    StepVerifier.create(lockManager.getLock(UNIQUE_IDENTIFIER)).expectNext(renewal).verifyComplete();
+  }
+
+  @Test
+  void renewAllSomeLost() {
+    givenTheLockIsHeld();
+    var otherLock = lockManager(CLOCK, OTHER_LOCK_UUID).lock("other-unique-identifier", TTL).block();
+    StepVerifier.create(lockManager.unlock(otherLock)).expectNext(true).verifyComplete();
+    // the ones renewed are told apart from the ones lost
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK, otherLock, new Lock("not-held", "not-held", EXPIRES_AT)), TTL))
+      .expectNext(List.of(LOCK))
+      .verifyComplete();
+  }
+
+  @Test
+  void renewAllExpired() {
+    givenTheLockIsHeld();
+    // it may be taken over anytime
+    StepVerifier.create(lockManager(Clock.offset(CLOCK, TTL), LOCK_UUID).renewAll(List.of(LOCK), TTL)).expectNext(List.of()).verifyComplete();
+  }
+
+  @Test
+  void getLockExpired() {
+    givenTheLockIsHeld();
+    StepVerifier.create(lockManager(Clock.offset(CLOCK, TTL), OTHER_LOCK_UUID).getLock(UNIQUE_IDENTIFIER)).verifyComplete();
+  }
+
+  @Test
+  void listLocks() {
+    givenTheLockIsHeld();
+    var otherLock = lockManager(CLOCK, OTHER_LOCK_UUID).lock("my_unique%identifier", TTL).block();
+    StepVerifier.create(lockManager.listLocks("my-unique")).expectNext(LOCK).verifyComplete();
+    // the LIKE wildcards in the prefix are matched literally
+    StepVerifier.create(lockManager.listLocks("my_unique%")).expectNext(otherLock).verifyComplete();
+    StepVerifier.create(lockManager.listLocks("my")).expectNextCount(2).verifyComplete();
+  }
+
+  private void givenTheLockIsHeld() {
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL)).expectNext(LOCK).verifyComplete();
+  }
+
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
+  private void thenTheLogsContains(String expectedErrorMessage) {
+    assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
+  }
+
+}
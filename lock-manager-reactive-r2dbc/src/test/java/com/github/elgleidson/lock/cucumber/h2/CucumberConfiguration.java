@@ -0,0 +1,12 @@
+package com.github.elgleidson.lock.cucumber.h2;
+
+import com.github.elgleidson.lock.TestApplication;
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// runs against the in-memory H2 database auto-configured by Spring Boot, through r2dbc-h2
+@CucumberContextConfiguration
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class CucumberConfiguration {
+
+}
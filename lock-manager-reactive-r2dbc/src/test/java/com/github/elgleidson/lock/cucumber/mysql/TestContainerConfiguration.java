@@ -0,0 +1,18 @@
+package com.github.elgleidson.lock.cucumber.mysql;
+
+import com.github.elgleidson.lock.TestApplication;
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MySQLContainer;
+
+// the table locks, acquired with an INSERT ... ON DUPLICATE KEY UPDATE taking over the expired ones only through IF(),
+// MySQL counting the rows left unchanged as updated
+@CucumberContextConfiguration
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class TestContainerConfiguration {
+
+  @ServiceConnection
+  static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4.5");
+
+}
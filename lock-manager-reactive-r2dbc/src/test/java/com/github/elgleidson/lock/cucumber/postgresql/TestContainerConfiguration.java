@@ -0,0 +1,17 @@
+package com.github.elgleidson.lock.cucumber.postgresql;
+
+import com.github.elgleidson.lock.TestApplication;
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+// the table locks, acquired with an INSERT ... ON CONFLICT DO UPDATE taking over the expired ones only
+@CucumberContextConfiguration
+@SpringBootTest(classes = TestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class TestContainerConfiguration {
+
+  @ServiceConnection
+  static final PostgreSQLContainer<?> postgresql = new PostgreSQLContainer<>("postgres:16.9");
+
+}
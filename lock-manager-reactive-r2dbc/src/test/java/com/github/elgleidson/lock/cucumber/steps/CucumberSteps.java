@@ -0,0 +1,223 @@
+package com.github.elgleidson.lock.cucumber.steps;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.github.elgleidson.lock.Lock;
+import com.github.elgleidson.lock.LockFailureException;
+import com.github.elgleidson.lock.ReactiveLockManager;
+import io.cucumber.java.Before;
+import io.cucumber.java.ParameterType;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@Slf4j
+public class CucumberSteps {
+
+  private final Map<String, AtomicInteger> db = new ConcurrentHashMap<>();
+
+  @Autowired
+  private ReactiveLockManager lockManager;
+
+  private Duration ttl;
+  private Duration delay;
+  private Optional<Lock> lockResult;
+  private Boolean unlockResult;
+
+  @Before
+  public void before() {
+    db.clear();
+  }
+
+  @ParameterType("(\\d+(s|ms))")
+  public Duration duration(String duration) {
+    var amount = duration.replaceFirst("(ms|s)", "");
+    var timeUnit = duration.replaceFirst(amount, "");
+    return timeUnit.equals("ms")
+      ? Duration.ofMillis(Long.parseLong(amount))
+      : Duration.ofSeconds(Long.parseLong(amount));
+  }
+
+  @Given("the lock expires in {duration}")
+  public void givenLockExpiresIn(Duration duration) {
+    this.ttl = duration;
+  }
+
+  @Given("the process takes {duration}")
+  public void givenTheProcessTakes(Duration duration) {
+    this.delay = duration;
+  }
+
+  @Given("an existing record with id of {string}")
+  public void givenAnExistingRecordWithIdOf(String id) {
+    db.put(id, new AtomicInteger(0));
+  }
+
+  @Given("I try to lock the record with id of {string}")
+  public void givenILockRecordWithIdOf(String id) {
+    try {
+      lockResult = lockManager.lock(id, ttl).blockOptional();
+    } catch (LockFailureException e) {
+      lockResult = Optional.empty();
+    }
+  }
+
+  @Given("I unlock")
+  public void givenIUnlock() {
+    var lock = lockResult.get();
+    unlockResult = lockManager.unlock(lock).block();
+  }
+
+  @Given("I wait {duration}")
+  public void givenIWait(Duration duration) {
+    await().during(duration).until(() -> true);
+  }
+
+  @When("I call the update {int} time(s) concurrently with id {string}")
+  public void callTheUpdateConcurrently(int concurrency, String id) {
+    callUpdateConcurrently(concurrency, id, this::update);
+  }
+
+  @When("I call the update {int} time(s) sequentially with id {string}")
+  public void callTheUpdateSequentially(int times, String id) {
+    callUpdateSequentially(times, id, this::update);
+  }
+
+  @When("I call the lock update {int} time(s) concurrently with id {string}")
+  public void callTheLockUpdateConcurrently(int concurrency, String id) {
+    callUpdateConcurrently(concurrency, id, this::updateLock);
+  }
+
+  @When("I call the lock update {int} time(s) sequentially with id {string}")
+  public void callTheLockUpdateSequentially(int times, String id) {
+    callUpdateSequentially(times, id, this::updateLock);
+  }
+
+  @When("I call the lock update {int} times with id prefix {string}, cancelling at random points")
+  public void callTheLockUpdateCancellingAtRandomPoints(int times, String prefix) {
+    var random = ThreadLocalRandom.current();
+    for (int i = 1; i <= times; i++) {
+      var id = prefix + i;
+      db.put(id, new AtomicInteger(0));
+      var subscription = updateLock(i, id).subscribe();
+      // cancels while acquiring, while updating, while releasing or once done
+      var cancelAfter = Duration.ofMillis(random.nextLong(delay.toMillis() * 2));
+      Mono.delay(cancelAfter).subscribe(unused -> subscription.dispose());
+    }
+  }
+
+  @When("I call the lock update on {int} records with id prefix {string}, {int} at a time")
+  public void callTheLockUpdateOnEach(int records, String prefix, int concurrency) {
+    var ids = Flux.range(1, records).map(i -> prefix + i).doOnNext(id -> db.put(id, new AtomicInteger(0)));
+    lockManager.wrapEach(ids, ttl, concurrency, id -> update(0, id)).then().block();
+  }
+
+  private void callUpdateSequentially(int times, String id, BiFunction<Integer, String, Mono<Boolean>> function) {
+    var responses = Flux.range(1, times)
+      .concatMap(i -> function.apply(i, id)
+        .doFirst(() -> log.info("sequential exec={}: start", i))
+        .doOnSuccess(unused -> log.info("sequential exec={}: end", i))
+      )
+      .subscribeOn(Schedulers.single());
+    responses.then().block();
+  }
+
+  @SneakyThrows
+  private void callUpdateConcurrently(int concurrency, String id, BiFunction<Integer, String, Mono<Boolean>> function) {
+    var responses = Flux.range(1, concurrency)
+      .parallel(concurrency)
+      .runOn(Schedulers.newParallel("parallel", concurrency))
+      .flatMap(i -> function.apply(i, id)
+        .doFirst(() -> log.info("parallel exec={}: start", i))
+        .doOnSuccess(unused -> log.info("parallel exec={}: end", i))
+      )
+      .sequential()
+      .subscribeOn(Schedulers.single());
+    responses.then().block();
+  }
+
+  private Mono<Boolean> update(int exec, String id) {
+    return Mono.just(db.get(id))
+      .delayElement(delay) // to simulate processing
+      .map(AtomicInteger::incrementAndGet)
+      .doOnNext(updates -> log.info("exec={}: updated id={}, updates={}", exec, id, updates))
+      .thenReturn(true)
+      .doFirst(() -> log.info("exec={}: updating id={}", exec, id));
+  }
+
+  private Mono<Boolean> updateLock(int exec, String id) {
+    return lockManager.wrap(id, ttl, true, () -> update(exec, id))
+      .onErrorResume(LockFailureException.class, e -> {
+        log.error("exec={}: id={}, locked", exec, id);
+        return Mono.just(false);
+      });
+  }
+
+  @Then("the record with id {string} is updated {int} time(s)")
+  public void thenTheRecordIsUpdated(String id, int expectedUpdates) {
+    var updates = db.get(id).get();
+    assertThat(updates).isEqualTo(expectedUpdates);
+  }
+
+  @Then("the records with id prefix {string} are updated {int} time(s)")
+  public void thenTheRecordsAreUpdated(String prefix, int expectedUpdates) {
+    assertThat(db).isNotEmpty();
+    db.forEach((id, updates) -> {
+      if (id.startsWith(prefix)) {
+        assertThat(updates).hasValue(expectedUpdates);
+      }
+    });
+  }
+
+  @Then("the lock is acquired")
+  public void thenTheLockIsAcquired() {
+    assertThat(lockResult).isPresent();
+  }
+
+  @Then("the lock is not acquired")
+  public void thenTheLockIsNotAcquired() {
+    assertThat(lockResult).isNotPresent();
+  }
+
+  @Then("the lock is released")
+  public void thenTheLockIsReleased() {
+    assertThat(unlockResult).isTrue();
+  }
+
+  @Then("the record with id {string} is locked")
+  public void thenTheRecordIsLocked(String id) {
+    assertThat(lockManager.isLocked(id).block()).isTrue();
+    assertThat(lockManager.getLock(id).blockOptional()).map(Lock::id).isEqualTo(lockResult.map(Lock::id));
+  }
+
+  @Then("the record with id {string} is not locked")
+  public void thenTheRecordIsNotLocked(String id) {
+    assertThat(lockManager.isLocked(id).block()).isFalse();
+    assertThat(lockManager.getLock(id).blockOptional()).isEmpty();
+  }
+
+  @Then("no record with id prefix {string} is left locked")
+  public void thenNoRecordIsLeftLocked(String prefix) {
+    await().pollDelay(Duration.ofSeconds(1)).atMost(Duration.ofSeconds(5))
+      .untilAsserted(() -> assertThat(lockManager.listLocks(prefix).collectList().block()).isEmpty());
+  }
+
+  @Then("listing the locks with prefix {string} returns {int} lock(s)")
+  public void thenListingTheLocksReturns(String prefix, int expectedLocks) {
+    assertThat(lockManager.listLocks(prefix).collectList().block()).hasSize(expectedLocks);
+  }
+}
\ No newline at end of file
@@ -3,50 +3,219 @@ package com.github.elgleidson.lock;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Supplier;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+/**
+ * Locks on Redis keys, set only if absent and expiring on their own.
+ * <p>With a session, the locks are held by a single key of the instance instead, heartbeated for all of them: they don't
+ * expire on their own ({@code expiresIn} is ignored), but as long as the session lives, and a crashed instance's locks are
+ * taken over once its session lapses.</p>
+ */
 @Slf4j
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
-public class ReactiveLockManagerRedis implements ReactiveLockManager {
+public class ReactiveLockManagerRedis implements ReactiveLockManager, AutoCloseable {
 
-  protected static final String KEYSPACE = "lock:";
+  // hint of how many keys Redis should walk through per SCAN call
+  private static final long SCAN_COUNT = 1000;
+  // deletes each key only if it still holds the lock id, the same as unlock() but for all the locks in a single round trip,
+  // publishing each release on the channel after the lock ids, if any
+  private static final RedisScript<Long> UNLOCK_ALL_SCRIPT = RedisScript.of("""
+    local released = 0
+    local channel = ARGV[#KEYS + 1]
+    for i, key in ipairs(KEYS) do
+      if redis.call('GET', key) == ARGV[i] then
+        local deleted = redis.call('DEL', key)
+        released = released + deleted
+        if channel and deleted == 1 then
+          redis.call('PUBLISH', channel, key)
+        end
+      end
+    end
+    return released
+    """, Long.class);
+  // how many locks a renewal script goes through at most, so Redis isn't blocked for long by a single one
+  private static final int RENEW_CHUNK = 1000;
+  // extends each key still holding its lock id, telling which ones it did (e.g. "101"), or only tells which ones still hold
+  // it without an expiration (the session locks)
+  private static final RedisScript<String> RENEW_ALL_SCRIPT = RedisScript.of("""
+    local renewed = {}
+    for i, key in ipairs(KEYS) do
+      if redis.call('GET', key) ~= ARGV[i + 1] then
+        renewed[i] = 0
+      elseif ARGV[1] == '' then
+        renewed[i] = 1
+      else
+        renewed[i] = redis.call('PEXPIRE', key, ARGV[1])
+      end
+    end
+    return table.concat(renewed)
+    """, String.class);
+  // deletes the key only if it still holds the lock id, so a lock taken over meanwhile isn't
+  private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+    if redis.call('GET', KEYS[1]) == ARGV[1] then
+      return redis.call('DEL', KEYS[1])
+    end
+    return 0
+    """, Long.class);
 
   private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+  private final LockKeyCodec lockKeyCodec;
+  private final LockStatistics lockStatistics;
+  // null when the locks only expire on their own
+  private final ReactiveLockSessionRedis session;
+  // null when the acquires waiting for a lock poll instead
+  private final ReactiveLockReleaseWatcherRedis releaseWatcher;
   private final Clock clock;
   private final Supplier<UUID> uuidSupplier;
 
   public ReactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate) {
-    this(reactiveStringRedisTemplate, Clock.systemUTC(), UUID::randomUUID);
+    this(reactiveStringRedisTemplate, LockKeyCodec.defaultCodec());
+  }
+
+  public ReactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, LockKeyCodec lockKeyCodec) {
+    this(reactiveStringRedisTemplate, lockKeyCodec, new LockStatistics());
+  }
+
+  public ReactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics) {
+    this(reactiveStringRedisTemplate, lockKeyCodec, lockStatistics, null, null, Clock.systemUTC(), UUID::randomUUID);
+  }
+
+  /**
+   * @param sessionKeyPrefix prefix of the session keys, outside the lock namespace so they aren't listed as locks.
+   * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, which heartbeats every third of
+   *                       it. Every instance must use a session, as the ones without can't take over a lapsed one's locks.
+   */
+  public ReactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                                  String sessionKeyPrefix, Duration sessionTimeout) {
+    this(reactiveStringRedisTemplate, lockKeyCodec, lockStatistics, sessionKeyPrefix, sessionTimeout, null);
+  }
+
+  /**
+   * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, or null for no session.
+   * @param releaseChannel the pub/sub channel the releases are published on, waking up the acquires waiting for them, or
+   *                       null for them to poll. Every instance must publish on it, as the others' releases aren't seen
+   *                       otherwise.
+   */
+  public ReactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                                  String sessionKeyPrefix, Duration sessionTimeout, String releaseChannel) {
+    this(reactiveStringRedisTemplate, lockKeyCodec, lockStatistics,
+      sessionTimeout != null ? new ReactiveLockSessionRedis(reactiveStringRedisTemplate, sessionKeyPrefix, sessionTimeout, UUID::randomUUID) : null,
+      releaseChannel != null ? new ReactiveLockReleaseWatcherRedis(reactiveStringRedisTemplate, releaseChannel) : null,
+      Clock.systemUTC(), UUID::randomUUID);
   }
 
   @Override
   public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
-    return Mono.fromSupplier(() -> createLock(uniqueIdentifier, expiresIn))
-      .flatMap(lock -> reactiveStringRedisTemplate.opsForValue()
-        .setIfAbsent(lockKey(uniqueIdentifier), lock.id(), expiresIn)
-        .onErrorMap(throwable -> {
-          log.error("error lock(): message={}", throwable.getMessage());
-          return LockFailureException.other(uniqueIdentifier, throwable);
-        })
-        .flatMap(inserted -> {
-          if (!Boolean.TRUE.equals(inserted)) {
+    return Mono.defer(() -> {
+        var start = System.nanoTime();
+        return createLock(uniqueIdentifier, expiresIn)
+          .filterWhen(lock -> insert(lockKey(uniqueIdentifier), lock.id(), expiresIn))
+          .onErrorMap(throwable -> {
+            log.error("error lock(): message={}", throwable.getMessage());
+            lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+            return LockFailureException.other(uniqueIdentifier, throwable);
+          })
+          .switchIfEmpty(Mono.defer(() -> {
             // this is to track concurrent calls
             log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+            lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
             return Mono.error(LockFailureException.alreadyLocked(uniqueIdentifier));
-          }
-          return Mono.just(lock);
-        })
-      )
+          }))
+          .doOnNext(lock -> lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start));
+      })
       .doFirst(() -> log.debug("trying to acquire lock for {}, expiring in {}", uniqueIdentifier, expiresIn))
       .doOnSuccess(lock -> log.debug("locked={}", lock));
   }
 
+  private Mono<Boolean> insert(String lockKey, String lockId, Duration expiresIn) {
+    if (session == null) {
+      return reactiveStringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockId, expiresIn);
+    }
+    // the session locks are held as long as their session lives, and a lock of a lapsed session is taken over
+    return reactiveStringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockId)
+      .flatMap(set -> set ? Mono.just(true) : removeLapsed(lockKey)
+        .flatMap(removed -> removed ? reactiveStringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockId) : Mono.just(false)));
+  }
+
+  private Mono<Boolean> removeLapsed(String lockKey) {
+    return reactiveStringRedisTemplate.opsForValue().get(lockKey)
+      .flatMap(holder -> {
+        var holderSession = ReactiveLockSessionRedis.sessionOf(holder);
+        if (holderSession == null) {
+          return Mono.just(false);
+        }
+        return session.isAlive(holderSession).flatMap(alive -> {
+          if (alive) {
+            return Mono.just(false);
+          }
+          log.debug("taking over the lock of a lapsed session: lockKey={}, holder={}", lockKey, holder);
+          return reactiveStringRedisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), List.of(holder)).then(Mono.just(true));
+        });
+      })
+      // released meanwhile
+      .defaultIfEmpty(true);
+  }
+
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>With a release channel, the waiter is woken up as soon as the lock is released, or once it expires, so there's no
+   * polling meanwhile. It polls every 100ms otherwise.</p>
+   */
+  @Override
+  public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    if (releaseWatcher == null) {
+      return ReactiveLockManager.super.lock(uniqueIdentifier, expiresIn, waitFor);
+    }
+    return Mono.defer(() -> {
+      var deadline = System.nanoTime() + waitFor.toNanos();
+      return lock(uniqueIdentifier, expiresIn)
+        .retryWhen(Retry.from(failures -> failures.concatMap(failure ->
+          failure.failure() instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked() && deadline - System.nanoTime() > 0
+            ? awaitRelease(uniqueIdentifier, deadline).thenReturn(true)
+            : Mono.<Boolean>error(failure.failure()))));
+    });
+  }
+
+  private Mono<Void> awaitRelease(String uniqueIdentifier, long deadline) {
+    var lockKey = lockKey(uniqueIdentifier);
+    return Mono.defer(() -> {
+      var released = releaseWatcher.awaitRelease(lockKey);
+      // it may have been released before the waiter was registered, an empty expiration means it has
+      return reactiveStringRedisTemplate.getExpire(lockKey)
+        .flatMap(untilExpiry -> {
+          var wait = deadline - System.nanoTime();
+          // zero: no expiration, only its release wakes it up
+          if (!untilExpiry.isZero()) {
+            wait = Math.min(wait, untilExpiry.toNanos());
+          }
+          if (session != null) {
+            // its session may lapse before, and its release isn't published then
+            wait = Math.min(wait, session.timeout().toNanos());
+          }
+          return Mono.firstWithSignal(Mono.fromFuture(released, true), Mono.delay(Duration.ofNanos(Math.max(wait, 0))).then());
+        })
+        .onErrorMap(throwable -> {
+          log.error("error lock(): message={}", throwable.getMessage());
+          return LockFailureException.other(uniqueIdentifier, throwable);
+        })
+        .doFinally(signal -> releaseWatcher.forget(lockKey, released));
+    });
+  }
+
   @Override
   public Mono<Boolean> unlock(Lock lock) {
     // only unlocks if the lock id matches as uniqueIdentifier is the cache key
@@ -60,7 +229,10 @@ public class ReactiveLockManagerRedis implements ReactiveLockManager {
           log.warn("unlock(): another process has acquired the lock on '{}'", lock.uniqueIdentifier());
           return Mono.just(false);
         }
-        return reactiveStringRedisTemplate.delete(lockKey).map(deleted -> deleted > 0);
+        return reactiveStringRedisTemplate.delete(lockKey)
+          .flatMap(deleted -> deleted > 0 && releaseWatcher != null
+            ? releaseWatcher.released(lockKey).thenReturn(true)
+            : Mono.just(deleted > 0));
       })
       .defaultIfEmpty(false)
       .onErrorResume(throwable -> {
@@ -72,14 +244,146 @@ public class ReactiveLockManagerRedis implements ReactiveLockManager {
       .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
   }
 
-  private Lock createLock(String uniqueIdentifier, Duration expiresIn) {
-    var id = uuidSupplier.get().toString();
-    var expiresAt = ZonedDateTime.now(clock).plus(expiresIn);
-    return new Lock(id, uniqueIdentifier, expiresAt);
+  @Override
+  public Mono<Long> unlockAll(List<Lock> locks) {
+    if (locks.isEmpty()) {
+      return Mono.just(0L);
+    }
+    var lockKeys = locks.stream().map(lock -> lockKey(lock.uniqueIdentifier())).toList();
+    var args = new ArrayList<String>(locks.size() + 1);
+    locks.forEach(lock -> args.add(lock.id()));
+    if (releaseWatcher != null) {
+      args.add(releaseWatcher.channel());
+    }
+    return reactiveStringRedisTemplate.execute(UNLOCK_ALL_SCRIPT, lockKeys, args)
+      .next()
+      .defaultIfEmpty(0L)
+      .onErrorResume(throwable -> {
+        // e.g. on a cluster, where the keys of a script must all hash to the same slot
+        log.warn("error unlockAll(): message={}, unlocking one by one", throwable.getMessage());
+        return ReactiveLockManager.super.unlockAll(locks);
+      })
+      .doFirst(() -> log.debug("trying to unlock {} locks", locks.size()))
+      .doOnSuccess(unlocked -> log.debug("unlocked={}", unlocked));
+  }
+
+  @Override
+  public Mono<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    // the chunks are pipelined on the connection
+    return Flux.fromIterable(locks)
+      .buffer(RENEW_CHUNK)
+      .flatMapSequential(chunk -> renew(chunk, expiresIn)
+        .onErrorResume(throwable -> chunk.size() > 1, throwable -> {
+          // e.g. on a cluster, where the keys of a script must all hash to the same slot
+          log.warn("error renewAll(): message={}, renewing one by one", throwable.getMessage());
+          return Flux.fromIterable(chunk).concatMap(lock -> renew(List.of(lock), expiresIn));
+        }))
+      .collectList()
+      .doFirst(() -> log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn))
+      .doOnSuccess(renewed -> log.debug("renewed={}", renewed.size()));
+  }
+
+  private Flux<Lock> renew(List<Lock> locks, Duration expiresIn) {
+    return Flux.defer(() -> {
+      // taken before the call, so the key never expires before the lock says; the session locks don't expire on their
+      // own, they're only still held while their session lives
+      var expiresAt = session != null ? null : ZonedDateTime.now(clock).plus(expiresIn);
+      var lockKeys = locks.stream().map(lock -> lockKey(lock.uniqueIdentifier())).toList();
+      var args = new ArrayList<String>(locks.size() + 1);
+      args.add(session != null ? "" : String.valueOf(expiresIn.toMillis()));
+      locks.forEach(lock -> args.add(lock.id()));
+      var sessionsAlive = new HashMap<String, Boolean>();
+      return reactiveStringRedisTemplate.execute(RENEW_ALL_SCRIPT, lockKeys, args)
+        .next()
+        .flatMapMany(renewed -> Flux.range(0, locks.size())
+          .filter(index -> renewed.charAt(index) == '1')
+          .map(index -> new Lock(locks.get(index).id(), locks.get(index).uniqueIdentifier(), expiresAt)))
+        .filterWhen(lock -> lapsed(lock.id(), sessionsAlive).map(lapsed -> !lapsed));
+    });
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Mono<Lock> getLock(String uniqueIdentifier) {
+    return getLock(lockKey(uniqueIdentifier), uniqueIdentifier, new HashMap<>());
+  }
+
+  /**
+   * Lists the locks by scanning their keys, so the prefix is matched against the keys.
+   * <p>The identifiers hashed by a {@link LockKeyCodec#hashing(String, int) hashing} codec can't be recovered: their locks
+   * are listed by their hash ({@code #<hash>}) as unique identifier, for inspection only, and only when the prefix is
+   * empty, as nothing of the identifier is left in their keys.</p>
+   */
+  @Override
+  public Flux<Lock> listLocks(String prefix) {
+    // SCAN walks the keyspace incrementally (unlike KEYS), fetching the next batch of keys only when requested
+    var scanOptions = ScanOptions.scanOptions().match(lockKeyPattern(prefix)).count(SCAN_COUNT).build();
+    return Flux.defer(() -> {
+      // each session is only looked up once, the keys being gone through one at a time
+      var sessionsAlive = new HashMap<String, Boolean>();
+      return reactiveStringRedisTemplate.scan(scanOptions)
+        .concatMap(lockKey -> getLock(lockKey, lockKeyCodec.decode(lockKey), sessionsAlive));
+    });
+  }
+
+  private Mono<Lock> getLock(String lockKey, String uniqueIdentifier, Map<String, Boolean> sessionsAlive) {
+    // an empty expiration means the key has expired in the meantime, zero means the key has no expiration (a session lock)
+    return Mono.zip(reactiveStringRedisTemplate.opsForValue().get(lockKey), reactiveStringRedisTemplate.getExpire(lockKey))
+      .map(idAndExpiresIn -> {
+        var expiresIn = idAndExpiresIn.getT2();
+        var expiresAt = expiresIn.isZero() ? null : ZonedDateTime.now(clock).plus(expiresIn);
+        return new Lock(idAndExpiresIn.getT1(), uniqueIdentifier, expiresAt);
+      })
+      .filterWhen(lock -> lapsed(lock.id(), sessionsAlive).map(lapsed -> !lapsed));
+  }
+
+  private Mono<Boolean> lapsed(String id, Map<String, Boolean> sessionsAlive) {
+    // released as soon as its session lapses, even if it isn't taken over yet
+    var holderSession = session != null ? ReactiveLockSessionRedis.sessionOf(id) : null;
+    if (holderSession == null) {
+      return Mono.just(false);
+    }
+    var alive = sessionsAlive.get(holderSession);
+    if (alive != null) {
+      return Mono.just(!alive);
+    }
+    return session.isAlive(holderSession)
+      .doOnNext(isAlive -> sessionsAlive.put(holderSession, isAlive))
+      .map(isAlive -> !isAlive);
+  }
+
+  /**
+   * Ends the session, if any, so its locks can be taken over straight away, and unsubscribes from the release channel.
+   */
+  @Override
+  public void close() {
+    if (session != null) {
+      session.close();
+    }
+    if (releaseWatcher != null) {
+      releaseWatcher.close();
+    }
+  }
+
+  private Mono<Lock> createLock(String uniqueIdentifier, Duration expiresIn) {
+    var uuid = uuidSupplier.get();
+    if (session != null) {
+      return session.lockId(uuid).map(lockId -> new Lock(lockId, uniqueIdentifier, null));
+    }
+    return Mono.just(new Lock(uuid.toString(), uniqueIdentifier, ZonedDateTime.now(clock).plus(expiresIn)));
   }
 
   private String lockKey(String uniqueIdentifier) {
-    return KEYSPACE + uniqueIdentifier;
+    return lockKeyCodec.encode(uniqueIdentifier);
+  }
+
+  private String lockKeyPattern(String prefix) {
+    // escapes the glob-style special characters, so they are matched literally
+    return (lockKeyCodec.namespace() + prefix).replaceAll("([*?\\[\\]\\\\])", "\\\\$1") + "*";
   }
 
 }
@@ -4,17 +4,35 @@ import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 
 @AutoConfiguration(after = RedisReactiveAutoConfiguration.class)
+@EnableConfigurationProperties(ReactiveLockManagerRedisProperties.class)
 public class ReactiveLockManagerRedisAutoConfiguration {
 
+  @Bean
+  @ConditionalOnMissingBean(LockKeyCodec.class)
+  public LockKeyCodec reactiveLockManagerRedisKeyCodec(ReactiveLockManagerRedisProperties properties) {
+    return properties.toLockKeyCodec();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics reactiveLockManagerRedisStatistics() {
+    return new LockStatistics();
+  }
+
   @Bean
   @ConditionalOnBean(ReactiveStringRedisTemplate.class)
   @ConditionalOnMissingBean(ReactiveLockManagerRedis.class)
-  public ReactiveLockManagerRedis reactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate) {
-    return new ReactiveLockManagerRedis(reactiveStringRedisTemplate);
+  public ReactiveLockManagerRedis reactiveLockManagerRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                                                           ReactiveLockManagerRedisProperties properties) {
+    var session = properties.getSession();
+    var wait = properties.getWait();
+    return new ReactiveLockManagerRedis(reactiveStringRedisTemplate, lockKeyCodec, lockStatistics, session.getKeyPrefix(),
+      session.isEnabled() ? session.getTimeout() : null, wait.isPubSub() ? wait.getChannel() : null);
   }
 
 }
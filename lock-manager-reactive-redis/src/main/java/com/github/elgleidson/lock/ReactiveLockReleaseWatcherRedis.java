@@ -0,0 +1,102 @@
+package com.github.elgleidson.lock;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wakes up the acquires of {@link ReactiveLockManagerRedis} waiting for a lock to be released, through a pub/sub channel
+ * the releases are published on, subscribed to once for all of them.
+ * <p>The channel is subscribed to by the first waiter. A release published before the subscription is ready isn't seen, so
+ * the waiters are also woken up once the lock they wait for expires. If the subscription fails, the waiters are woken up
+ * to check the lock again, and the next one subscribes again.</p>
+ */
+@Slf4j
+final class ReactiveLockReleaseWatcherRedis implements AutoCloseable {
+
+  private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+  private final String channel;
+  // the waiters by the key of the lock they wait for
+  private final Map<String, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+  private final AtomicBoolean watching = new AtomicBoolean();
+  private volatile Disposable subscription;
+
+  ReactiveLockReleaseWatcherRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, String channel) {
+    this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+    this.channel = channel;
+  }
+
+  String channel() {
+    return channel;
+  }
+
+  /**
+   * Registers a waiter for the release of a lock, subscribing to the channel if it isn't yet.
+   * <p>A release is only seen once registered, so the lock should be checked again afterwards.</p>
+   * @return completes once the lock is released (or the subscription fails).
+   */
+  CompletableFuture<Void> awaitRelease(String lockKey) {
+    if (watching.compareAndSet(false, true)) {
+      subscription = reactiveStringRedisTemplate.listenToChannel(channel)
+        .subscribe(message -> wakeUp(message.getMessage()), this::stopped, () -> stopped(new IllegalStateException("subscription closed")));
+    }
+    var released = new CompletableFuture<Void>();
+    waiters.computeIfAbsent(lockKey, key -> ConcurrentHashMap.newKeySet()).add(released);
+    return released;
+  }
+
+  /**
+   * Unregisters a waiter, once it's no longer waiting.
+   */
+  void forget(String lockKey, CompletableFuture<Void> released) {
+    waiters.computeIfPresent(lockKey, (key, releases) -> {
+      releases.remove(released);
+      return releases.isEmpty() ? null : releases;
+    });
+  }
+
+  /**
+   * @return a Mono that publishes the release of a lock, waking up the ones waiting for it on any instance. It never fails.
+   */
+  Mono<Void> released(String lockKey) {
+    return reactiveStringRedisTemplate.convertAndSend(channel, lockKey)
+      .onErrorResume(throwable -> {
+        // they're woken up once it expires anyway
+        log.warn("error released(): lockKey={}, message={}", lockKey, throwable.getMessage());
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  private void wakeUp(String lockKey) {
+    var releases = waiters.remove(lockKey);
+    if (releases != null) {
+      releases.forEach(released -> released.complete(null));
+    }
+  }
+
+  private void stopped(Throwable throwable) {
+    log.warn("error watching the lock releases, waiting for them to expire instead: message={}", throwable.getMessage());
+    watching.set(false);
+    // they check the lock again, the next one subscribing again
+    waiters.keySet().forEach(this::wakeUp);
+  }
+
+  /**
+   * Unsubscribes from the channel, if subscribed.
+   */
+  @Override
+  public void close() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+    watching.set(false);
+  }
+
+}
@@ -0,0 +1,144 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The session of a {@link ReactiveLockManagerRedis}: a single key, heartbeated for all the locks the instance holds.
+ * <p>The locks reference the session in their id ({@code <session id>:<uuid>}), and are held without an expiration of
+ * their own, as long as the session lives. Once the instance stops heartbeating (e.g. it crashed), the session key
+ * expires, and the next one acquiring any of its locks takes it over.</p>
+ * <p>The session starts with the first lock. If it lapses anyway (e.g. Redis was unreachable for longer than the timeout),
+ * its locks are lost, and the next lock starts a new one.</p>
+ */
+@Slf4j
+final class ReactiveLockSessionRedis implements AutoCloseable {
+
+  private static final char SEPARATOR = ':';
+
+  private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+  private final String keyPrefix;
+  private final Duration timeout;
+  private final Supplier<UUID> uuidSupplier;
+  // the session being started or started, so the concurrent first locks share it
+  private final AtomicReference<Mono<String>> session = new AtomicReference<>();
+  // the started one, heartbeated
+  private volatile String id;
+  private final AtomicBoolean heartbeating = new AtomicBoolean();
+  private volatile Disposable heartbeat;
+
+  ReactiveLockSessionRedis(ReactiveStringRedisTemplate reactiveStringRedisTemplate, String keyPrefix, Duration timeout, Supplier<UUID> uuidSupplier) {
+    this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+    this.keyPrefix = keyPrefix;
+    this.timeout = timeout;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  Duration timeout() {
+    return timeout;
+  }
+
+  /**
+   * @return a Mono of the id of a lock of this session, starting the session if there's none.
+   */
+  Mono<String> lockId(UUID uuid) {
+    return Mono.defer(() -> session.updateAndGet(current -> current != null ? current : start()))
+      .map(sessionId -> sessionId + SEPARATOR + uuid);
+  }
+
+  /**
+   * @return the session referenced by a lock id, or null if the lock isn't held by a session.
+   */
+  static String sessionOf(String lockId) {
+    var separator = lockId.indexOf(SEPARATOR);
+    return separator < 0 ? null : lockId.substring(0, separator);
+  }
+
+  /**
+   * @return a Mono of true if the session hasn't lapsed.
+   */
+  Mono<Boolean> isAlive(String sessionId) {
+    return reactiveStringRedisTemplate.hasKey(key(sessionId));
+  }
+
+  private Mono<String> start() {
+    // lazy, so only the one that is kept goes to Redis
+    return Mono.defer(() -> {
+        var started = uuidSupplier.get().toString();
+        return reactiveStringRedisTemplate.opsForValue().set(key(started), "", timeout).thenReturn(started);
+      })
+      .doOnNext(started -> {
+        id = started;
+        log.debug("session started, id={}", started);
+        if (heartbeating.compareAndSet(false, true)) {
+          heartbeat = Flux.interval(timeout.dividedBy(3)).concatMap(tick -> heartbeat()).subscribe();
+        }
+      })
+      // kept once started, but the next lock tries again if starting it failed
+      .cache(started -> Duration.ofMillis(Long.MAX_VALUE), throwable -> Duration.ZERO, () -> Duration.ZERO);
+  }
+
+  private Mono<Void> heartbeat() {
+    var current = id;
+    if (current == null) {
+      return Mono.empty();
+    }
+    // only renewed while it's still there, as the locks of a lapsed session may have been taken over already
+    return reactiveStringRedisTemplate.expire(key(current), timeout)
+      .doOnNext(renewed -> {
+        if (!renewed) {
+          log.warn("session lapsed, its locks are lost: id={}", current);
+          lapsed(current);
+        }
+      })
+      .onErrorResume(throwable -> {
+        // tries again on the next one, it only lapses if it keeps failing for longer than the timeout
+        log.error("error heartbeat(): message={}", throwable.getMessage());
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  private void lapsed(String lapsed) {
+    if (lapsed.equals(id)) {
+      id = null;
+      session.set(null);
+    }
+  }
+
+  /**
+   * Ends the session, so its locks can be taken over straight away. Blocks until its key is deleted.
+   */
+  @Override
+  public void close() {
+    if (heartbeat != null) {
+      heartbeat.dispose();
+    }
+    var current = id;
+    id = null;
+    session.set(null);
+    heartbeating.set(false);
+    if (current != null) {
+      reactiveStringRedisTemplate.delete(key(current))
+        .onErrorResume(throwable -> {
+          // it lapses anyway
+          log.error("error close(): message={}", throwable.getMessage());
+          return Mono.empty();
+        })
+        .block(timeout);
+    }
+  }
+
+  private String key(String sessionId) {
+    return keyPrefix + sessionId;
+  }
+
+}
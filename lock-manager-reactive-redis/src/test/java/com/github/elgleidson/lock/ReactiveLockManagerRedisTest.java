@@ -1,13 +1,16 @@
 package com.github.elgleidson.lock;
 
-import static com.github.elgleidson.lock.ReactiveLockManagerRedis.KEYSPACE;
 import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import ch.qos.logback.classic.Logger;
@@ -17,16 +20,22 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -42,21 +51,35 @@ class ReactiveLockManagerRedisTest {
   private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
   private static final UUID LOCK_ID = UUID.randomUUID();
   private static final Lock LOCK = new Lock(LOCK_ID.toString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final String LOCK_KEY = "lock:" + UNIQUE_IDENTIFIER;
+  private static final UUID SESSION_ID = UUID.randomUUID();
+  private static final String SESSION_KEY = "lock-session:" + SESSION_ID;
+  private static final Duration SESSION_TIMEOUT = Duration.ofSeconds(30);
+  // held as long as its session lives
+  private static final Lock SESSION_LOCK = new Lock(SESSION_ID + ":" + LOCK_ID, UNIQUE_IDENTIFIER, null);
+  private static final UUID OTHER_SESSION_ID = UUID.randomUUID();
+  private static final String OTHER_SESSION_HOLDER = OTHER_SESSION_ID + ":" + UUID.randomUUID();
 
   @Mock
   private ReactiveStringRedisTemplate reactiveRedisTemplate;
   @Mock
   private ReactiveValueOperations<String, String> reactiveValueOperations;
+  @Mock
+  private ReactiveLockReleaseWatcherRedis releaseWatcher;
 
   private ReactiveLockManager lockManager;
 
   private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
   private Mono<Lock> lockResult;
   private Mono<Boolean> unlockResult;
+  private Mono<Long> unlockAllResult;
+  private Mono<Lock> getLockResult;
+  private Flux<Lock> listLocksResult;
 
   @BeforeEach
   void setUp() {
-    lockManager = new ReactiveLockManagerRedis(reactiveRedisTemplate, CLOCK, () -> LOCK_ID);
+    lockManager = new ReactiveLockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, null, null, CLOCK, () -> LOCK_ID);
 
     lenient().when(reactiveRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
 
@@ -68,6 +91,8 @@ class ReactiveLockManagerRedisTest {
   @AfterEach
   void tearDown() {
     listAppender.stop();
+    // stops the heartbeat of the session, if any
+    ((ReactiveLockManagerRedis) lockManager).close();
   }
 
   @Test
@@ -76,6 +101,16 @@ class ReactiveLockManagerRedisTest {
     whenILock();
     thenIExpectLock();
     thenRedisTemplateInsertIsInvoked();
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockWithNamespace() {
+    givenALockKeyCodec(LockKeyCodec.namespaced("my-service:lock:"));
+    givenRedisTemplateInsertIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock();
+    thenRedisTemplateInsertIsInvoked("my-service:lock:" + UNIQUE_IDENTIFIER);
   }
 
   @Test
@@ -85,6 +120,7 @@ class ReactiveLockManagerRedisTest {
     thenIExpectLockFailureException();
     thenRedisTemplateInsertIsInvoked();
     thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
   }
 
   @Test
@@ -95,6 +131,7 @@ class ReactiveLockManagerRedisTest {
     thenIExpectLockFailureException(exception);
     thenRedisTemplateInsertIsInvoked();
     thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
   }
 
   @Test
@@ -136,6 +173,53 @@ class ReactiveLockManagerRedisTest {
     thenTheLogsContains("[WARN] unlock(): another process has acquired the lock on 'my-unique-identifier'");
   }
 
+  @Test
+  void renewAll() {
+    var otherLock = new Lock(UUID.randomUUID().toString(), "other-unique-identifier", EXPIRES_AT);
+    doReturn(Flux.just("10")).when(reactiveRedisTemplate)
+      .execute(any(RedisScript.class), eq(List.of(LOCK_KEY, "lock:other-unique-identifier")), eq(List.of("60000", LOCK.id(), otherLock.id())));
+    // only the ones still holding their lock id
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK, otherLock), Duration.ofSeconds(60)))
+      .expectNext(List.of(new Lock(LOCK.id(), UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(60))))
+      .verifyComplete();
+  }
+
+  @Test
+  void renewAllOneByOne() {
+    var otherLock = new Lock(UUID.randomUUID().toString(), "other-unique-identifier", EXPIRES_AT);
+    doReturn(Flux.error(new RuntimeException("CROSSSLOT Keys in request don't hash to the same slot"))).when(reactiveRedisTemplate)
+      .execute(any(RedisScript.class), eq(List.of(LOCK_KEY, "lock:other-unique-identifier")), anyList());
+    doReturn(Flux.just("1")).when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), anyList());
+    doReturn(Flux.just("0")).when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of("lock:other-unique-identifier")), anyList());
+    StepVerifier.create(lockManager.renewAll(List.of(LOCK, otherLock), TTL))
+      .expectNext(List.of(LOCK))
+      .verifyComplete();
+    thenTheLogsContains("[WARN] error renewAll(): message=CROSSSLOT Keys in request don't hash to the same slot, renewing one by one");
+  }
+
+  @Test
+  void unlockAll() {
+    givenRedisTemplateExecuteIsInvokedSuccessfully();
+    whenIUnlockAll();
+    thenIExpectUnlockAll(1L);
+    thenRedisTemplateExecuteIsInvoked();
+    thenRedisTemplateDeleteIsNotInvoked();
+  }
+
+  @Test
+  void unlockAllScriptException() {
+    var exception = new RuntimeException("CROSSSLOT Keys in request don't hash to the same slot");
+    givenRedisTemplateExecuteThrowsAnException(exception);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateDeleteIsInvokedSuccessfully();
+    whenIUnlockAll();
+    // falls back to unlocking one by one
+    thenIExpectUnlockAll(1L);
+    thenRedisTemplateGetIsInvoked();
+    thenRedisTemplateDeleteIsInvoked();
+    thenTheLogsContains("[WARN] error unlockAll(): message=CROSSSLOT Keys in request don't hash to the same slot, unlocking one by one");
+  }
+
   @Test
   void unlockExceptionGet() {
     var exception = new RuntimeException("test exception");
@@ -159,6 +243,265 @@ class ReactiveLockManagerRedisTest {
     thenTheLogsContains("[ERROR] error unlock(): message=test exception");
   }
 
+  @Test
+  void getLock() {
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    whenIGetLock();
+    thenIExpectGetLock(LOCK);
+    thenRedisTemplateGetIsInvoked();
+  }
+
+  @Test
+  void getLockNotFound() {
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    givenRedisTemplateGetExpireDoesNotFindAnyRecord();
+    whenIGetLock();
+    thenIExpectGetLockEmpty();
+    thenRedisTemplateGetIsInvoked();
+  }
+
+  @Test
+  void isLocked() {
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    StepVerifier.create(lockManager.isLocked(UNIQUE_IDENTIFIER)).expectNext(true).verifyComplete();
+  }
+
+  @Test
+  void isNotLocked() {
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    givenRedisTemplateGetExpireDoesNotFindAnyRecord();
+    StepVerifier.create(lockManager.isLocked(UNIQUE_IDENTIFIER)).expectNext(false).verifyComplete();
+  }
+
+  @Test
+  void listLocks() {
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    whenIListLocks("my-unique*");
+    thenIExpectListLocks(LOCK);
+    thenRedisTemplateScanIsInvoked("lock:my-unique\\**");
+  }
+
+  @Test
+  void listLocksHashed() {
+    var lockKeyCodec = LockKeyCodec.hashing("lock:", 10);
+    givenALockKeyCodec(lockKeyCodec);
+    var lockKey = lockKeyCodec.encode(UNIQUE_IDENTIFIER);
+    givenRedisTemplateScanIsInvokedSuccessfully(lockKey);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    whenIListLocks("");
+    // the identifier can't be recovered from its hash, so it's listed by the hash only
+    thenIExpectListLocks(new Lock(LOCK_ID.toString(), lockKey.substring("lock:".length()), EXPIRES_AT));
+    thenRedisTemplateScanIsInvoked("lock:*");
+  }
+
+  @Test
+  void listLocksExpiredInTheMeantime() {
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY);
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    givenRedisTemplateGetExpireDoesNotFindAnyRecord();
+    whenIListLocks("");
+    thenIExpectListLocks();
+    thenRedisTemplateScanIsInvoked("lock:*");
+  }
+
+  @Test
+  void lockWithSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    whenILock();
+    StepVerifier.create(lockResult).expectNext(SESSION_LOCK).verifyComplete();
+    // started by the first lock only
+    StepVerifier.create(lockResult).expectNext(SESSION_LOCK).verifyComplete();
+    verify(reactiveValueOperations).set(SESSION_KEY, "", SESSION_TIMEOUT);
+    // without an expiration of its own
+    verify(reactiveValueOperations, times(2)).setIfAbsent(LOCK_KEY, SESSION_LOCK.id());
+    verify(reactiveValueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+  }
+
+  @Test
+  void lockWithSessionOutlivesItsTtl() {
+    givenASession(Duration.ofMillis(300));
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    doReturn(Mono.just(true)).when(reactiveRedisTemplate).expire(SESSION_KEY, Duration.ofMillis(300));
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, Duration.ofMillis(100))).expectNext(SESSION_LOCK).verifyComplete();
+    // well past its TTL, the session being heartbeated meanwhile
+    verify(reactiveRedisTemplate, timeout(1_000).atLeast(2)).expire(SESSION_KEY, Duration.ofMillis(300));
+    givenRedisTemplateGetIsInvokedSuccessfully(SESSION_LOCK.id());
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(Duration.ZERO);
+    doReturn(Mono.just(true)).when(reactiveRedisTemplate).hasKey(SESSION_KEY);
+    whenIGetLock();
+    thenIExpectGetLock(SESSION_LOCK);
+    // and still renewed, without an expiration either
+    doReturn(Flux.just("1")).when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(List.of("", SESSION_LOCK.id())));
+    StepVerifier.create(lockManager.renewAll(List.of(SESSION_LOCK), TTL)).expectNext(List.of(SESSION_LOCK)).verifyComplete();
+  }
+
+  @Test
+  void renewAllOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    var lapsedLock = new Lock(OTHER_SESSION_HOLDER, UNIQUE_IDENTIFIER, null);
+    doReturn(Flux.just("1")).when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(List.of("", OTHER_SESSION_HOLDER)));
+    doReturn(Mono.just(false)).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    // lost with its session, even if it isn't taken over yet
+    StepVerifier.create(lockManager.renewAll(List.of(lapsedLock), TTL)).expectNext(List.of()).verifyComplete();
+  }
+
+  @Test
+  void lockWithSessionHeartbeat() {
+    givenASession(Duration.ofMillis(300));
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    doReturn(Mono.just(true)).when(reactiveRedisTemplate).expire(SESSION_KEY, Duration.ofMillis(300));
+    whenILock();
+    StepVerifier.create(lockResult).expectNext(SESSION_LOCK).verifyComplete();
+    // every third of the timeout, for all the locks of the session
+    verify(reactiveRedisTemplate, timeout(1_000).atLeast(2)).expire(SESSION_KEY, Duration.ofMillis(300));
+  }
+
+  @Test
+  void lockTakingOverALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    doReturn(Mono.just(false), Mono.just(true))
+      .when(reactiveValueOperations).setIfAbsent(anyString(), anyString());
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    doReturn(Mono.just(false)).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    givenRedisTemplateExecuteIsInvokedSuccessfully();
+    whenILock();
+    StepVerifier.create(lockResult).expectNext(SESSION_LOCK).verifyComplete();
+    // only if it's still the lapsed session's
+    verify(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(List.of(OTHER_SESSION_HOLDER)));
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockHeldByALiveSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(false);
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    doReturn(Mono.just(true)).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenILock();
+    thenIExpectLockFailureException();
+    verify(reactiveRedisTemplate, never()).execute(any(RedisScript.class), anyList(), anyList());
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockHeldWithoutSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(false);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLockFailureException();
+    verify(reactiveRedisTemplate, never()).hasKey(anyString());
+  }
+
+  @Test
+  void getLockOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    doReturn(Mono.just(false)).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenIGetLock();
+    thenIExpectGetLockEmpty();
+  }
+
+  @Test
+  void listLocksOfTheSameSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY, "lock:other-unique-identifier");
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    doReturn(Mono.just(true)).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenIListLocks("");
+    thenIExpectListLocks(new Lock(OTHER_SESSION_HOLDER, UNIQUE_IDENTIFIER, EXPIRES_AT),
+      new Lock(OTHER_SESSION_HOLDER, "other-unique-identifier", EXPIRES_AT));
+    // a single round trip for the session of both
+    verify(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+  }
+
+  @Test
+  void closeEndsTheSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    whenILock();
+    StepVerifier.create(lockResult).expectNext(SESSION_LOCK).verifyComplete();
+    ((ReactiveLockManagerRedis) lockManager).close();
+    verify(reactiveRedisTemplate).delete(SESSION_KEY);
+  }
+
+  @Test
+  void unlockPublishesTheRelease() {
+    givenAReleaseChannel(new ReactiveLockReleaseWatcherRedis(reactiveRedisTemplate, "lock-releases"));
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateDeleteIsInvokedSuccessfully();
+    doReturn(Mono.just(1L)).when(reactiveRedisTemplate).convertAndSend("lock-releases", LOCK_KEY);
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    verify(reactiveRedisTemplate).convertAndSend("lock-releases", LOCK_KEY);
+  }
+
+  @Test
+  void unlockAllPublishesTheReleases() {
+    givenAReleaseChannel(new ReactiveLockReleaseWatcherRedis(reactiveRedisTemplate, "lock-releases"));
+    givenRedisTemplateExecuteIsInvokedSuccessfully();
+    whenIUnlockAll();
+    thenIExpectUnlockAll(1L);
+    // the channel after the lock ids, published on by the script
+    verify(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(List.of(LOCK_ID.toString(), "lock-releases")));
+  }
+
+  @Test
+  void lockWaitingWokenUpOnRelease() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(Mono.just(false), Mono.just(true)).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL);
+    doReturn(CompletableFuture.completedFuture(null)).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+    verify(releaseWatcher).forget(eq(LOCK_KEY), any());
+  }
+
+  @Test
+  void lockWaitingWokenUpOnExpiry() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(Mono.just(false), Mono.just(true)).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(Duration.ofMillis(50));
+    // never released, it expires
+    doReturn(new CompletableFuture<Void>()).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+  }
+
+  @Test
+  void lockWaitingReleasedBeforeTheWaiter() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(Mono.just(false), Mono.just(true)).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireDoesNotFindAnyRecord();
+    doReturn(new CompletableFuture<Void>()).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+  }
+
+  private void givenAReleaseChannel(ReactiveLockReleaseWatcherRedis releaseWatcher) {
+    lockManager = new ReactiveLockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, null, releaseWatcher, CLOCK, () -> LOCK_ID);
+  }
+
+  private void givenASession(Duration timeout) {
+    var session = new ReactiveLockSessionRedis(reactiveRedisTemplate, "lock-session:", timeout, () -> SESSION_ID);
+    lockManager = new ReactiveLockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, session, null, CLOCK, () -> LOCK_ID);
+    lenient().doReturn(Mono.just(true)).when(reactiveValueOperations).set(SESSION_KEY, "", timeout);
+    // once the session is closed
+    lenient().doReturn(Mono.just(1L)).when(reactiveRedisTemplate).delete(SESSION_KEY);
+  }
+
+  private void givenALockKeyCodec(LockKeyCodec lockKeyCodec) {
+    lockManager = new ReactiveLockManagerRedis(reactiveRedisTemplate, lockKeyCodec, lockStatistics, null, null, CLOCK, () -> LOCK_ID);
+  }
+
   private void givenRedisTemplateInsertIsInvokedSuccessfully() {
     doReturn(Mono.just(true))
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
@@ -169,6 +512,11 @@ class ReactiveLockManagerRedisTest {
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
   }
 
+  private void givenRedisTemplateSessionInsertIsInvokedSuccessfully(boolean inserted) {
+    doReturn(Mono.just(inserted))
+      .when(reactiveValueOperations).setIfAbsent(anyString(), anyString());
+  }
+
   private void givenRedisTemplateInsertThrowsAnException(Throwable throwable) {
     doReturn(Mono.error(throwable))
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
@@ -189,6 +537,21 @@ class ReactiveLockManagerRedisTest {
       .when(reactiveValueOperations).get(anyString());
   }
 
+  private void givenRedisTemplateGetExpireIsInvokedSuccessfully(Duration expiresIn) {
+    doReturn(Mono.just(expiresIn))
+      .when(reactiveRedisTemplate).getExpire(anyString());
+  }
+
+  private void givenRedisTemplateGetExpireDoesNotFindAnyRecord() {
+    doReturn(Mono.empty())
+      .when(reactiveRedisTemplate).getExpire(anyString());
+  }
+
+  private void givenRedisTemplateScanIsInvokedSuccessfully(String... keys) {
+    doReturn(Flux.just(keys))
+      .when(reactiveRedisTemplate).scan(any(ScanOptions.class));
+  }
+
   private void givenRedisTemplateGetThrowsAnException(Throwable throwable) {
     doReturn(Mono.error(throwable))
       .when(reactiveValueOperations).get(anyString());
@@ -209,6 +572,28 @@ class ReactiveLockManagerRedisTest {
       .when(reactiveRedisTemplate).delete(anyString());
   }
 
+  private void givenRedisTemplateExecuteIsInvokedSuccessfully() {
+    doReturn(Flux.just(1L))
+      .when(reactiveRedisTemplate).execute(any(RedisScript.class), anyList(), anyList());
+  }
+
+  private void givenRedisTemplateExecuteThrowsAnException(Throwable throwable) {
+    doReturn(Flux.error(throwable))
+      .when(reactiveRedisTemplate).execute(any(RedisScript.class), anyList(), anyList());
+  }
+
+  private void whenIUnlockAll() {
+    unlockAllResult = lockManager.unlockAll(List.of(LOCK));
+  }
+
+  private void thenIExpectUnlockAll(long expected) {
+    StepVerifier.create(unlockAllResult).expectNext(expected).verifyComplete();
+  }
+
+  private void thenRedisTemplateExecuteIsInvoked() {
+    verify(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(List.of(LOCK_ID.toString())));
+  }
+
   private void whenILock() {
     lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL);
   }
@@ -217,6 +602,14 @@ class ReactiveLockManagerRedisTest {
     unlockResult = lockManager.unlock(LOCK);
   }
 
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    listLocksResult = lockManager.listLocks(prefix);
+  }
+
   private void thenIExpectLock() {
     StepVerifier.create(lockResult).expectNext(LOCK).verifyComplete();
   }
@@ -225,6 +618,18 @@ class ReactiveLockManagerRedisTest {
     StepVerifier.create(unlockResult).expectNext(expected).verifyComplete();
   }
 
+  private void thenIExpectGetLock(Lock expected) {
+    StepVerifier.create(getLockResult).expectNext(expected).verifyComplete();
+  }
+
+  private void thenIExpectGetLockEmpty() {
+    StepVerifier.create(getLockResult).verifyComplete();
+  }
+
+  private void thenIExpectListLocks(Lock... expected) {
+    StepVerifier.create(listLocksResult).expectNext(expected).verifyComplete();
+  }
+
   private void thenIExpectLockFailureException() {
     StepVerifier.create(lockResult).verifyErrorSatisfies(throwable -> assertThat(throwable)
       .isInstanceOf(LockFailureException.class)
@@ -240,22 +645,39 @@ class ReactiveLockManagerRedisTest {
     );
   }
 
+  private void thenRedisTemplateScanIsInvoked(String expectedPattern) {
+    var scanOptions = ArgumentCaptor.forClass(ScanOptions.class);
+    verify(reactiveRedisTemplate).scan(scanOptions.capture());
+    assertThat(scanOptions.getValue().getPattern()).isEqualTo(expectedPattern);
+  }
+
   private void thenRedisTemplateInsertIsInvoked() {
-    verify(reactiveValueOperations).setIfAbsent(KEYSPACE + UNIQUE_IDENTIFIER, LOCK_ID.toString(), TTL);
+    thenRedisTemplateInsertIsInvoked(LOCK_KEY);
+  }
+
+  private void thenRedisTemplateInsertIsInvoked(String expectedLockKey) {
+    verify(reactiveValueOperations).setIfAbsent(expectedLockKey, LOCK_ID.toString(), TTL);
   }
 
   private void thenRedisTemplateGetIsInvoked() {
-    verify(reactiveValueOperations).get(KEYSPACE + UNIQUE_IDENTIFIER);
+    verify(reactiveValueOperations).get(LOCK_KEY);
   }
 
   private void thenRedisTemplateDeleteIsInvoked() {
-    verify(reactiveRedisTemplate).delete(KEYSPACE + UNIQUE_IDENTIFIER);
+    verify(reactiveRedisTemplate).delete(LOCK_KEY);
   }
 
   private void thenRedisTemplateDeleteIsNotInvoked() {
     verify(reactiveRedisTemplate, never()).delete(anyString());
   }
 
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
   private void thenTheLogsContains(String expectedErrorMessage) {
     assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
   }
@@ -46,6 +46,27 @@ Feature: Lock manager
     When I try to lock the record with id of "123-unlocked"
     Then the lock is acquired
 
+  Scenario: Inspect the locks held
+    Given an existing record with id of "123-inspect"
+    When I try to lock the record with id of "123-inspect"
+    Then the lock is acquired
+    Then the record with id "123-inspect" is locked
+    Then listing the locks with prefix "123-insp" returns 1 lock
+    Given I unlock
+    Then the lock is released
+    Then the record with id "123-inspect" is not locked
+    Then listing the locks with prefix "123-insp" returns 0 locks
+
+  Scenario: Lock update - cancelled at random points
+    When I call the lock update 200 times with id prefix "123-cancelled-", cancelling at random points
+    # the locks are released whenever the calls are cancelled, instead of being held until they expire
+    Then no record with id prefix "123-cancelled-" is left locked
+
+  Scenario: Lock update - each record of a stream
+    When I call the lock update on 50 records with id prefix "123-each-", 8 at a time
+    Then the records with id prefix "123-each-" are updated 1 time
+    Then no record with id prefix "123-each-" is left locked
+
   Scenario: Cannot acquire lock during expiration window
     Given an existing record with id of "123-not-expired"
     Given the lock expires in 1s
@@ -0,0 +1,76 @@
+package com.github.elgleidson.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Batches the releases of {@link ReactiveLockManager#wrapEach}.
+ * <p>Only one {@link ReactiveLockManager#unlockAll(List)} is in flight at a time: the locks released meanwhile queue up and
+ * go together in the next one, so there's no timer involved and a lone release goes out straight away.</p>
+ */
+final class LockReleaseBatcher {
+
+  private final ReactiveLockManager lockManager;
+  private final Queue<PendingRelease> pending = new ConcurrentLinkedQueue<>();
+  // how many times drain() was called since the drain loop last caught up, so only one thread runs it at a time
+  private final AtomicInteger wip = new AtomicInteger();
+  private volatile boolean releasing;
+
+  LockReleaseBatcher(ReactiveLockManager lockManager) {
+    this.lockManager = lockManager;
+  }
+
+  /**
+   * @return a Mono that completes once the lock has been released (or failed to), never with an error.
+   */
+  Mono<Void> release(Lock lock) {
+    return Mono.create(sink -> {
+      pending.offer(new PendingRelease(lock, sink));
+      drain();
+    });
+  }
+
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      // the thread running the loop goes around once more
+      return;
+    }
+    var missed = 1;
+    do {
+      // a batch completing synchronously is followed by the next one here, rather than by a call deeper in the stack
+      if (!releasing && !pending.isEmpty()) {
+        var batch = new ArrayList<PendingRelease>();
+        PendingRelease next;
+        while ((next = pending.poll()) != null) {
+          batch.add(next);
+        }
+        releasing = true;
+        unlockAll(batch)
+          .doFinally(signal -> {
+            releasing = false;
+            batch.forEach(release -> release.sink().success());
+            drain();
+          })
+          .subscribe();
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private Mono<Long> unlockAll(List<PendingRelease> batch) {
+    try {
+      return lockManager.unlockAll(batch.stream().map(PendingRelease::lock).toList()).onErrorReturn(0L);
+    } catch (Throwable throwable) {
+      return Mono.just(0L);
+    }
+  }
+
+  private record PendingRelease(Lock lock, MonoSink<Void> sink) {
+  }
+
+}
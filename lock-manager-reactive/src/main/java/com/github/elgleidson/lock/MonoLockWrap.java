@@ -0,0 +1,234 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+/**
+ * Acquire, run the body and release as a single operator.
+ * <p>The same subscriber subscribes to the lock, the body and the unlock in turn, so a {@code wrap} costs one subscriber
+ * instead of a chain of operators and lambdas. The sources are subscribed one after another, and each one moves to the next
+ * stage on its terminal signal, so their signals never overlap.</p>
+ * <p>Cancelling while the body runs cancels the body and releases the lock. Cancelling while the lock is being acquired
+ * doesn't cancel the acquire, as the lock could already be held by then: it's released as soon as it's acquired instead,
+ * and finding it already held is ignored.</p>
+ */
+final class MonoLockWrap<T> extends Mono<T> {
+
+  private final ReactiveLockManager lockManager;
+  private final String uniqueIdentifier;
+  private final Duration expiresIn;
+  private final boolean onErrorUnlock;
+  private final Supplier<? extends Mono<? extends T>> monoSupplier;
+
+  MonoLockWrap(ReactiveLockManager lockManager, String uniqueIdentifier, Duration expiresIn, boolean onErrorUnlock,
+               Supplier<? extends Mono<? extends T>> monoSupplier) {
+    this.lockManager = lockManager;
+    this.uniqueIdentifier = uniqueIdentifier;
+    this.expiresIn = expiresIn;
+    this.onErrorUnlock = onErrorUnlock;
+    this.monoSupplier = monoSupplier;
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super T> actual) {
+    Mono<Lock> lock;
+    try {
+      lock = lockManager.lock(uniqueIdentifier, expiresIn);
+    } catch (Throwable throwable) {
+      Operators.error(actual, Operators.onOperatorError(throwable, actual.currentContext()));
+      return;
+    }
+    var subscriber = new LockWrapSubscriber<>(actual, this);
+    actual.onSubscribe(subscriber);
+    lock.subscribe(subscriber);
+  }
+
+  static final class LockWrapSubscriber<T> extends Operators.MonoSubscriber<Object, T> {
+
+    static final int ACQUIRING = 0;
+    static final int RUNNING = 1;
+    static final int RELEASING = 2;
+    static final int DONE = 3;
+    static final int CANCELLED_ACQUIRING = 4;
+    static final int CANCELLED_RUNNING = 5;
+
+    @SuppressWarnings("rawtypes")
+    static final AtomicIntegerFieldUpdater<LockWrapSubscriber> STAGE = AtomicIntegerFieldUpdater.newUpdater(LockWrapSubscriber.class, "stage");
+
+    private final MonoLockWrap<T> parent;
+    volatile int stage;
+    volatile Subscription upstream;
+    // only accessed by the signals, which are serialised as the sources are subscribed one after another
+    private Lock lock;
+    private T result;
+    private Throwable error;
+
+    LockWrapSubscriber(CoreSubscriber<? super T> actual, MonoLockWrap<T> parent) {
+      super(actual);
+      this.parent = parent;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      upstream = subscription;
+      if (stage == CANCELLED_RUNNING) {
+        subscription.cancel();
+        return;
+      }
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onNext(Object next) {
+      switch (stage) {
+        case ACQUIRING, CANCELLED_ACQUIRING -> lock = (Lock) next;
+        case RUNNING -> result = (T) next;
+        default -> {
+          // the result of the unlock is not relevant, and anything else arrives after a cancellation
+        }
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      switch (stage) {
+        case ACQUIRING -> {
+          if (STAGE.compareAndSet(this, ACQUIRING, DONE)) {
+            actual.onError(throwable);
+          }
+        }
+        case RUNNING -> {
+          if (!parent.onErrorUnlock) {
+            if (STAGE.compareAndSet(this, RUNNING, DONE)) {
+              actual.onError(throwable);
+            }
+            return;
+          }
+          error = throwable;
+          release();
+        }
+        // unlock errors are ignored, the lock will expire anyway
+        case RELEASING -> done();
+        case CANCELLED_ACQUIRING -> {
+          // not getting the lock is expected once nobody waits for it anymore, anything else is still reported
+          if (!(throwable instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked())) {
+            Operators.onErrorDropped(throwable, currentContext());
+          }
+        }
+        default -> Operators.onErrorDropped(throwable, currentContext());
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      switch (stage) {
+        case ACQUIRING -> acquired();
+        case RUNNING -> release();
+        case RELEASING -> done();
+        case CANCELLED_ACQUIRING -> {
+          // the lock was acquired after all, so it's released straight away
+          if (lock != null) {
+            safeUnlock(lock).subscribe();
+          }
+        }
+        default -> {
+        }
+      }
+    }
+
+    private void acquired() {
+      if (lock == null) {
+        // the same as flatMap on an empty Mono
+        if (STAGE.compareAndSet(this, ACQUIRING, DONE)) {
+          actual.onComplete();
+        }
+        return;
+      }
+      if (!STAGE.compareAndSet(this, ACQUIRING, RUNNING)) {
+        safeUnlock(lock).subscribe();
+        return;
+      }
+      Mono<? extends T> body;
+      try {
+        body = Objects.requireNonNull(parent.monoSupplier.get(), "The mono supplier returned a null Mono");
+      } catch (Throwable throwable) {
+        body = Mono.error(throwable);
+      }
+      body.subscribe(this);
+    }
+
+    private void release() {
+      if (STAGE.compareAndSet(this, RUNNING, RELEASING)) {
+        safeUnlock(lock).subscribe(this);
+      }
+    }
+
+    private void done() {
+      if (!STAGE.compareAndSet(this, RELEASING, DONE) || isCancelled()) {
+        return;
+      }
+      if (error != null) {
+        actual.onError(error);
+      } else if (result != null) {
+        complete(result);
+      } else {
+        actual.onComplete();
+      }
+    }
+
+    private Mono<Boolean> safeUnlock(Lock lock) {
+      try {
+        return parent.lockManager.unlock(lock).onErrorReturn(false);
+      } catch (Throwable throwable) {
+        return Mono.just(false);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      super.cancel();
+      for (;;) {
+        var current = stage;
+        if (current == ACQUIRING && STAGE.compareAndSet(this, ACQUIRING, CANCELLED_ACQUIRING)) {
+          // the acquire goes on, and onComplete releases the lock if it was acquired
+          return;
+        }
+        if (current == RUNNING && STAGE.compareAndSet(this, RUNNING, CANCELLED_RUNNING)) {
+          // the body is cancelled, but the lock can't be left behind until it expires
+          cancelUpstream();
+          safeUnlock(lock).subscribe();
+          return;
+        }
+        if (current != ACQUIRING && current != RUNNING) {
+          // already releasing (the unlock is never cancelled), done or cancelled
+          return;
+        }
+      }
+    }
+
+    private void cancelUpstream() {
+      // when the source hasn't called onSubscribe yet, onSubscribe cancels it
+      var subscription = upstream;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+
+    @Override
+    public Object scanUnsafe(Attr key) {
+      if (key == Attr.PARENT) {
+        return upstream;
+      }
+      return super.scanUnsafe(key);
+    }
+
+  }
+
+}
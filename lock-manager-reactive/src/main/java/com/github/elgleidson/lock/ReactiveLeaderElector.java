@@ -0,0 +1,199 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Elects a single leader among the nodes competing for the same name, as the holder of its lock, a lease renewed every
+ * third of its duration with {@link ReactiveLockManager#renewAll(List, Duration)}.
+ * <p>The followers wait for the lease with {@link ReactiveLockManager#lock(String, Duration, Duration)}, so they're woken up
+ * as soon as it's released on backends that can (e.g. the Mongo change stream, or the Redis release channel), or once it
+ * expires, rather than polling. A leader crashing is replaced once its lease expires, at most {@code lease} later.</p>
+ * <p>The leadership is revoked once its lease is lost, or would expire before the next renewal while the renewals keep
+ * failing, so before another node can be elected. On backends that can't renew locks, it's revoked at each lease, and
+ * competed for again.</p>
+ * <p>{@code onRevoked} is called before the lease is released.</p>
+ */
+@Slf4j
+public class ReactiveLeaderElector implements AutoCloseable {
+
+  private final ReactiveLockManager lockManager;
+  private final String name;
+  private final Duration lease;
+  private final Duration interval;
+  private final Runnable onElected;
+  private final Runnable onRevoked;
+  private final Clock clock;
+  private final AtomicBoolean campaigning = new AtomicBoolean();
+  private volatile Disposable campaign;
+  // completed to step down, null while following
+  private volatile Sinks.Empty<Void> stepDown;
+  // the lease held while leading, with its latest expiration
+  private volatile Lock leadership;
+
+  /**
+   * @param name the unique identifier of the lock the nodes compete for.
+   * @param lease how long the leadership outlives its last renewal, i.e. how long a crashed leader takes to be replaced.
+   * @param onElected called once this node is elected.
+   * @param onRevoked called once this node is no longer the leader.
+   */
+  public ReactiveLeaderElector(ReactiveLockManager lockManager, String name, Duration lease, Runnable onElected, Runnable onRevoked) {
+    this(lockManager, name, lease, onElected, onRevoked, Clock.systemUTC());
+  }
+
+  protected ReactiveLeaderElector(ReactiveLockManager lockManager, String name, Duration lease, Runnable onElected, Runnable onRevoked,
+                                  Clock clock) {
+    if (!lease.isPositive()) {
+      throw new IllegalArgumentException("lease must be positive, but was " + lease);
+    }
+    this.lockManager = lockManager;
+    this.name = name;
+    this.lease = lease;
+    this.interval = lease.dividedBy(3);
+    this.onElected = onElected;
+    this.onRevoked = onRevoked;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts competing for the leadership.
+   */
+  public void start() {
+    if (campaigning.compareAndSet(false, true)) {
+      campaign = Mono.defer(this::term).repeat().subscribe();
+    }
+  }
+
+  /**
+   * @return whether this node is the leader, i.e. holds a lease not expired yet.
+   */
+  public boolean isLeader() {
+    var held = leadership;
+    return held != null && (held.expiresAt() == null || held.expiresAt().toInstant().isAfter(Instant.now(clock)));
+  }
+
+  /**
+   * Steps down, if leading, releasing the lease to the followers, and competes again only after a third of it.
+   */
+  public void resign() {
+    var steppingDown = stepDown;
+    if (steppingDown != null) {
+      steppingDown.tryEmitEmpty();
+    }
+  }
+
+  /**
+   * @return a Mono that waits for the lease and leads until it's lost or this node steps down, never with an error.
+   */
+  private Mono<Void> term() {
+    return lockManager.lock(name, lease, interval)
+      .flatMap(held -> Mono.usingWhen(Mono.fromSupplier(() -> elected(held)), this::lead, this::revoked))
+      .onErrorResume(throwable -> throwable instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked()
+        ? Mono.empty()
+        // the backend is failing, tries again later
+        : Mono.delay(interval).then());
+  }
+
+  private Sinks.Empty<Void> elected(Lock held) {
+    var steppingDown = Sinks.<Void>empty();
+    stepDown = steppingDown;
+    leadership = held;
+    run("onElected", onElected);
+    return steppingDown;
+  }
+
+  /**
+   * @return a Mono that renews the lease every third of it, until it's lost or this node steps down, waiting a third of it
+   * before competing again when stepping down.
+   */
+  private Mono<Void> lead(Sinks.Empty<Void> steppingDown) {
+    var renewals = Flux.interval(interval, interval)
+      .onBackpressureDrop()
+      .concatMap(tick -> renew(), 1)
+      .takeWhile(held -> held)
+      .then(Mono.just(false));
+    return Mono.firstWithSignal(renewals, steppingDown.asMono().then(Mono.just(true)))
+      .flatMap(resigned -> resigned ? revoked(steppingDown).then(Mono.delay(interval)).then() : Mono.empty());
+  }
+
+  /**
+   * @return a Mono that renews the lease, once, emitting whether it's still held.
+   */
+  private Mono<Boolean> renew() {
+    return Mono.defer(() -> {
+      var current = leadership;
+      if (current == null) {
+        return Mono.just(false);
+      }
+      if (current.expiresAt() == null) {
+        // it never expires
+        return Mono.just(true);
+      }
+      return lockManager.renewAll(List.of(current), lease)
+        .map(renewed -> {
+          // expired, or taken over when empty
+          renewed.stream().findFirst().ifPresent(renewal -> leadership = renewal);
+          return !renewed.isEmpty();
+        })
+        .onErrorResume(throwable -> {
+          // tries again on the next tick, unless it would expire meanwhile
+          if (!current.expiresAt().toInstant().isAfter(Instant.now(clock).plus(interval))) {
+            log.error("error renewAll(): name={}, message={}, revoking the leadership before the lease expires", name, throwable.getMessage());
+            return Mono.just(false);
+          }
+          log.warn("error renewAll(): name={}, message={}, trying again on the next tick", name, throwable.getMessage());
+          return Mono.just(true);
+        });
+    });
+  }
+
+  private Mono<Void> revoked(Sinks.Empty<Void> steppingDown) {
+    return Mono.defer(() -> {
+      var held = leadership;
+      // once, whether stepping down or lost
+      if (stepDown != steppingDown || held == null) {
+        return Mono.empty();
+      }
+      stepDown = null;
+      leadership = null;
+      // stops the work before another node can be elected
+      run("onRevoked", onRevoked);
+      return lockManager.unlock(held)
+        .onErrorResume(throwable -> {
+          // it expires anyway
+          log.warn("error unlock(): name={}, message={}", name, throwable.getMessage());
+          return Mono.just(false);
+        })
+        .then();
+    });
+  }
+
+  private void run(String callbackName, Runnable callback) {
+    try {
+      callback.run();
+    } catch (RuntimeException ex) {
+      // a failing callback doesn't stop the campaign
+      log.error("error {}(): name={}, message={}", callbackName, name, ex.getMessage());
+    }
+  }
+
+  /**
+   * Stops competing for the leadership, stepping down if leading, the lease being released in the background.
+   */
+  @Override
+  public void close() {
+    if (campaign != null) {
+      campaign.dispose();
+    }
+    campaigning.set(false);
+  }
+
+}
@@ -1,8 +1,13 @@
 package com.github.elgleidson.lock;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 public interface ReactiveLockManager {
 
@@ -10,14 +15,77 @@ public interface ReactiveLockManager {
     return wrap(uniqueIdentifier, expiresIn, true, monoSupplier);
   }
 
+  /**
+   * Acquires the lock, subscribes to the Mono supplied and releases the lock once it terminates.
+   * <p>Cancelling while the Mono supplied runs also releases the lock.</p>
+   */
   default <T> Mono<T> wrap(String uniqueIdentifier, Duration expiresIn, boolean onErrorUnlock, Supplier<Mono<T>> monoSupplier) {
-    return lock(uniqueIdentifier, expiresIn)
-      .flatMap(lock -> Mono.defer(monoSupplier)
-        .flatMap(t -> safeUnlock(lock).thenReturn(t))
-        // ? in case we're working with Mono<Void> or an empty Mono is returned by the supplier.
-        .switchIfEmpty(Mono.defer(() -> safeUnlock(lock).then(Mono.empty())))
-        .onErrorResume(throwable -> onErrorUnlock ? safeUnlock(lock).then(Mono.error(throwable)) : Mono.error(throwable))
-      );
+    return new MonoLockWrap<>(this, uniqueIdentifier, expiresIn, onErrorUnlock, monoSupplier);
+  }
+
+  default <T> Flux<T> wrapMany(String uniqueIdentifier, Duration expiresIn, Supplier<Flux<T>> fluxSupplier) {
+    return wrapMany(uniqueIdentifier, expiresIn, true, fluxSupplier);
+  }
+
+  /**
+   * Same as {@link #wrap(String, Duration, boolean, Supplier)}, but for a {@link Flux}.
+   * <p>The lock is released once the Flux completes, errors (when {@code onErrorUnlock}) or is cancelled.</p>
+   */
+  default <T> Flux<T> wrapMany(String uniqueIdentifier, Duration expiresIn, boolean onErrorUnlock, Supplier<Flux<T>> fluxSupplier) {
+    return Flux.usingWhen(
+      lockReleasedOnCancel(uniqueIdentifier, expiresIn),
+      lock -> Flux.defer(fluxSupplier),
+      this::safeUnlock,
+      (lock, throwable) -> onErrorUnlock ? safeUnlock(lock) : Mono.empty(),
+      this::safeUnlock
+    );
+  }
+
+  default <T> Flux<T> wrapEach(Flux<String> uniqueIdentifiers, Duration expiresIn, int concurrency, Function<String, Mono<T>> function) {
+    return wrapEach(uniqueIdentifiers, expiresIn, concurrency, function, uniqueIdentifier -> {
+    });
+  }
+
+  /**
+   * Locks each unique identifier, subscribes to the Mono returned by the function under its lock and releases the lock once
+   * it terminates, the same as {@link #wrap(String, Duration, Supplier)} does for a single one.
+   * <p>Up to {@code concurrency} unique identifiers are locked and processed at a time, so their acquires are pipelined to
+   * the backend, and the unique identifiers are only requested as the processing keeps up with them (backpressure).
+   * The results are emitted as they are ready, not necessarily in the order of the unique identifiers.</p>
+   * <p>The locks released while a release is in flight are batched into the next {@link #unlockAll(List)}, so the batches
+   * grow with the concurrency instead of each lock costing a round trip.</p>
+   * @param onContended called with each unique identifier skipped because it was already locked. Any other lock failure
+   *                    errors the Flux.
+   */
+  default <T> Flux<T> wrapEach(Flux<String> uniqueIdentifiers, Duration expiresIn, int concurrency, Function<String, Mono<T>> function,
+                               Consumer<String> onContended) {
+    return Flux.defer(() -> {
+      var releases = new LockReleaseBatcher(this);
+      return uniqueIdentifiers.flatMap(uniqueIdentifier -> Mono.usingWhen(
+        lockReleasedOnCancel(uniqueIdentifier, expiresIn)
+          .onErrorResume(throwable -> throwable instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked(), throwable -> {
+            onContended.accept(uniqueIdentifier);
+            return Mono.empty();
+          }),
+        lock -> Mono.defer(() -> function.apply(uniqueIdentifier)),
+        releases::release,
+        (lock, throwable) -> releases.release(lock),
+        this::safeUnlock
+      ), concurrency);
+    });
+  }
+
+  // the acquire is never cancelled half-way, as the lock could already be held by then: it's released once acquired instead
+  private Mono<Lock> lockReleasedOnCancel(String uniqueIdentifier, Duration expiresIn) {
+    return Mono.defer(() -> {
+      var acquired = lock(uniqueIdentifier, expiresIn).toFuture();
+      return Mono.fromFuture(acquired, true)
+        .doOnCancel(() -> acquired.thenAccept(lock -> {
+          if (lock != null) {
+            safeUnlock(lock).subscribe();
+          }
+        }));
+    });
   }
 
   private Mono<Boolean> safeUnlock(Lock lock) {
@@ -26,6 +94,26 @@ public interface ReactiveLockManager {
 
   Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn);
 
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>By default, it tries again every 100ms. Backends can override it to be woken up once the lock is released instead.</p>
+   * @param uniqueIdentifier
+   * @param expiresIn
+   * @param waitFor how long to wait for the lock.
+   * @return the lock, or a {@link LockFailureException} when it's still held after {@code waitFor}, or straight away on any
+   * other failure.
+   */
+  default Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    return Mono.defer(() -> {
+      var deadline = System.nanoTime() + waitFor.toNanos();
+      return lock(uniqueIdentifier, expiresIn)
+        .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, Duration.ofMillis(100))
+          .filter(throwable -> throwable instanceof LockFailureException lockFailure && lockFailure.isAlreadyLocked()
+            && deadline - System.nanoTime() > 0)
+          .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    });
+  }
+
   /**
    * Releases the lock.
    * <p>This method should never throw an exception. In case of any exception, just log it and return false instead.</p>
@@ -35,4 +123,62 @@ public interface ReactiveLockManager {
    */
   Mono<Boolean> unlock(Lock lock);
 
+  /**
+   * Releases the locks, the same as {@link #unlock(Lock)} does for each of them.
+   * <p>Backends can override it to release all of them in a single round trip.</p>
+   * <p>This method should never throw an exception either.</p>
+   * @param locks
+   * @return how many locks were released.
+   */
+  default Mono<Long> unlockAll(List<Lock> locks) {
+    return Flux.fromIterable(locks)
+      .flatMap(this::unlock)
+      .filter(Boolean::booleanValue)
+      .count();
+  }
+
+  /**
+   * Extends the locks still held by their holders to expire in {@code expiresIn} from now.
+   * <p>Backends supporting it renew all of them in a single round trip, checking each one is still held by its lock id,
+   * e.g. for a {@link ReactiveLockRenewer} keeping the locks of a node alive.</p>
+   * @param locks
+   * @param expiresIn
+   * @return the locks renewed, with their new expiration. The others have been lost (expired, or taken over). An
+   * {@link UnsupportedOperationException} when the backend can't renew locks (see {@link #canRenew()}).
+   */
+  default Mono<List<Lock>> renewAll(List<Lock> locks, Duration expiresIn) {
+    return Mono.error(new UnsupportedOperationException(getClass().getSimpleName() + " can't renew locks"));
+  }
+
+  /**
+   * @return whether the backend can renew locks with {@link #renewAll(List, Duration)}.
+   */
+  default boolean canRenew() {
+    return false;
+  }
+
+  default Mono<Boolean> isLocked(String uniqueIdentifier) {
+    return getLock(uniqueIdentifier).hasElement();
+  }
+
+  /**
+   * Gets the lock currently held on the unique identifier.
+   * @param uniqueIdentifier
+   * @return the lock, with the ID of its holder and when it expires, or empty if there is no lock held. An
+   * {@link UnsupportedOperationException} when the lock manager can't inspect its locks.
+   */
+  default Mono<Lock> getLock(String uniqueIdentifier) {
+    return Mono.error(new UnsupportedOperationException(getClass().getSimpleName() + " can't inspect locks"));
+  }
+
+  /**
+   * Lists the locks currently held whose unique identifier starts with the prefix.
+   * <p>The locks are fetched from the backend as they are requested, respecting backpressure.</p>
+   * @param prefix the prefix of the unique identifier, or an empty string to list all locks.
+   * @return the locks held. An {@link UnsupportedOperationException} when the lock manager can't inspect its locks.
+   */
+  default Flux<Lock> listLocks(String prefix) {
+    return Flux.error(new UnsupportedOperationException(getClass().getSimpleName() + " can't inspect locks"));
+  }
+
 }
@@ -0,0 +1,170 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the locks of a node alive, renewing all the ones due on each tick with a single
+ * {@link ReactiveLockManager#renewAll(List, Duration)}, rather than each lock on its own.
+ * <p>A lock is due once it would expire before the next two ticks, so a failed tick doesn't lose it. The locks the backend
+ * didn't renew (expired, or taken over), and the ones that expire while the renewals keep failing, are unregistered and
+ * reported to {@code onLost}.</p>
+ * <p>The ticks start with the first lock registered, and a tick is skipped while the previous renewal is in flight.</p>
+ */
+@Slf4j
+public class ReactiveLockRenewer implements AutoCloseable {
+
+  private final ReactiveLockManager lockManager;
+  private final Duration expiresIn;
+  private final Duration interval;
+  private final Consumer<Lock> onLost;
+  private final Clock clock;
+  // the locks held by their id, with their latest expiration
+  private final Map<String, Lock> held = new ConcurrentHashMap<>();
+  private final AtomicBoolean ticking = new AtomicBoolean();
+  private volatile Disposable ticks;
+
+  /**
+   * @param expiresIn how long each renewal extends the locks for.
+   * @param interval how often the locks due are renewed, e.g. a third of {@code expiresIn}.
+   * @param onLost called with each lock lost.
+   */
+  public ReactiveLockRenewer(ReactiveLockManager lockManager, Duration expiresIn, Duration interval, Consumer<Lock> onLost) {
+    this(lockManager, expiresIn, interval, onLost, Clock.systemUTC());
+  }
+
+  protected ReactiveLockRenewer(ReactiveLockManager lockManager, Duration expiresIn, Duration interval, Consumer<Lock> onLost, Clock clock) {
+    if (!interval.isPositive() || interval.multipliedBy(2).compareTo(expiresIn) >= 0) {
+      throw new IllegalArgumentException("interval must be positive and less than half of expiresIn, but was " + interval);
+    }
+    this.lockManager = lockManager;
+    this.expiresIn = expiresIn;
+    this.interval = interval;
+    this.onLost = onLost;
+    this.clock = clock;
+  }
+
+  /**
+   * Acquires the lock for {@code expiresIn}, subscribes to the Mono supplied under it, kept alive however long it takes, and
+   * releases it once it terminates (or is cancelled).
+   * @return the Mono supplied, or a {@link LockFailureException} when the lock can't be acquired.
+   */
+  public <T> Mono<T> wrap(String uniqueIdentifier, Supplier<Mono<T>> monoSupplier) {
+    return Mono.usingWhen(
+      lockManager.lock(uniqueIdentifier, expiresIn).doOnNext(this::register),
+      lock -> monoSupplier.get(),
+      this::release,
+      (lock, throwable) -> release(lock),
+      this::release);
+  }
+
+  private Mono<Boolean> release(Lock lock) {
+    // with its latest expiration, the backends may tell the lock by it
+    return Mono.defer(() -> lockManager.unlock(unregister(lock)));
+  }
+
+  /**
+   * Renews the lock until it's unregistered (or lost).
+   */
+  public void register(Lock lock) {
+    held.put(lock.id(), lock);
+    // only the first one starts the ticks
+    if (ticking.compareAndSet(false, true)) {
+      ticks = Flux.interval(interval, interval)
+        .onBackpressureDrop()
+        .concatMap(tick -> renew(), 1)
+        .subscribe();
+    }
+  }
+
+  /**
+   * Stops renewing the lock, e.g. before releasing it.
+   * @return the lock with its latest expiration, to release it with, or the lock itself when it's not registered.
+   */
+  public Lock unregister(Lock lock) {
+    var latest = held.remove(lock.id());
+    return latest != null ? latest : lock;
+  }
+
+  /**
+   * @return the locks being renewed, with their latest expiration.
+   */
+  public List<Lock> held() {
+    return List.copyOf(held.values());
+  }
+
+  /**
+   * @return a Mono that renews the locks due, once, never with an error.
+   */
+  Mono<Void> renew() {
+    return Mono.defer(() -> {
+      var now = Instant.now(clock);
+      var dueBy = now.plus(interval.multipliedBy(2));
+      var due = held.values().stream()
+        // without an expiration, it never expires
+        .filter(lock -> lock.expiresAt() != null && lock.expiresAt().toInstant().isBefore(dueBy))
+        .toList();
+      if (due.isEmpty()) {
+        return Mono.empty();
+      }
+      return lockManager.renewAll(due, expiresIn)
+        .doOnNext(renewed -> renewed(due, renewed.stream().collect(Collectors.toMap(Lock::id, lock -> lock))))
+        .onErrorResume(throwable -> {
+          log.error("error renewAll(): locks={}, message={}", due.size(), throwable.getMessage());
+          // tries again on the next tick, only the ones expiring meanwhile are lost
+          due.stream().filter(lock -> !lock.expiresAt().toInstant().isAfter(now)).forEach(this::lost);
+          return Mono.empty();
+        })
+        .then();
+    });
+  }
+
+  private void renewed(List<Lock> due, Map<String, Lock> renewed) {
+    for (var lock : due) {
+      var renewal = renewed.get(lock.id());
+      if (renewal == null) {
+        lost(lock);
+      } else {
+        // unless it was unregistered meanwhile
+        held.replace(lock.id(), lock, renewal);
+      }
+    }
+  }
+
+  private void lost(Lock lock) {
+    // unless it was unregistered meanwhile
+    if (held.remove(lock.id(), lock)) {
+      try {
+        onLost.accept(lock);
+      } catch (RuntimeException ex) {
+        // a failing callback doesn't stop the ticks
+        log.error("error onLost(): lock={}, message={}", lock, ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops the ticks and forgets the locks, without releasing them.
+   */
+  @Override
+  public void close() {
+    if (ticks != null) {
+      ticks.dispose();
+    }
+    ticking.set(false);
+    held.clear();
+  }
+
+}
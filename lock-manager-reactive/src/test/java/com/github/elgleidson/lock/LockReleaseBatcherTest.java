@@ -0,0 +1,85 @@
+package com.github.elgleidson.lock;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class LockReleaseBatcherTest {
+
+  private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.now().plusSeconds(30);
+  private static final Lock LOCK_1 = new Lock("id-1", "unique-identifier-1", EXPIRES_AT);
+  private static final Lock LOCK_2 = new Lock("id-2", "unique-identifier-2", EXPIRES_AT);
+  private static final Lock LOCK_3 = new Lock("id-3", "unique-identifier-3", EXPIRES_AT);
+
+  @Mock
+  private ReactiveLockManager lockManager;
+
+  private LockReleaseBatcher lockReleaseBatcher;
+  private final Sinks.One<Long> firstUnlockAll = Sinks.one();
+
+  @BeforeEach
+  void setUp() {
+    lockReleaseBatcher = new LockReleaseBatcher(lockManager);
+  }
+
+  @Test
+  void releasesStraightAwayWhenNothingIsInFlight() {
+    doReturn(Mono.just(1L)).when(lockManager).unlockAll(anyList());
+    StepVerifier.create(lockReleaseBatcher.release(LOCK_1)).verifyComplete();
+    verify(lockManager).unlockAll(List.of(LOCK_1));
+  }
+
+  @Test
+  void batchesTheReleasesQueuedWhileOneIsInFlight() {
+    doReturn(firstUnlockAll.asMono()).when(lockManager).unlockAll(List.of(LOCK_1));
+    doReturn(Mono.just(2L)).when(lockManager).unlockAll(List.of(LOCK_2, LOCK_3));
+    var release1 = lockReleaseBatcher.release(LOCK_1).toFuture();
+    var release2 = lockReleaseBatcher.release(LOCK_2).toFuture();
+    var release3 = lockReleaseBatcher.release(LOCK_3).toFuture();
+    verify(lockManager).unlockAll(List.of(LOCK_1));
+    verifyNoMoreInteractions(lockManager);
+    // once the release in flight completes, the ones queued meanwhile go together
+    firstUnlockAll.tryEmitValue(1L);
+    verify(lockManager).unlockAll(List.of(LOCK_2, LOCK_3));
+    StepVerifier.create(Mono.fromFuture(release1)).verifyComplete();
+    StepVerifier.create(Mono.fromFuture(release2)).verifyComplete();
+    StepVerifier.create(Mono.fromFuture(release3)).verifyComplete();
+  }
+
+  @Test
+  void releasesTheBatchesInALoop() {
+    var releases = new AtomicInteger();
+    // each release queues another one while it's in flight, completing synchronously
+    doAnswer(invocation -> Mono.fromRunnable(() -> {
+        if (releases.incrementAndGet() < 100_000) {
+          lockReleaseBatcher.release(LOCK_2).subscribe();
+        }
+      })
+      .thenReturn(1L)).when(lockManager).unlockAll(anyList());
+    StepVerifier.create(lockReleaseBatcher.release(LOCK_1)).verifyComplete();
+    assertThat(releases).hasValue(100_000);
+  }
+
+  @Test
+  void completesTheReleasesWhenUnlockAllFails() {
+    doReturn(Mono.error(new RuntimeException("test"))).when(lockManager).unlockAll(anyList());
+    StepVerifier.create(lockReleaseBatcher.release(LOCK_1)).verifyComplete();
+  }
+
+}
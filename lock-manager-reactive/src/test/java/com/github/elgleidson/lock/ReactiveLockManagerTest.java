@@ -7,13 +7,23 @@ import static org.mockito.Mockito.*;
 
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 import reactor.test.publisher.PublisherProbe;
 
@@ -131,6 +141,138 @@ class ReactiveLockManagerTest {
     thenUnlockIsInvoked();
   }
 
+  @Test
+  void wrapCancelled() {
+    publisherProbe = PublisherProbe.of(Mono.never());
+    givenAMonoSupplier();
+    givenACallToLock();
+    givenACallToUnlock();
+    whenIWrap();
+    wrapResult.subscribe().dispose();
+    thenLockIsInvoked();
+    thenTheMonoIsCalled();
+    publisherProbe.assertWasCancelled();
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void wrapCancelledWhileLocking() {
+    var lockSink = Sinks.<Lock>one();
+    publisherProbeLock = PublisherProbe.of(lockSink.asMono());
+    givenAMonoSupplier();
+    givenACallToLock();
+    givenACallToUnlock();
+    whenIWrap();
+    wrapResult.subscribe().dispose();
+    // the lock is acquired after the cancellation, it can't be left behind until it expires
+    lockSink.tryEmitValue(LOCK);
+    thenLockIsInvoked();
+    publisherProbeLock.assertWasNotCancelled();
+    thenTheMonoIsNotCalled();
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void wrapCancelledWhileLockingAlreadyLocked() {
+    var dropped = whenTheLockFailsAfterTheCancellation(LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER));
+    // nobody waits for the lock anymore, so not getting it isn't reported
+    assertThat(dropped).isEmpty();
+    thenTheMonoIsNotCalled();
+    thenUnlockIsNotInvoked();
+  }
+
+  @Test
+  void wrapCancelledWhileLockingOtherFailure() {
+    var failure = LockFailureException.other(UNIQUE_IDENTIFIER, new RuntimeException("test exception"));
+    var dropped = whenTheLockFailsAfterTheCancellation(failure);
+    assertThat(dropped).containsExactly(failure);
+    thenTheMonoIsNotCalled();
+    thenUnlockIsNotInvoked();
+  }
+
+  @Test
+  void wrapResubscribed() {
+    givenAMonoSupplier();
+    givenACallToLock();
+    givenACallToUnlock();
+    whenIWrap();
+    thenIExpectWrapResult();
+    thenIExpectWrapResult();
+    // each subscription acquires and releases its own lock
+    verify(lockManager, times(2)).lock(UNIQUE_IDENTIFIER, TTL);
+    verify(lockManager, times(2)).unlock(LOCK);
+  }
+
+  @Test
+  void wrapMany() {
+    givenACallToLock();
+    givenACallToUnlock();
+    var fluxProbe = PublisherProbe.of(Flux.just(OBJECT, OBJECT));
+    StepVerifier.create(lockManager.wrapMany(UNIQUE_IDENTIFIER, TTL, fluxProbe::flux)).expectNext(OBJECT, OBJECT).verifyComplete();
+    thenLockIsInvoked();
+    fluxProbe.assertWasSubscribed();
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void wrapManyWithErrorFromSupplierNotUnlock() {
+    var exception = new RuntimeException("test");
+    givenACallToLock();
+    var fluxProbe = PublisherProbe.<Object>of(Flux.error(exception));
+    StepVerifier.create(lockManager.wrapMany(UNIQUE_IDENTIFIER, TTL, false, fluxProbe::flux)).verifyErrorMatches(exception::equals);
+    thenLockIsInvoked();
+    fluxProbe.assertWasSubscribed();
+    thenUnlockIsNotInvoked();
+  }
+
+  @Test
+  void wrapManyCancelled() {
+    givenACallToLock();
+    givenACallToUnlock();
+    var fluxProbe = PublisherProbe.of(Flux.just(OBJECT, OBJECT));
+    StepVerifier.create(lockManager.wrapMany(UNIQUE_IDENTIFIER, TTL, fluxProbe::flux), 1).expectNext(OBJECT).thenCancel().verify();
+    thenLockIsInvoked();
+    fluxProbe.assertWasCancelled();
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void wrapManyCancelledWhileLocking() {
+    var lockSink = Sinks.<Lock>one();
+    publisherProbeLock = PublisherProbe.of(lockSink.asMono());
+    givenACallToLock();
+    givenACallToUnlock();
+    var fluxProbe = PublisherProbe.of(Flux.just(OBJECT, OBJECT));
+    lockManager.wrapMany(UNIQUE_IDENTIFIER, TTL, fluxProbe::flux).subscribe().dispose();
+    lockSink.tryEmitValue(LOCK);
+    thenLockIsInvoked();
+    publisherProbeLock.assertWasNotCancelled();
+    fluxProbe.assertWasNotSubscribed();
+    thenUnlockIsInvoked();
+  }
+
+  @Test
+  void wrapCancelledAtRandomPoints() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    var random = ThreadLocalRandom.current();
+    for (int i = 0; i < 500; i++) {
+      var uniqueIdentifier = UNIQUE_IDENTIFIER + "-" + i;
+      var body = Mono.delay(Duration.ofNanos(random.nextLong(2_000_000))).thenReturn(OBJECT);
+      var subscription = i % 2 == 0
+        ? inMemoryLockManager.wrap(uniqueIdentifier, TTL, () -> body).subscribe()
+        : inMemoryLockManager.wrapMany(uniqueIdentifier, TTL, body::flux).subscribe();
+      // cancels while acquiring, while running, while releasing or once done
+      Mono.delay(Duration.ofNanos(random.nextLong(4_000_000))).subscribe(unused -> subscription.dispose());
+    }
+    // no lock is left behind, whenever the wrap was cancelled
+    Flux.interval(Duration.ofMillis(10))
+      .filter(unused -> inMemoryLockManager.locks.isEmpty())
+      .next()
+      .timeout(Duration.ofSeconds(5))
+      .block();
+    assertThat(inMemoryLockManager.locks).isEmpty();
+  }
+
   private void givenAMonoSupplier() {
     monoSupplier = publisherProbe::mono;
   }
@@ -173,6 +315,23 @@ class ReactiveLockManagerTest {
     doReturn(publisherProbeUnlock.mono()).when(lockManager).unlock(any(Lock.class));
   }
 
+  private List<Throwable> whenTheLockFailsAfterTheCancellation(Throwable throwable) {
+    var lockSink = Sinks.<Lock>one();
+    publisherProbeLock = PublisherProbe.of(lockSink.asMono());
+    givenAMonoSupplier();
+    givenACallToLock();
+    whenIWrap();
+    var dropped = new CopyOnWriteArrayList<Throwable>();
+    Hooks.onErrorDropped(dropped::add);
+    try {
+      wrapResult.subscribe().dispose();
+      lockSink.tryEmitError(throwable);
+    } finally {
+      Hooks.resetOnErrorDropped();
+    }
+    return dropped;
+  }
+
   private void whenIWrap() {
     wrapResult = lockManager.wrap(UNIQUE_IDENTIFIER, TTL, monoSupplier);
   }
@@ -221,4 +380,134 @@ class ReactiveLockManagerTest {
     publisherProbe.assertWasNotSubscribed();
   }
 
-}
\ No newline at end of file
+  @Test
+  void wrapEach() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    var running = new AtomicInteger();
+    var maxRunning = new AtomicInteger();
+    var uniqueIdentifiers = Flux.range(1, 200).map(i -> UNIQUE_IDENTIFIER + "-" + i);
+    var wrapEachResult = inMemoryLockManager.wrapEach(uniqueIdentifiers, TTL, 8, uniqueIdentifier -> Mono.fromSupplier(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        return uniqueIdentifier;
+      })
+      .delayElement(Duration.ofMillis(1))
+      .doOnNext(unused -> running.decrementAndGet()));
+    StepVerifier.create(wrapEachResult).expectNextCount(200).verifyComplete();
+    assertThat(maxRunning).hasValueBetween(1, 8);
+    // the releases are batched, but every lock is released
+    assertThat(inMemoryLockManager.unlockAllBatchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(200);
+    assertThat(inMemoryLockManager.locks).isEmpty();
+  }
+
+  @Test
+  void wrapEachContended() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    var otherHolderLock = inMemoryLockManager.lock(UNIQUE_IDENTIFIER + "-2", TTL).block();
+    var contended = new CopyOnWriteArrayList<String>();
+    var uniqueIdentifiers = Flux.just(UNIQUE_IDENTIFIER + "-1", UNIQUE_IDENTIFIER + "-2", UNIQUE_IDENTIFIER + "-3");
+    var wrapEachResult = inMemoryLockManager.wrapEach(uniqueIdentifiers, TTL, 2, Mono::just, contended::add);
+    StepVerifier.create(wrapEachResult)
+      .recordWith(CopyOnWriteArrayList::new)
+      .expectNextCount(2)
+      .consumeRecordedWith(results -> assertThat(results).containsExactlyInAnyOrder(UNIQUE_IDENTIFIER + "-1", UNIQUE_IDENTIFIER + "-3"))
+      .verifyComplete();
+    assertThat(contended).containsExactly(UNIQUE_IDENTIFIER + "-2");
+    // the lock of the other holder is left alone
+    assertThat(inMemoryLockManager.locks).containsOnly(Map.entry(UNIQUE_IDENTIFIER + "-2", otherHolderLock));
+  }
+
+  @Test
+  void wrapEachBackpressure() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    var processed = new AtomicInteger();
+    var uniqueIdentifiers = Flux.range(1, 100).map(i -> UNIQUE_IDENTIFIER + "-" + i);
+    var wrapEachResult = inMemoryLockManager.wrapEach(uniqueIdentifiers, TTL, 4, uniqueIdentifier -> Mono.fromSupplier(() -> {
+      processed.incrementAndGet();
+      return uniqueIdentifier;
+    }));
+    StepVerifier.create(wrapEachResult, 0)
+      .expectSubscription()
+      .expectNoEvent(Duration.ofMillis(100))
+      // without demand, no more than the concurrency is locked and processed
+      .then(() -> assertThat(processed).hasValueBetween(1, 4))
+      .thenRequest(Long.MAX_VALUE)
+      .expectNextCount(100)
+      .verifyComplete();
+    assertThat(inMemoryLockManager.locks).isEmpty();
+  }
+
+  @Test
+  void lockWaitingUntilReleased() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    var otherHolderLock = inMemoryLockManager.lock(UNIQUE_IDENTIFIER, TTL).block();
+    Mono.delay(Duration.ofMillis(150)).then(inMemoryLockManager.unlock(otherHolderLock)).subscribe();
+    StepVerifier.create(inMemoryLockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5)))
+      .assertNext(lock -> assertThat(lock).isNotEqualTo(otherHolderLock))
+      .verifyComplete();
+  }
+
+  @Test
+  void lockWaitingStillHeld() {
+    var inMemoryLockManager = new InMemoryLockManager();
+    inMemoryLockManager.lock(UNIQUE_IDENTIFIER, TTL).block();
+    StepVerifier.create(inMemoryLockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofMillis(250)))
+      .verifyErrorSatisfies(throwable -> assertThat(throwable)
+        .isInstanceOf(LockFailureException.class)
+        .hasMessage("Lock already acquired on 'my-unique-identifier'!"));
+  }
+
+  @Test
+  void lockWaitingOtherFailure() {
+    var exception = LockFailureException.other(UNIQUE_IDENTIFIER, new RuntimeException("test"));
+    doReturn(Mono.error(exception)).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    // not worth waiting for
+    StepVerifier.create(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5))).verifyErrorMatches(exception::equals);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  // the lock is held as soon as it's stored, while the answer (as from a remote backend) takes a random time to arrive
+  private static class InMemoryLockManager implements ReactiveLockManager {
+
+    private final Map<String, Lock> locks = new ConcurrentHashMap<>();
+    private final List<Integer> unlockAllBatchSizes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Mono<Lock> lock(String uniqueIdentifier, Duration expiresIn) {
+      return Mono.fromCallable(() -> {
+          var lock = new Lock(UUID.randomUUID().toString(), uniqueIdentifier, ZonedDateTime.now().plus(expiresIn));
+          if (locks.putIfAbsent(uniqueIdentifier, lock) != null) {
+            throw LockFailureException.alreadyLocked(uniqueIdentifier);
+          }
+          return lock;
+        })
+        .delayUntil(lock -> randomDelay());
+    }
+
+    @Override
+    public Mono<Boolean> unlock(Lock lock) {
+      return Mono.fromCallable(() -> locks.remove(lock.uniqueIdentifier(), lock))
+        .delayUntil(unlocked -> randomDelay());
+    }
+
+    @Override
+    public Mono<Long> unlockAll(List<Lock> locks) {
+      unlockAllBatchSizes.add(locks.size());
+      return ReactiveLockManager.super.unlockAll(locks);
+    }
+
+    @Override
+    public Mono<Lock> getLock(String uniqueIdentifier) {
+      return Mono.justOrEmpty(locks.get(uniqueIdentifier));
+    }
+
+    @Override
+    public Flux<Lock> listLocks(String prefix) {
+      return Flux.fromIterable(locks.values()).filter(lock -> lock.uniqueIdentifier().startsWith(prefix));
+    }
+
+    private static Mono<Long> randomDelay() {
+      return Mono.delay(Duration.ofNanos(ThreadLocalRandom.current().nextLong(1_000_000)));
+    }
+  }
+
+}
@@ -3,45 +3,211 @@ package com.github.elgleidson.lock;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 
+/**
+ * Locks on Redis keys, set only if absent and expiring on their own.
+ * <p>With a session, the locks are held by a single key of the instance instead, heartbeated for all of them: they don't
+ * expire on their own ({@code expiresIn} is ignored), but as long as the session lives, and a crashed instance's locks are
+ * taken over once its session lapses.</p>
+ */
 @Slf4j
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
-public class LockManagerRedis implements LockManager {
+public class LockManagerRedis implements LockManager, AutoCloseable {
 
-  protected static final String KEYSPACE = "lock:";
+  // hint of how many keys Redis should walk through per SCAN call
+  private static final long SCAN_COUNT = 1000;
+  // how many locks a renewal script goes through at most, so Redis isn't blocked for long by a single one
+  private static final int RENEW_CHUNK = 1000;
+  // extends each key still holding its lock id, telling which ones it did (e.g. "101"), or only tells which ones still hold
+  // it without an expiration (the session locks)
+  private static final RedisScript<String> RENEW_ALL_SCRIPT = RedisScript.of("""
+    local renewed = {}
+    for i, key in ipairs(KEYS) do
+      if redis.call('GET', key) ~= ARGV[i + 1] then
+        renewed[i] = 0
+      elseif ARGV[1] == '' then
+        renewed[i] = 1
+      else
+        renewed[i] = redis.call('PEXPIRE', key, ARGV[1])
+      end
+    end
+    return table.concat(renewed)
+    """, String.class);
+  // deletes the key only if it still holds the lock id, so a lock taken over meanwhile isn't
+  private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+    if redis.call('GET', KEYS[1]) == ARGV[1] then
+      return redis.call('DEL', KEYS[1])
+    end
+    return 0
+    """, Long.class);
 
   private final StringRedisTemplate stringRedisTemplate;
+  private final LockKeyCodec lockKeyCodec;
+  private final LockStatistics lockStatistics;
+  // null when the locks only expire on their own
+  private final LockSessionRedis session;
+  // null when the acquires waiting for a lock poll instead
+  private final LockReleaseWatcherRedis releaseWatcher;
   private final Clock clock;
   private final Supplier<UUID> uuidSupplier;
 
   public LockManagerRedis(StringRedisTemplate stringRedisTemplate) {
-    this(stringRedisTemplate, Clock.systemUTC(), UUID::randomUUID);
+    this(stringRedisTemplate, LockKeyCodec.defaultCodec());
+  }
+
+  public LockManagerRedis(StringRedisTemplate stringRedisTemplate, LockKeyCodec lockKeyCodec) {
+    this(stringRedisTemplate, lockKeyCodec, new LockStatistics());
+  }
+
+  public LockManagerRedis(StringRedisTemplate stringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics) {
+    this(stringRedisTemplate, lockKeyCodec, lockStatistics, null, null, Clock.systemUTC(), UUID::randomUUID);
+  }
+
+  /**
+   * @param sessionKeyPrefix prefix of the session keys, outside the lock namespace so they aren't listed as locks.
+   * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, which heartbeats every third of
+   *                       it. Every instance must use a session, as the ones without can't take over a lapsed one's locks.
+   */
+  public LockManagerRedis(StringRedisTemplate stringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                          String sessionKeyPrefix, Duration sessionTimeout) {
+    this(stringRedisTemplate, lockKeyCodec, lockStatistics, sessionKeyPrefix, sessionTimeout, null);
+  }
+
+  /**
+   * @param sessionTimeout how long the locks outlive the last heartbeat of their instance, or null for no session.
+   * @param releaseChannel the pub/sub channel the releases are published on, waking up the acquires waiting for them, or
+   *                       null for them to poll. Every instance must publish on it, as the others' releases aren't seen
+   *                       otherwise.
+   */
+  public LockManagerRedis(StringRedisTemplate stringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                          String sessionKeyPrefix, Duration sessionTimeout, String releaseChannel) {
+    this(stringRedisTemplate, lockKeyCodec, lockStatistics,
+      sessionTimeout != null ? new LockSessionRedis(stringRedisTemplate, sessionKeyPrefix, sessionTimeout, UUID::randomUUID) : null,
+      releaseChannel != null ? new LockReleaseWatcherRedis(stringRedisTemplate, releaseChannel) : null,
+      Clock.systemUTC(), UUID::randomUUID);
   }
 
   @Override
   public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var start = System.nanoTime();
     try {
       var lock = createLock(uniqueIdentifier, expiresIn);
-      var inserted = stringRedisTemplate.opsForValue().setIfAbsent(lockKey(uniqueIdentifier), lock.id(), expiresIn);
+      var lockKey = lockKey(uniqueIdentifier);
+      var inserted = insert(lockKey, lock.id(), expiresIn);
+      if (!Boolean.TRUE.equals(inserted) && session != null && removeLapsed(lockKey)) {
+        inserted = insert(lockKey, lock.id(), expiresIn);
+      }
       if (!Boolean.TRUE.equals(inserted)) {
         // this is to track concurrent calls
         log.warn("error lock(): lock already acquired on '{}'!", uniqueIdentifier);
+        lockStatistics.recordContended(uniqueIdentifier, System.nanoTime() - start);
         throw LockFailureException.alreadyLocked(uniqueIdentifier);
       }
+      lockStatistics.recordAcquired(uniqueIdentifier, System.nanoTime() - start);
       log.debug("locked={}", lock);
       return lock;
     } catch (Exception ex) {
       if (ex instanceof LockFailureException) {
         throw ex;
       }
+      log.error("error lock(): message={}", ex.getMessage());
+      lockStatistics.recordFailed(uniqueIdentifier, System.nanoTime() - start);
+      throw LockFailureException.other(uniqueIdentifier, ex);
+    }
+  }
+
+  private Boolean insert(String lockKey, String lockId, Duration expiresIn) {
+    // the session locks are held as long as their session lives
+    return session != null
+      ? stringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockId)
+      : stringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockId, expiresIn);
+  }
+
+  private boolean removeLapsed(String lockKey) {
+    var holder = stringRedisTemplate.opsForValue().get(lockKey);
+    if (holder == null) {
+      // released meanwhile
+      return true;
+    }
+    var holderSession = LockSessionRedis.sessionOf(holder);
+    if (holderSession == null || session.isAlive(holderSession)) {
+      return false;
+    }
+    log.debug("taking over the lock of a lapsed session: lockKey={}, holder={}", lockKey, holder);
+    stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), holder);
+    return true;
+  }
+
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>With a release channel, the waiter is woken up as soon as the lock is released, or once it expires, so there's no
+   * polling meanwhile. It polls every 100ms otherwise.</p>
+   */
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    if (releaseWatcher == null) {
+      return LockManager.super.lock(uniqueIdentifier, expiresIn, waitFor);
+    }
+    var deadline = System.nanoTime() + waitFor.toNanos();
+    while (true) {
+      try {
+        return lock(uniqueIdentifier, expiresIn);
+      } catch (LockFailureException ex) {
+        if (!ex.isAlreadyLocked() || deadline - System.nanoTime() <= 0) {
+          throw ex;
+        }
+        awaitRelease(uniqueIdentifier, deadline, ex);
+      }
+    }
+  }
+
+  private void awaitRelease(String uniqueIdentifier, long deadline, LockFailureException alreadyLocked) {
+    var lockKey = lockKey(uniqueIdentifier);
+    var released = releaseWatcher.awaitRelease(lockKey);
+    try {
+      // it may have been released before the waiter was registered
+      var untilExpiry = stringRedisTemplate.getExpire(lockKey, TimeUnit.MILLISECONDS);
+      if (untilExpiry == null || untilExpiry == -2) {
+        return;
+      }
+      var wait = deadline - System.nanoTime();
+      // -1: no expiration, only its release wakes it up
+      if (untilExpiry >= 0) {
+        wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(untilExpiry));
+      }
+      if (session != null) {
+        // its session may lapse before, and its release isn't published then
+        wait = Math.min(wait, session.timeout().toNanos());
+      }
+      released.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | ExecutionException ex) {
+      // tries again
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw alreadyLocked;
+    } catch (Exception ex) {
       log.error("error lock(): message={}", ex.getMessage());
       throw LockFailureException.other(uniqueIdentifier, ex);
+    } finally {
+      releaseWatcher.forget(lockKey, released);
     }
   }
 
@@ -60,6 +226,9 @@ public class LockManagerRedis implements LockManager {
       }
       var unlocked = stringRedisTemplate.delete(lockKey);
       log.debug("unlocked={}", unlocked);
+      if (Boolean.TRUE.equals(unlocked) && releaseWatcher != null) {
+        releaseWatcher.released(lockKey);
+      }
       return Boolean.TRUE.equals(unlocked);
     } catch (Exception ex) {
       // log the error, but returns successfully as the lock will expire (TTL)
@@ -68,14 +237,122 @@ public class LockManagerRedis implements LockManager {
     }
   }
 
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    log.debug("trying to renew {} locks, expiring in {}", locks.size(), expiresIn);
+    var renewed = new ArrayList<Lock>(locks.size());
+    for (var from = 0; from < locks.size(); from += RENEW_CHUNK) {
+      var chunk = locks.subList(from, Math.min(from + RENEW_CHUNK, locks.size()));
+      try {
+        renewed.addAll(renew(chunk, expiresIn));
+      } catch (Exception ex) {
+        if (chunk.size() == 1) {
+          throw ex;
+        }
+        // e.g. on a cluster, where the keys of a script must all hash to the same slot
+        log.warn("error renewAll(): message={}, renewing one by one", ex.getMessage());
+        for (var lock : chunk) {
+          renewed.addAll(renew(List.of(lock), expiresIn));
+        }
+      }
+    }
+    log.debug("renewed={}", renewed.size());
+    return renewed;
+  }
+
+  private List<Lock> renew(List<Lock> locks, Duration expiresIn) {
+    // taken before the call, so the key never expires before the lock says; the session locks don't expire on their own,
+    // they're only still held while their session lives
+    var expiresAt = session != null ? null : ZonedDateTime.now(clock).plus(expiresIn);
+    var lockKeys = locks.stream().map(lock -> lockKey(lock.uniqueIdentifier())).toList();
+    var args = new ArrayList<String>(locks.size() + 1);
+    args.add(session != null ? "" : String.valueOf(expiresIn.toMillis()));
+    locks.forEach(lock -> args.add(lock.id()));
+    var renewed = stringRedisTemplate.execute(RENEW_ALL_SCRIPT, lockKeys, args.toArray());
+    var sessionsAlive = new HashMap<String, Boolean>();
+    return IntStream.range(0, locks.size())
+      .filter(index -> renewed != null && renewed.charAt(index) == '1')
+      .filter(index -> !lapsed(locks.get(index).id(), sessionsAlive))
+      .mapToObj(index -> new Lock(locks.get(index).id(), locks.get(index).uniqueIdentifier(), expiresAt))
+      .toList();
+  }
+
+  @Override
+  public boolean canRenew() {
+    return true;
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    return getLock(lockKey(uniqueIdentifier), uniqueIdentifier, new HashMap<>());
+  }
+
+  /**
+   * Lists the locks by scanning their keys, so the prefix is matched against the keys.
+   * <p>The identifiers hashed by a {@link LockKeyCodec#hashing(String, int) hashing} codec can't be recovered: their locks
+   * are listed by their hash ({@code #<hash>}) as unique identifier, for inspection only, and only when the prefix is
+   * empty, as nothing of the identifier is left in their keys.</p>
+   */
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    // SCAN walks the keyspace incrementally (unlike KEYS), so it neither blocks Redis nor loads all keys at once
+    var scanOptions = ScanOptions.scanOptions().match(lockKeyPattern(prefix)).count(SCAN_COUNT).build();
+    // each session is only looked up once
+    var sessionsAlive = new HashMap<String, Boolean>();
+    return stringRedisTemplate.scan(scanOptions).stream()
+      .flatMap(lockKey -> getLock(lockKey, lockKeyCodec.decode(lockKey), sessionsAlive).stream());
+  }
+
+  private Optional<Lock> getLock(String lockKey, String uniqueIdentifier, Map<String, Boolean> sessionsAlive) {
+    var id = stringRedisTemplate.opsForValue().get(lockKey);
+    if (id == null) {
+      return Optional.empty();
+    }
+    var expiresIn = stringRedisTemplate.getExpire(lockKey, TimeUnit.MILLISECONDS);
+    // -2: the key has expired in the meantime; -1: the key has no expiration (a session lock, or not created by the lock manager)
+    if (expiresIn == null || expiresIn == -2) {
+      return Optional.empty();
+    }
+    if (lapsed(id, sessionsAlive)) {
+      return Optional.empty();
+    }
+    var expiresAt = expiresIn == -1 ? null : ZonedDateTime.now(clock).plus(Duration.ofMillis(expiresIn));
+    return Optional.of(new Lock(id, uniqueIdentifier, expiresAt));
+  }
+
+  private boolean lapsed(String id, Map<String, Boolean> sessionsAlive) {
+    // released as soon as its session lapses, even if it isn't taken over yet
+    var holderSession = session != null ? LockSessionRedis.sessionOf(id) : null;
+    return holderSession != null && !sessionsAlive.computeIfAbsent(holderSession, session::isAlive);
+  }
+
+  /**
+   * Ends the session, if any, so its locks can be taken over straight away, and unsubscribes from the release channel.
+   */
+  @Override
+  public void close() {
+    if (session != null) {
+      session.close();
+    }
+    if (releaseWatcher != null) {
+      releaseWatcher.close();
+    }
+  }
+
   private Lock createLock(String uniqueIdentifier, Duration expiresIn) {
-    var id = uuidSupplier.get().toString();
-    var expiresAt = ZonedDateTime.now(clock).plus(expiresIn);
-    return new Lock(id, uniqueIdentifier, expiresAt);
+    if (session != null) {
+      return new Lock(session.lockId(uuidSupplier.get()), uniqueIdentifier, null);
+    }
+    return new Lock(uuidSupplier.get().toString(), uniqueIdentifier, ZonedDateTime.now(clock).plus(expiresIn));
   }
 
   private String lockKey(String uniqueIdentifier) {
-    return KEYSPACE + uniqueIdentifier;
+    return lockKeyCodec.encode(uniqueIdentifier);
+  }
+
+  private String lockKeyPattern(String prefix) {
+    // escapes the glob-style special characters, so they are matched literally
+    return (lockKeyCodec.namespace() + prefix).replaceAll("([*?\\[\\]\\\\])", "\\\\$1") + "*";
   }
 
 }
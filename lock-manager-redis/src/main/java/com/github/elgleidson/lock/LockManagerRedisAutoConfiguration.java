@@ -4,17 +4,35 @@ import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
 @AutoConfiguration(after = RedisAutoConfiguration.class)
+@EnableConfigurationProperties(LockManagerRedisProperties.class)
 public class LockManagerRedisAutoConfiguration {
 
+  @Bean
+  @ConditionalOnMissingBean(LockKeyCodec.class)
+  public LockKeyCodec lockManagerRedisKeyCodec(LockManagerRedisProperties properties) {
+    return properties.toLockKeyCodec();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(LockStatistics.class)
+  public LockStatistics lockManagerRedisStatistics() {
+    return new LockStatistics();
+  }
+
   @Bean
   @ConditionalOnBean(StringRedisTemplate.class)
   @ConditionalOnMissingBean(LockManagerRedis.class)
-  public LockManagerRedis lockManagerRedis(StringRedisTemplate stringRedisTemplate) {
-    return new LockManagerRedis(stringRedisTemplate);
+  public LockManagerRedis lockManagerRedis(StringRedisTemplate stringRedisTemplate, LockKeyCodec lockKeyCodec, LockStatistics lockStatistics,
+                                           LockManagerRedisProperties properties) {
+    var session = properties.getSession();
+    var wait = properties.getWait();
+    return new LockManagerRedis(stringRedisTemplate, lockKeyCodec, lockStatistics, session.getKeyPrefix(),
+      session.isEnabled() ? session.getTimeout() : null, wait.isPubSub() ? wait.getChannel() : null);
   }
 
 }
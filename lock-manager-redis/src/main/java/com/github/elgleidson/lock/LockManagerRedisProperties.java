@@ -0,0 +1,75 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.redis")
+public class LockManagerRedisProperties {
+
+  /**
+   * Prefix of every lock key, so several services can share the same Redis.
+   */
+  private String namespace = LockKeyCodec.DEFAULT_NAMESPACE;
+
+  /**
+   * Identifiers longer than this are stored as a fixed-size hash. Zero (default) stores every identifier as is.
+   */
+  private int maxIdentifierLength = 0;
+
+  /**
+   * The session of the instance, holding all its locks.
+   */
+  private SessionProperties session = new SessionProperties();
+
+  /**
+   * How the acquires waiting for a lock are woken up once it's released.
+   */
+  private WaitProperties wait = new WaitProperties();
+
+  LockKeyCodec toLockKeyCodec() {
+    return maxIdentifierLength > 0
+      ? LockKeyCodec.hashing(namespace, maxIdentifierLength)
+      : LockKeyCodec.namespaced(namespace);
+  }
+
+  @Data
+  public static class SessionProperties {
+
+    /**
+     * Whether the locks are also held by a session of the instance, a single key heartbeated for all of them, so a crashed
+     * instance's locks are taken over once its session lapses rather than when they expire. Every instance must enable it.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How long the session outlives the last heartbeat of its instance, which heartbeats every third of it.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    /**
+     * Prefix of the session keys, outside the lock namespace so they aren't listed as locks.
+     */
+    private String keyPrefix = "lock-session:";
+
+  }
+
+  @Data
+  public static class WaitProperties {
+
+    /**
+     * Whether the releases are published on a pub/sub channel, waking up the waiters as soon as the lock is released (or
+     * once it expires) rather than polling every 100ms. Every instance must enable it, as the others' releases aren't seen
+     * otherwise.
+     */
+    private boolean pubSub = false;
+
+    /**
+     * The pub/sub channel the releases are published on.
+     */
+    private String channel = "lock-releases";
+
+  }
+
+}
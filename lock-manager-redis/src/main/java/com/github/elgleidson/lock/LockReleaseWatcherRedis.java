@@ -0,0 +1,111 @@
+package com.github.elgleidson.lock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Wakes up the acquires of {@link LockManagerRedis} waiting for a lock to be released, through a pub/sub channel the
+ * releases are published on, subscribed to once for all of them.
+ * <p>The channel is subscribed to by the first waiter. A release published before the subscription is ready isn't seen, so
+ * the waiters are also woken up once the lock they wait for expires.</p>
+ */
+@Slf4j
+final class LockReleaseWatcherRedis implements AutoCloseable {
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final String channel;
+  // the waiters by the key of the lock they wait for
+  private final Map<String, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private RedisMessageListenerContainer container;
+
+  LockReleaseWatcherRedis(StringRedisTemplate stringRedisTemplate, String channel) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.channel = channel;
+  }
+
+  /**
+   * Registers a waiter for the release of a lock, subscribing to the channel if it isn't yet.
+   * <p>A release is only seen once registered, so the lock should be checked again afterwards.</p>
+   * @return completes once the lock is released.
+   */
+  CompletableFuture<Void> awaitRelease(String lockKey) {
+    watch();
+    var released = new CompletableFuture<Void>();
+    waiters.computeIfAbsent(lockKey, key -> ConcurrentHashMap.newKeySet()).add(released);
+    return released;
+  }
+
+  /**
+   * Unregisters a waiter, once it's no longer waiting.
+   */
+  void forget(String lockKey, CompletableFuture<Void> released) {
+    waiters.computeIfPresent(lockKey, (key, releases) -> {
+      releases.remove(released);
+      return releases.isEmpty() ? null : releases;
+    });
+  }
+
+  /**
+   * Publishes the release of a lock, waking up the ones waiting for it on any instance.
+   */
+  void released(String lockKey) {
+    try {
+      stringRedisTemplate.convertAndSend(channel, lockKey);
+    } catch (Exception ex) {
+      // they're woken up once it expires anyway
+      log.warn("error released(): lockKey={}, message={}", lockKey, ex.getMessage());
+    }
+  }
+
+  private void watch() {
+    mutex.lock();
+    try {
+      if (container == null) {
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(stringRedisTemplate.getRequiredConnectionFactory());
+        container.addMessageListener(this::onMessage, new ChannelTopic(channel));
+        container.afterPropertiesSet();
+        container.start();
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void onMessage(Message message, byte[] pattern) {
+    var releases = waiters.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    if (releases != null) {
+      releases.forEach(released -> released.complete(null));
+    }
+  }
+
+  /**
+   * Unsubscribes from the channel, if subscribed.
+   */
+  @Override
+  public void close() {
+    mutex.lock();
+    try {
+      if (container != null) {
+        container.destroy();
+        container = null;
+      }
+    } catch (Exception ex) {
+      log.warn("error close(): message={}", ex.getMessage());
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,149 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * The session of a {@link LockManagerRedis}: a single key, heartbeated for all the locks the instance holds.
+ * <p>The locks reference the session in their id ({@code <session id>:<uuid>}), and are held without an expiration of
+ * their own, as long as the session lives. Once the instance stops heartbeating (e.g. it crashed), the session key
+ * expires, and the next one acquiring any of its locks takes it over.</p>
+ * <p>The session starts with the first lock. If it lapses anyway (e.g. Redis was unreachable for longer than the timeout),
+ * its locks are lost, and the next lock starts a new one.</p>
+ */
+@Slf4j
+final class LockSessionRedis implements AutoCloseable {
+
+  private static final char SEPARATOR = ':';
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final String keyPrefix;
+  private final Duration timeout;
+  private final Supplier<UUID> uuidSupplier;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private String id;
+  private ScheduledExecutorService heartbeat;
+
+  LockSessionRedis(StringRedisTemplate stringRedisTemplate, String keyPrefix, Duration timeout, Supplier<UUID> uuidSupplier) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.keyPrefix = keyPrefix;
+    this.timeout = timeout;
+    this.uuidSupplier = uuidSupplier;
+  }
+
+  Duration timeout() {
+    return timeout;
+  }
+
+  /**
+   * @return the id of a lock of this session, starting the session if there's none.
+   */
+  String lockId(UUID uuid) {
+    return id() + SEPARATOR + uuid;
+  }
+
+  /**
+   * @return the session referenced by a lock id, or null if the lock isn't held by a session.
+   */
+  static String sessionOf(String lockId) {
+    var separator = lockId.indexOf(SEPARATOR);
+    return separator < 0 ? null : lockId.substring(0, separator);
+  }
+
+  /**
+   * @return true if the session hasn't lapsed.
+   */
+  boolean isAlive(String sessionId) {
+    return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key(sessionId)));
+  }
+
+  private String id() {
+    mutex.lock();
+    try {
+      if (id == null) {
+        var started = uuidSupplier.get().toString();
+        stringRedisTemplate.opsForValue().set(key(started), "", timeout);
+        id = started;
+        log.debug("session started, id={}", id);
+      }
+      if (heartbeat == null) {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lock-manager-redis-session").factory());
+        var interval = timeout.toNanos() / 3;
+        heartbeat.scheduleAtFixedRate(this::heartbeat, interval, interval, TimeUnit.NANOSECONDS);
+      }
+      return id;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void heartbeat() {
+    String current;
+    mutex.lock();
+    try {
+      current = id;
+    } finally {
+      mutex.unlock();
+    }
+    if (current == null) {
+      return;
+    }
+    try {
+      // only renewed while it's still there, as the locks of a lapsed session may have been taken over already
+      if (!Boolean.TRUE.equals(stringRedisTemplate.expire(key(current), timeout))) {
+        log.warn("session lapsed, its locks are lost: id={}", current);
+        lapsed(current);
+      }
+    } catch (Exception ex) {
+      // tries again on the next one, it only lapses if it keeps failing for longer than the timeout
+      log.error("error heartbeat(): message={}", ex.getMessage());
+    }
+  }
+
+  private void lapsed(String lapsed) {
+    mutex.lock();
+    try {
+      if (lapsed.equals(id)) {
+        id = null;
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Ends the session, so its locks can be taken over straight away.
+   */
+  @Override
+  public void close() {
+    mutex.lock();
+    try {
+      if (heartbeat != null) {
+        heartbeat.shutdownNow();
+        heartbeat = null;
+      }
+      if (id != null) {
+        stringRedisTemplate.delete(key(id));
+        id = null;
+      }
+    } catch (Exception ex) {
+      // it lapses anyway
+      log.error("error close(): message={}", ex.getMessage());
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private String key(String sessionId) {
+    return keyPrefix + sessionId;
+  }
+
+}
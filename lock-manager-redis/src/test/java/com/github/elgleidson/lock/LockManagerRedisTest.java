@@ -1,15 +1,19 @@
 package com.github.elgleidson.lock;
 
-import static com.github.elgleidson.lock.LockManagerRedis.KEYSPACE;
 import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import ch.qos.logback.classic.Logger;
@@ -19,16 +23,25 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 
 @ExtendWith(MockitoExtension.class)
 class LockManagerRedisTest {
@@ -42,21 +55,36 @@ class LockManagerRedisTest {
   private static final ZonedDateTime EXPIRES_AT = ZonedDateTime.ofInstant(NOW, UTC).plus(TTL);
   private static final UUID LOCK_ID = UUID.randomUUID();
   private static final Lock LOCK = new Lock(LOCK_ID.toString(), UNIQUE_IDENTIFIER, EXPIRES_AT);
+  private static final String LOCK_KEY = "lock:" + UNIQUE_IDENTIFIER;
+  private static final UUID SESSION_ID = UUID.randomUUID();
+  private static final String SESSION_KEY = "lock-session:" + SESSION_ID;
+  private static final Duration SESSION_TIMEOUT = Duration.ofSeconds(30);
+  // held as long as its session lives
+  private static final Lock SESSION_LOCK = new Lock(SESSION_ID + ":" + LOCK_ID, UNIQUE_IDENTIFIER, null);
+  private static final UUID OTHER_SESSION_ID = UUID.randomUUID();
+  private static final String OTHER_SESSION_HOLDER = OTHER_SESSION_ID + ":" + UUID.randomUUID();
 
   @Mock
   private StringRedisTemplate reactiveRedisTemplate;
   @Mock
   private ValueOperations<String, String> reactiveValueOperations;
+  @Mock
+  private Cursor<String> cursor;
+  @Mock
+  private LockReleaseWatcherRedis releaseWatcher;
 
   private LockManager lockManager;
 
   private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+  private final LockStatistics lockStatistics = new LockStatistics();
   private Lock lockResult;
   private boolean unlockResult;
+  private Optional<Lock> getLockResult;
+  private List<Lock> listLocksResult;
 
   @BeforeEach
   void setUp() {
-    lockManager = new LockManagerRedis(reactiveRedisTemplate, CLOCK, () -> LOCK_ID);
+    lockManager = new LockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, null, null, CLOCK, () -> LOCK_ID);
 
     lenient().when(reactiveRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
 
@@ -68,6 +96,8 @@ class LockManagerRedisTest {
   @AfterEach
   void tearDown() {
     listAppender.stop();
+    // stops the heartbeat of the session, if any
+    ((LockManagerRedis) lockManager).close();
   }
 
   @Test
@@ -76,6 +106,16 @@ class LockManagerRedisTest {
     whenILock();
     thenIExpectLock();
     thenRedisTemplateInsertIsInvoked();
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockWithNamespace() {
+    givenALockKeyCodec(LockKeyCodec.namespaced("my-service:lock:"));
+    givenRedisTemplateInsertIsInvokedSuccessfully();
+    whenILock();
+    thenIExpectLock();
+    thenRedisTemplateInsertIsInvoked("my-service:lock:" + UNIQUE_IDENTIFIER);
   }
 
   @Test
@@ -86,6 +126,7 @@ class LockManagerRedisTest {
       .withMessage("Lock already acquired on 'my-unique-identifier'!");
     thenRedisTemplateInsertIsInvoked();
     thenTheLogsContains("[WARN] error lock(): lock already acquired on 'my-unique-identifier'!");
+    thenTheStatisticsAre(0, 1, 0);
   }
 
   @Test
@@ -98,6 +139,29 @@ class LockManagerRedisTest {
       .withCause(exception);
     thenRedisTemplateInsertIsInvoked();
     thenTheLogsContains("[ERROR] error lock(): message=test exception");
+    thenTheStatisticsAre(0, 0, 1);
+  }
+
+  @Test
+  void renewAll() {
+    var otherLock = new Lock(UUID.randomUUID().toString(), "other-unique-identifier", EXPIRES_AT);
+    doReturn("10").when(reactiveRedisTemplate)
+      .execute(any(RedisScript.class), eq(List.of(LOCK_KEY, "lock:other-unique-identifier")), eq("60000"), eq(LOCK.id()), eq(otherLock.id()));
+    var renewed = lockManager.renewAll(List.of(LOCK, otherLock), Duration.ofSeconds(60));
+    // only the ones still holding their lock id
+    assertThat(renewed).containsExactly(new Lock(LOCK.id(), UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(60)));
+  }
+
+  @Test
+  void renewAllOneByOne() {
+    var otherLock = new Lock(UUID.randomUUID().toString(), "other-unique-identifier", EXPIRES_AT);
+    doThrow(new RuntimeException("CROSSSLOT Keys in request don't hash to the same slot")).when(reactiveRedisTemplate)
+      .execute(any(RedisScript.class), eq(List.of(LOCK_KEY, "lock:other-unique-identifier")), anyString(), anyString(), anyString());
+    doReturn("1").when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), anyString(), anyString());
+    doReturn("0").when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of("lock:other-unique-identifier")), anyString(), anyString());
+    var renewed = lockManager.renewAll(List.of(LOCK, otherLock), TTL);
+    assertThat(renewed).containsExactly(LOCK);
+    thenTheLogsContains("[WARN] error renewAll(): message=CROSSSLOT Keys in request don't hash to the same slot, renewing one by one");
   }
 
   @Test
@@ -162,6 +226,256 @@ class LockManagerRedisTest {
     thenTheLogsContains("[ERROR] error unlock(): message=test exception");
   }
 
+  @Test
+  void getLock() {
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(LOCK));
+    thenRedisTemplateGetIsInvoked();
+  }
+
+  @Test
+  void getLockNotFound() {
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+    thenRedisTemplateGetIsInvoked();
+  }
+
+  @Test
+  void getLockExpiredInTheMeantime() {
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(-2L);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+  }
+
+  @Test
+  void isLocked() {
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isTrue();
+  }
+
+  @Test
+  void isNotLocked() {
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    assertThat(lockManager.isLocked(UNIQUE_IDENTIFIER)).isFalse();
+  }
+
+  @Test
+  void listLocks() {
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    whenIListLocks("my-unique*");
+    thenIExpectListLocks(LOCK);
+    thenRedisTemplateScanIsInvoked("lock:my-unique\\**");
+  }
+
+  @Test
+  void listLocksHashed() {
+    var lockKeyCodec = LockKeyCodec.hashing("lock:", 10);
+    givenALockKeyCodec(lockKeyCodec);
+    var lockKey = lockKeyCodec.encode(UNIQUE_IDENTIFIER);
+    givenRedisTemplateScanIsInvokedSuccessfully(lockKey);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    whenIListLocks("");
+    // the identifier can't be recovered from its hash, so it's listed by the hash only
+    thenIExpectListLocks(new Lock(LOCK_ID.toString(), lockKey.substring("lock:".length()), EXPIRES_AT));
+    thenRedisTemplateScanIsInvoked("lock:*");
+  }
+
+  @Test
+  void listLocksExpiredInTheMeantime() {
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY);
+    givenRedisTemplateGetDoesNotFindAnyRecord();
+    whenIListLocks("");
+    thenIExpectListLocks();
+    thenRedisTemplateScanIsInvoked("lock:*");
+  }
+
+  @Test
+  void lockWithSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    whenILock();
+    assertThat(lockResult).isEqualTo(SESSION_LOCK);
+    // started by the first lock only
+    whenILock();
+    verify(reactiveValueOperations).set(SESSION_KEY, "", SESSION_TIMEOUT);
+    // without an expiration of its own
+    verify(reactiveValueOperations, times(2)).setIfAbsent(LOCK_KEY, SESSION_LOCK.id());
+    verify(reactiveValueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+  }
+
+  @Test
+  void lockWithSessionHeartbeat() {
+    givenASession(Duration.ofMillis(300));
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    doReturn(true).when(reactiveRedisTemplate).expire(SESSION_KEY, Duration.ofMillis(300));
+    whenILock();
+    // every third of the timeout, for all the locks of the session
+    verify(reactiveRedisTemplate, timeout(1_000).atLeast(2)).expire(SESSION_KEY, Duration.ofMillis(300));
+  }
+
+  @Test
+  void lockWithSessionOutlivesItsTtl() throws InterruptedException {
+    givenASession(Duration.ofMillis(300));
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    doReturn(true).when(reactiveRedisTemplate).expire(SESSION_KEY, Duration.ofMillis(300));
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, Duration.ofMillis(100));
+    // well past its TTL, the session being heartbeated meanwhile
+    Thread.sleep(500);
+    verify(reactiveRedisTemplate, atLeast(2)).expire(SESSION_KEY, Duration.ofMillis(300));
+    givenRedisTemplateGetIsInvokedSuccessfully(SESSION_LOCK.id());
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(-1L);
+    doReturn(true).when(reactiveRedisTemplate).hasKey(SESSION_KEY);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.of(SESSION_LOCK));
+    // and still renewed, without an expiration either
+    doReturn("1").when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(""), eq(SESSION_LOCK.id()));
+    assertThat(lockManager.renewAll(List.of(lockResult), TTL)).containsExactly(SESSION_LOCK);
+  }
+
+  @Test
+  void renewAllOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    var lapsedLock = new Lock(OTHER_SESSION_HOLDER, UNIQUE_IDENTIFIER, null);
+    doReturn("1").when(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(""), eq(OTHER_SESSION_HOLDER));
+    doReturn(false).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    // lost with its session, even if it isn't taken over yet
+    assertThat(lockManager.renewAll(List.of(lapsedLock), TTL)).isEmpty();
+  }
+
+  @Test
+  void lockTakingOverALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    doReturn(false, true)
+      .when(reactiveValueOperations).setIfAbsent(anyString(), anyString());
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    doReturn(false).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenILock();
+    assertThat(lockResult).isEqualTo(SESSION_LOCK);
+    // only if it's still the lapsed session's
+    verify(reactiveRedisTemplate).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(OTHER_SESSION_HOLDER));
+    thenTheStatisticsAre(1, 0, 0);
+  }
+
+  @Test
+  void lockHeldByALiveSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(false);
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    doReturn(true).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(reactiveRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+    thenTheStatisticsAre(0, 1, 0);
+  }
+
+  @Test
+  void lockHeldWithoutSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(false);
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    assertThatExceptionOfType(LockFailureException.class)
+      .isThrownBy(this::whenILock)
+      .withMessage("Lock already acquired on 'my-unique-identifier'!");
+    verify(reactiveRedisTemplate, never()).hasKey(anyString());
+  }
+
+  @Test
+  void getLockOfALapsedSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    doReturn(false).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenIGetLock();
+    thenIExpectGetLock(Optional.empty());
+  }
+
+  @Test
+  void listLocksOfTheSameSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateScanIsInvokedSuccessfully(LOCK_KEY, "lock:other-unique-identifier");
+    givenRedisTemplateGetIsInvokedSuccessfully(OTHER_SESSION_HOLDER);
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    doReturn(true).when(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+    whenIListLocks("");
+    thenIExpectListLocks(new Lock(OTHER_SESSION_HOLDER, UNIQUE_IDENTIFIER, EXPIRES_AT),
+      new Lock(OTHER_SESSION_HOLDER, "other-unique-identifier", EXPIRES_AT));
+    // a single round trip for the session of both
+    verify(reactiveRedisTemplate).hasKey("lock-session:" + OTHER_SESSION_ID);
+  }
+
+  @Test
+  void closeEndsTheSession() {
+    givenASession(SESSION_TIMEOUT);
+    givenRedisTemplateSessionInsertIsInvokedSuccessfully(true);
+    whenILock();
+    ((LockManagerRedis) lockManager).close();
+    verify(reactiveRedisTemplate).delete(SESSION_KEY);
+  }
+
+  @Test
+  void unlockPublishesTheRelease() {
+    givenAReleaseChannel(new LockReleaseWatcherRedis(reactiveRedisTemplate, "lock-releases"));
+    givenRedisTemplateGetIsInvokedSuccessfully();
+    givenRedisTemplateDeleteIsInvokedSuccessfully();
+    whenIUnlock();
+    thenIExpectUnlock(true);
+    verify(reactiveRedisTemplate).convertAndSend("lock-releases", LOCK_KEY);
+  }
+
+  @Test
+  void lockWaitingWokenUpOnRelease() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(false, true).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(TTL.toMillis());
+    doReturn(CompletableFuture.completedFuture(null)).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+    verify(releaseWatcher).forget(eq(LOCK_KEY), any());
+  }
+
+  @Test
+  void lockWaitingWokenUpOnExpiry() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(false, true).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(50L);
+    // never released, it expires
+    doReturn(new CompletableFuture<Void>()).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+  }
+
+  @Test
+  void lockWaitingReleasedBeforeTheWaiter() {
+    givenAReleaseChannel(releaseWatcher);
+    doReturn(false, true).when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    givenRedisTemplateGetExpireIsInvokedSuccessfully(-2L);
+    doReturn(new CompletableFuture<Void>()).when(releaseWatcher).awaitRelease(LOCK_KEY);
+    lockResult = lockManager.lock(UNIQUE_IDENTIFIER, TTL, TTL);
+    thenIExpectLock();
+  }
+
+  private void givenAReleaseChannel(LockReleaseWatcherRedis releaseWatcher) {
+    lockManager = new LockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, null, releaseWatcher, CLOCK, () -> LOCK_ID);
+  }
+
+  private void givenASession(Duration timeout) {
+    var session = new LockSessionRedis(reactiveRedisTemplate, "lock-session:", timeout, () -> SESSION_ID);
+    lockManager = new LockManagerRedis(reactiveRedisTemplate, LockKeyCodec.defaultCodec(), lockStatistics, session, null, CLOCK, () -> LOCK_ID);
+  }
+
+  private void givenALockKeyCodec(LockKeyCodec lockKeyCodec) {
+    lockManager = new LockManagerRedis(reactiveRedisTemplate, lockKeyCodec, lockStatistics, null, null, CLOCK, () -> LOCK_ID);
+  }
+
   private void givenRedisTemplateInsertIsInvokedSuccessfully() {
     doReturn(true)
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
@@ -172,6 +486,11 @@ class LockManagerRedisTest {
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
   }
 
+  private void givenRedisTemplateSessionInsertIsInvokedSuccessfully(boolean inserted) {
+    doReturn(inserted)
+      .when(reactiveValueOperations).setIfAbsent(anyString(), anyString());
+  }
+
   private void givenRedisTemplateInsertThrowsAnException(Throwable throwable) {
     doThrow(throwable)
       .when(reactiveValueOperations).setIfAbsent(anyString(), anyString(), any(Duration.class));
@@ -192,6 +511,17 @@ class LockManagerRedisTest {
       .when(reactiveValueOperations).get(anyString());
   }
 
+  private void givenRedisTemplateGetExpireIsInvokedSuccessfully(Long expiresIn) {
+    doReturn(expiresIn)
+      .when(reactiveRedisTemplate).getExpire(anyString(), any(TimeUnit.class));
+  }
+
+  private void givenRedisTemplateScanIsInvokedSuccessfully(String... keys) {
+    doReturn(Stream.of(keys)).when(cursor).stream();
+    doReturn(cursor)
+      .when(reactiveRedisTemplate).scan(any(ScanOptions.class));
+  }
+
   private void givenRedisTemplateGetThrowsAnException(Throwable throwable) {
     doThrow(throwable)
       .when(reactiveValueOperations).get(anyString());
@@ -220,6 +550,16 @@ class LockManagerRedisTest {
     unlockResult = lockManager.unlock(LOCK);
   }
 
+  private void whenIGetLock() {
+    getLockResult = lockManager.getLock(UNIQUE_IDENTIFIER);
+  }
+
+  private void whenIListLocks(String prefix) {
+    try (var locks = lockManager.listLocks(prefix)) {
+      listLocksResult = locks.toList();
+    }
+  }
+
   private void thenIExpectLock() {
     assertThat(lockResult).isEqualTo(LOCK);
   }
@@ -228,22 +568,47 @@ class LockManagerRedisTest {
     assertThat(unlockResult).isEqualTo(expected);
   }
 
+  private void thenIExpectGetLock(Optional<Lock> expected) {
+    assertThat(getLockResult).isEqualTo(expected);
+  }
+
+  private void thenIExpectListLocks(Lock... expected) {
+    assertThat(listLocksResult).containsExactly(expected);
+  }
+
+  private void thenRedisTemplateScanIsInvoked(String expectedPattern) {
+    var scanOptions = ArgumentCaptor.forClass(ScanOptions.class);
+    verify(reactiveRedisTemplate).scan(scanOptions.capture());
+    assertThat(scanOptions.getValue().getPattern()).isEqualTo(expectedPattern);
+  }
+
   private void thenRedisTemplateInsertIsInvoked() {
-    verify(reactiveValueOperations).setIfAbsent(KEYSPACE + UNIQUE_IDENTIFIER, LOCK_ID.toString(), TTL);
+    thenRedisTemplateInsertIsInvoked(LOCK_KEY);
+  }
+
+  private void thenRedisTemplateInsertIsInvoked(String expectedLockKey) {
+    verify(reactiveValueOperations).setIfAbsent(expectedLockKey, LOCK_ID.toString(), TTL);
   }
 
   private void thenRedisTemplateGetIsInvoked() {
-    verify(reactiveValueOperations).get(KEYSPACE + UNIQUE_IDENTIFIER);
+    verify(reactiveValueOperations).get(LOCK_KEY);
   }
 
   private void thenRedisTemplateDeleteIsInvoked() {
-    verify(reactiveRedisTemplate).delete(KEYSPACE + UNIQUE_IDENTIFIER);
+    verify(reactiveRedisTemplate).delete(LOCK_KEY);
   }
 
   private void thenRedisTemplateDeleteIsNotInvoked() {
     verify(reactiveRedisTemplate, never()).delete(anyString());
   }
 
+  private void thenTheStatisticsAre(long acquired, long contended, long failed) {
+    var snapshot = lockStatistics.snapshot(10);
+    assertThat(snapshot.acquired()).isEqualTo(acquired);
+    assertThat(snapshot.contended()).isEqualTo(contended);
+    assertThat(snapshot.failed()).isEqualTo(failed);
+  }
+
   private void thenTheLogsContains(String expectedErrorMessage) {
     assertThat(listAppender.list.stream().map(Object::toString)).contains(expectedErrorMessage);
   }
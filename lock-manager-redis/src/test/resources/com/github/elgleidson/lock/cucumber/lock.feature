@@ -46,6 +46,17 @@ Feature: Lock manager
     When I try to lock the record with id of "123-unlocked"
     Then the lock is acquired
 
+  Scenario: Inspect the locks held
+    Given an existing record with id of "123-inspect"
+    When I try to lock the record with id of "123-inspect"
+    Then the lock is acquired
+    Then the record with id "123-inspect" is locked
+    Then listing the locks with prefix "123-insp" returns 1 lock
+    Given I unlock
+    Then the lock is released
+    Then the record with id "123-inspect" is not locked
+    Then listing the locks with prefix "123-insp" returns 0 locks
+
   Scenario: Cannot acquire lock during expiration window
     Given an existing record with id of "123-not-expired"
     Given the lock expires in 1s
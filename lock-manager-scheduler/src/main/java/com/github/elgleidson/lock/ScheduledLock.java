@@ -0,0 +1,36 @@
+package com.github.elgleidson.lock;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated {@code @Scheduled} method on a single node per period: the nodes that don't acquire the lock skip it.
+ * <p>Once the method completes, the lock is kept until {@link #lockAtLeastFor()} since it started, so a node whose clock is
+ * slightly behind doesn't run it again for the same period.</p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ScheduledLock {
+
+  /**
+   * The name of the job, locked as its unique identifier (after the key prefix).
+   */
+  String name();
+
+  /**
+   * How long the lock is held at most, in case the node running the method dies, e.g. {@code 10m} or {@code PT10M}.
+   * Property placeholders are resolved.
+   */
+  String lockAtMostFor();
+
+  /**
+   * How long the lock is held at least, even if the method completes sooner, e.g. {@code 30s}. Property placeholders are
+   * resolved.
+   */
+  String lockAtLeastFor() default "0s";
+
+}
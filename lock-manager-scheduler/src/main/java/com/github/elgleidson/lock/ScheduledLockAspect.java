@@ -0,0 +1,85 @@
+package com.github.elgleidson.lock;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.util.StringValueResolver;
+
+/**
+ * Runs the methods annotated with {@link ScheduledLock} through the {@link ScheduledLockExecutor}.
+ * <p>The durations are resolved on the first invocation of each method and cached. A method skipped returns null, as
+ * {@code @Scheduled} methods return nothing.</p>
+ */
+@Slf4j
+@Aspect
+public class ScheduledLockAspect implements EmbeddedValueResolverAware {
+
+  private final ScheduledLockExecutor scheduledLockExecutor;
+  private final Map<Method, LockedJob> lockedJobs = new ConcurrentHashMap<>();
+  private StringValueResolver embeddedValueResolver;
+
+  public ScheduledLockAspect(ScheduledLockExecutor scheduledLockExecutor) {
+    this.scheduledLockExecutor = scheduledLockExecutor;
+  }
+
+  @Override
+  public void setEmbeddedValueResolver(StringValueResolver embeddedValueResolver) {
+    this.embeddedValueResolver = embeddedValueResolver;
+  }
+
+  @Around("@annotation(scheduledLock)")
+  public Object lock(ProceedingJoinPoint joinPoint, ScheduledLock scheduledLock) throws Throwable {
+    var method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    var lockedJob = lockedJobs.computeIfAbsent(method, key -> lockedJob(scheduledLock));
+    try {
+      var ran = scheduledLockExecutor.run(scheduledLock.name(), lockedJob.lockAtMostFor(), lockedJob.lockAtLeastFor(), () -> {
+        try {
+          joinPoint.proceed();
+        } catch (RuntimeException | Error ex) {
+          throw ex;
+        } catch (Throwable throwable) {
+          throw new CheckedThrowableHolder(throwable);
+        }
+      });
+      log.debug("method: {}, name: {}, ran: {}", method, scheduledLock.name(), ran);
+      return null;
+    } catch (CheckedThrowableHolder holder) {
+      throw holder.getCause();
+    }
+  }
+
+  private LockedJob lockedJob(ScheduledLock scheduledLock) {
+    var lockAtMostFor = duration(scheduledLock.lockAtMostFor());
+    var lockAtLeastFor = duration(scheduledLock.lockAtLeastFor());
+    if (lockAtLeastFor.compareTo(lockAtMostFor) > 0) {
+      throw new IllegalArgumentException("lockAtLeastFor must not be longer than lockAtMostFor for " + scheduledLock.name());
+    }
+    return new LockedJob(lockAtMostFor, lockAtLeastFor);
+  }
+
+  private Duration duration(String value) {
+    if (embeddedValueResolver != null) {
+      value = embeddedValueResolver.resolveStringValue(value);
+    }
+    return DurationStyle.detectAndParse(value);
+  }
+
+  private record LockedJob(Duration lockAtMostFor, Duration lockAtLeastFor) {
+  }
+
+  // carries the checked exceptions of the method through the Runnable
+  private static class CheckedThrowableHolder extends RuntimeException {
+    CheckedThrowableHolder(Throwable cause) {
+      super(null, cause, false, false);
+    }
+  }
+
+}
@@ -0,0 +1,35 @@
+package com.github.elgleidson.lock;
+
+import org.aspectj.weaver.Advice;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+@AutoConfiguration(after = AopAutoConfiguration.class, afterName = {
+  "com.github.elgleidson.lock.LockManagerRedisAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerMongoAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerJdbcAutoConfiguration",
+  "com.github.elgleidson.lock.LockManagerFileAutoConfiguration"
+})
+@ConditionalOnClass(Advice.class)
+@ConditionalOnBean(LockManager.class)
+@EnableConfigurationProperties(ScheduledLockProperties.class)
+public class ScheduledLockAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  public ScheduledLockExecutor scheduledLockExecutor(LockManager lockManager, ScheduledLockProperties properties) {
+    return new ScheduledLockExecutor(lockManager, properties.getKeyPrefix());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public ScheduledLockAspect scheduledLockAspect(ScheduledLockExecutor scheduledLockExecutor) {
+    return new ScheduledLockAspect(scheduledLockExecutor);
+  }
+
+}
@@ -0,0 +1,118 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the scheduled jobs on a single node per period.
+ * <p>Once a job completes, its lock is shortened to {@code lockAtLeastFor} since it started, through
+ * {@link LockManager#renewAll(List, Duration)}, rather than released; on the backends that can't renew locks, it's released
+ * once {@code lockAtLeastFor} has elapsed instead.</p>
+ * <p>Each node remembers until when the locks it saw are held, and skips the job without going to the backend until then.</p>
+ */
+@Slf4j
+public class ScheduledLockExecutor implements AutoCloseable {
+
+  private final LockManager lockManager;
+  private final String keyPrefix;
+  private final Clock clock;
+  // until when the locks seen by this node are held, by their unique identifier
+  private final Map<String, Instant> heldUntil = new ConcurrentHashMap<>();
+  // releases the locks once lockAtLeastFor has elapsed, on the backends that can't shorten them
+  private final ScheduledExecutorService releases =
+    Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lock-manager-scheduler").factory());
+
+  public ScheduledLockExecutor(LockManager lockManager, String keyPrefix) {
+    this(lockManager, keyPrefix, Clock.systemUTC());
+  }
+
+  protected ScheduledLockExecutor(LockManager lockManager, String keyPrefix, Clock clock) {
+    this.lockManager = lockManager;
+    this.keyPrefix = keyPrefix;
+    this.clock = clock;
+  }
+
+  /**
+   * Runs the job, unless another node holds its lock.
+   * @param lockAtMostFor how long the lock is held at most, in case this node dies while running it.
+   * @param lockAtLeastFor how long the lock is held at least, even if the job completes sooner.
+   * @return whether it ran.
+   */
+  public boolean run(String name, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable job) {
+    var uniqueIdentifier = keyPrefix + name;
+    var startedAt = Instant.now(clock);
+    var until = heldUntil.get(uniqueIdentifier);
+    if (until != null && startedAt.isBefore(until)) {
+      log.debug("uniqueIdentifier: {}, skipped, held until {}", uniqueIdentifier, until);
+      return false;
+    }
+    Lock lock;
+    try {
+      lock = lockManager.lock(uniqueIdentifier, lockAtMostFor);
+    } catch (LockFailureException ex) {
+      if (ex.isAlreadyLocked()) {
+        held(uniqueIdentifier);
+      } else {
+        log.warn("error lock(): uniqueIdentifier={}, message={}", uniqueIdentifier, ex.getMessage());
+      }
+      return false;
+    }
+    try {
+      job.run();
+    } finally {
+      release(lock, startedAt.plus(lockAtLeastFor));
+    }
+    return true;
+  }
+
+  // remembers until when another node holds it, so the next runs until then don't go to the backend
+  private void held(String uniqueIdentifier) {
+    try {
+      lockManager.getLock(uniqueIdentifier)
+        .filter(lock -> lock.expiresAt() != null)
+        .ifPresent(lock -> heldUntil.put(uniqueIdentifier, lock.expiresAt().toInstant()));
+    } catch (RuntimeException ex) {
+      log.warn("error getLock(): uniqueIdentifier={}, message={}", uniqueIdentifier, ex.getMessage());
+    }
+  }
+
+  private void release(Lock lock, Instant atLeastUntil) {
+    var remaining = Duration.between(Instant.now(clock), atLeastUntil);
+    if (!remaining.isPositive()) {
+      heldUntil.remove(lock.uniqueIdentifier());
+      lockManager.unlock(lock);
+      return;
+    }
+    heldUntil.put(lock.uniqueIdentifier(), atLeastUntil);
+    if (!lockManager.canRenew()) {
+      releases.schedule(() -> lockManager.unlock(lock), remaining.toNanos(), TimeUnit.NANOSECONDS);
+      return;
+    }
+    try {
+      // shortened rather than released, so the others skip it until then
+      if (lockManager.renewAll(List.of(lock), remaining).isEmpty()) {
+        log.warn("uniqueIdentifier: {}, lost before it was shortened", lock.uniqueIdentifier());
+      }
+    } catch (RuntimeException ex) {
+      // it expires after lockAtMostFor anyway
+      log.warn("error renewAll(): uniqueIdentifier={}, message={}", lock.uniqueIdentifier(), ex.getMessage());
+    }
+  }
+
+  /**
+   * Stops the pending releases, the locks expire after {@code lockAtMostFor} instead.
+   */
+  @Override
+  public void close() {
+    releases.shutdownNow();
+  }
+
+}
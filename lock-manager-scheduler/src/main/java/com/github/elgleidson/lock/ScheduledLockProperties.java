@@ -0,0 +1,15 @@
+package com.github.elgleidson.lock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "lock-manager.scheduler")
+public class ScheduledLockProperties {
+
+  /**
+   * Prefix of the unique identifier locked for each job, followed by its name.
+   */
+  private String keyPrefix = "scheduled:";
+
+}
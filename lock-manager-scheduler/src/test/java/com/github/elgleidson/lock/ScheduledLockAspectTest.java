@@ -0,0 +1,81 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledLockAspectTest {
+
+  @Mock
+  private ScheduledLockExecutor scheduledLockExecutor;
+
+  private final ReportJob target = new ReportJob();
+  private ReportJob reportJob;
+
+  @BeforeEach
+  void setUp() {
+    var proxyFactory = new AspectJProxyFactory(target);
+    proxyFactory.addAspect(new ScheduledLockAspect(scheduledLockExecutor));
+    reportJob = proxyFactory.getProxy();
+  }
+
+  private void givenTheJobRuns() {
+    doAnswer(invocation -> {
+      invocation.<Runnable>getArgument(3).run();
+      return true;
+    }).when(scheduledLockExecutor).run(any(), any(), any(), any());
+  }
+
+  @Test
+  void run() {
+    givenTheJobRuns();
+    reportJob.report();
+    assertThat(target.runs).hasValue(1);
+    verify(scheduledLockExecutor).run(eq("report"), eq(Duration.ofMinutes(10)), eq(Duration.ofSeconds(30)), any(Runnable.class));
+  }
+
+  @Test
+  void skip() {
+    doReturn(false).when(scheduledLockExecutor).run(any(), any(), any(), any());
+    reportJob.report();
+    assertThat(target.runs).hasValue(0);
+  }
+
+  @Test
+  void runWithCheckedException() {
+    givenTheJobRuns();
+    assertThatException().isThrownBy(() -> reportJob.fail()).isInstanceOf(IOException.class);
+  }
+
+  static class ReportJob {
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @ScheduledLock(name = "report", lockAtMostFor = "10m", lockAtLeastFor = "PT30S")
+    public void report() {
+      runs.incrementAndGet();
+    }
+
+    @ScheduledLock(name = "failing", lockAtMostFor = "10m")
+    public void fail() throws IOException {
+      throw new IOException("test exception");
+    }
+
+  }
+
+}
@@ -0,0 +1,115 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledLockExecutorTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+  private static final Duration LOCK_AT_MOST_FOR = Duration.ofMinutes(10);
+  private static final Duration LOCK_AT_LEAST_FOR = Duration.ofSeconds(30);
+  private static final String UNIQUE_IDENTIFIER = "scheduled:report";
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plus(LOCK_AT_MOST_FOR));
+
+  @Mock
+  private LockManager lockManager;
+
+  private final AtomicInteger runs = new AtomicInteger();
+  private ScheduledLockExecutor scheduledLockExecutor;
+
+  @BeforeEach
+  void setUp() {
+    scheduledLockExecutor = new ScheduledLockExecutor(lockManager, "scheduled:", CLOCK);
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduledLockExecutor.close();
+  }
+
+  @Test
+  void runShorteningTheLock() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    doReturn(true).when(lockManager).canRenew();
+    doReturn(List.of(LOCK)).when(lockManager).renewAll(List.of(LOCK), LOCK_AT_LEAST_FOR);
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, runs::incrementAndGet)).isTrue();
+    // held until lockAtLeastFor, skipped meanwhile without going to the backend
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, runs::incrementAndGet)).isFalse();
+    assertThat(runs).hasValue(1);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void runReleasingTheLock() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, Duration.ZERO, runs::incrementAndGet)).isTrue();
+    assertThat(runs).hasValue(1);
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void runHeldByAnotherNode() {
+    doThrow(LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER)).when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    doReturn(Optional.of(LOCK)).when(lockManager).getLock(UNIQUE_IDENTIFIER);
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, runs::incrementAndGet)).isFalse();
+    // seen once, skipped until it expires
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, runs::incrementAndGet)).isFalse();
+    assertThat(runs).hasValue(0);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    verify(lockManager).getLock(UNIQUE_IDENTIFIER);
+  }
+
+  @Test
+  void runWithTheBackendFailing() {
+    doThrow(LockFailureException.other(UNIQUE_IDENTIFIER, new RuntimeException("test exception")))
+      .when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, runs::incrementAndGet)).isFalse();
+    assertThat(runs).hasValue(0);
+    verify(lockManager, never()).getLock(any());
+  }
+
+  @Test
+  void runReleasingLaterWhenTheBackendCantRenew() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    assertThat(scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, Duration.ofMillis(100), runs::incrementAndGet)).isTrue();
+    verify(lockManager, timeout(1_000)).unlock(LOCK);
+    verify(lockManager, never()).renewAll(any(), any());
+  }
+
+  @Test
+  void runFailing() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, LOCK_AT_MOST_FOR);
+    doReturn(true).when(lockManager).canRenew();
+    doReturn(List.of(LOCK)).when(lockManager).renewAll(List.of(LOCK), LOCK_AT_LEAST_FOR);
+    assertThatIllegalStateException().isThrownBy(() -> scheduledLockExecutor.run("report", LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR, () -> {
+      throw new IllegalStateException("test exception");
+    }));
+    // not run again for the same period either
+    verify(lockManager).renewAll(List.of(LOCK), LOCK_AT_LEAST_FOR);
+  }
+
+}
@@ -0,0 +1,270 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Elects a single leader among the nodes competing for the same name, as the holder of its lock, a lease renewed every
+ * third of its duration with {@link LockManager#renewAll(List, Duration)}.
+ * <p>The followers wait for the lease with {@link LockManager#lock(String, Duration, Duration)}, so they're woken up as soon
+ * as it's released on backends that can (e.g. the Mongo change stream, or the Redis release channel), or once it expires,
+ * rather than polling. A leader crashing is replaced once its lease expires, at most {@code lease} later.</p>
+ * <p>The leadership is revoked once its lease is lost, or would expire before the next renewal while the renewals keep
+ * failing, so before another node can be elected. On backends that can't renew locks, it's revoked at each lease, and
+ * competed for again.</p>
+ * <p>The callbacks are called on the virtual thread competing for the leadership, {@code onRevoked} before the lease is
+ * released.</p>
+ */
+@Slf4j
+public class LeaderElector implements AutoCloseable {
+
+  private final LockManager lockManager;
+  private final String name;
+  private final Duration lease;
+  private final Duration interval;
+  private final Runnable onElected;
+  private final Runnable onRevoked;
+  private final Clock clock;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private Thread campaign;
+  // guarded by mutex, completed to step down, null while following
+  private CompletableFuture<Void> stepDown;
+  // guarded by mutex
+  private boolean stopped;
+  // the lease held while leading, with its latest expiration
+  private volatile Lock leadership;
+
+  /**
+   * @param name the unique identifier of the lock the nodes compete for.
+   * @param lease how long the leadership outlives its last renewal, i.e. how long a crashed leader takes to be replaced.
+   * @param onElected called once this node is elected.
+   * @param onRevoked called once this node is no longer the leader.
+   */
+  public LeaderElector(LockManager lockManager, String name, Duration lease, Runnable onElected, Runnable onRevoked) {
+    this(lockManager, name, lease, onElected, onRevoked, Clock.systemUTC());
+  }
+
+  protected LeaderElector(LockManager lockManager, String name, Duration lease, Runnable onElected, Runnable onRevoked, Clock clock) {
+    if (!lease.isPositive()) {
+      throw new IllegalArgumentException("lease must be positive, but was " + lease);
+    }
+    this.lockManager = lockManager;
+    this.name = name;
+    this.lease = lease;
+    this.interval = lease.dividedBy(3);
+    this.onElected = onElected;
+    this.onRevoked = onRevoked;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts competing for the leadership, on a virtual thread.
+   */
+  public void start() {
+    mutex.lock();
+    try {
+      if (campaign == null && !stopped) {
+        campaign = Thread.ofVirtual().name("lock-manager-leader-elector").start(this::campaign);
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * @return whether this node is the leader, i.e. holds a lease not expired yet.
+   */
+  public boolean isLeader() {
+    var held = leadership;
+    return held != null && (held.expiresAt() == null || held.expiresAt().toInstant().isAfter(Instant.now(clock)));
+  }
+
+  /**
+   * Steps down, if leading, releasing the lease to the followers, and competes again only after a third of it.
+   */
+  public void resign() {
+    mutex.lock();
+    try {
+      if (stepDown != null) {
+        stepDown.complete(null);
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void campaign() {
+    while (!isStopped()) {
+      Lock held;
+      try {
+        held = lockManager.lock(name, lease, interval);
+      } catch (LockFailureException ex) {
+        if (!ex.isAlreadyLocked()) {
+          // the backend is failing, tries again later
+          pause();
+        }
+        continue;
+      }
+      if (!elected(held)) {
+        release(held);
+        continue;
+      }
+      var resigned = lead(held);
+      revoked(held);
+      if (resigned && !isStopped()) {
+        // gives the followers a chance
+        pause();
+      }
+    }
+  }
+
+  private boolean elected(Lock held) {
+    mutex.lock();
+    try {
+      // an interruption to stop following, arriving once elected
+      Thread.interrupted();
+      if (stopped) {
+        return false;
+      }
+      stepDown = new CompletableFuture<>();
+      leadership = held;
+    } finally {
+      mutex.unlock();
+    }
+    run("onElected", onElected);
+    return true;
+  }
+
+  /**
+   * Renews the lease every third of it, until it's lost or this node steps down.
+   * @return whether it stepped down.
+   */
+  private boolean lead(Lock held) {
+    CompletableFuture<Void> steppingDown;
+    mutex.lock();
+    try {
+      steppingDown = stepDown;
+    } finally {
+      mutex.unlock();
+    }
+    var current = held;
+    while (true) {
+      try {
+        steppingDown.get(interval.toNanos(), TimeUnit.NANOSECONDS);
+        return true;
+      } catch (TimeoutException ex) {
+        // time to renew it
+      } catch (InterruptedException | ExecutionException ex) {
+        return true;
+      }
+      if (current.expiresAt() == null) {
+        // it never expires
+        continue;
+      }
+      try {
+        var renewed = lockManager.renewAll(List.of(current), lease);
+        if (renewed.isEmpty()) {
+          // expired, or taken over
+          return false;
+        }
+        current = renewed.getFirst();
+        leadership = current;
+      } catch (RuntimeException ex) {
+        // tries again on the next tick, unless it would expire meanwhile
+        if (!current.expiresAt().toInstant().isAfter(Instant.now(clock).plus(interval))) {
+          log.error("error renewAll(): name={}, message={}, revoking the leadership before the lease expires", name, ex.getMessage());
+          return false;
+        }
+        log.warn("error renewAll(): name={}, message={}, trying again on the next tick", name, ex.getMessage());
+      }
+    }
+  }
+
+  private void revoked(Lock held) {
+    leadership = null;
+    // stops the work before another node can be elected
+    run("onRevoked", onRevoked);
+    release(held);
+    mutex.lock();
+    try {
+      // only now, so closing meanwhile doesn't interrupt the release
+      stepDown = null;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void release(Lock held) {
+    try {
+      lockManager.unlock(held);
+    } catch (RuntimeException ex) {
+      // it expires anyway
+      log.warn("error unlock(): name={}, message={}", name, ex.getMessage());
+    }
+  }
+
+  private void pause() {
+    try {
+      Thread.sleep(interval);
+    } catch (InterruptedException ex) {
+      // stopped
+    }
+  }
+
+  private boolean isStopped() {
+    mutex.lock();
+    try {
+      return stopped;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void run(String callbackName, Runnable callback) {
+    try {
+      callback.run();
+    } catch (RuntimeException ex) {
+      // a failing callback doesn't stop the campaign
+      log.error("error {}(): name={}, message={}", callbackName, name, ex.getMessage());
+    }
+  }
+
+  /**
+   * Stops competing for the leadership, stepping down if leading, and waits for the lease to be released.
+   */
+  @Override
+  public void close() {
+    Thread stopping;
+    mutex.lock();
+    try {
+      stopped = true;
+      stopping = campaign;
+      campaign = null;
+      if (stepDown != null) {
+        stepDown.complete(null);
+      } else if (stopping != null) {
+        // stops following, the lease isn't held
+        stopping.interrupt();
+      }
+    } finally {
+      mutex.unlock();
+    }
+    if (stopping != null && stopping != Thread.currentThread()) {
+      try {
+        stopping.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
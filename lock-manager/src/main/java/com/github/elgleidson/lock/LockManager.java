@@ -1,7 +1,10 @@
 package com.github.elgleidson.lock;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public interface LockManager {
 
@@ -34,6 +37,35 @@ public interface LockManager {
 
   Lock lock(String uniqueIdentifier, Duration expiresIn);
 
+  /**
+   * Acquires the lock, waiting up to {@code waitFor} for it to be released when it's already held.
+   * <p>By default, it tries again every 100ms. Backends can override it to be woken up once the lock is released instead.</p>
+   * @param uniqueIdentifier
+   * @param expiresIn
+   * @param waitFor how long to wait for the lock.
+   * @return the lock.
+   * @throws LockFailureException when the lock is still held after {@code waitFor}, or straight away on any other failure.
+   */
+  default Lock lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    var deadline = System.nanoTime() + waitFor.toNanos();
+    while (true) {
+      try {
+        return lock(uniqueIdentifier, expiresIn);
+      } catch (LockFailureException ex) {
+        var remaining = deadline - System.nanoTime();
+        if (!ex.isAlreadyLocked() || remaining <= 0) {
+          throw ex;
+        }
+        try {
+          Thread.sleep(Duration.ofNanos(Math.min(remaining, Duration.ofMillis(100).toNanos())));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw ex;
+        }
+      }
+    }
+  }
+
   /**
    * Releases the lock.
    * <p>This method should never throw an exception. In case of any exception, just log it and return false instead.</p>
@@ -43,4 +75,49 @@ public interface LockManager {
    */
   boolean unlock(Lock lock);
 
+  /**
+   * Extends the locks still held by their holders to expire in {@code expiresIn} from now.
+   * <p>Backends supporting it renew all of them in a single round trip, checking each one is still held by its lock id,
+   * e.g. for a {@link LockRenewer} keeping the locks of a node alive.</p>
+   * @param locks
+   * @param expiresIn
+   * @return the locks renewed, with their new expiration. The others have been lost (expired, or taken over).
+   * @throws UnsupportedOperationException when the backend can't renew locks (see {@link #canRenew()}).
+   */
+  default List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't renew locks");
+  }
+
+  /**
+   * @return whether the backend can renew locks with {@link #renewAll(List, Duration)}.
+   */
+  default boolean canRenew() {
+    return false;
+  }
+
+  default boolean isLocked(String uniqueIdentifier) {
+    return getLock(uniqueIdentifier).isPresent();
+  }
+
+  /**
+   * Gets the lock currently held on the unique identifier.
+   * @param uniqueIdentifier
+   * @return the lock, with the ID of its holder and when it expires, or empty if there is no lock held.
+   * @throws UnsupportedOperationException when the lock manager can't inspect its locks.
+   */
+  default Optional<Lock> getLock(String uniqueIdentifier) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't inspect locks");
+  }
+
+  /**
+   * Lists the locks currently held whose unique identifier starts with the prefix.
+   * <p>The locks are fetched lazily from the backend, so the stream should be closed once consumed (e.g. try-with-resources).</p>
+   * @param prefix the prefix of the unique identifier, or an empty string to list all locks.
+   * @return the locks held.
+   * @throws UnsupportedOperationException when the lock manager can't inspect its locks.
+   */
+  default Stream<Lock> listLocks(String prefix) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't inspect locks");
+  }
+
 }
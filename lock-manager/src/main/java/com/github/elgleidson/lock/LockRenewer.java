@@ -0,0 +1,169 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the locks of a node alive, renewing all the ones due on each tick with a single
+ * {@link LockManager#renewAll(List, Duration)}, rather than each lock on its own.
+ * <p>A lock is due once it would expire before the next two ticks, so a failed tick doesn't lose it. The locks the backend
+ * didn't renew (expired, or taken over), and the ones that expire while the renewals keep failing, are unregistered and
+ * reported to {@code onLost}.</p>
+ * <p>The ticks start with the first lock registered, on a virtual thread.</p>
+ */
+@Slf4j
+public class LockRenewer implements AutoCloseable {
+
+  private final LockManager lockManager;
+  private final Duration expiresIn;
+  private final Duration interval;
+  private final Consumer<Lock> onLost;
+  private final Clock clock;
+  // the locks held by their id, with their latest expiration
+  private final Map<String, Lock> held = new ConcurrentHashMap<>();
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex
+  private ScheduledExecutorService ticks;
+
+  /**
+   * @param expiresIn how long each renewal extends the locks for.
+   * @param interval how often the locks due are renewed, e.g. a third of {@code expiresIn}.
+   * @param onLost called with each lock lost.
+   */
+  public LockRenewer(LockManager lockManager, Duration expiresIn, Duration interval, Consumer<Lock> onLost) {
+    this(lockManager, expiresIn, interval, onLost, Clock.systemUTC());
+  }
+
+  protected LockRenewer(LockManager lockManager, Duration expiresIn, Duration interval, Consumer<Lock> onLost, Clock clock) {
+    if (!interval.isPositive() || interval.multipliedBy(2).compareTo(expiresIn) >= 0) {
+      throw new IllegalArgumentException("interval must be positive and less than half of expiresIn, but was " + interval);
+    }
+    this.lockManager = lockManager;
+    this.expiresIn = expiresIn;
+    this.interval = interval;
+    this.onLost = onLost;
+    this.clock = clock;
+  }
+
+  /**
+   * Acquires the lock for {@code expiresIn}, gets the supplier under it, kept alive however long it takes, and releases it.
+   * @throws LockFailureException when the lock can't be acquired.
+   */
+  public <T> T wrap(String uniqueIdentifier, Supplier<T> supplier) {
+    var lock = lockManager.lock(uniqueIdentifier, expiresIn);
+    register(lock);
+    try {
+      return supplier.get();
+    } finally {
+      // with its latest expiration, the backends may tell the lock by it
+      lockManager.unlock(unregister(lock));
+    }
+  }
+
+  /**
+   * Renews the lock until it's unregistered (or lost).
+   */
+  public void register(Lock lock) {
+    held.put(lock.id(), lock);
+    mutex.lock();
+    try {
+      if (ticks == null) {
+        ticks = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lock-manager-renewer").factory());
+        ticks.scheduleWithFixedDelay(this::renew, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Stops renewing the lock, e.g. before releasing it.
+   * @return the lock with its latest expiration, to release it with, or the lock itself when it's not registered.
+   */
+  public Lock unregister(Lock lock) {
+    var latest = held.remove(lock.id());
+    return latest != null ? latest : lock;
+  }
+
+  /**
+   * @return the locks being renewed, with their latest expiration.
+   */
+  public List<Lock> held() {
+    return List.copyOf(held.values());
+  }
+
+  /**
+   * Renews the locks due, once.
+   */
+  void renew() {
+    var now = Instant.now(clock);
+    var dueBy = now.plus(interval.multipliedBy(2));
+    var due = held.values().stream()
+      // without an expiration, it never expires
+      .filter(lock -> lock.expiresAt() != null && lock.expiresAt().toInstant().isBefore(dueBy))
+      .toList();
+    if (due.isEmpty()) {
+      return;
+    }
+    Map<String, Lock> renewed;
+    try {
+      renewed = lockManager.renewAll(due, expiresIn).stream().collect(Collectors.toMap(Lock::id, lock -> lock));
+    } catch (RuntimeException ex) {
+      log.error("error renewAll(): locks={}, message={}", due.size(), ex.getMessage());
+      // tries again on the next tick, only the ones expiring meanwhile are lost
+      due.stream().filter(lock -> !lock.expiresAt().toInstant().isAfter(now)).forEach(this::lost);
+      return;
+    }
+    for (var lock : due) {
+      var renewal = renewed.get(lock.id());
+      if (renewal == null) {
+        lost(lock);
+      } else {
+        // unless it was unregistered meanwhile
+        held.replace(lock.id(), lock, renewal);
+      }
+    }
+  }
+
+  private void lost(Lock lock) {
+    // unless it was unregistered meanwhile
+    if (held.remove(lock.id(), lock)) {
+      try {
+        onLost.accept(lock);
+      } catch (RuntimeException ex) {
+        // a failing callback doesn't stop the ticks
+        log.error("error onLost(): lock={}, message={}", lock, ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops the ticks and forgets the locks, without releasing them.
+   */
+  @Override
+  public void close() {
+    mutex.lock();
+    try {
+      if (ticks != null) {
+        ticks.shutdownNow();
+        ticks = null;
+      }
+      held.clear();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,387 @@
+package com.github.elgleidson.lock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link LockManager} that keeps the remote locks for a while once released, so the next {@code lock}/{@code wrap} on
+ * the same key from this node is served locally, without a round trip.
+ * <p>A released lock lingers, still held on the backend but free locally, until it's claimed again, it has lingered for
+ * {@code linger}, or it's {@link #release(String) released} on demand. The remote locks are acquired for {@code expiresIn}
+ * plus {@code linger}, so the ones claimed within the window can be reused, and they outlive a crashed node by as much.
+ * A lingering lock that would no longer outlast the {@code expiresIn} asked for is renewed, when the backend can, or
+ * released and acquired again otherwise.</p>
+ * <p>Each claim is a lock of its own, with its own id, mapping to the remote one: a late or duplicate {@code unlock} of a
+ * former claim doesn't free the current one.</p>
+ * <p>Meanwhile, the other nodes can't acquire the key: it suits a burst of work on the same key from the same node (e.g.
+ * the messages of an aggregate), not keys contended across nodes.</p>
+ */
+@Slf4j
+public class StickyLockManager implements LockManager, AutoCloseable {
+
+  private final LockManager lockManager;
+  private final Duration linger;
+  private final Clock clock;
+  private final ReentrantLock mutex = new ReentrantLock();
+  // guarded by mutex: the remote locks of this node by their unique identifier, claimed or lingering
+  private final Map<String, Lease> leases = new HashMap<>();
+  // guarded by mutex
+  private ScheduledExecutorService releases;
+
+  /**
+   * @param linger how long a released lock is kept, for the next one claiming it from this node.
+   */
+  public StickyLockManager(LockManager lockManager, Duration linger) {
+    this(lockManager, linger, Clock.systemUTC());
+  }
+
+  protected StickyLockManager(LockManager lockManager, Duration linger, Clock clock) {
+    if (!linger.isPositive()) {
+      throw new IllegalArgumentException("linger must be positive, but was " + linger);
+    }
+    this.lockManager = lockManager;
+    this.linger = linger;
+    this.clock = clock;
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    var claimed = claim(uniqueIdentifier, expiresIn);
+    if (claimed != null) {
+      return claimed;
+    }
+    return held(lockManager.lock(uniqueIdentifier, expiresIn.plus(linger)));
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    var claimed = claim(uniqueIdentifier, expiresIn);
+    if (claimed != null) {
+      return claimed;
+    }
+    if (isClaimed(uniqueIdentifier)) {
+      // held by another thread of this node, only polling tells when it's released locally
+      return LockManager.super.lock(uniqueIdentifier, expiresIn, waitFor);
+    }
+    // the backend's own way of waiting
+    return held(lockManager.lock(uniqueIdentifier, expiresIn.plus(linger), waitFor));
+  }
+
+  /**
+   * @return a new claim of the lingering lock, or null when there's none to reuse.
+   * @throws LockFailureException when another thread of this node holds it.
+   */
+  private Lock claim(String uniqueIdentifier, Duration expiresIn) {
+    Lease stale;
+    mutex.lock();
+    try {
+      var lease = leases.get(uniqueIdentifier);
+      if (lease == null) {
+        return null;
+      }
+      var now = Instant.now(clock);
+      if (lease.expired(now)) {
+        // e.g. never unlocked, the backend has let it go already
+        lease.cancelRelease();
+        leases.remove(uniqueIdentifier);
+        return null;
+      }
+      if (lease.isClaimed()) {
+        throw LockFailureException.alreadyLocked(uniqueIdentifier);
+      }
+      lease.cancelRelease();
+      var claim = lease.claim();
+      if (lease.outlasts(now.plus(expiresIn))) {
+        return claim;
+      }
+      // claimed while it's extended, so the other threads of this node don't reuse it meanwhile
+      stale = lease;
+    } finally {
+      mutex.unlock();
+    }
+    return extended(stale, expiresIn);
+  }
+
+  /**
+   * @return a claim of the stale lock, renewed for as long as asked, or null when it's not held anymore.
+   */
+  private Lock extended(Lease stale, Duration expiresIn) {
+    if (lockManager.canRenew()) {
+      try {
+        var renewed = lockManager.renewAll(List.of(stale.remote), expiresIn.plus(linger));
+        if (!renewed.isEmpty()) {
+          return held(renewed.getFirst());
+        }
+        // lost meanwhile (expired, or taken over)
+        forget(stale);
+        return null;
+      } catch (RuntimeException ex) {
+        log.warn("error renewAll(): uniqueIdentifier={}, message={}", stale.remote.uniqueIdentifier(), ex.getMessage());
+      }
+    }
+    forget(stale);
+    // released before a new one is acquired, for as long as asked
+    lockManager.unlock(stale.remote);
+    return null;
+  }
+
+  private void forget(Lease lease) {
+    mutex.lock();
+    try {
+      leases.remove(lease.remote.uniqueIdentifier(), lease);
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private boolean isClaimed(String uniqueIdentifier) {
+    mutex.lock();
+    try {
+      var lease = leases.get(uniqueIdentifier);
+      return lease != null && lease.isClaimed();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * @return the claim of the remote lock just acquired.
+   */
+  private Lock held(Lock remote) {
+    mutex.lock();
+    try {
+      var lease = new Lease(remote);
+      leases.put(remote.uniqueIdentifier(), lease);
+      return lease.claim();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Frees the lock locally, keeping it on the backend for {@code linger}, or less if it expires sooner.
+   * @return true, or whether the backend released it when it's not the current claim of a lock of this node.
+   */
+  @Override
+  public boolean unlock(Lock lock) {
+    mutex.lock();
+    try {
+      var lease = leases.get(lock.uniqueIdentifier());
+      if (lease != null && lease.isClaimedBy(lock)) {
+        lease.claimId = null;
+        lease.scheduleRelease(lingerFor(lease));
+        return true;
+      }
+    } finally {
+      mutex.unlock();
+    }
+    return lockManager.unlock(lock);
+  }
+
+  // guarded by mutex
+  private Duration lingerFor(Lease lease) {
+    if (lease.remote.expiresAt() == null) {
+      return linger;
+    }
+    var untilExpired = Duration.between(Instant.now(clock), lease.remote.expiresAt().toInstant());
+    return untilExpired.compareTo(linger) < 0 ? untilExpired : linger;
+  }
+
+  /**
+   * Releases the lock on the backend straight away, if it's lingering.
+   * @return whether it was lingering and the backend released it.
+   */
+  public boolean release(String uniqueIdentifier) {
+    Lock lingering;
+    mutex.lock();
+    try {
+      var lease = leases.get(uniqueIdentifier);
+      if (lease == null || lease.isClaimed()) {
+        return false;
+      }
+      lease.cancelRelease();
+      leases.remove(uniqueIdentifier);
+      lingering = lease.remote;
+    } finally {
+      mutex.unlock();
+    }
+    return lockManager.unlock(lingering);
+  }
+
+  private void released(Lease lease) {
+    mutex.lock();
+    try {
+      // unless it was claimed again, or released meanwhile
+      if (lease.isClaimed() || !leases.remove(lease.remote.uniqueIdentifier(), lease)) {
+        return;
+      }
+    } finally {
+      mutex.unlock();
+    }
+    lockManager.unlock(lease.remote);
+  }
+
+  /**
+   * Renews the remote locks of the claims among them, reported as the claims.
+   */
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    var remotes = new ArrayList<Lock>(locks.size());
+    // the claims by the id of their remote lock
+    var claims = new HashMap<String, Lock>();
+    mutex.lock();
+    try {
+      for (var lock : locks) {
+        var lease = leases.get(lock.uniqueIdentifier());
+        if (lease != null && lease.isClaimedBy(lock)) {
+          remotes.add(lease.remote);
+          claims.put(lease.remote.id(), lock);
+        } else {
+          remotes.add(lock);
+        }
+      }
+    } finally {
+      mutex.unlock();
+    }
+    var renewed = lockManager.renewAll(remotes, expiresIn);
+    if (claims.isEmpty()) {
+      return renewed;
+    }
+    mutex.lock();
+    try {
+      return renewed.stream().map(remote -> {
+        var claim = claims.get(remote.id());
+        if (claim == null) {
+          return remote;
+        }
+        var lease = leases.get(remote.uniqueIdentifier());
+        if (lease != null && lease.remote.id().equals(remote.id())) {
+          lease.remote = remote;
+        }
+        return new Lock(claim.id(), claim.uniqueIdentifier(), remote.expiresAt());
+      }).toList();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  @Override
+  public boolean canRenew() {
+    return lockManager.canRenew();
+  }
+
+  @Override
+  public boolean isLocked(String uniqueIdentifier) {
+    return lockManager.isLocked(uniqueIdentifier);
+  }
+
+  /**
+   * @return the lock held on the backend, lingering ones included.
+   */
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    return lockManager.getLock(uniqueIdentifier);
+  }
+
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    return lockManager.listLocks(prefix);
+  }
+
+  /**
+   * Releases the lingering locks on the backend. The claimed ones are released by their holders, straight away.
+   */
+  @Override
+  public void close() {
+    var lingering = new ArrayList<Lock>();
+    mutex.lock();
+    try {
+      for (var lease : leases.values()) {
+        lease.cancelRelease();
+        if (!lease.isClaimed()) {
+          lingering.add(lease.remote);
+        }
+      }
+      leases.clear();
+      if (releases != null) {
+        releases.shutdownNow();
+        releases = null;
+      }
+    } finally {
+      mutex.unlock();
+    }
+    lingering.forEach(lockManager::unlock);
+  }
+
+  // guarded by mutex
+  private ScheduledExecutorService releases() {
+    if (releases == null) {
+      releases = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lock-manager-sticky").factory());
+    }
+    return releases;
+  }
+
+  // mutable, guarded by mutex
+  private final class Lease {
+
+    private Lock remote;
+    // the id of the current claim by a thread of this node, null while it's lingering
+    private String claimId;
+    private ScheduledFuture<?> release;
+
+    private Lease(Lock remote) {
+      this.remote = remote;
+    }
+
+    /**
+     * @return a new claim of the remote lock, with an id of its own.
+     */
+    private Lock claim() {
+      claimId = UUID.randomUUID().toString();
+      return new Lock(claimId, remote.uniqueIdentifier(), remote.expiresAt());
+    }
+
+    private boolean isClaimed() {
+      return claimId != null;
+    }
+
+    private boolean isClaimedBy(Lock lock) {
+      return claimId != null && claimId.equals(lock.id());
+    }
+
+    private boolean expired(Instant now) {
+      return remote.expiresAt() != null && !remote.expiresAt().toInstant().isAfter(now);
+    }
+
+    private boolean outlasts(Instant instant) {
+      return remote.expiresAt() == null || !remote.expiresAt().toInstant().isBefore(instant);
+    }
+
+    private void scheduleRelease(Duration after) {
+      release = releases().schedule(() -> released(this), Math.max(after.toNanos(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelRelease() {
+      if (release != null) {
+        release.cancel(false);
+        release = null;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.github.elgleidson.lock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A {@link LockManager} for virtual threads, that makes the backend calls through a {@link ReactiveLockManager}.
+ * <p>The reactive lock managers run on the non-blocking drivers (Lettuce, MongoDB reactive streams), so the calling thread
+ * just parks until the response arrives. A parked virtual thread releases its carrier thread, so thousands of concurrent
+ * {@code wrap} calls are served by a handful of platform threads. Nothing on the lock path is {@code synchronized}, so the
+ * virtual threads are never pinned to their carrier.</p>
+ */
+public class VirtualThreadLockManager implements LockManager {
+
+  private final ReactiveLockManager reactiveLockManager;
+
+  public VirtualThreadLockManager(ReactiveLockManager reactiveLockManager) {
+    this.reactiveLockManager = reactiveLockManager;
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn) {
+    return reactiveLockManager.lock(uniqueIdentifier, expiresIn).block();
+  }
+
+  @Override
+  public Lock lock(String uniqueIdentifier, Duration expiresIn, Duration waitFor) {
+    // the backend's own way of waiting, e.g. woken up by the releases rather than polling
+    return reactiveLockManager.lock(uniqueIdentifier, expiresIn, waitFor).block();
+  }
+
+  @Override
+  public boolean unlock(Lock lock) {
+    try {
+      return Boolean.TRUE.equals(reactiveLockManager.unlock(lock).block());
+    } catch (RuntimeException ex) {
+      return false;
+    }
+  }
+
+  @Override
+  public List<Lock> renewAll(List<Lock> locks, Duration expiresIn) {
+    return reactiveLockManager.renewAll(locks, expiresIn).block();
+  }
+
+  @Override
+  public boolean canRenew() {
+    return reactiveLockManager.canRenew();
+  }
+
+  @Override
+  public boolean isLocked(String uniqueIdentifier) {
+    return Boolean.TRUE.equals(reactiveLockManager.isLocked(uniqueIdentifier).block());
+  }
+
+  @Override
+  public Optional<Lock> getLock(String uniqueIdentifier) {
+    return reactiveLockManager.getLock(uniqueIdentifier).blockOptional();
+  }
+
+  @Override
+  public Stream<Lock> listLocks(String prefix) {
+    // closing the stream cancels the underlying Flux
+    return reactiveLockManager.listLocks(prefix).toStream();
+  }
+
+}
@@ -0,0 +1,159 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+@ExtendWith(MockitoExtension.class)
+class LeaderElectorTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+  private static final String NAME = "leader:report";
+  private static final Duration LEASE = Duration.ofMillis(300);
+  private static final Duration INTERVAL = Duration.ofMillis(100);
+  private static final Lock LEADERSHIP = new Lock("id", NAME, ZonedDateTime.ofInstant(NOW, UTC).plus(LEASE));
+  // expires before the next renewal
+  private static final Lock EXPIRING_LEADERSHIP = new Lock("expiring", NAME, ZonedDateTime.ofInstant(NOW, UTC).plusNanos(INTERVAL.toNanos() / 2));
+
+  @Mock
+  private LockManager lockManager;
+
+  private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+  private LeaderElector leaderElector;
+
+  @BeforeEach
+  void setUp() {
+    leaderElector = new LeaderElector(lockManager, NAME, LEASE, () -> events.add("elected"), () -> events.add("revoked"), CLOCK);
+  }
+
+  @AfterEach
+  void tearDown() {
+    leaderElector.close();
+  }
+
+  @Test
+  void electedRenewingTheLease() throws InterruptedException {
+    doReturn(LEADERSHIP).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    doReturn(List.of(LEADERSHIP)).when(lockManager).renewAll(List.of(LEADERSHIP), LEASE);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    verify(lockManager, timeout(1_000).atLeast(2)).renewAll(List.of(LEADERSHIP), LEASE);
+    assertThat(leaderElector.isLeader()).isTrue();
+    leaderElector.close();
+    // stepping down, releasing the lease to the followers
+    thenTheNextEventIs("revoked");
+    verify(lockManager).unlock(LEADERSHIP);
+    assertThat(leaderElector.isLeader()).isFalse();
+  }
+
+  @Test
+  void electedOnceTheLeaderReleases() throws InterruptedException {
+    doThrow(LockFailureException.alreadyLocked(NAME)).doReturn(LEADERSHIP).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    assertThat(leaderElector.isLeader()).isTrue();
+  }
+
+  @Test
+  void revokedOnceTheLeaseIsLost() throws InterruptedException {
+    doReturn(LEADERSHIP).doAnswer(heldByAnotherNode(INTERVAL)).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    doReturn(List.of()).when(lockManager).renewAll(List.of(LEADERSHIP), LEASE);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    thenTheNextEventIs("revoked");
+    verify(lockManager, timeout(1_000)).unlock(LEADERSHIP);
+    assertThat(leaderElector.isLeader()).isFalse();
+  }
+
+  @Test
+  void revokedOnceTheLeaseWouldExpireWhileTheRenewalsFail() throws InterruptedException {
+    doReturn(EXPIRING_LEADERSHIP).doAnswer(heldByAnotherNode(INTERVAL)).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    doThrow(new RuntimeException("test exception")).when(lockManager).renewAll(List.of(EXPIRING_LEADERSHIP), LEASE);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    thenTheNextEventIs("revoked");
+  }
+
+  @Test
+  void keepLeadingWhileTheRenewalsFailBeforeTheLeaseExpires() throws InterruptedException {
+    doReturn(LEADERSHIP).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    doThrow(new RuntimeException("test exception")).when(lockManager).renewAll(List.of(LEADERSHIP), LEASE);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    verify(lockManager, timeout(1_000).atLeast(2)).renewAll(List.of(LEADERSHIP), LEASE);
+    assertThat(events).isEmpty();
+    assertThat(leaderElector.isLeader()).isTrue();
+  }
+
+  @Test
+  void resign() throws InterruptedException {
+    doReturn(LEADERSHIP).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    leaderElector.start();
+    thenTheNextEventIs("elected");
+    leaderElector.resign();
+    thenTheNextEventIs("revoked");
+    verify(lockManager, timeout(1_000)).unlock(LEADERSHIP);
+    // gives the followers a chance before competing again
+    verify(lockManager).lock(NAME, LEASE, INTERVAL);
+  }
+
+  @Test
+  void closeWhileFollowing() {
+    doAnswer(heldByAnotherNode(Duration.ofSeconds(10))).when(lockManager).lock(NAME, LEASE, INTERVAL);
+    leaderElector.start();
+    verify(lockManager, timeout(1_000)).lock(NAME, LEASE, INTERVAL);
+    var start = System.nanoTime();
+    leaderElector.close();
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+    assertThat(events).isEmpty();
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void leaseNotPositive() {
+    assertThatIllegalArgumentException()
+      .isThrownBy(() -> new LeaderElector(lockManager, NAME, Duration.ZERO, () -> {}, () -> {}))
+      .withMessage("lease must be positive, but was PT0S");
+  }
+
+  private static Answer<Lock> heldByAnotherNode(Duration waitFor) {
+    return invocation -> {
+      // waits for it, as the backend would, until interrupted
+      try {
+        Thread.sleep(waitFor);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      throw LockFailureException.alreadyLocked(NAME);
+    };
+  }
+
+  private void thenTheNextEventIs(String expected) throws InterruptedException {
+    assertThat(events.poll(1, TimeUnit.SECONDS)).isEqualTo(expected);
+  }
+
+}
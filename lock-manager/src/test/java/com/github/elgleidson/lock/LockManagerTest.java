@@ -89,6 +89,30 @@ class LockManagerTest {
     thenUnlockIsInvoked();
   }
 
+  @Test
+  void lockWaitingUntilReleased() {
+    doThrow(LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER)).doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5))).isEqualTo(LOCK);
+    verify(lockManager, times(2)).lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  @Test
+  void lockWaitingStillHeld() {
+    var exception = LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    doThrow(exception).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    assertThatException().isThrownBy(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofMillis(250))).isEqualTo(exception);
+    verify(lockManager, atLeast(2)).lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
+  @Test
+  void lockWaitingOtherFailure() {
+    var exception = LockFailureException.other(UNIQUE_IDENTIFIER, new RuntimeException("test"));
+    doThrow(exception).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    // not worth waiting for
+    assertThatException().isThrownBy(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(5))).isEqualTo(exception);
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL);
+  }
+
   private void givenASupplier() {
     supplier = mock(Supplier.class);
     lenient().doReturn(OBJECT).when(supplier).get();
@@ -0,0 +1,144 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LockRenewerTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+  private static final Duration TTL = Duration.ofSeconds(30);
+  private static final Duration INTERVAL = Duration.ofSeconds(10);
+
+  // expires before the next two ticks
+  private static final Lock DUE_LOCK = new Lock("due", "due-unique-identifier", ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(15));
+  private static final Lock OTHER_DUE_LOCK = new Lock("other-due", "other-due-unique-identifier", ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(5));
+  private static final Lock FRESH_LOCK = new Lock("fresh", "fresh-unique-identifier", ZonedDateTime.ofInstant(NOW, UTC).plus(TTL));
+  private static final Lock EXPIRED_LOCK = new Lock("expired", "expired-unique-identifier", ZonedDateTime.ofInstant(NOW, UTC));
+
+  @Mock
+  private LockManager lockManager;
+
+  private final List<Lock> lost = new ArrayList<>();
+  private LockRenewer lockRenewer;
+
+  @BeforeEach
+  void setUp() {
+    lockRenewer = new LockRenewer(lockManager, TTL, INTERVAL, lost::add, CLOCK);
+  }
+
+  @AfterEach
+  void tearDown() {
+    lockRenewer.close();
+  }
+
+  @Test
+  void renewOnlyTheLocksDue() {
+    var renewed = new Lock(DUE_LOCK.id(), DUE_LOCK.uniqueIdentifier(), ZonedDateTime.ofInstant(NOW, UTC).plus(TTL));
+    doReturn(List.of(renewed, OTHER_DUE_LOCK)).when(lockManager).renewAll(anyList(), eq(TTL));
+    lockRenewer.register(DUE_LOCK);
+    lockRenewer.register(OTHER_DUE_LOCK);
+    lockRenewer.register(FRESH_LOCK);
+    lockRenewer.renew();
+    assertThat(lockRenewer.held()).containsExactlyInAnyOrder(renewed, OTHER_DUE_LOCK, FRESH_LOCK);
+    assertThat(lost).isEmpty();
+    // all together
+    verify(lockManager).renewAll(argThat(locks -> Set.copyOf(locks).equals(Set.of(DUE_LOCK, OTHER_DUE_LOCK))), eq(TTL));
+  }
+
+  @Test
+  void renewNothingDue() {
+    lockRenewer.register(FRESH_LOCK);
+    lockRenewer.renew();
+    verify(lockManager, never()).renewAll(anyList(), any(Duration.class));
+  }
+
+  @Test
+  void renewLosingLocks() {
+    doReturn(List.of(DUE_LOCK)).when(lockManager).renewAll(anyList(), eq(TTL));
+    lockRenewer.register(DUE_LOCK);
+    lockRenewer.register(OTHER_DUE_LOCK);
+    lockRenewer.renew();
+    // the ones not renewed have expired, or were taken over
+    assertThat(lost).containsExactly(OTHER_DUE_LOCK);
+    assertThat(lockRenewer.held()).containsExactly(DUE_LOCK);
+  }
+
+  @Test
+  void renewFailing() {
+    doThrow(new RuntimeException("test exception")).when(lockManager).renewAll(anyList(), any(Duration.class));
+    lockRenewer.register(DUE_LOCK);
+    lockRenewer.register(EXPIRED_LOCK);
+    lockRenewer.renew();
+    // tried again on the next tick, unless it has expired meanwhile
+    assertThat(lost).containsExactly(EXPIRED_LOCK);
+    assertThat(lockRenewer.held()).containsExactly(DUE_LOCK);
+  }
+
+  @Test
+  void renewOnTicks() {
+    lockRenewer = new LockRenewer(lockManager, Duration.ofMillis(300), Duration.ofMillis(100), lost::add);
+    var lock = new Lock("id", "my-unique-identifier", ZonedDateTime.now(UTC).plusNanos(Duration.ofMillis(150).toNanos()));
+    doReturn(List.of(lock)).when(lockManager).renewAll(List.of(lock), Duration.ofMillis(300));
+    lockRenewer.register(lock);
+    verify(lockManager, timeout(1_000).atLeastOnce()).renewAll(List.of(lock), Duration.ofMillis(300));
+  }
+
+  @Test
+  void wrap() {
+    doReturn(FRESH_LOCK).when(lockManager).lock(FRESH_LOCK.uniqueIdentifier(), TTL);
+    var result = lockRenewer.wrap(FRESH_LOCK.uniqueIdentifier(), () -> lockRenewer.held());
+    // renewed while the supplier runs, then released
+    assertThat(result).containsExactly(FRESH_LOCK);
+    assertThat(lockRenewer.held()).isEmpty();
+    verify(lockManager).unlock(FRESH_LOCK);
+  }
+
+  @Test
+  void wrapReleasesTheLatestRenewal() {
+    var renewed = new Lock(DUE_LOCK.id(), DUE_LOCK.uniqueIdentifier(), ZonedDateTime.ofInstant(NOW, UTC).plus(TTL));
+    doReturn(DUE_LOCK).when(lockManager).lock(DUE_LOCK.uniqueIdentifier(), TTL);
+    doReturn(List.of(renewed)).when(lockManager).renewAll(List.of(DUE_LOCK), TTL);
+    // e.g. the file backend, releasing the lock only with its current expiration
+    doReturn(true).when(lockManager).unlock(renewed);
+    lockRenewer.wrap(DUE_LOCK.uniqueIdentifier(), () -> {
+      lockRenewer.renew();
+      return null;
+    });
+    verify(lockManager).unlock(renewed);
+    verify(lockManager, never()).unlock(DUE_LOCK);
+  }
+
+  @Test
+  void intervalTooLong() {
+    assertThatIllegalArgumentException()
+      .isThrownBy(() -> new LockRenewer(lockManager, TTL, Duration.ofSeconds(15), lost::add))
+      .withMessage("interval must be positive and less than half of expiresIn, but was PT15S");
+  }
+
+}
@@ -0,0 +1,218 @@
+package com.github.elgleidson.lock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StickyLockManagerTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final Clock CLOCK = Clock.fixed(NOW, UTC);
+  private static final Duration TTL = Duration.ofSeconds(30);
+  private static final Duration LINGER = Duration.ofSeconds(5);
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  // acquired for the linger too
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plus(TTL).plus(LINGER));
+
+  @Mock
+  private LockManager lockManager;
+
+  private StickyLockManager stickyLockManager;
+
+  @BeforeEach
+  void setUp() {
+    stickyLockManager = new StickyLockManager(lockManager, LINGER, CLOCK);
+  }
+
+  @AfterEach
+  void tearDown() {
+    stickyLockManager.close();
+  }
+
+  @Test
+  void lockAgainWhileLingering() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    var first = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    thenItClaims(first, LOCK);
+    assertThat(stickyLockManager.unlock(first)).isTrue();
+    // served locally, still held on the backend
+    var second = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    thenItClaims(second, LOCK);
+    assertThat(second.id()).isNotEqualTo(first.id());
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void unlockByAFormerClaim() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    var first = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    stickyLockManager.unlock(first);
+    var second = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    // a late or duplicate unlock of the former claim is a no-op, as on the backend
+    doReturn(false).when(lockManager).unlock(first);
+    assertThat(stickyLockManager.unlock(first)).isFalse();
+    assertThatThrownBy(() -> stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .isInstanceOf(LockFailureException.class)
+      .matches(ex -> ((LockFailureException) ex).isAlreadyLocked());
+    assertThat(stickyLockManager.unlock(second)).isTrue();
+    verify(lockManager, never()).unlock(LOCK);
+  }
+
+  @Test
+  void lockClaimedByAnotherThread() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    assertThatThrownBy(() -> stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL))
+      .isInstanceOf(LockFailureException.class)
+      .matches(ex -> ((LockFailureException) ex).isAlreadyLocked());
+  }
+
+  @Test
+  void lockNotOutlastedByTheLingeringOne() {
+    var lingering = new Lock("lingering-id", UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(10));
+    doReturn(lingering).when(lockManager).lock(UNIQUE_IDENTIFIER, Duration.ofSeconds(5).plus(LINGER));
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    stickyLockManager.unlock(stickyLockManager.lock(UNIQUE_IDENTIFIER, Duration.ofSeconds(5)));
+    // released, and acquired again for as long as asked
+    thenItClaims(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL), LOCK);
+    verify(lockManager).unlock(lingering);
+  }
+
+  @Test
+  void lockNotOutlastedRenewsTheLingeringOne() {
+    var lingering = givenALingeringLockNotOutlastingTheTtl();
+    var renewed = new Lock("lingering-id", UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plus(TTL).plus(LINGER));
+    doReturn(true).when(lockManager).canRenew();
+    doReturn(List.of(renewed)).when(lockManager).renewAll(List.of(lingering), TTL.plus(LINGER));
+    // extended in a single round trip, rather than released and acquired again
+    var claim = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    thenItClaims(claim, renewed);
+    verify(lockManager, never()).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    verify(lockManager, never()).unlock(any());
+    // and lingers in turn
+    stickyLockManager.unlock(claim);
+    thenItClaims(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL), renewed);
+  }
+
+  @Test
+  void lockNotOutlastedLostTheLingeringOne() {
+    var lingering = givenALingeringLockNotOutlastingTheTtl();
+    doReturn(true).when(lockManager).canRenew();
+    doReturn(List.of()).when(lockManager).renewAll(List.of(lingering), TTL.plus(LINGER));
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    thenItClaims(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL), LOCK);
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void lockNotOutlastedFailingToRenewTheLingeringOne() {
+    var lingering = givenALingeringLockNotOutlastingTheTtl();
+    doReturn(true).when(lockManager).canRenew();
+    doThrow(new RuntimeException("test exception")).when(lockManager).renewAll(List.of(lingering), TTL.plus(LINGER));
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    // released, and acquired again for as long as asked
+    thenItClaims(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL), LOCK);
+    verify(lockManager).unlock(lingering);
+  }
+
+  private Lock givenALingeringLockNotOutlastingTheTtl() {
+    var lingering = new Lock("lingering-id", UNIQUE_IDENTIFIER, ZonedDateTime.ofInstant(NOW, UTC).plusSeconds(10));
+    doReturn(lingering).when(lockManager).lock(UNIQUE_IDENTIFIER, Duration.ofSeconds(5).plus(LINGER));
+    stickyLockManager.unlock(stickyLockManager.lock(UNIQUE_IDENTIFIER, Duration.ofSeconds(5)));
+    return lingering;
+  }
+
+  @Test
+  void releaseOnDemand() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    doReturn(true).when(lockManager).unlock(LOCK);
+    var claim = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    // not while it's claimed
+    assertThat(stickyLockManager.release(UNIQUE_IDENTIFIER)).isFalse();
+    stickyLockManager.unlock(claim);
+    assertThat(stickyLockManager.release(UNIQUE_IDENTIFIER)).isTrue();
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void releaseOnIdle() {
+    stickyLockManager = new StickyLockManager(lockManager, Duration.ofMillis(100));
+    var lock = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.now(UTC).plus(TTL));
+    doReturn(lock).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(Duration.ofMillis(100)));
+    stickyLockManager.unlock(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL));
+    verify(lockManager, timeout(1_000)).unlock(lock);
+  }
+
+  @Test
+  void unlockNotSticky() {
+    doReturn(true).when(lockManager).unlock(LOCK);
+    assertThat(stickyLockManager.unlock(LOCK)).isTrue();
+  }
+
+  @Test
+  void closeReleasesTheLingering() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    stickyLockManager.unlock(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL));
+    stickyLockManager.close();
+    verify(lockManager).unlock(LOCK);
+  }
+
+  @Test
+  void renewAllTheClaims() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    var claim = stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL);
+    var remote = new Lock("id", UNIQUE_IDENTIFIER, LOCK.expiresAt().plus(TTL));
+    var other = new Lock("other-id", "other-unique-identifier", LOCK.expiresAt());
+    // the remote locks of the claims are renewed, the others as they are
+    doReturn(List.of(remote, other)).when(lockManager).renewAll(List.of(LOCK, other), TTL);
+    var renewed = stickyLockManager.renewAll(List.of(claim, other), TTL);
+    assertThat(renewed).containsExactly(new Lock(claim.id(), UNIQUE_IDENTIFIER, remote.expiresAt()), other);
+    assertThat(stickyLockManager.unlock(renewed.getFirst())).isTrue();
+    thenItClaims(stickyLockManager.lock(UNIQUE_IDENTIFIER, TTL), remote);
+  }
+
+  @Test
+  void wrapConsecutively() {
+    doReturn(LOCK).when(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    assertThat(stickyLockManager.wrap(UNIQUE_IDENTIFIER, TTL, () -> "first")).isEqualTo("first");
+    assertThat(stickyLockManager.wrap(UNIQUE_IDENTIFIER, TTL, () -> "second")).isEqualTo("second");
+    // a single round trip for both
+    verify(lockManager).lock(UNIQUE_IDENTIFIER, TTL.plus(LINGER));
+    verify(lockManager, never()).unlock(any());
+  }
+
+  @Test
+  void lingerNotPositive() {
+    assertThatIllegalArgumentException()
+      .isThrownBy(() -> new StickyLockManager(lockManager, Duration.ZERO))
+      .withMessage("linger must be positive, but was PT0S");
+  }
+
+  private void thenItClaims(Lock claim, Lock remote) {
+    assertThat(claim.id()).isNotEqualTo(remote.id());
+    assertThat(claim.uniqueIdentifier()).isEqualTo(remote.uniqueIdentifier());
+    assertThat(claim.expiresAt()).isEqualTo(remote.expiresAt());
+  }
+
+}
@@ -0,0 +1,74 @@
+package com.github.elgleidson.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatException;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class VirtualThreadLockManagerTest {
+
+  private static final String UNIQUE_IDENTIFIER = "my-unique-identifier";
+  private static final Duration TTL = Duration.ofSeconds(5);
+  private static final Lock LOCK = new Lock("id", UNIQUE_IDENTIFIER, ZonedDateTime.now().plus(TTL));
+
+  @Mock
+  private ReactiveLockManager reactiveLockManager;
+
+  @Test
+  void wrapOnVirtualThreads() throws Exception {
+    doReturn(Mono.just(LOCK).delayElement(Duration.ofMillis(10))).when(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    doReturn(Mono.just(true)).when(reactiveLockManager).unlock(LOCK);
+    var lockManager = new VirtualThreadLockManager(reactiveLockManager);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var result = executor.submit(() -> lockManager.wrap(UNIQUE_IDENTIFIER, TTL, Thread.currentThread()::isVirtual));
+      assertThat(result.get()).isTrue();
+    }
+    verify(reactiveLockManager).unlock(LOCK);
+  }
+
+  @Test
+  void lockAlreadyLocked() {
+    var exception = LockFailureException.alreadyLocked(UNIQUE_IDENTIFIER);
+    doReturn(Mono.error(exception)).when(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL);
+    var lockManager = new VirtualThreadLockManager(reactiveLockManager);
+    assertThatException().isThrownBy(() -> lockManager.lock(UNIQUE_IDENTIFIER, TTL)).isEqualTo(exception);
+  }
+
+  @Test
+  void lockWaiting() {
+    doReturn(Mono.just(LOCK)).when(reactiveLockManager).lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(1));
+    var lockManager = new VirtualThreadLockManager(reactiveLockManager);
+    // waits the backend's own way
+    assertThat(lockManager.lock(UNIQUE_IDENTIFIER, TTL, Duration.ofSeconds(1))).isEqualTo(LOCK);
+  }
+
+  @Test
+  void unlockException() {
+    doReturn(Mono.error(new RuntimeException("test exception"))).when(reactiveLockManager).unlock(LOCK);
+    var lockManager = new VirtualThreadLockManager(reactiveLockManager);
+    assertThat(lockManager.unlock(LOCK)).isFalse();
+  }
+
+  @Test
+  void inspect() {
+    doReturn(Mono.empty()).when(reactiveLockManager).getLock(UNIQUE_IDENTIFIER);
+    doReturn(Flux.just(LOCK)).when(reactiveLockManager).listLocks("my-");
+    var lockManager = new VirtualThreadLockManager(reactiveLockManager);
+    assertThat(lockManager.getLock(UNIQUE_IDENTIFIER)).isEmpty();
+    try (var locks = lockManager.listLocks("my-")) {
+      assertThat(locks).containsExactly(LOCK);
+    }
+  }
+
+}